@@ -850,26 +850,64 @@ public abstract class JdbcProxyGenerator extends DelegatorGenerator
 	    iw.println("{ this.lock.unlock(); }");
 	    iw.downIndent();
 	    iw.println("}");
+            iw.println();
+
+            // the statement cache keys on reflective Methods. we look them up once, rather
+            // than via Class.getMethod(...) on every prepareStatement(...) / prepareCall(...)
+            Method[] methods = intfcl.getMethods();
+            for (int i = 0, len = methods.length; i < len; ++i)
+            {
+                Method m = methods[i];
+                String mname = m.getName();
+                if (mname.equals("prepareStatement") || mname.equals("prepareCall"))
+                {
+                    Class[] argTypes = m.getParameterTypes();
+                    iw.print("private final static Method " + statementMethodFieldName( m ) + " = findStatementMethod( \042" + mname + "\042, new Class[] { ");
+                    for (int j = 0, jlen = argTypes.length; j < jlen; ++j)
+                    {
+                        if (j != 0) iw.print(", ");
+                        iw.print( CodegenUtils.simpleClassName( argTypes[j] ) + ".class" );
+                    }
+                    iw.println(" } );");
+                }
+            }
+            iw.println();
+            iw.println("private static Method findStatementMethod( String name, Class[] argTypes )");
+            iw.println("{");
+            iw.upIndent();
+            iw.println("try { return Connection.class.getMethod( name, argTypes ); }");
+            iw.println("catch (NoSuchMethodException e)");
+            iw.println("{ throw new InternalError(\042Connection method expected at code-generation time not found: \042 + e.getMessage()); }");
+            iw.downIndent();
+            iw.println("}");
 
             super.generateExtraDeclarations( intfcl, genclass, iw );
         }
 
-        void generateFindMethodAndArgs( Method method, IndentedWriter iw ) throws IOException
+        static String statementMethodFieldName( Method method )
         {
-            iw.println("Class[] argTypes = ");
-            iw.println("{");
-            iw.upIndent();
-
+            StringBuffer sb = new StringBuffer( method.getName() );
+            sb.append("_METHOD");
             Class[] argTypes = method.getParameterTypes();
             for (int i = 0, len = argTypes.length; i < len; ++i)
             {
-                if (i != 0) iw.println(",");
-                iw.print( CodegenUtils.simpleClassName( argTypes[i] ) + ".class" );
+                sb.append('_');
+                Class argType = argTypes[i];
+                while (argType.isArray())
+                {
+                    sb.append("ArrayOf");
+                    argType = argType.getComponentType();
+                }
+                sb.append( argType.getSimpleName() );
             }
-            iw.println();
-            iw.downIndent();
-            iw.println("};");
-            iw.println("Method method = Connection.class.getMethod( \042" + method.getName() + "\042 , argTypes );");
+            return sb.toString();
+        }
+
+        void generateFindMethodAndArgs( Method method, IndentedWriter iw ) throws IOException
+        {
+            Class[] argTypes = method.getParameterTypes();
+
+            iw.println("Method method = " + statementMethodFieldName( method ) + ";");
             iw.println();
             iw.println("Object[] args = ");
             iw.println("{");
@@ -22,6 +22,8 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
     final static MLogger logger = MLog.getLogger( AbstractComboPooledDataSource.class );
 
     final static Set TO_STRING_IGNORE_PROPS = new HashSet( Arrays.asList( new String[] { 
+                    "circuitBreakerLastTransitionTimeDefaultUser",
+                    "circuitBreakerStateDefaultUser",
                     "connection",
                     "lastAcquisitionFailureDefaultUser",
                     "lastCheckinFailureDefaultUser",
@@ -36,6 +38,8 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
                     "numConnections",
                     "numConnectionsAllUsers",
                     "numConnectionsDefaultUser",
+                    "numAcquisitionsDefaultUser",
+                    "numCircuitBreakerTripsDefaultUser",
                     "numFailedCheckinsDefaultUser",
                     "numFailedCheckoutsDefaultUser",
                     "numFailedIdleTestsDefaultUser",
@@ -46,6 +50,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
                     "numUnclosedOrphanedConnections",
                     "numUnclosedOrphanedConnectionsAllUsers",
                     "numUnclosedOrphanedConnectionsDefaultUser",
+                    "numRebuildsDefaultUser",
                     "numUserPools",
                     "effectivePropertyCycleDefaultUser",
                     "parentLogger",
@@ -72,6 +77,24 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
                     "threadPoolNumTasksPending",
                     "threadPoolStackTraces",
                     "threadPoolStatus",
+                    "poolStatsAllUsers",
+                    "poolStatsDefaultUser",
+                    "statementCacheNumHitsAllUsers",
+                    "statementCacheNumHitsDefaultUser",
+                    "statementCacheNumMissesAllUsers",
+                    "statementCacheNumMissesDefaultUser",
+                    "statementCacheNumUncachedCheckoutsAllUsers",
+                    "statementCacheNumUncachedCheckoutsDefaultUser",
+                    "statementCacheNumEvictionsMaxStatementsAllUsers",
+                    "statementCacheNumEvictionsMaxStatementsDefaultUser",
+                    "statementCacheNumEvictionsMaxStatementsPerConnectionAllUsers",
+                    "statementCacheNumEvictionsMaxStatementsPerConnectionDefaultUser",
+                    "statementCacheNumEvictionsConnectionCloseAllUsers",
+                    "statementCacheNumEvictionsConnectionCloseDefaultUser",
+                    "numOverdueCheckoutsAllUsers",
+                    "numOverdueCheckoutsDefaultUser",
+                    "connectionHoldTimesAllUsers",
+                    "connectionHoldTimesDefaultUser",
                     "overrideDefaultUser",
                     "overrideDefaultPassword",
                     "password",
@@ -200,8 +223,12 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 
     public void setDriverClass( String driverClass ) throws PropertyVetoException
     { 
-        dmds.setDriverClass( driverClass ); 
-//      System.err.println("setting driverClass: " + driverClass); 
+	if ( diff( dmds.getDriverClass(), driverClass ) )
+	{
+	    dmds.setDriverClass( driverClass ); 
+	    this.rebuildPoolManager();
+//          System.err.println("setting driverClass: " + driverClass); 
+	}
     }
 
     public boolean isForceUseNamedDriverClass()
@@ -223,7 +250,13 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( dmds.getJdbcUrl(), jdbcUrl ) )
 	{
 	    dmds.setJdbcUrl( jdbcUrl ); 
-	    this.resetPoolManager( false );
+
+	    // a pool manager that shares a connection budget with other DataSources
+	    // by JDBC URL joined its budget group once, so must be replaced to move
+	    if ( wcpds.getConnectionBudgetGroup() == null && wcpds.getMaxGroupConnections() > 0 )
+		this.resetPoolManager( false );
+	    else
+		this.rebuildPoolManager();
 //          System.err.println("setting jdbcUrl: " + jdbcUrl + " [dmds@" + C3P0ImplUtils.identityToken( dmds ) + "]"); 
 //          if (jdbcUrl == null)
 //          new Exception("*** NULL SETTER ***").printStackTrace();
@@ -280,7 +313,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getCheckoutTimeout(), checkoutTimeout ) )
 	{
 	    wcpds.setCheckoutTimeout( checkoutTimeout ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -305,7 +338,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getAcquireIncrement(), acquireIncrement ) )
 	{
 	    wcpds.setAcquireIncrement( acquireIncrement ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -333,6 +366,42 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public String getAcquireRetryPolicy()
+    { return wcpds.getAcquireRetryPolicy(); }
+
+    public void setAcquireRetryPolicy( String acquireRetryPolicy )
+    {
+	if ( diff( wcpds.getAcquireRetryPolicy(), acquireRetryPolicy ) )
+	{
+	    wcpds.setAcquireRetryPolicy( acquireRetryPolicy ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getAcquireRetryMaxDelay()
+    { return wcpds.getAcquireRetryMaxDelay(); }
+
+    public void setAcquireRetryMaxDelay( int acquireRetryMaxDelay )
+    {
+	if ( diff( wcpds.getAcquireRetryMaxDelay(), acquireRetryMaxDelay ) )
+	{
+	    wcpds.setAcquireRetryMaxDelay( acquireRetryMaxDelay ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getAcquireRetryBudget()
+    { return wcpds.getAcquireRetryBudget(); }
+
+    public void setAcquireRetryBudget( int acquireRetryBudget )
+    {
+	if ( diff( wcpds.getAcquireRetryBudget(), acquireRetryBudget ) )
+	{
+	    wcpds.setAcquireRetryBudget( acquireRetryBudget ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     public boolean isAutoCommitOnClose()
     { return wcpds.isAutoCommitOnClose(); }
 
@@ -345,6 +414,18 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public boolean isCacheSessionDefaults()
+    { return wcpds.isCacheSessionDefaults(); }
+
+    public void setCacheSessionDefaults( boolean cacheSessionDefaults )
+    { 
+	if ( diff(wcpds.isCacheSessionDefaults(), cacheSessionDefaults) )
+	{
+	    wcpds.setCacheSessionDefaults( cacheSessionDefaults ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     public String getContextClassLoaderSource()
     { return wcpds.getContextClassLoaderSource(); }
 
@@ -437,7 +518,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getIdleConnectionTestPeriod(), idleConnectionTestPeriod ) )
 	{
 	    wcpds.setIdleConnectionTestPeriod( idleConnectionTestPeriod ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -449,7 +530,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getInitialPoolSize(), initialPoolSize ) )
 	{
 	    wcpds.setInitialPoolSize( initialPoolSize ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -461,7 +542,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxIdleTime(), maxIdleTime ) )
 	{
 	    wcpds.setMaxIdleTime( maxIdleTime ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -473,7 +554,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxPoolSize(), maxPoolSize ) )
 	{
 	    wcpds.setMaxPoolSize( maxPoolSize ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -485,7 +566,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxStatements(), maxStatements ) )
 	{
 	    wcpds.setMaxStatements( maxStatements ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -497,7 +578,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxStatementsPerConnection(), maxStatementsPerConnection ) )
 	{
 	    wcpds.setMaxStatementsPerConnection( maxStatementsPerConnection ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -509,7 +590,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMinPoolSize(), minPoolSize ) )
 	{
 	    wcpds.setMinPoolSize( minPoolSize ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -545,7 +626,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getPropertyCycle(), propertyCycle ) )
 	{
 	    wcpds.setPropertyCycle( propertyCycle ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -561,6 +642,42 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public int getCircuitBreakerFailureThreshold()
+    { return wcpds.getCircuitBreakerFailureThreshold(); }
+
+    public void setCircuitBreakerFailureThreshold( int circuitBreakerFailureThreshold )
+    {
+	if ( diff( wcpds.getCircuitBreakerFailureThreshold(), circuitBreakerFailureThreshold ) )
+	{
+	    wcpds.setCircuitBreakerFailureThreshold( circuitBreakerFailureThreshold ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getCircuitBreakerResetDelay()
+    { return wcpds.getCircuitBreakerResetDelay(); }
+
+    public void setCircuitBreakerResetDelay( int circuitBreakerResetDelay )
+    {
+	if ( diff( wcpds.getCircuitBreakerResetDelay(), circuitBreakerResetDelay ) )
+	{
+	    wcpds.setCircuitBreakerResetDelay( circuitBreakerResetDelay ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getMaxCheckoutTestFailures()
+    { return wcpds.getMaxCheckoutTestFailures(); }
+
+    public void setMaxCheckoutTestFailures( int maxCheckoutTestFailures )
+    {
+	if ( diff( wcpds.getMaxCheckoutTestFailures(), maxCheckoutTestFailures ) )
+	{
+	    wcpds.setMaxCheckoutTestFailures( maxCheckoutTestFailures ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     public boolean isTestConnectionOnCheckout()
     { return wcpds.isTestConnectionOnCheckout(); }
 
@@ -569,7 +686,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.isTestConnectionOnCheckout(), testConnectionOnCheckout ) )
 	{
 	    wcpds.setTestConnectionOnCheckout( testConnectionOnCheckout ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -581,7 +698,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.isTestConnectionOnCheckin(), testConnectionOnCheckin ) )
 	{
 	    wcpds.setTestConnectionOnCheckin( testConnectionOnCheckin ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -621,6 +738,78 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public int getMaxConcurrentAcquisitions()
+    { return wcpds.getMaxConcurrentAcquisitions(); }
+
+    public void setMaxConcurrentAcquisitions( int maxConcurrentAcquisitions )
+    { 
+	if ( diff( wcpds.getMaxConcurrentAcquisitions(), maxConcurrentAcquisitions ) )
+	{
+	    wcpds.setMaxConcurrentAcquisitions( maxConcurrentAcquisitions ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getMaxTotalConcurrentAcquisitions()
+    { return wcpds.getMaxTotalConcurrentAcquisitions(); }
+
+    public void setMaxTotalConcurrentAcquisitions( int maxTotalConcurrentAcquisitions )
+    { 
+	if ( diff( wcpds.getMaxTotalConcurrentAcquisitions(), maxTotalConcurrentAcquisitions ) )
+	{
+	    wcpds.setMaxTotalConcurrentAcquisitions( maxTotalConcurrentAcquisitions ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getMaxTotalConnections()
+    { return wcpds.getMaxTotalConnections(); }
+
+    public void setMaxTotalConnections( int maxTotalConnections )
+    { 
+	if ( diff( wcpds.getMaxTotalConnections(), maxTotalConnections ) )
+	{
+	    wcpds.setMaxTotalConnections( maxTotalConnections ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getMaxGroupConnections()
+    { return wcpds.getMaxGroupConnections(); }
+
+    public void setMaxGroupConnections( int maxGroupConnections )
+    { 
+	if ( diff( wcpds.getMaxGroupConnections(), maxGroupConnections ) )
+	{
+	    wcpds.setMaxGroupConnections( maxGroupConnections ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public String getConnectionBudgetGroup()
+    { return wcpds.getConnectionBudgetGroup(); }
+
+    public void setConnectionBudgetGroup( String connectionBudgetGroup )
+    { 
+	if ( diff( wcpds.getConnectionBudgetGroup(), connectionBudgetGroup ) )
+	{
+	    wcpds.setConnectionBudgetGroup( connectionBudgetGroup ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getMaxUserPools()
+    { return wcpds.getMaxUserPools(); }
+
+    public void setMaxUserPools( int maxUserPools )
+    { 
+	if ( diff( wcpds.getMaxUserPools(), maxUserPools ) )
+	{
+	    wcpds.setMaxUserPools( maxUserPools ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     public int getMaxIdleTimeExcessConnections()
     { return wcpds.getMaxIdleTimeExcessConnections(); }
 
@@ -629,7 +818,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxIdleTimeExcessConnections(), maxIdleTimeExcessConnections ) )
 	{
 	    wcpds.setMaxIdleTimeExcessConnections( maxIdleTimeExcessConnections ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -641,7 +830,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getMaxConnectionAge(), maxConnectionAge ) )
 	{
 	    wcpds.setMaxConnectionAge( maxConnectionAge ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -657,6 +846,30 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public String getSessionContextApplierClassName()
+    { return wcpds.getSessionContextApplierClassName(); }
+
+    public void setSessionContextApplierClassName( String sessionContextApplierClassName )
+    { 
+	if ( diff( wcpds.getSessionContextApplierClassName(), sessionContextApplierClassName ) )
+	{
+	    wcpds.setSessionContextApplierClassName( sessionContextApplierClassName ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public int getUserPoolIdleTimeout()
+    { return wcpds.getUserPoolIdleTimeout(); }
+
+    public void setUserPoolIdleTimeout( int userPoolIdleTimeout )
+    { 
+	if ( diff( wcpds.getUserPoolIdleTimeout(), userPoolIdleTimeout ) )
+	{
+	    wcpds.setUserPoolIdleTimeout( userPoolIdleTimeout ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     public int getUnreturnedConnectionTimeout()
     { return wcpds.getUnreturnedConnectionTimeout(); }
 
@@ -665,7 +878,43 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.getUnreturnedConnectionTimeout(), unreturnedConnectionTimeout ) )
 	{
 	    wcpds.setUnreturnedConnectionTimeout( unreturnedConnectionTimeout ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
+	}
+    }
+
+    public int getUnreturnedConnectionReportTimeout()
+    { return wcpds.getUnreturnedConnectionReportTimeout(); }
+
+    public void setUnreturnedConnectionReportTimeout( int unreturnedConnectionReportTimeout )
+    {
+	if ( diff( wcpds.getUnreturnedConnectionReportTimeout(), unreturnedConnectionReportTimeout ) )
+	{
+	    wcpds.setUnreturnedConnectionReportTimeout( unreturnedConnectionReportTimeout ); 
+	    this.reconfigurePoolManager();
+	}
+    }
+
+    public int getUnreturnedConnectionStackTraceSampleRate()
+    { return wcpds.getUnreturnedConnectionStackTraceSampleRate(); }
+
+    public void setUnreturnedConnectionStackTraceSampleRate( int unreturnedConnectionStackTraceSampleRate )
+    {
+	if ( diff( wcpds.getUnreturnedConnectionStackTraceSampleRate(), unreturnedConnectionStackTraceSampleRate ) )
+	{
+	    wcpds.setUnreturnedConnectionStackTraceSampleRate( unreturnedConnectionStackTraceSampleRate ); 
+	    this.reconfigurePoolManager();
+	}
+    }
+
+    public int getConnectionHoldTimeSampleRate()
+    { return wcpds.getConnectionHoldTimeSampleRate(); }
+
+    public void setConnectionHoldTimeSampleRate( int connectionHoldTimeSampleRate )
+    {
+	if ( diff( wcpds.getConnectionHoldTimeSampleRate(), connectionHoldTimeSampleRate ) )
+	{
+	    wcpds.setConnectionHoldTimeSampleRate( connectionHoldTimeSampleRate ); 
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -692,7 +941,7 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	if ( diff( wcpds.isDebugUnreturnedConnectionStackTraces(), debugUnreturnedConnectionStackTraces ) )
 	{
 	    wcpds.setDebugUnreturnedConnectionStackTraces( debugUnreturnedConnectionStackTraces ); 
-	    this.resetPoolManager( false );
+	    this.reconfigurePoolManager();
 	}
     }
 
@@ -720,6 +969,30 @@ public abstract class AbstractComboPooledDataSource extends AbstractPoolBackedDa
 	}
     }
 
+    public int getStatementCacheWarmUpCount()
+    { return wcpds.getStatementCacheWarmUpCount(); }
+
+    public void setStatementCacheWarmUpCount(int statementCacheWarmUpCount)
+    {
+	if ( diff( wcpds.getStatementCacheWarmUpCount(), statementCacheWarmUpCount ) )
+	{
+	    wcpds.setStatementCacheWarmUpCount( statementCacheWarmUpCount ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
+    public String getStatementCacheWarmUpStatements()
+    { return wcpds.getStatementCacheWarmUpStatements(); }
+
+    public void setStatementCacheWarmUpStatements(String statementCacheWarmUpStatements)
+    {
+	if ( diff( wcpds.getStatementCacheWarmUpStatements(), statementCacheWarmUpStatements ) )
+	{
+	    wcpds.setStatementCacheWarmUpStatements( statementCacheWarmUpStatements ); 
+	    this.resetPoolManager( false );
+	}
+    }
+
     // shared properties (count: 1)
     public String getFactoryClassLocation()
     { return super.getFactoryClassLocation(); }
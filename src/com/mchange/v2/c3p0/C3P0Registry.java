@@ -3,6 +3,7 @@ package com.mchange.v2.c3p0;
 import java.util.*;
 import com.mchange.v2.coalesce.*;
 import com.mchange.v2.log.*;
+import com.mchange.v2.resourcepool.ResourceBudget;
 import com.mchange.v2.c3p0.cfg.C3P0ConfigUtils;
 import com.mchange.v2.c3p0.impl.*;
 
@@ -84,6 +85,12 @@ public final class C3P0Registry
     //MT: protected by ITS OWN LOCK
     private final static Map classNamesToConnectionCustomizers = new HashMap();
 
+    //MT: protected by ITS OWN LOCK
+    private final static Map classNamesToSessionContextAppliers = new HashMap();
+
+    //MT: protected by ITS OWN LOCK
+    private final static Map groupNamesToConnectionBudgets = new HashMap();
+
     private static ManagementCoordinator mc;
 
     static
@@ -243,6 +250,114 @@ public final class C3P0Registry
         }
     }
 
+    public static SessionContextApplier getSessionContextApplier( String className ) throws SQLException
+    {
+        if ( className == null || className.trim().equals("") )
+            return null;
+        else
+        {
+            try
+            {
+		synchronized ( classNamesToSessionContextAppliers )
+		{
+		    SessionContextApplier out = (SessionContextApplier) classNamesToSessionContextAppliers.get( className );
+		    if (out == null)
+		    {
+			out = (SessionContextApplier) Class.forName( className ).newInstance();
+			classNamesToSessionContextAppliers.put( className, out );
+		    }
+		    return out;
+		}
+            }
+            catch (Exception e)
+            {
+                if (logger.isLoggable( MLevel.WARNING ))
+                    logger.log( MLevel.WARNING,
+                                    "Could not create or find SessionContextApplier with class name '" +
+                                    className + "'.",
+                                    e );
+                throw SqlUtils.toSQLException( e );
+            }
+        }
+    }
+
+    /*
+     * a budget shared by the pools of every member of a named group. each member
+     * declares a maximum, and the smallest positive maximum declared by any live
+     * member applies.
+     */
+    private static class ConnectionBudgetGroup
+    {
+	ResourceBudget budget         = new ResourceBudget();
+	Map            membersToMaxes = new HashMap();
+
+	void updateMaxTotal()
+	{
+	    int max_total = 0;
+	    for (Iterator ii = membersToMaxes.values().iterator(); ii.hasNext(); )
+	    {
+		int max = ((Integer) ii.next()).intValue();
+		if (max > 0 && ( max_total <= 0 || max < max_total ))
+		    max_total = max;
+	    }
+	    budget.setMaxTotal( max_total );
+	}
+    }
+
+    /**
+     *  Joins member to the Connection budget of the named group, creating the
+     *  group if necessary, and returns the group's budget. A member may rejoin
+     *  to change the maximum it declares.
+     */
+    public static ResourceBudget joinConnectionBudget( String groupName, Object member, int max_connections )
+    {
+	synchronized ( groupNamesToConnectionBudgets )
+	{
+	    ConnectionBudgetGroup group = (ConnectionBudgetGroup) groupNamesToConnectionBudgets.get( groupName );
+	    if (group == null)
+	    {
+		group = new ConnectionBudgetGroup();
+		groupNamesToConnectionBudgets.put( groupName, group );
+	    }
+	    group.membersToMaxes.put( member, Integer.valueOf( max_connections ) );
+	    group.updateMaxTotal();
+	    return group.budget;
+	}
+    }
+
+    public static void leaveConnectionBudget( String groupName, Object member )
+    {
+	synchronized ( groupNamesToConnectionBudgets )
+	{
+	    ConnectionBudgetGroup group = (ConnectionBudgetGroup) groupNamesToConnectionBudgets.get( groupName );
+	    if (group != null && group.membersToMaxes.remove( member ) != null)
+	    {
+		if (group.membersToMaxes.isEmpty())
+		    groupNamesToConnectionBudgets.remove( groupName );
+		else
+		    group.updateMaxTotal();
+	    }
+	}
+    }
+
+    /**
+     *  @return the Connection budget of the named group, or null if the group has no live members
+     */
+    public static ResourceBudget getConnectionBudget( String groupName )
+    {
+	synchronized ( groupNamesToConnectionBudgets )
+	{
+	    ConnectionBudgetGroup group = (ConnectionBudgetGroup) groupNamesToConnectionBudgets.get( groupName );
+	    return ( group == null ? null : group.budget );
+	}
+    }
+
+    public static Set getConnectionBudgetGroupNames()
+    {
+	synchronized ( groupNamesToConnectionBudgets )
+	{ return new HashSet( groupNamesToConnectionBudgets.keySet() ); }
+    }
+
     // must be called from a static sync'ed method
     private static void banner()
     {
@@ -0,0 +1,28 @@
+package com.mchange.v2.c3p0;
+
+/**
+ *  <p>Names the code on the current Thread that checks out Connections, for hold time
+ *  profiling. When <code>connectionHoldTimeSampleRate</code> is set, the hold times of
+ *  sampled checkouts made while a tag is set are attributed to that tag. Checkouts made
+ *  with no tag set are attributed to their call sites, at the cost of capturing a stack
+ *  trace.</p>
+ *
+ *  <p>Tags should name a bounded set of code paths (a request type, a job name), not
+ *  individual requests: c3p0 tracks only a limited number of distinct tags.</p>
+ */
+public final class ConnectionHoldTag
+{
+    private final static ThreadLocal TAG = new ThreadLocal();
+
+    public static void set( String tag )
+    { TAG.set( tag ); }
+
+    public static String get()
+    { return (String) TAG.get(); }
+
+    public static void clear()
+    { TAG.remove(); }
+
+    private ConnectionHoldTag()
+    {}
+}
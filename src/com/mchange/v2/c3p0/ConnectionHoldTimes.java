@@ -0,0 +1,54 @@
+package com.mchange.v2.c3p0;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import com.mchange.v2.resourcepool.LatencyHistogram;
+
+/**
+ *  The hold times of sampled Connection checkouts attributed to one key, either a
+ *  {@link ConnectionHoldTag} or a call site, as returned by
+ *  {@link PooledDataSource#getConnectionHoldTimesDefaultUser()}. A hold lasts from
+ *  checkout until the Connection is checked back in, or destroyed.
+ */
+public final class ConnectionHoldTimes implements Serializable
+{
+    private static final long serialVersionUID = 1;
+
+    /**
+     *  Orders by total time held, which is what starves a pool.
+     */
+    public final static Comparator DESCENDING_TOTAL_HOLD = new Comparator()
+    {
+	public int compare( Object a, Object b )
+	{
+	    long ha = ((ConnectionHoldTimes) a).holdTimes.getSumMillis();
+	    long hb = ((ConnectionHoldTimes) b).holdTimes.getSumMillis();
+	    return (ha > hb ? -1 : (ha == hb ? 0 : 1));
+	}
+    };
+
+    final String                    key;
+    final LatencyHistogram.Snapshot holdTimes;
+
+    public ConnectionHoldTimes( String key, LatencyHistogram.Snapshot holdTimes )
+    {
+	this.key       = key;
+	this.holdTimes = holdTimes;
+    }
+
+    public String getKey()
+    { return key; }
+
+    public LatencyHistogram.Snapshot getHoldTimes()
+    { return holdTimes; }
+
+    public ConnectionHoldTimes plus( ConnectionHoldTimes other )
+    { return new ConnectionHoldTimes( key, holdTimes.plus( other.holdTimes ) ); }
+
+    public String toString()
+    {
+	long count = holdTimes.getTotalCount();
+	long sum   = holdTimes.getSumMillis();
+	return count + " checkouts, " + sum + " msecs total, " + (count == 0 ? 0 : sum / count) + " msecs mean: " + key;
+    }
+}
@@ -87,6 +87,24 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public void setAcquireRetryDelay( int ard )
     { wcpds.setAcquireRetryDelay( ard ); }
 
+    public String getAcquireRetryPolicy()
+    { return wcpds.getAcquireRetryPolicy(); }
+
+    public void setAcquireRetryPolicy( String arp )
+    { wcpds.setAcquireRetryPolicy( arp ); }
+
+    public int getAcquireRetryMaxDelay()
+    { return wcpds.getAcquireRetryMaxDelay(); }
+
+    public void setAcquireRetryMaxDelay( int armd )
+    { wcpds.setAcquireRetryMaxDelay( armd ); }
+
+    public int getAcquireRetryBudget()
+    { return wcpds.getAcquireRetryBudget(); }
+
+    public void setAcquireRetryBudget( int arb )
+    { wcpds.setAcquireRetryBudget( arb ); }
+
     public boolean isAttemptResurrectOnCheckin()
     { return wcpds.isAttemptResurrectOnCheckin(); }
 
@@ -99,6 +117,12 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public void setAutoCommitOnClose( boolean autoCommitOnClose )
     { wcpds.setAutoCommitOnClose( autoCommitOnClose ); }
 
+    public boolean isCacheSessionDefaults()
+    { return wcpds.isCacheSessionDefaults(); }
+
+    public void setCacheSessionDefaults( boolean cacheSessionDefaults )
+    { wcpds.setCacheSessionDefaults( cacheSessionDefaults ); }
+
     public void setAutomaticTestTable( String att )
     { wcpds.setAutomaticTestTable( att ); }
 
@@ -111,12 +135,30 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public boolean isBreakAfterAcquireFailure()
     { return wcpds.isBreakAfterAcquireFailure(); }
 
+    public void setCircuitBreakerFailureThreshold( int cbft )
+    { wcpds.setCircuitBreakerFailureThreshold( cbft ); }
+
+    public int getCircuitBreakerFailureThreshold()
+    { return wcpds.getCircuitBreakerFailureThreshold(); }
+
+    public void setCircuitBreakerResetDelay( int cbrd )
+    { wcpds.setCircuitBreakerResetDelay( cbrd ); }
+
+    public int getCircuitBreakerResetDelay()
+    { return wcpds.getCircuitBreakerResetDelay(); }
+
     public void setCheckoutTimeout( int ct )
     { wcpds.setCheckoutTimeout( ct ); }
 
     public int getCheckoutTimeout()
     { return wcpds.getCheckoutTimeout(); }
 
+    public void setMaxCheckoutTestFailures( int mctf )
+    { wcpds.setMaxCheckoutTestFailures( mctf ); }
+
+    public int getMaxCheckoutTestFailures()
+    { return wcpds.getMaxCheckoutTestFailures(); }
+
     public void setConnectionIsValidTimeout( int civt )
     { wcpds.setConnectionIsValidTimeout( civt ); }
 
@@ -135,6 +177,12 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public void setConnectionCustomizerClassName( String connectionCustomizerClassName ) throws PropertyVetoException
     { wcpds.setConnectionCustomizerClassName( connectionCustomizerClassName ); }
 
+    public String getSessionContextApplierClassName()
+    { return wcpds.getSessionContextApplierClassName(); }
+
+    public void setSessionContextApplierClassName( String sessionContextApplierClassName )
+    { wcpds.setSessionContextApplierClassName( sessionContextApplierClassName ); }
+
     public String getTaskRunnerFactoryClassName()
     { return wcpds.getTaskRunnerFactoryClassName(); }
 
@@ -231,6 +279,42 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public void setMaxAdministrativeTaskTime( int maxAdministrativeTaskTime )
     { wcpds.setMaxAdministrativeTaskTime( maxAdministrativeTaskTime ); }
 
+    public int getMaxConcurrentAcquisitions()
+    { return wcpds.getMaxConcurrentAcquisitions(); }
+
+    public void setMaxConcurrentAcquisitions( int maxConcurrentAcquisitions )
+    { wcpds.setMaxConcurrentAcquisitions( maxConcurrentAcquisitions ); }
+
+    public int getMaxTotalConcurrentAcquisitions()
+    { return wcpds.getMaxTotalConcurrentAcquisitions(); }
+
+    public void setMaxTotalConcurrentAcquisitions( int maxTotalConcurrentAcquisitions )
+    { wcpds.setMaxTotalConcurrentAcquisitions( maxTotalConcurrentAcquisitions ); }
+
+    public int getMaxTotalConnections()
+    { return wcpds.getMaxTotalConnections(); }
+
+    public void setMaxTotalConnections( int maxTotalConnections )
+    { wcpds.setMaxTotalConnections( maxTotalConnections ); }
+
+    public int getMaxGroupConnections()
+    { return wcpds.getMaxGroupConnections(); }
+
+    public void setMaxGroupConnections( int maxGroupConnections )
+    { wcpds.setMaxGroupConnections( maxGroupConnections ); }
+
+    public String getConnectionBudgetGroup()
+    { return wcpds.getConnectionBudgetGroup(); }
+
+    public void setConnectionBudgetGroup( String connectionBudgetGroup )
+    { wcpds.setConnectionBudgetGroup( connectionBudgetGroup ); }
+
+    public int getMaxUserPools()
+    { return wcpds.getMaxUserPools(); }
+
+    public void setMaxUserPools( int maxUserPools )
+    { wcpds.setMaxUserPools( maxUserPools ); }
+
     public int getMaxConnectionAge()
     { return wcpds.getMaxConnectionAge(); }
 
@@ -255,18 +339,54 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
     public void setPropertyCycle( int propertyCycle )
     { wcpds.setPropertyCycle( propertyCycle ); }
 
+    public int getUserPoolIdleTimeout()
+    { return wcpds.getUserPoolIdleTimeout(); }
+
+    public void setUserPoolIdleTimeout( int userPoolIdleTimeout )
+    { wcpds.setUserPoolIdleTimeout( userPoolIdleTimeout ); }
+
     public int getUnreturnedConnectionTimeout()
     { return wcpds.getUnreturnedConnectionTimeout(); }
 
     public void setUnreturnedConnectionTimeout( int unreturnedConnectionTimeout )
     { wcpds.setUnreturnedConnectionTimeout( unreturnedConnectionTimeout ); }
 
+    public int getUnreturnedConnectionReportTimeout()
+    { return wcpds.getUnreturnedConnectionReportTimeout(); }
+
+    public void setUnreturnedConnectionReportTimeout( int unreturnedConnectionReportTimeout )
+    { wcpds.setUnreturnedConnectionReportTimeout( unreturnedConnectionReportTimeout ); }
+
+    public int getUnreturnedConnectionStackTraceSampleRate()
+    { return wcpds.getUnreturnedConnectionStackTraceSampleRate(); }
+
+    public void setUnreturnedConnectionStackTraceSampleRate( int unreturnedConnectionStackTraceSampleRate )
+    { wcpds.setUnreturnedConnectionStackTraceSampleRate( unreturnedConnectionStackTraceSampleRate ); }
+
+    public int getConnectionHoldTimeSampleRate()
+    { return wcpds.getConnectionHoldTimeSampleRate(); }
+
+    public void setConnectionHoldTimeSampleRate( int connectionHoldTimeSampleRate )
+    { wcpds.setConnectionHoldTimeSampleRate( connectionHoldTimeSampleRate ); }
+
     public int getStatementCacheNumDeferredCloseThreads()
     { return wcpds.getStatementCacheNumDeferredCloseThreads(); }
 
     public void setStatementCacheNumDeferredCloseThreads( int statementCacheNumDeferredCloseThreads )
     { wcpds.setStatementCacheNumDeferredCloseThreads( statementCacheNumDeferredCloseThreads ); }
 
+    public int getStatementCacheWarmUpCount()
+    { return wcpds.getStatementCacheWarmUpCount(); }
+
+    public void setStatementCacheWarmUpCount( int statementCacheWarmUpCount )
+    { wcpds.setStatementCacheWarmUpCount( statementCacheWarmUpCount ); }
+
+    public String getStatementCacheWarmUpStatements()
+    { return wcpds.getStatementCacheWarmUpStatements(); }
+
+    public void setStatementCacheWarmUpStatements( String statementCacheWarmUpStatements )
+    { wcpds.setStatementCacheWarmUpStatements( statementCacheWarmUpStatements ); }
+
     public boolean isTestConnectionOnCheckin()
     { return wcpds.isTestConnectionOnCheckin(); }
 
@@ -304,11 +424,19 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
 	referenceMaker.addReferenceProperty("acquireIncrement");
 	referenceMaker.addReferenceProperty("acquireRetryAttempts");
 	referenceMaker.addReferenceProperty("acquireRetryDelay");
+	referenceMaker.addReferenceProperty("acquireRetryPolicy");
+	referenceMaker.addReferenceProperty("acquireRetryMaxDelay");
+	referenceMaker.addReferenceProperty("acquireRetryBudget");
 	referenceMaker.addReferenceProperty("attemptResurrectOnCheckin");
 	referenceMaker.addReferenceProperty("autoCommitOnClose");
+	referenceMaker.addReferenceProperty("cacheSessionDefaults");
 	referenceMaker.addReferenceProperty("automaticTestTable");
 	referenceMaker.addReferenceProperty("breakAfterAcquireFailure");
 	referenceMaker.addReferenceProperty("checkoutTimeout");
+	referenceMaker.addReferenceProperty("circuitBreakerFailureThreshold");
+	referenceMaker.addReferenceProperty("circuitBreakerResetDelay");
+	referenceMaker.addReferenceProperty("connectionBudgetGroup");
+	referenceMaker.addReferenceProperty("connectionHoldTimeSampleRate");
 	referenceMaker.addReferenceProperty("connectionIsValidTimeout");
 	referenceMaker.addReferenceProperty("connectionCustomizerClassName");
 	referenceMaker.addReferenceProperty("connectionTesterClassName");
@@ -325,22 +453,34 @@ public final class JndiRefConnectionPoolDataSource extends IdentityTokenResolvab
 	referenceMaker.addReferenceProperty("jndiName");
 	referenceMaker.addReferenceProperty("markSessionBoundaries");
 	referenceMaker.addReferenceProperty("maxAdministrativeTaskTime");
+	referenceMaker.addReferenceProperty("maxCheckoutTestFailures");
+	referenceMaker.addReferenceProperty("maxConcurrentAcquisitions");
 	referenceMaker.addReferenceProperty("maxConnectionAge");
+	referenceMaker.addReferenceProperty("maxGroupConnections");
 	referenceMaker.addReferenceProperty("maxIdleTime");
 	referenceMaker.addReferenceProperty("maxIdleTimeExcessConnections");
 	referenceMaker.addReferenceProperty("maxPoolSize");
 	referenceMaker.addReferenceProperty("maxStatements");
 	referenceMaker.addReferenceProperty("maxStatementsPerConnection");
+	referenceMaker.addReferenceProperty("maxTotalConcurrentAcquisitions");
+	referenceMaker.addReferenceProperty("maxTotalConnections");
+	referenceMaker.addReferenceProperty("maxUserPools");
 	referenceMaker.addReferenceProperty("minPoolSize");
 	referenceMaker.addReferenceProperty("preferredTestQuery");
 	referenceMaker.addReferenceProperty("privilegeSpawnedThreads");
 	referenceMaker.addReferenceProperty("propertyCycle");
+	referenceMaker.addReferenceProperty("sessionContextApplierClassName");
 	referenceMaker.addReferenceProperty("statementCacheNumDeferredCloseThreads");
+	referenceMaker.addReferenceProperty("statementCacheWarmUpCount");
+	referenceMaker.addReferenceProperty("statementCacheWarmUpStatements");
 	referenceMaker.addReferenceProperty("taskRunnerFactoryClassName");
 	referenceMaker.addReferenceProperty("testConnectionOnCheckin");
 	referenceMaker.addReferenceProperty("testConnectionOnCheckout");
 	referenceMaker.addReferenceProperty("unreturnedConnectionTimeout");
+	referenceMaker.addReferenceProperty("unreturnedConnectionReportTimeout");
+	referenceMaker.addReferenceProperty("unreturnedConnectionStackTraceSampleRate");
 	referenceMaker.addReferenceProperty("userOverridesAsString");
+	referenceMaker.addReferenceProperty("userPoolIdleTimeout");
     }
 
     public Reference getReference() throws NamingException
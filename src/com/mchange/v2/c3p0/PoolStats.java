@@ -0,0 +1,330 @@
+package com.mchange.v2.c3p0;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import com.mchange.v2.c3p0.impl.C3P0PooledConnectionPool;
+import com.mchange.v2.resourcepool.LatencyHistogram;
+
+/**
+ *  <p>An immutable snapshot of the statistics of one or more pools of a
+ *  {@link PooledDataSource}, as returned by {@link PooledDataSource#getPoolStatsDefaultUser()}
+ *  and {@link PooledDataSource#getPoolStatsAllUsers()}.</p>
+ *
+ *  <p>c3p0 keeps these statistics up to date as Connections and Statements
+ *  are checked in and out, so that snapshots can be taken without acquiring
+ *  any pool's lock, and monitoring a busy DataSource never slows its clients.
+ *  The price is that a snapshot is not quite atomic: a checkout that happens
+ *  while a snapshot is taken may be reflected in some counts but not others.</p>
+ */
+public final class PoolStats implements Serializable
+{
+    private static final long serialVersionUID = 1;
+
+    public final static PoolStats EMPTY = new PoolStats( 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+							 LatencyHistogram.Snapshot.EMPTY,
+							 LatencyHistogram.Snapshot.EMPTY,
+							 LatencyHistogram.Snapshot.EMPTY,
+							 0, 0, 0, 0, 0, 0,
+							 LatencyHistogram.Snapshot.EMPTY,
+							 0,
+							 0 );
+
+    final int  numUserPools;
+    final int  numConnections;
+    final int  numIdleConnections;
+    final int  numBusyConnections;
+    final int  numUnclosedOrphanedConnections;
+    final int  numThreadsAwaitingCheckout;
+    final int  statementCacheNumStatements;
+    final int  statementCacheNumCheckedOut;
+    final int  statementCacheNumConnectionsWithCachedStatements;
+    final long numAcquisitions;
+    final long numFailedCheckins;
+    final long numFailedCheckouts;
+    final long numFailedIdleTests;
+    final long numCircuitBreakerTrips;
+    final LatencyHistogram.Snapshot checkoutLatencies;
+    final LatencyHistogram.Snapshot acquisitionLatencies;
+    final LatencyHistogram.Snapshot connectionTestLatencies;
+    final long statementCacheNumHits;
+    final long statementCacheNumMisses;
+    final long statementCacheNumUncachedCheckouts;
+    final long statementCacheNumEvictionsMaxStatements;
+    final long statementCacheNumEvictionsMaxStatementsPerConnection;
+    final long statementCacheNumEvictionsConnectionClose;
+    final LatencyHistogram.Snapshot statementPrepareLatencies;
+    final long numOverdueCheckouts;
+    final long snapshotTime;
+
+    /**
+     *  Takes no locks. The pool's resource pool and statement cache keep
+     *  the counts we read up to date.
+     *
+     *  @return a snapshot of the statistics of one pool, <code>pool</code>
+     */
+    public static PoolStats snapshotOf( C3P0PooledConnectionPool pool ) throws SQLException
+    {
+	return new PoolStats( 1,
+			      pool.getNumConnections(),
+			      pool.getNumIdleConnections(),
+			      pool.getNumBusyConnections(),
+			      pool.getNumUnclosedOrphanedConnections(),
+			      pool.getNumThreadsAwaitingCheckout(),
+			      pool.getStatementCacheNumStatements(),
+			      pool.getStatementCacheNumCheckedOut(),
+			      pool.getStatementCacheNumConnectionsWithCachedStatements(),
+			      pool.getNumAcquisitions(),
+			      pool.getNumFailedCheckins(),
+			      pool.getNumFailedCheckouts(),
+			      pool.getNumFailedIdleTests(),
+			      pool.getNumCircuitBreakerTrips(),
+			      pool.getCheckoutLatencies(),
+			      pool.getAcquisitionLatencies(),
+			      pool.getConnectionTestLatencies(),
+			      pool.getStatementCacheNumHits(),
+			      pool.getStatementCacheNumMisses(),
+			      pool.getStatementCacheNumUncachedCheckouts(),
+			      pool.getStatementCacheNumEvictionsMaxStatements(),
+			      pool.getStatementCacheNumEvictionsMaxStatementsPerConnection(),
+			      pool.getStatementCacheNumEvictionsConnectionClose(),
+			      pool.getStatementPrepareLatencies(),
+			      pool.getNumOverdueCheckouts(),
+			      System.currentTimeMillis() );
+    }
+
+    // positional, so kept private to the package. snapshots are made by snapshotOf(...) and plus(...)
+    PoolStats( int  numUserPools,
+		      int  numConnections,
+		      int  numIdleConnections,
+		      int  numBusyConnections,
+		      int  numUnclosedOrphanedConnections,
+		      int  numThreadsAwaitingCheckout,
+		      int  statementCacheNumStatements,
+		      int  statementCacheNumCheckedOut,
+		      int  statementCacheNumConnectionsWithCachedStatements,
+		      long numAcquisitions,
+		      long numFailedCheckins,
+		      long numFailedCheckouts,
+		      long numFailedIdleTests,
+		      long numCircuitBreakerTrips,
+		      LatencyHistogram.Snapshot checkoutLatencies,
+		      LatencyHistogram.Snapshot acquisitionLatencies,
+		      LatencyHistogram.Snapshot connectionTestLatencies,
+		      long statementCacheNumHits,
+		      long statementCacheNumMisses,
+		      long statementCacheNumUncachedCheckouts,
+		      long statementCacheNumEvictionsMaxStatements,
+		      long statementCacheNumEvictionsMaxStatementsPerConnection,
+		      long statementCacheNumEvictionsConnectionClose,
+		      LatencyHistogram.Snapshot statementPrepareLatencies,
+		      long numOverdueCheckouts,
+		      long snapshotTime )
+    {
+	this.numUserPools                                     = numUserPools;
+	this.numConnections                                   = numConnections;
+	this.numIdleConnections                               = numIdleConnections;
+	this.numBusyConnections                               = numBusyConnections;
+	this.numUnclosedOrphanedConnections                   = numUnclosedOrphanedConnections;
+	this.numThreadsAwaitingCheckout                       = numThreadsAwaitingCheckout;
+	this.statementCacheNumStatements                      = statementCacheNumStatements;
+	this.statementCacheNumCheckedOut                      = statementCacheNumCheckedOut;
+	this.statementCacheNumConnectionsWithCachedStatements = statementCacheNumConnectionsWithCachedStatements;
+	this.numAcquisitions                                  = numAcquisitions;
+	this.numFailedCheckins                                = numFailedCheckins;
+	this.numFailedCheckouts                               = numFailedCheckouts;
+	this.numFailedIdleTests                               = numFailedIdleTests;
+	this.numCircuitBreakerTrips                           = numCircuitBreakerTrips;
+	this.checkoutLatencies                                = checkoutLatencies;
+	this.acquisitionLatencies                             = acquisitionLatencies;
+	this.connectionTestLatencies                          = connectionTestLatencies;
+	this.statementCacheNumHits                            = statementCacheNumHits;
+	this.statementCacheNumMisses                          = statementCacheNumMisses;
+	this.statementCacheNumUncachedCheckouts               = statementCacheNumUncachedCheckouts;
+	this.statementCacheNumEvictionsMaxStatements          = statementCacheNumEvictionsMaxStatements;
+	this.statementCacheNumEvictionsMaxStatementsPerConnection = statementCacheNumEvictionsMaxStatementsPerConnection;
+	this.statementCacheNumEvictionsConnectionClose        = statementCacheNumEvictionsConnectionClose;
+	this.statementPrepareLatencies                        = statementPrepareLatencies;
+	this.numOverdueCheckouts                              = numOverdueCheckouts;
+	this.snapshotTime                                     = snapshotTime;
+    }
+
+    /**
+     *  @return the statistics of this snapshot's pools and <code>other</code>'s pools together,
+     *          as of the later of the two snapshots
+     */
+    public PoolStats plus( PoolStats other )
+    {
+	return new PoolStats( numUserPools + other.numUserPools,
+			      numConnections + other.numConnections,
+			      numIdleConnections + other.numIdleConnections,
+			      numBusyConnections + other.numBusyConnections,
+			      numUnclosedOrphanedConnections + other.numUnclosedOrphanedConnections,
+			      numThreadsAwaitingCheckout + other.numThreadsAwaitingCheckout,
+			      statementCacheNumStatements + other.statementCacheNumStatements,
+			      statementCacheNumCheckedOut + other.statementCacheNumCheckedOut,
+			      statementCacheNumConnectionsWithCachedStatements + other.statementCacheNumConnectionsWithCachedStatements,
+			      numAcquisitions + other.numAcquisitions,
+			      numFailedCheckins + other.numFailedCheckins,
+			      numFailedCheckouts + other.numFailedCheckouts,
+			      numFailedIdleTests + other.numFailedIdleTests,
+			      numCircuitBreakerTrips + other.numCircuitBreakerTrips,
+			      checkoutLatencies.plus( other.checkoutLatencies ),
+			      acquisitionLatencies.plus( other.acquisitionLatencies ),
+			      connectionTestLatencies.plus( other.connectionTestLatencies ),
+			      statementCacheNumHits + other.statementCacheNumHits,
+			      statementCacheNumMisses + other.statementCacheNumMisses,
+			      statementCacheNumUncachedCheckouts + other.statementCacheNumUncachedCheckouts,
+			      statementCacheNumEvictionsMaxStatements + other.statementCacheNumEvictionsMaxStatements,
+			      statementCacheNumEvictionsMaxStatementsPerConnection + other.statementCacheNumEvictionsMaxStatementsPerConnection,
+			      statementCacheNumEvictionsConnectionClose + other.statementCacheNumEvictionsConnectionClose,
+			      statementPrepareLatencies.plus( other.statementPrepareLatencies ),
+			      numOverdueCheckouts + other.numOverdueCheckouts,
+			      Math.max( snapshotTime, other.snapshotTime ) );
+    }
+
+    public int getNumUserPools()
+    { return numUserPools; }
+
+    public int getNumConnections()
+    { return numConnections; }
+
+    public int getNumIdleConnections()
+    { return numIdleConnections; }
+
+    public int getNumBusyConnections()
+    { return numBusyConnections; }
+
+    public int getNumUnclosedOrphanedConnections()
+    { return numUnclosedOrphanedConnections; }
+
+    public int getNumThreadsAwaitingCheckout()
+    { return numThreadsAwaitingCheckout; }
+
+    public int getStatementCacheNumStatements()
+    { return statementCacheNumStatements; }
+
+    public int getStatementCacheNumCheckedOut()
+    { return statementCacheNumCheckedOut; }
+
+    public int getStatementCacheNumConnectionsWithCachedStatements()
+    { return statementCacheNumConnectionsWithCachedStatements; }
+
+    public long getNumAcquisitions()
+    { return numAcquisitions; }
+
+    public long getNumFailedCheckins()
+    { return numFailedCheckins; }
+
+    public long getNumFailedCheckouts()
+    { return numFailedCheckouts; }
+
+    public long getNumFailedIdleTests()
+    { return numFailedIdleTests; }
+
+    public long getNumCircuitBreakerTrips()
+    { return numCircuitBreakerTrips; }
+
+    /**
+     *  @return the durations of successful Connection checkouts, including waits for a Connection to become available
+     */
+    public LatencyHistogram.Snapshot getCheckoutLatencies()
+    { return checkoutLatencies; }
+
+    /**
+     *  @return the durations of successful acquisitions of new Connections from the database
+     */
+    public LatencyHistogram.Snapshot getAcquisitionLatencies()
+    { return acquisitionLatencies; }
+
+    /**
+     *  @return the durations of all Connection tests, successful or not
+     */
+    public LatencyHistogram.Snapshot getConnectionTestLatencies()
+    { return connectionTestLatencies; }
+
+    /**
+     *  @return the number of client Statement checkouts served by a cached Statement
+     */
+    public long getStatementCacheNumHits()
+    { return statementCacheNumHits; }
+
+    /**
+     *  @return the number of client Statement checkouts that required a Statement to be prepared
+     */
+    public long getStatementCacheNumMisses()
+    { return statementCacheNumMisses; }
+
+    /**
+     *  @return the number of misses whose newly prepared Statements could not be cached,
+     *          because the cache was full of Statements in use, and were closed on checkin
+     */
+    public long getStatementCacheNumUncachedCheckouts()
+    { return statementCacheNumUncachedCheckouts; }
+
+    /**
+     *  @return the number of least-recently-used Statements closed to respect <code>maxStatements</code>
+     */
+    public long getStatementCacheNumEvictionsMaxStatements()
+    { return statementCacheNumEvictionsMaxStatements; }
+
+    /**
+     *  @return the number of least-recently-used Statements closed to respect <code>maxStatementsPerConnection</code>
+     */
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnection()
+    { return statementCacheNumEvictionsMaxStatementsPerConnection; }
+
+    /**
+     *  @return the number of cached Statements closed because their Connections were closed
+     */
+    public long getStatementCacheNumEvictionsConnectionClose()
+    { return statementCacheNumEvictionsConnectionClose; }
+
+    /**
+     *  @return the durations of preparing Statements for the Statement cache, including warm-up
+     */
+    public LatencyHistogram.Snapshot getStatementPrepareLatencies()
+    { return statementPrepareLatencies; }
+
+    /**
+     *  @return the number of Connection checkouts held longer than <code>unreturnedConnectionReportTimeout</code>
+     *          or <code>unreturnedConnectionTimeout</code>, each counted once
+     */
+    public long getNumOverdueCheckouts()
+    { return numOverdueCheckouts; }
+
+    /**
+     *  @return the time, in milliseconds since the epoch, at which the snapshot was taken
+     */
+    public long getSnapshotTime()
+    { return snapshotTime; }
+
+    public String toString()
+    {
+	return this.getClass().getName() + " [ numUserPools -> " + numUserPools +
+	    ", numConnections -> " + numConnections +
+	    ", numIdleConnections -> " + numIdleConnections +
+	    ", numBusyConnections -> " + numBusyConnections +
+	    ", numUnclosedOrphanedConnections -> " + numUnclosedOrphanedConnections +
+	    ", numThreadsAwaitingCheckout -> " + numThreadsAwaitingCheckout +
+	    ", statementCacheNumStatements -> " + statementCacheNumStatements +
+	    ", statementCacheNumCheckedOut -> " + statementCacheNumCheckedOut +
+	    ", statementCacheNumConnectionsWithCachedStatements -> " + statementCacheNumConnectionsWithCachedStatements +
+	    ", numAcquisitions -> " + numAcquisitions +
+	    ", numFailedCheckins -> " + numFailedCheckins +
+	    ", numFailedCheckouts -> " + numFailedCheckouts +
+	    ", numFailedIdleTests -> " + numFailedIdleTests +
+	    ", numCircuitBreakerTrips -> " + numCircuitBreakerTrips +
+	    ", checkoutLatencies.totalCount -> " + checkoutLatencies.getTotalCount() +
+	    ", acquisitionLatencies.totalCount -> " + acquisitionLatencies.getTotalCount() +
+	    ", connectionTestLatencies.totalCount -> " + connectionTestLatencies.getTotalCount() +
+	    ", statementCacheNumHits -> " + statementCacheNumHits +
+	    ", statementCacheNumMisses -> " + statementCacheNumMisses +
+	    ", statementCacheNumUncachedCheckouts -> " + statementCacheNumUncachedCheckouts +
+	    ", statementCacheNumEvictionsMaxStatements -> " + statementCacheNumEvictionsMaxStatements +
+	    ", statementCacheNumEvictionsMaxStatementsPerConnection -> " + statementCacheNumEvictionsMaxStatementsPerConnection +
+	    ", statementCacheNumEvictionsConnectionClose -> " + statementCacheNumEvictionsConnectionClose +
+	    ", statementPrepareLatencies.totalCount -> " + statementPrepareLatencies.getTotalCount() +
+	    ", numOverdueCheckouts -> " + numOverdueCheckouts +
+	    ", snapshotTime -> " + snapshotTime + " ]";
+    }
+}
@@ -1,5 +1,6 @@
 package com.mchange.v2.c3p0;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import javax.sql.DataSource;
 import java.util.Collection;
@@ -89,6 +90,44 @@ import java.util.Map;
  */
 public interface PooledDataSource extends DataSource, AutoCloseable
 {
+    /**
+     * The SQLState of SQLExceptions thrown by checkouts refused without waiting, because
+     * the pool's circuit breaker is open. (Connection exception class "08", with an
+     * implementation-defined subclass.)
+     */
+    public final static String CIRCUIT_BREAKER_OPEN_SQL_STATE = "08X01";
+
+    /**
+     * Like <code>getConnection()</code>, but waits no more than <code>timeout</code> milliseconds
+     * (or <code>checkoutTimeout</code>, if that is shorter) for a Connection, including any time
+     * spent testing Connections on checkout. Clients with per-request deadlines should pass
+     * the time remaining. If it is zero or negative, the call fails immediately. A client
+     * whose remaining time is shorter than it typically takes to acquire a Connection will
+     * not cause the pool to grow, but only wait for a Connection to be checked in.
+     */
+    public Connection getConnection( long timeout ) throws SQLException;
+
+    /**
+     * As {@link #getConnection(long)}, for the pool of the given user.
+     */
+    public Connection getConnection( String username, String password, long timeout ) throws SQLException;
+
+    /**
+     * Like <code>getConnection()</code>, but the Connection is first switched to the given
+     * session context (a schema or role, for example) by the DataSource's
+     * {@link SessionContextApplier}. Clients that differ only by session context can so
+     * share a single pool of Connections. Connections already in the requested context are
+     * preferred. Fails if no <code>sessionContextApplierClassName</code> is configured, unless
+     * <code>sessionContext</code> is <code>null</code>, which means the DataSource's default session.
+     */
+    public Connection getConnectionForSessionContext( String sessionContext ) throws SQLException;
+
+    /**
+     * As {@link #getConnectionForSessionContext(String)}, waiting no longer than
+     * {@link #getConnection(long)} would.
+     */
+    public Connection getConnectionForSessionContext( String sessionContext, long timeout ) throws SQLException;
+
     public String getIdentityToken();
     public String getDataSourceName();
     public void setDataSourceName(String dataSourceName);
@@ -115,14 +154,56 @@ public interface PooledDataSource extends DataSource, AutoCloseable
     public int getStatementCacheNumStatementsDefaultUser() throws SQLException;
     public int getStatementCacheNumCheckedOutDefaultUser() throws SQLException;
     public int getStatementCacheNumConnectionsWithCachedStatementsDefaultUser() throws SQLException;
+
+    /**
+     * Statement cache effectiveness. Hits are client Statement checkouts served by a cached
+     * Statement, misses those that required a Statement to be prepared. Uncached checkouts are
+     * misses whose Statements could not be cached, because the cache was full of Statements in
+     * use. Evictions close least-recently-used Statements to respect <code>maxStatements</code> or
+     * <code>maxStatementsPerConnection</code>, or close cached Statements along with their
+     * Connections. Many evictions by a limit relative to hits suggest the limit is too low.
+     * Like the other counts, these are read without contending with clients.
+     */
+    public long getStatementCacheNumHitsDefaultUser() throws SQLException;
+    public long getStatementCacheNumMissesDefaultUser() throws SQLException;
+    public long getStatementCacheNumUncachedCheckoutsDefaultUser() throws SQLException;
+    public long getStatementCacheNumEvictionsMaxStatementsDefaultUser() throws SQLException;
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnectionDefaultUser() throws SQLException;
+    public long getStatementCacheNumEvictionsConnectionCloseDefaultUser() throws SQLException;
     public long getStartTimeMillisDefaultUser() throws SQLException;
     public long getUpTimeMillisDefaultUser() throws SQLException;
     public long getNumFailedCheckinsDefaultUser() throws SQLException;
     public long getNumFailedCheckoutsDefaultUser() throws SQLException;
     public long getNumFailedIdleTestsDefaultUser() throws SQLException;
+    public long getNumAcquisitionsDefaultUser() throws SQLException;
+    public long getNumRebuildsDefaultUser() throws SQLException;
+
+    /**
+     * One of "CLOSED", "OPEN", or "HALF_OPEN". While the default user's pool has
+     * an open circuit breaker, checkouts that would have to wait for a new Connection
+     * fail immediately with SQLState {@link #CIRCUIT_BREAKER_OPEN_SQL_STATE}.
+     */
+    public String getCircuitBreakerStateDefaultUser() throws SQLException;
+    public long getNumCircuitBreakerTripsDefaultUser() throws SQLException;
+    public long getCircuitBreakerLastTransitionTimeDefaultUser() throws SQLException;
+
+    /**
+     * The number of Connection checkouts held longer than <code>unreturnedConnectionReportTimeout</code>
+     * or <code>unreturnedConnectionTimeout</code>, each counted once, whether it was only reported
+     * or destroyed.
+     */
+    public long getNumOverdueCheckoutsDefaultUser() throws SQLException;
     public float getEffectivePropertyCycleDefaultUser() throws SQLException;
     public int getNumThreadsAwaitingCheckoutDefaultUser() throws SQLException;
 
+    /**
+     * Returns the statistics of the default user's pool all at once. Taking
+     * this snapshot acquires no lock that clients checking Connections in or
+     * out would contend for, so it is suitable for frequent polling by monitoring
+     * agents. The counts getters of this interface are served the same way.
+     */
+    public PoolStats getPoolStatsDefaultUser() throws SQLException;
+
     /**
      * Discards all Connections managed by the PooledDataSource's default-authentication pool
      * and reacquires new Connections to populate.
@@ -158,10 +239,26 @@ public interface PooledDataSource extends DataSource, AutoCloseable
     public int getNumConnectionsAllUsers() throws SQLException;
     public int getNumUnclosedOrphanedConnectionsAllUsers() throws SQLException;
 
+    /**
+     * Returns the statistics of all of the DataSource's pools summed, taken
+     * without acquiring any lock that clients checking Connections in or out
+     * would contend for.
+     */
+    public PoolStats getPoolStatsAllUsers() throws SQLException;
+
     public int getStatementCacheNumStatementsAllUsers() throws SQLException;
     public int getStatementCacheNumCheckedOutStatementsAllUsers() throws SQLException;
     public int getStatementCacheNumConnectionsWithCachedStatementsAllUsers() throws SQLException;
 
+    public long getStatementCacheNumHitsAllUsers() throws SQLException;
+    public long getStatementCacheNumMissesAllUsers() throws SQLException;
+    public long getStatementCacheNumUncachedCheckoutsAllUsers() throws SQLException;
+    public long getStatementCacheNumEvictionsMaxStatementsAllUsers() throws SQLException;
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnectionAllUsers() throws SQLException;
+    public long getStatementCacheNumEvictionsConnectionCloseAllUsers() throws SQLException;
+
+    public long getNumOverdueCheckoutsAllUsers() throws SQLException;
+
     public int getStatementDestroyerNumConnectionsInUseAllUsers() throws SQLException;
     public int getStatementDestroyerNumConnectionsWithDeferredDestroyStatementsAllUsers() throws SQLException;
     public int getStatementDestroyerNumDeferredDestroyStatementsAllUsers() throws SQLException;
@@ -184,6 +281,38 @@ public interface PooledDataSource extends DataSource, AutoCloseable
 
     public String sampleStatementCacheStatusDefaultUser() throws SQLException;
     public String sampleStatementCacheStatus(String username, String password) throws SQLException;
+
+    /**
+     * Lists the SQL texts whose checkouts have most often missed the Statement cache, most missed
+     * first, with their miss counts. Only a bounded number of texts are tracked, so counts may
+     * overstate misses, by no more than the figure given with each.
+     */
+    public String sampleStatementCacheTopMissesDefaultUser() throws SQLException;
+    public String sampleStatementCacheTopMissesAllUsers() throws SQLException;
+
+    /**
+     * Lists the call sites from which overdue Connections were checked out, most overdue
+     * first, with their counts. Call sites are known only for checkouts whose stack traces
+     * were captured, see <code>unreturnedConnectionStackTraceSampleRate</code> and
+     * <code>debugUnreturnedConnectionStackTraces</code>.
+     */
+    public String sampleOverdueCheckoutSitesDefaultUser() throws SQLException;
+    public String sampleOverdueCheckoutSitesAllUsers() throws SQLException;
+
+    /**
+     * Returns the hold times of sampled Connection checkouts, by {@link ConnectionHoldTag}
+     * or call site, greatest total hold time first. Empty unless <code>connectionHoldTimeSampleRate</code>
+     * is set. Only a bounded number of tags and call sites are tracked, the rest are lumped together.
+     * Reading hold times takes no lock that clients contend for.
+     */
+    public ConnectionHoldTimes[] getConnectionHoldTimesDefaultUser() throws SQLException;
+    public ConnectionHoldTimes[] getConnectionHoldTimesAllUsers() throws SQLException;
+
+    /**
+     * Lists the tags and call sites that have held sampled Connections longest in total.
+     */
+    public String sampleConnectionHoldTimesDefaultUser() throws SQLException;
+    public String sampleConnectionHoldTimesAllUsers() throws SQLException;
     
     public Throwable getLastAcquisitionFailureDefaultUser() throws SQLException;
     public Throwable getLastCheckinFailureDefaultUser() throws SQLException;
@@ -0,0 +1,42 @@
+package com.mchange.v2.c3p0;
+
+import java.sql.Connection;
+
+/**
+ *  <p>Lets clients that differ only by schema, role, or session
+ *  settings &mdash; tenants of a shared database, for example &mdash;
+ *  share a single pool of physical Connections, rather than each
+ *  keeping a pool of its own. Clients ask for Connections via
+ *  {@link PooledDataSource#getConnectionForSessionContext(String)},
+ *  and c3p0 calls this interface to switch a Connection to the
+ *  requested context before handing it over.</p>
+ *
+ *  <p>c3p0 remembers the context each Connection was last switched to,
+ *  and calls the applier only when that differs from the context a client
+ *  requests. When it can, c3p0 checks out a Connection whose context already
+ *  matches. Clients of plain <code>getConnection()</code> request the
+ *  <code>null</code> context, which should restore the DataSource's default
+ *  session.</p>
+ *
+ *  <p>Implementations of this interface should
+ *  be immutable, and should offer public,
+ *  no argument constructors.</p>
+ *
+ *  <p>The method is handed raw, physical
+ *  database Connections, not c3p0-generated
+ *  proxies.</p>
+ */
+public interface SessionContextApplier
+{
+    /**
+     *  <p>Switches a Connection from <code>currentContext</code>
+     *  to <code>newContext</code>. Either may be <code>null</code>,
+     *  meaning the DataSource's default session. A Connection new to the
+     *  pool is in the <code>null</code> context.</p>
+     *
+     *  <p>If this method throws an Exception, the Connection is
+     *  destroyed, and the client's request fails.</p>
+     */
+    public void applySessionContext( Connection c, String currentContext, String newContext, String parentDataSourceIdentityToken )
+	throws Exception;
+}
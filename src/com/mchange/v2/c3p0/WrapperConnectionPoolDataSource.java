@@ -6,6 +6,8 @@ import java.beans.VetoableChangeListener;
 import java.beans.PropertyChangeListener;
 import java.io.PrintWriter;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.sql.*;
 import javax.sql.*;
@@ -23,6 +25,10 @@ public final class WrapperConnectionPoolDataSource extends WrapperConnectionPool
     //MT: protected by this' lock
     Map userOverrides;
 
+    //MT: protected by this' lock, lazily initialized
+    transient Map usersToSessionDefaultsCaches = null;
+    transient Object sessionDefaultsSource = null; // the database the cached session defaults came from
+
     public WrapperConnectionPoolDataSource(boolean autoregister)
     {
 	super( autoregister );
@@ -127,7 +133,8 @@ public final class WrapperConnectionPoolDataSource extends WrapperConnectionPool
                                             this.isForceIgnoreUnresolvedTransactions( this.getUser() ),
                                             this.getPreferredTestQuery( this.getUser() ),
                                             cc,
-                                            pdsIdt); 
+                                            pdsIdt,
+                                            this.findSessionDefaultsCache( this.getUser() )); 
 
 	}
 	catch (SQLException e)
@@ -175,7 +182,8 @@ public final class WrapperConnectionPoolDataSource extends WrapperConnectionPool
                                             this.isForceIgnoreUnresolvedTransactions( user ),
                                             this.getPreferredTestQuery( user ),
                                             cc,
-                                            pdsIdt); 
+                                            pdsIdt,
+                                            this.findSessionDefaultsCache( user )); 
 	}
 	catch (SQLException e)
 	{
@@ -231,6 +239,51 @@ public final class WrapperConnectionPoolDataSource extends WrapperConnectionPool
 	return (override == null ? this.getPreferredTestQuery() : override);
     }
 
+    private synchronized boolean isCacheSessionDefaults( String userName )
+    {
+	if ( userName == null )
+	    return this.isCacheSessionDefaults();
+
+	Boolean override = C3P0ConfigUtils.extractBooleanUserOverride( "cacheSessionDefaults", userName, userOverrides );
+	return ( override == null ? this.isCacheSessionDefaults() : override.booleanValue() );
+    }
+
+    // null if session defaults should not be cached
+    private synchronized SessionDefaultsCache findSessionDefaultsCache( String userName )
+    {
+	if (! this.isCacheSessionDefaults( userName ))
+	    return null;
+
+	// session defaults belong to a database, so are forgotten if we now connect to another
+	Object source = sessionDefaultsSource();
+	if ( usersToSessionDefaultsCaches == null || ! source.equals( sessionDefaultsSource ) )
+	{
+	    usersToSessionDefaultsCaches = new HashMap();
+	    sessionDefaultsSource = source;
+	}
+
+	SessionDefaultsCache out = (SessionDefaultsCache) usersToSessionDefaultsCaches.get( userName );
+	if ( out == null )
+	{
+	    out = new SessionDefaultsCache();
+	    usersToSessionDefaultsCaches.put( userName, out );
+	}
+	return out;
+    }
+
+    // the nested DataSource is enough, unless it is a DriverManagerDataSource, whose URL and driver may change
+    private synchronized Object sessionDefaultsSource()
+    {
+	DataSource nds = this.getNestedDataSource();
+	if ( nds instanceof DriverManagerDataSource )
+	{
+	    DriverManagerDataSource dmds = (DriverManagerDataSource) nds;
+	    return Arrays.asList( new Object[] { dmds, dmds.getJdbcUrl(), dmds.getDriverClass() } );
+	}
+	else
+	    return Arrays.asList( new Object[] { nds } );
+    }
+
     private synchronized String getConnectionTesterClassName( String userName )
     {
 	if ( userName == null )
@@ -3,6 +3,7 @@ package com.mchange.v2.c3p0.impl;
 import java.sql.Connection;
 import java.sql.SQLException;
 import javax.sql.PooledConnection;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import com.mchange.v2.c3p0.stmt.GooGooStatementCache;
 import com.mchange.v1.util.ClosableResource;
@@ -15,6 +16,16 @@ abstract class AbstractC3P0PooledConnection implements PooledConnection, Closabl
     // is no problem, no internal operation are performed on checked-out PooledConnections
     final ReentrantLock inInternalUseLock = new ReentrantLock();
 
+    // thread-safe post c'tor constant, accessed directly by C3P0PooledConnectionPool
+    // the pool's ConnectionEventListener is registered for the life of the PooledConnection,
+    // so this marks whether events come from a client checkout or from internal use
+    final AtomicBoolean clientCheckedOut = new AtomicBoolean( false );
+
+    // the session context last applied by the pool's SessionContextApplier, null for the
+    // DataSource's default session. written only by the Thread checking the PooledConnection
+    // out, read by the pool when it chooses a PooledConnection to check out
+    volatile String sessionContext = null;
+
     abstract Connection getPhysicalConnection();
     abstract void initStatementCache(GooGooStatementCache scache);
     abstract void closeMaybeCheckedOut( boolean checked_out ) throws SQLException;
@@ -20,6 +20,8 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import com.mchange.v2.c3p0.cfg.C3P0Config;
+import com.mchange.v2.c3p0.stmt.StatementMissCount;
+import com.mchange.v2.resourcepool.OverdueCheckoutSite;
 
 public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceBase implements PooledDataSource
 {
@@ -30,10 +32,13 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
         "Please call setConnectionPoolDataSource( ... ) to initialize.";
 
     //MT: protected by this' lock
-    transient C3P0PooledConnectionPoolManager poolManager;
+    transient volatile C3P0PooledConnectionPoolManager poolManager; // volatile so that monitoring clients can read it without the lock
     transient boolean is_closed = false;
     //MT: end protected by this' lock
 
+    //MT: written and read without locks, a stale or lost update just means a fresh snapshot
+    transient volatile PoolStats allUsersStatsCache = null;
+
     protected AbstractPoolBackedDataSource( boolean autoregister )
     {
         super( autoregister );
@@ -108,7 +113,52 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
 
     public Connection getConnection(String username, String password) throws SQLException
     { 
-        PooledConnection pc = getPoolManager().getPool(username, password).checkoutPooledConnection();
+        PooledConnection pc = checkoutFromUserPool( username, password, false, 0 );
+        return pc.getConnection();
+    }
+
+    public Connection getConnection(long timeout) throws SQLException
+    {
+        PooledConnection pc = getPoolManager().getPool().checkoutPooledConnection( timeout );
+        return pc.getConnection();
+    }
+
+    public Connection getConnection(String username, String password, long timeout) throws SQLException
+    { 
+        PooledConnection pc = checkoutFromUserPool( username, password, true, timeout );
+        return pc.getConnection();
+    }
+
+    // an idle user pool may be evicted after we fetch it, but before our checkout
+    // begins. if so, we check out from the pool that replaces it, within what
+    // remains of the client's timeout.
+    private PooledConnection checkoutFromUserPool( String username, String password, boolean timed, long timeout ) throws SQLException
+    {
+        long start = System.currentTimeMillis();
+        while ( true )
+        {
+            C3P0PooledConnectionPool pool = getPoolManager().getPool(username, password);
+            try
+            { return ( timed ? pool.checkoutPooledConnection( timeout - (System.currentTimeMillis() - start) ) : pool.checkoutPooledConnection() ); }
+            catch ( SQLException e )
+            {
+                if (! pool.wasEvicted() )
+                    throw e;
+                if ( logger.isLoggable( MLevel.FINE ) )
+                    logger.log( MLevel.FINE, "A user pool was evicted as idle just as a client tried to check out from it. Retrying with a new pool.", e );
+            }
+        }
+    }
+
+    public Connection getConnectionForSessionContext(String sessionContext) throws SQLException
+    {
+        PooledConnection pc = getPoolManager().getPool().checkoutPooledConnection( sessionContext );
+        return pc.getConnection();
+    }
+
+    public Connection getConnectionForSessionContext(String sessionContext, long timeout) throws SQLException
+    {
+        PooledConnection pc = getPoolManager().getPool().checkoutPooledConnection( sessionContext, timeout );
         return pc.getConnection();
     }
 
@@ -126,16 +176,16 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
 
     //implementation of com.mchange.v2.c3p0.PoolingDataSource
     public int getNumConnections() throws SQLException
-    { return getPoolManager().getPool().getNumConnections(); }
+    { return peekDefaultPool().getNumConnections(); }
 
     public int getNumIdleConnections() throws SQLException
-    { return getPoolManager().getPool().getNumIdleConnections(); }
+    { return peekDefaultPool().getNumIdleConnections(); }
 
     public int getNumBusyConnections() throws SQLException
-    { return getPoolManager().getPool().getNumBusyConnections(); }
+    { return peekDefaultPool().getNumBusyConnections(); }
 
     public int getNumUnclosedOrphanedConnections() throws SQLException
-    { return getPoolManager().getPool().getNumUnclosedOrphanedConnections(); }
+    { return peekDefaultPool().getNumUnclosedOrphanedConnections(); }
 
     public int getNumConnectionsDefaultUser() throws SQLException
     { return getNumConnections();}
@@ -149,35 +199,74 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     public int getNumUnclosedOrphanedConnectionsDefaultUser() throws SQLException
     { return getNumUnclosedOrphanedConnections();}
 
+    public PoolStats getPoolStatsDefaultUser() throws SQLException
+    { return peekDefaultPool().getPoolStats(); }
+
     public int getStatementCacheNumStatementsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementCacheNumStatements(); }
+    { return peekDefaultPool().getStatementCacheNumStatements(); }
 
     public int getStatementCacheNumCheckedOutDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementCacheNumCheckedOut(); }
+    { return peekDefaultPool().getStatementCacheNumCheckedOut(); }
 
     public int getStatementCacheNumConnectionsWithCachedStatementsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementCacheNumConnectionsWithCachedStatements(); }
+    { return peekDefaultPool().getStatementCacheNumConnectionsWithCachedStatements(); }
+
+    public long getStatementCacheNumHitsDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumHits(); }
+
+    public long getStatementCacheNumMissesDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumMisses(); }
+
+    public long getStatementCacheNumUncachedCheckoutsDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumUncachedCheckouts(); }
+
+    public long getStatementCacheNumEvictionsMaxStatementsDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumEvictionsMaxStatements(); }
+
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnectionDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumEvictionsMaxStatementsPerConnection(); }
+
+    public long getStatementCacheNumEvictionsConnectionCloseDefaultUser() throws SQLException
+    { return peekDefaultPool().getStatementCacheNumEvictionsConnectionClose(); }
 
     public float getEffectivePropertyCycleDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getEffectivePropertyCycle(); }
+    { return peekDefaultPool().getEffectivePropertyCycle(); }
     
     public long getStartTimeMillisDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStartTime(); }
+    { return peekDefaultPool().getStartTime(); }
 
     public long getUpTimeMillisDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getUpTime(); }
+    { return peekDefaultPool().getUpTime(); }
     
     public long getNumFailedCheckinsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getNumFailedCheckins(); }
+    { return peekDefaultPool().getNumFailedCheckins(); }
 
     public long getNumFailedCheckoutsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getNumFailedCheckouts(); }
+    { return peekDefaultPool().getNumFailedCheckouts(); }
 
     public long getNumFailedIdleTestsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getNumFailedIdleTests(); }
+    { return peekDefaultPool().getNumFailedIdleTests(); }
+
+    public long getNumAcquisitionsDefaultUser() throws SQLException
+    { return peekDefaultPool().getNumAcquisitions(); }
+
+    public long getNumRebuildsDefaultUser() throws SQLException
+    { return peekDefaultPool().getNumRebuilds(); }
+
+    public String getCircuitBreakerStateDefaultUser() throws SQLException
+    { return peekDefaultPool().getCircuitBreakerState(); }
+
+    public long getNumCircuitBreakerTripsDefaultUser() throws SQLException
+    { return peekDefaultPool().getNumCircuitBreakerTrips(); }
+
+    public long getCircuitBreakerLastTransitionTimeDefaultUser() throws SQLException
+    { return peekDefaultPool().getCircuitBreakerLastTransitionTime(); }
+
+    public long getNumOverdueCheckoutsDefaultUser() throws SQLException
+    { return peekDefaultPool().getNumOverdueCheckouts(); }
 
     public int getNumThreadsAwaitingCheckoutDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getNumThreadsAwaitingCheckout(); }
+    { return peekDefaultPool().getNumThreadsAwaitingCheckout(); }
 
     public int getThreadPoolSize() throws SQLException
     { return getPoolManager().getThreadPoolSize(); }
@@ -198,25 +287,107 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     { return getPoolManager().getThreadPoolStatus(); }
 
     public String sampleStatementCacheStatusDefaultUser() throws SQLException
-    { return getPoolManager().getPool().dumpStatementCacheStatus(); }
+    { return peekDefaultPool().dumpStatementCacheStatus(); }
     
     public String sampleStatementCacheStatus(String username, String password) throws SQLException
     { return assertAuthPool(username, password).dumpStatementCacheStatus(); }
+
+    public String sampleStatementCacheTopMissesDefaultUser() throws SQLException
+    { return topMissesString( peekDefaultPool().getStatementCacheTopMisses() ); }
+
+    public String sampleStatementCacheTopMissesAllUsers() throws SQLException
+    { return topMissesString( getPoolManager().getStatementCacheTopMissesAllAuths() ); }
+
+    private static String topMissesString( StatementMissCount[] misses )
+    {
+        if (misses.length == 0)
+            return "No Statement cache misses have been recorded.";
+
+        StringBuffer sb = new StringBuffer( 128 * misses.length );
+        sb.append( "Most missed Statements -- misses [maximum overcount] SQL:" );
+        for (int i = 0; i < misses.length; ++i)
+        {
+            sb.append( "\n  " );
+            sb.append( misses[i] );
+        }
+        return sb.toString();
+    }
+
+    public String sampleOverdueCheckoutSitesDefaultUser() throws SQLException
+    {
+        C3P0PooledConnectionPool pool = peekDefaultPool();
+        return overdueSitesString( pool.getNumOverdueCheckouts(), pool.getOverdueCheckoutSites() );
+    }
+
+    public String sampleOverdueCheckoutSitesAllUsers() throws SQLException
+    {
+        C3P0PooledConnectionPoolManager mgr = getPoolManager();
+        return overdueSitesString( mgr.getPoolStatsAllAuths().getNumOverdueCheckouts(), mgr.getOverdueCheckoutSitesAllAuths() );
+    }
+
+    public ConnectionHoldTimes[] getConnectionHoldTimesDefaultUser() throws SQLException
+    { return peekDefaultPool().getConnectionHoldTimes(); }
+
+    public ConnectionHoldTimes[] getConnectionHoldTimesAllUsers() throws SQLException
+    { return getPoolManager().getConnectionHoldTimesAllAuths(); }
+
+    public String sampleConnectionHoldTimesDefaultUser() throws SQLException
+    { return holdTimesString( getConnectionHoldTimesDefaultUser() ); }
+
+    public String sampleConnectionHoldTimesAllUsers() throws SQLException
+    { return holdTimesString( getConnectionHoldTimesAllUsers() ); }
+
+    private static String holdTimesString( ConnectionHoldTimes[] holdTimes )
+    {
+        if (holdTimes.length == 0)
+            return "No Connection hold times have been recorded. Is connectionHoldTimeSampleRate set?";
+
+        StringBuffer sb = new StringBuffer( 256 * holdTimes.length );
+        sb.append( "Sampled Connection hold times, greatest total first -- checkouts, total, mean: tag or call site" );
+        for (int i = 0; i < holdTimes.length; ++i)
+        {
+            sb.append( "\n  " );
+            sb.append( holdTimes[i] );
+        }
+        return sb.toString();
+    }
+
+    private static String overdueSitesString( long numOverdue, OverdueCheckoutSite[] sites )
+    {
+        if (numOverdue == 0)
+            return "No overdue Connection checkouts have been recorded.";
+
+        long sampled = 0;
+        for (int i = 0; i < sites.length; ++i)
+            sampled += sites[i].getNumOverdue();
+
+        StringBuffer sb = new StringBuffer( 256 * (sites.length + 1) );
+        sb.append( numOverdue );
+        sb.append( " overdue Connection checkouts, " );
+        sb.append( sampled );
+        sb.append( " with tracked call sites -- overdue checkouts, call site:" );
+        for (int i = 0; i < sites.length; ++i)
+        {
+            sb.append( "\n  " );
+            sb.append( sites[i] );
+        }
+        return sb.toString();
+    }
     
     public Throwable getLastAcquisitionFailureDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getLastAcquisitionFailure(); }
+    { return peekDefaultPool().getLastAcquisitionFailure(); }
 
     public Throwable getLastCheckinFailureDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getLastCheckinFailure(); }
+    { return peekDefaultPool().getLastCheckinFailure(); }
 
     public Throwable getLastCheckoutFailureDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getLastCheckoutFailure(); }
+    { return peekDefaultPool().getLastCheckoutFailure(); }
 
     public Throwable getLastIdleTestFailureDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getLastIdleTestFailure(); }
+    { return peekDefaultPool().getLastIdleTestFailure(); }
 
     public Throwable getLastConnectionTestFailureDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getLastConnectionTestFailure(); }
+    { return peekDefaultPool().getLastConnectionTestFailure(); }
     
     public Throwable getLastAcquisitionFailure(String username, String password) throws SQLException
     { return assertAuthPool(username, password).getLastAcquisitionFailure(); }
@@ -338,6 +509,21 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     public long getNumFailedIdleTests(String username, String password) throws SQLException
     { return assertAuthPool(username, password).getNumFailedIdleTests(); }
 
+    public long getNumAcquisitions(String username, String password) throws SQLException
+    { return assertAuthPool(username, password).getNumAcquisitions(); }
+
+    public long getNumRebuilds(String username, String password) throws SQLException
+    { return assertAuthPool(username, password).getNumRebuilds(); }
+
+    public String getCircuitBreakerState(String username, String password) throws SQLException
+    { return assertAuthPool(username, password).getCircuitBreakerState(); }
+
+    public long getNumCircuitBreakerTrips(String username, String password) throws SQLException
+    { return assertAuthPool(username, password).getNumCircuitBreakerTrips(); }
+
+    public long getCircuitBreakerLastTransitionTime(String username, String password) throws SQLException
+    { return assertAuthPool(username, password).getCircuitBreakerLastTransitionTime(); }
+
     public void softReset(String username, String password) throws SQLException
     { assertAuthPool(username, password).reset(); }
 
@@ -353,6 +539,27 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     public int getNumUnclosedOrphanedConnectionsAllUsers() throws SQLException
     { return getPoolManager().getNumUnclosedOrphanedConnectionsAllAuths(); }
 
+    public PoolStats getPoolStatsAllUsers() throws SQLException
+    { return getPoolManager().getPoolStatsAllAuths(); }
+
+    /*
+     * The AllUsers attributes below are usually polled together, by a JMX console or
+     * a metrics exporter, so they share one recent snapshot, rather than each summing
+     * every pool's statistics.
+     */
+    private final static long ALL_USERS_STATS_MAX_AGE = 1000; //milliseconds
+
+    private PoolStats recentPoolStatsAllUsers() throws SQLException
+    {
+        PoolStats out = allUsersStatsCache;
+        if ( out == null || System.currentTimeMillis() - out.getSnapshotTime() >= ALL_USERS_STATS_MAX_AGE )
+        {
+            out = getPoolStatsAllUsers();
+            allUsersStatsCache = out;
+        }
+        return out;
+    }
+
     public int getStatementCacheNumStatementsAllUsers() throws SQLException
     { return getPoolManager().getStatementCacheNumStatementsAllUsers(); }
 
@@ -362,6 +569,27 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     public int getStatementCacheNumConnectionsWithCachedStatementsAllUsers() throws SQLException
     { return getPoolManager().getStatementCacheNumConnectionsWithCachedStatementsAllUsers(); }
 
+    public long getStatementCacheNumHitsAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumHits(); }
+
+    public long getStatementCacheNumMissesAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumMisses(); }
+
+    public long getStatementCacheNumUncachedCheckoutsAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumUncachedCheckouts(); }
+
+    public long getStatementCacheNumEvictionsMaxStatementsAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumEvictionsMaxStatements(); }
+
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnectionAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumEvictionsMaxStatementsPerConnection(); }
+
+    public long getStatementCacheNumEvictionsConnectionCloseAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getStatementCacheNumEvictionsConnectionClose(); }
+
+    public long getNumOverdueCheckoutsAllUsers() throws SQLException
+    { return recentPoolStatsAllUsers().getNumOverdueCheckouts(); }
+
     // Statement Destroyer stuff
 
     public int getStatementDestroyerNumConnectionsInUseAllUsers() throws SQLException
@@ -374,13 +602,13 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
     { return getPoolManager().getStatementDestroyerNumDeferredDestroyStatementsAllUsers(); }
 
     public int getStatementDestroyerNumConnectionsInUseDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementDestroyerNumConnectionsInUse(); }
+    { return peekDefaultPool().getStatementDestroyerNumConnectionsInUse(); }
 
     public int getStatementDestroyerNumConnectionsWithDeferredDestroyStatementsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementDestroyerNumConnectionsWithDeferredDestroyStatements(); }
+    { return peekDefaultPool().getStatementDestroyerNumConnectionsWithDeferredDestroyStatements(); }
 
     public int getStatementDestroyerNumDeferredDestroyStatementsDefaultUser() throws SQLException
-    { return getPoolManager().getPool().getStatementDestroyerNumDeferredDestroyStatements(); }
+    { return peekDefaultPool().getStatementDestroyerNumDeferredDestroyStatements(); }
 
     public int getStatementDestroyerNumThreads() throws SQLException
     { return getPoolManager().getStatementDestroyerNumThreads(); }
@@ -471,6 +699,55 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
         }
     }
 
+    /**
+     * Applies changed pool configuration (sizes, timeouts, tests, Statement
+     * cache limits) to live pools, without disturbing their Connections.
+     * If the new configuration cannot be applied in place, the pool manager
+     * is replaced, as by resetPoolManager( false ).
+     */
+    protected synchronized void reconfigurePoolManager()
+    {
+        if ( poolManager != null )
+        {
+            try
+            {
+                if (! poolManager.reconfigureAllAuths() )
+                {
+                    if ( logger.isLoggable( MLevel.FINE ) )
+                        logger.log( MLevel.FINE, "New configuration of " + this + " cannot be applied to its live pools in place. Resetting its pools." );
+                    resetPoolManager( false );
+                }
+            }
+            catch ( SQLException e )
+            {
+                if ( logger.isLoggable( MLevel.WARNING ) )
+                    logger.log( MLevel.WARNING, "Failed to reconfigure the live pools of " + this + ". Resetting its pools.", e );
+                resetPoolManager( false );
+            }
+        }
+    }
+
+    /**
+     * Gradually replaces the Connections of live pools, so that they are
+     * reacquired under new configuration (e.g. a new jdbcUrl). Idle Connections
+     * are replaced a few at a time, and checked out Connections when they are
+     * checked in, so clients are never left without a pool to draw from.
+     */
+    protected synchronized void rebuildPoolManager()
+    {
+        if ( poolManager != null )
+        {
+            try
+            { poolManager.rebuildAllAuths(); }
+            catch ( SQLException e )
+            {
+                if ( logger.isLoggable( MLevel.WARNING ) )
+                    logger.log( MLevel.WARNING, "Failed to rebuild the live pools of " + this + ". Resetting its pools.", e );
+                resetPoolManager( false );
+            }
+        }
+    }
+
     private synchronized ConnectionPoolDataSource assertCpds() throws SQLException
     {
         if ( is_closed )
@@ -482,6 +759,13 @@ public abstract class AbstractPoolBackedDataSource extends PoolBackedDataSourceB
         return out;
     }
 
+    // for monitoring clients, takes no lock once the pool manager exists, and doesn't touch the pool's last use
+    private C3P0PooledConnectionPool peekDefaultPool() throws SQLException
+    {
+        C3P0PooledConnectionPoolManager mgr = poolManager;
+        return ( mgr != null ? mgr : getPoolManager() ).peekPool();
+    }
+
     private synchronized C3P0PooledConnectionPoolManager getPoolManager() throws SQLException
     {
         if (poolManager == null)
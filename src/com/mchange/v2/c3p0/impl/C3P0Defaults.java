@@ -25,13 +25,28 @@ public final class C3P0Defaults
     private final static int ACQUIRE_INCREMENT                          = 3;
     private final static int ACQUIRE_RETRY_ATTEMPTS                     = 30;
     private final static int ACQUIRE_RETRY_DELAY                        = 1000; //milliseconds
+    private final static int ACQUIRE_RETRY_MAX_DELAY                    = 30000; //milliseconds
+    private final static int ACQUIRE_RETRY_BUDGET                       = 0;    //milliseconds, 0 means no time limit
     private final static int CHECKOUT_TIMEOUT                           = 0;    //milliseconds
+    private final static int MAX_CHECKOUT_TEST_FAILURES                 = 0;    //0 means twice maxPoolSize
     private final static int CONNECTION_IS_VALID_TIMEOUT                = 0;    //seconds
     private final static int MAX_ADMINISTRATIVE_TASK_TIME               = 0;    //seconds
     private final static int MAX_IDLE_TIME_EXCESS_CONNECTIONS           = 0;    //seconds
     private final static int MAX_CONNECTION_AGE                         = 0;    //seconds
     private final static int UNRETURNED_CONNECTION_TIMEOUT              = 0;    //seconds
+    private final static int UNRETURNED_CONNECTION_REPORT_TIMEOUT       = 0;    //seconds
+    private final static int UNRETURNED_CONNECTION_STACK_TRACE_SAMPLE_RATE = 0; //0 means no sampling
+    private final static int CONNECTION_HOLD_TIME_SAMPLE_RATE           = 0;    //0 means no hold time profiling
     private final static int STATEMENT_CACHE_NUM_DEFERRED_CLOSE_THREADS = 0;
+    private final static int STATEMENT_CACHE_WARM_UP_COUNT              = 0;
+    private final static int CIRCUIT_BREAKER_FAILURE_THRESHOLD          = 0;    //no circuit breaker
+    private final static int CIRCUIT_BREAKER_RESET_DELAY                = 10000; //milliseconds
+    private final static int MAX_CONCURRENT_ACQUISITIONS                = 0;    //0 means no limit per user
+    private final static int MAX_TOTAL_CONCURRENT_ACQUISITIONS          = 0;    //0 means no limit across users
+    private final static int MAX_TOTAL_CONNECTIONS                      = 0;    //0 means no limit across users
+    private final static int MAX_GROUP_CONNECTIONS                      = 0;    //0 means no limit across the connectionBudgetGroup
+    private final static int MAX_USER_POOLS                             = 0;    //0 means no limit
+    private final static int USER_POOL_IDLE_TIMEOUT                     = 0;    //seconds, 0 means user pools are never closed for idleness
 
 
     private final static boolean BREAK_AFTER_ACQUIRE_FAILURE                 = false;
@@ -44,21 +59,26 @@ public final class C3P0Defaults
     private final static boolean PRIVILEGE_SPAWNED_THREADS                   = false;
     private final static boolean FORCE_USE_NAMED_DRIVER_CLASS                = false;
     private final static boolean FORCE_SYNCHRONOUS_CHECKINS                  = false;
+    private final static boolean CACHE_SESSION_DEFAULTS                      = false;
 
     private final static int NUM_HELPER_THREADS = 3;
 
     private final static String AUTOMATIC_TEST_TABLE             = null;
+    private final static String CONNECTION_BUDGET_GROUP          = null;
     private final static String CONNECTION_CUSTOMIZER_CLASS_NAME = null;
     private final static String CONNECTION_TESTER_CLASS_NAME     = null;
+    private final static String SESSION_CONTEXT_APPLIER_CLASS_NAME = null;
     private final static String TASK_RUNNER_FACTORY_CLASS_NAME   = "com.mchange.v2.c3p0.impl.DefaultTaskRunnerFactory";
     private final static String CONTEXT_CLASS_LOADER_SOURCE      = "caller"; // caller | library | none
     private final static String DRIVER_CLASS                     = null;
     private final static String JDBC_URL                         = null;
     private final static String MARK_SESSION_BOUNDARIES          = "always"; // always | never | if-no-statement-cache
+    private final static String ACQUIRE_RETRY_POLICY             = "fixed"; // fixed | exponential | decorrelated
     private final static String OVERRIDE_DEFAULT_USER            = null;
     private final static String OVERRIDE_DEFAULT_PASSWORD        = null;
     private final static String PASSWORD                         = null;
     private final static String PREFERRED_TEST_QUERY             = null;
+    private final static String STATEMENT_CACHE_WARM_UP_STATEMENTS = null; // semicolon-separated SQL
     private final static String FACTORY_CLASS_LOCATION           = null;
     private final static String USER_OVERRIDES_AS_STRING         = null;
     private final static String USER                             = null;
@@ -114,6 +134,15 @@ public final class C3P0Defaults
     public static int unreturnedConnectionTimeout()
     { return UNRETURNED_CONNECTION_TIMEOUT; }
 
+    public static int unreturnedConnectionReportTimeout()
+    { return UNRETURNED_CONNECTION_REPORT_TIMEOUT; }
+
+    public static int unreturnedConnectionStackTraceSampleRate()
+    { return UNRETURNED_CONNECTION_STACK_TRACE_SAMPLE_RATE; }
+
+    public static int connectionHoldTimeSampleRate()
+    { return CONNECTION_HOLD_TIME_SAMPLE_RATE; }
+
     public static int propertyCycle()
     { return PROPERTY_CYCLE; }
 
@@ -126,9 +155,27 @@ public final class C3P0Defaults
     public static int acquireRetryDelay()
     { return ACQUIRE_RETRY_DELAY; }
 
+    public static String acquireRetryPolicy()
+    { return ACQUIRE_RETRY_POLICY; }
+
+    public static int acquireRetryMaxDelay()
+    { return ACQUIRE_RETRY_MAX_DELAY; }
+
+    public static int acquireRetryBudget()
+    { return ACQUIRE_RETRY_BUDGET; }
+
+    public static int circuitBreakerFailureThreshold()
+    { return CIRCUIT_BREAKER_FAILURE_THRESHOLD; }
+
+    public static int circuitBreakerResetDelay()
+    { return CIRCUIT_BREAKER_RESET_DELAY; }
+
     public static int checkoutTimeout()
     { return CHECKOUT_TIMEOUT; }
 
+    public static int maxCheckoutTestFailures()
+    { return MAX_CHECKOUT_TEST_FAILURES; }
+
     // special case
     private final static String LEGACY_IS_VALID_TIMEOUT_KEY = "com.mchange.v2.c3p0.impl.DefaultConnectionTester.isValidTimeout";
     private static boolean _connectionIsValidTimeoutSet     = false; // MT: protected by class' lock
@@ -171,9 +218,21 @@ public final class C3P0Defaults
     public static int statementCacheNumDeferredCloseThreads()
     { return STATEMENT_CACHE_NUM_DEFERRED_CLOSE_THREADS; }
 
+    public static int statementCacheWarmUpCount()
+    { return STATEMENT_CACHE_WARM_UP_COUNT; }
+
+    public static String statementCacheWarmUpStatements()
+    { return STATEMENT_CACHE_WARM_UP_STATEMENTS; }
+
     public static String connectionCustomizerClassName()
     { return CONNECTION_CUSTOMIZER_CLASS_NAME; }
 
+    public static String connectionBudgetGroup()
+    { return CONNECTION_BUDGET_GROUP; }
+
+    public static String sessionContextApplierClassName()
+    { return SESSION_CONTEXT_APPLIER_CLASS_NAME; }
+
     public static String taskRunnerFactoryClassName()
     { return TASK_RUNNER_FACTORY_CLASS_NAME; }
 
@@ -213,6 +272,9 @@ public final class C3P0Defaults
     public static boolean attemptResurrectOnCheckin()
     { return ATTEMPT_RESURRECT_ON_CHECKIN; }
 
+    public static boolean cacheSessionDefaults()
+    { return CACHE_SESSION_DEFAULTS; }
+
     public static boolean autoCommitOnClose()
     { return AUTO_COMMIT_ON_CLOSE; }
 
@@ -249,6 +311,24 @@ public final class C3P0Defaults
     public static int maxAdministrativeTaskTime()
     { return MAX_ADMINISTRATIVE_TASK_TIME; }
 
+    public static int maxConcurrentAcquisitions()
+    { return MAX_CONCURRENT_ACQUISITIONS; }
+
+    public static int maxTotalConcurrentAcquisitions()
+    { return MAX_TOTAL_CONCURRENT_ACQUISITIONS; }
+
+    public static int maxTotalConnections()
+    { return MAX_TOTAL_CONNECTIONS; }
+
+    public static int maxGroupConnections()
+    { return MAX_GROUP_CONNECTIONS; }
+
+    public static int maxUserPools()
+    { return MAX_USER_POOLS; }
+
+    public static int userPoolIdleTimeout()
+    { return USER_POOL_IDLE_TIMEOUT; }
+
     public static int maxIdleTimeExcessConnections()
     { return MAX_IDLE_TIME_EXCESS_CONNECTIONS; }
 
@@ -2,7 +2,10 @@ package com.mchange.v2.c3p0.impl;
 
 import com.mchange.v2.c3p0.stmt.*;
 import com.mchange.v2.c3p0.ConnectionCustomizer;
+import com.mchange.v2.c3p0.ConnectionHoldTimes;
 import com.mchange.v2.c3p0.SQLWarnings;
+import com.mchange.v2.c3p0.PooledDataSource;
+import com.mchange.v2.c3p0.PoolStats;
 import com.mchange.v2.c3p0.UnifiedConnectionTester;
 import com.mchange.v2.c3p0.WrapperConnectionPoolDataSource;
 
@@ -28,7 +31,11 @@ import com.mchange.v2.log.MLogger;
 import com.mchange.v2.c3p0.C3P0Registry;
 import com.mchange.v2.c3p0.ConnectionTester;
 import com.mchange.v2.c3p0.QueryConnectionTester;
+import com.mchange.v2.c3p0.SessionContextApplier;
 import com.mchange.v2.resourcepool.CannotAcquireResourceException;
+import com.mchange.v2.resourcepool.CircuitOpenException;
+import com.mchange.v2.resourcepool.LatencyHistogram;
+import com.mchange.v2.resourcepool.OverdueCheckoutSite;
 import com.mchange.v2.resourcepool.ResourcePool;
 import com.mchange.v2.resourcepool.ResourcePoolException;
 import com.mchange.v2.resourcepool.ResourcePoolFactory;
@@ -39,6 +46,8 @@ public final class C3P0PooledConnectionPool
 {
     private final static boolean ASYNCHRONOUS_CONNECTION_EVENT_LISTENER = false;
 
+    private final static StatementMissCount[] NO_MISSES = new StatementMissCount[0];
+
     final static MLogger logger = MLog.getLogger( C3P0PooledConnectionPool.class );
 
     final ResourcePool rp;
@@ -51,18 +60,33 @@ public final class C3P0PooledConnectionPool
 
     final boolean c3p0PooledConnections;
 
-    final int checkoutTimeout;
     final int connectionIsValidTimeout;
 
+    //MT: volatile, may be changed by reconfigure(...) while the pool is live
+    volatile int     checkoutTimeout;
+    volatile boolean testConnectionOnCheckout;
+    volatile boolean testConnectionOnCheckin;
+
     final boolean disableSessionBoundaries;
 
+    //MT: set by our manager before it closes us because we have been idle
+    volatile boolean evicted = false;
+
     final AsynchronousRunner sharedTaskRunner;
     final AsynchronousRunner deferredStatementDestroyer;
 
     final AbstractInternalUseLockManager internalUseLockManager;
 
-    //MT: protected by this' lock
-    private RequestBoundaryMarker requestBoundaryMarker;
+    final SessionContextApplier sessionContextApplier; // may be null
+    final String                parentDataSourceIdentityToken;
+
+    //MT: volatile, resolved just once while holding this' lock, then read without locking
+    private volatile RequestBoundaryMarker requestBoundaryMarker;
+
+    // all Connection tests, successful or not
+    final LatencyHistogram connectionTestLatencies = new LatencyHistogram();
+
+    volatile ConnectionHoldTimeProfiler holdTimeProfiler; // null unless connectionHoldTimeSampleRate is set
 
     public int getStatementDestroyerNumConnectionsInUse()                           { return scache == null ? -1 : scache.getStatementDestroyerNumConnectionsInUse(); }
     public int getStatementDestroyerNumConnectionsWithDeferredDestroyStatements()   { return scache == null ? -1 : scache.getStatementDestroyerNumConnectionsWithDeferredDestroyStatements(); }
@@ -252,9 +276,35 @@ public final class C3P0PooledConnectionPool
 	}
     }
 
+    // statementCacheWarmUpStatements is a semicolon-separated list of SQL
+    private static String[] parseWarmUpStatements( String statementCacheWarmUpStatements )
+    {
+	if ( statementCacheWarmUpStatements == null )
+	    return null;
+
+	String[] split = statementCacheWarmUpStatements.split(";");
+	LinkedList out = new LinkedList();
+	for (int i = 0; i < split.length; ++i)
+	    {
+		String sql = split[i].trim();
+		if ( sql.length() > 0 )
+		    out.add( sql );
+	    }
+	return (String[]) out.toArray( new String[ out.size() ] );
+    }
+
     // we assume (pretty safely I think) that all PooledConnections we see will have the same type
     // and physical connection type
-    private synchronized RequestBoundaryMarker findRequestBoundaryMarker(PooledConnection pc)
+    //
+    // this is called on every checkout and checkin, so once the marker is resolved, we read
+    // it from its volatile field without taking this' lock
+    private RequestBoundaryMarker findRequestBoundaryMarker(PooledConnection pc)
+    {
+	RequestBoundaryMarker out = this.requestBoundaryMarker;
+	return ( out != null ? out : resolveRequestBoundaryMarker( pc ) );
+    }
+
+    private synchronized RequestBoundaryMarker resolveRequestBoundaryMarker(PooledConnection pc)
     {
 	if (this.requestBoundaryMarker != null)
 	    return this.requestBoundaryMarker;
@@ -367,8 +417,15 @@ public final class C3P0PooledConnectionPool
 			      int inc,
 			      int acq_retry_attempts,
 			      int acq_retry_delay,
+			      String acq_retry_policy,
+			      int acq_retry_max_delay, //milliseconds
+			      int acq_retry_budget, //milliseconds
 			      boolean break_after_acq_failure,
+			      int circuitBreakerFailureThreshold,
+			      int circuitBreakerResetDelay, //milliseconds
+			      int maxConcurrentAcquisitions,
 			      int checkoutTimeout, //milliseconds
+			      int maxCheckoutTestFailures,
 			      final int connectionIsValidTimeout, // seconds
 			      int idleConnectionTestPeriod, //seconds
 			      int maxIdleTime, //seconds
@@ -376,17 +433,23 @@ public final class C3P0PooledConnectionPool
 			      int maxConnectionAge, //seconds
 			      int propertyCycle, //seconds
 			      int unreturnedConnectionTimeout, //seconds
+			      int unreturnedConnectionReportTimeout, //seconds
 			      boolean debugUnreturnedConnectionStackTraces,
+			      int unreturnedConnectionStackTraceSampleRate,
+			      int connectionHoldTimeSampleRate,
 			      boolean forceSynchronousCheckins,
-			      final boolean testConnectionOnCheckout,
-			      final boolean testConnectionOnCheckin,
+			      boolean testConnectionOnCheckout,
+			      boolean testConnectionOnCheckin,
                               boolean attemptResurrectOnCheckin,
 			      int maxStatements,
 			      int maxStatementsPerConnection,
+			      int statementCacheWarmUpCount,
+			      String statementCacheWarmUpStatements,
 			      String markSessionBoundaries,
 			      /* boolean statementCacheDeferredClose,      */
 			      final ConnectionTester connectionTester,
 			      final ConnectionCustomizer connectionCustomizer,
+			      SessionContextApplier sessionContextApplier,
 			      final String testQuery,
 			      final ResourcePoolFactory fact,
 			      ThreadPoolReportingAsynchronousRunner taskRunner,
@@ -396,6 +459,7 @@ public final class C3P0PooledConnectionPool
         try
         {
             this.c3p0PooledConnections = (cpds instanceof WrapperConnectionPoolDataSource);
+            this.holdTimeProfiler = ( connectionHoldTimeSampleRate > 0 ? new ConnectionHoldTimeProfiler( connectionHoldTimeSampleRate ) : null );
 
             if (!c3p0PooledConnections)
             {
@@ -412,6 +476,9 @@ public final class C3P0PooledConnectionPool
             else
                 this.scache = null;
 
+            if (this.scache != null)
+                this.scache.initWarmUp( statementCacheWarmUpCount, parseWarmUpStatements( statementCacheWarmUpStatements ) );
+
             if (attemptResurrectOnCheckin)
                 this.resurrectables = new Resurrectables();
             else
@@ -420,9 +487,14 @@ public final class C3P0PooledConnectionPool
             this.connectionTester = connectionTester;
 
             this.checkoutTimeout = checkoutTimeout;
+            this.testConnectionOnCheckout = testConnectionOnCheckout;
+            this.testConnectionOnCheckin = testConnectionOnCheckin;
 
 	    this.connectionIsValidTimeout = connectionIsValidTimeout;
 
+	    this.sessionContextApplier = sessionContextApplier;
+	    this.parentDataSourceIdentityToken = parentDataSourceIdentityToken;
+
             this.sharedTaskRunner = taskRunner;
 	    this.deferredStatementDestroyer = deferredStatementDestroyer;
 
@@ -546,6 +618,10 @@ public final class C3P0PooledConnectionPool
                             scacheWaitMarkPooledConnectionInUse(out);
                             con = out.getConnection();
                             SQLWarnings.logAndClearWarnings( con );
+
+                            // we're still marked in use and invisible to clients, a fine time to pre-prepare hot Statements
+                            if (scache != null && c3p0PooledConnections)
+                                scache.warmUp( ((AbstractC3P0PooledConnection) out).getPhysicalConnection() );
                         }
                         finally
                         {
@@ -555,6 +631,11 @@ public final class C3P0PooledConnectionPool
                             scacheUnmarkPooledConnectionInUse(out);
                         }
 
+                        // c3p0 PooledConnections get our listener just once, for their whole lives.
+                        // events provoked by internal use are filtered by isClientCheckoutEvent(...)
+                        if (c3p0PooledConnections)
+                            out.addConnectionEventListener( cl );
+
                         return out;
                     }
                     catch (Exception e)
@@ -602,7 +683,7 @@ public final class C3P0PooledConnectionPool
 			    {
 				physicalConnection =  ((AbstractC3P0PooledConnection) resc).getPhysicalConnection();
 				scacheWaitMarkPhysicalConnectionInUse( physicalConnection );
-				if ( testConnectionOnCheckout )
+				if ( C3P0PooledConnectionPool.this.testConnectionOnCheckout )
 				{
 				    if ( Debug.DEBUG && logger.isLoggable( MLevel.FINER ) )
 					finerLoggingTestPooledConnection( resc, "CHECKOUT" );
@@ -622,7 +703,7 @@ public final class C3P0PooledConnectionPool
 			}
 			else
 			{
-			    if ( testConnectionOnCheckout )
+			    if ( C3P0PooledConnectionPool.this.testConnectionOnCheckout )
 			    {
 				PooledConnection pc = (PooledConnection) resc;
 				try
@@ -667,7 +748,7 @@ public final class C3P0PooledConnectionPool
 				connectionCustomizer.onCheckIn( physicalConnection, parentDataSourceIdentityToken );
 				SQLWarnings.logAndClearWarnings( physicalConnection );
 
-				if ( testConnectionOnCheckin || attemptResurrect)
+				if ( C3P0PooledConnectionPool.this.testConnectionOnCheckin || attemptResurrect)
 				{
 				    if ( Debug.DEBUG && logger.isLoggable( MLevel.FINER ) )
 					finerLoggingTestPooledConnection( resc, "CHECKIN" );
@@ -698,7 +779,7 @@ public final class C3P0PooledConnectionPool
 				con = pc.getConnection();
 				SQLWarnings.logAndClearWarnings(con);
 
-				if ( testConnectionOnCheckin || attemptResurrect )
+				if ( C3P0PooledConnectionPool.this.testConnectionOnCheckin || attemptResurrect )
 				{
 				    if ( Debug.DEBUG && logger.isLoggable( MLevel.FINER ) )
 					finerLoggingTestPooledConnection( resc, con, "CHECKIN" );
@@ -781,11 +862,17 @@ public final class C3P0PooledConnectionPool
                     PooledConnection pc = (PooledConnection) resc;
 		    assert !Boolean.FALSE.equals(scachePooledConnectionInUse( pc )); //null or true are okay
 
-                    connectionTestPath.testPooledConnection( pc, proxyConn );
+                    long test_start = System.currentTimeMillis();
+                    try { connectionTestPath.testPooledConnection( pc, proxyConn ); }
+                    finally { connectionTestLatencies.record( System.currentTimeMillis() - test_start ); }
                 }
 
                 public void destroyResource(Object resc, boolean checked_out) throws Exception
                 {
+                    ConnectionHoldTimeProfiler htp = holdTimeProfiler;
+                    if (checked_out && htp != null)
+                        htp.noteCheckin( resc ); // the client's hold ends here, if not already at checkin
+
                     try
 		    {
                         internalUseLockManager.lockInternalUse(resc);
@@ -871,11 +958,21 @@ public final class C3P0PooledConnectionPool
                 fact.setResourceMaxAge( maxConnectionAge * 1000 );
                 fact.setExpirationEnforcementDelay( propertyCycle * 1000 );
                 fact.setDestroyOverdueResourceTime( unreturnedConnectionTimeout * 1000 );
+                fact.setReportOverdueResourceTime( unreturnedConnectionReportTimeout * 1000L );
                 fact.setDebugStoreCheckoutStackTrace( debugUnreturnedConnectionStackTraces );
+                fact.setCheckoutStackTraceSampleRate( unreturnedConnectionStackTraceSampleRate );
                 fact.setForceSynchronousCheckins( forceSynchronousCheckins );
+                fact.setTestOnCheckout( testConnectionOnCheckout );
                 fact.setAcquisitionRetryAttempts( acq_retry_attempts );
                 fact.setAcquisitionRetryDelay( acq_retry_delay );
+                fact.setAcquisitionRetryPolicy( acq_retry_policy );
+                fact.setAcquisitionRetryMaxDelay( acq_retry_max_delay );
+                fact.setAcquisitionRetryBudget( acq_retry_budget );
                 fact.setBreakOnAcquisitionFailure( break_after_acq_failure );
+                fact.setCircuitBreakerFailureThreshold( circuitBreakerFailureThreshold );
+                fact.setCircuitBreakerResetDelay( circuitBreakerResetDelay );
+                fact.setMaxCheckoutRefurbishFailures( maxCheckoutTestFailures );
+                fact.setMaxConcurrentAcquisitions( maxConcurrentAcquisitions );
                 this.rp = fact.createPool( manager );
             }
 
@@ -886,23 +983,146 @@ public final class C3P0PooledConnectionPool
     }
 
     public PooledConnection checkoutPooledConnection() throws SQLException
+    { return doCheckoutPooledConnection( checkoutTimeout, false, null ); }
+
+    /*
+     *  A client-supplied timeout is bounded by checkoutTimeout, if that is set.
+     *  A client with no time left fails immediately.
+     */
+    public PooledConnection checkoutPooledConnection( long timeout ) throws SQLException
+    { return checkoutPooledConnection( null, timeout ); }
+
+    /*
+     *  Checks out a Connection switched to the given session context by our
+     *  SessionContextApplier. A null sessionContext is the DataSource's default
+     *  session, which is what plain checkouts get when there is an applier.
+     */
+    public PooledConnection checkoutPooledConnection( String sessionContext ) throws SQLException
+    { return doCheckoutPooledConnection( checkoutTimeout, false, sessionContext ); }
+
+    // a client timeout that checkoutTimeout caps is no different from checkoutTimeout itself
+    public PooledConnection checkoutPooledConnection( String sessionContext, long timeout ) throws SQLException
+    {
+	if (timeout <= 0)
+	    throw SqlUtils.toSQLException("An attempt by a client to checkout a Connection has timed out.", new TimeoutException("A client attempted a checkout with no time remaining [timeout: " + timeout + "]."));
+	long cap = checkoutTimeout;
+	if (cap > 0 && cap <= timeout)
+	    return doCheckoutPooledConnection( cap, false, sessionContext );
+	else
+	    return doCheckoutPooledConnection( timeout, true, sessionContext );
+    }
+
+    private PooledConnection doCheckoutPooledConnection( long timeout, boolean client_deadline, String sessionContext ) throws SQLException
     {
+	if (sessionContextApplier == null && sessionContext != null)
+	    throw new SQLException("A Connection for session context '" + sessionContext + "' was requested, but no sessionContextApplierClassName has been configured.");
+
         //System.err.println(this + " -- CHECKOUT");
         try
 	    {
-		PooledConnection pc = (PooledConnection) this.checkoutAndScacheMarkConnectionInUse();
-		pc.addConnectionEventListener( cl );
+		PooledConnection pc = (PooledConnection) this.checkoutAndScacheMarkConnectionInUse( timeout, client_deadline, preferenceFor( sessionContext ) );
+		if (sessionContextApplier != null)
+		    switchSessionContext( pc, sessionContext );
+		if (c3p0PooledConnections)
+		    ((AbstractC3P0PooledConnection) pc).clientCheckedOut.set( true );
+		else
+		    pc.addConnectionEventListener( cl );
 		markBeginRequest(pc);
+		ConnectionHoldTimeProfiler htp = holdTimeProfiler;
+		if (htp != null)
+		    htp.noteCheckout( pc );
 		return pc;
 	    }
         catch (TimeoutException e)
         { throw SqlUtils.toSQLException("An attempt by a client to checkout a Connection has timed out.", e); }
+        catch (CircuitOpenException e)
+        { throw SqlUtils.toSQLException("Connections cannot currently be acquired from the underlying database. Failing fast.", PooledDataSource.CIRCUIT_BREAKER_OPEN_SQL_STATE, e); }
         catch (CannotAcquireResourceException e)
         { throw SqlUtils.toSQLException("Connections could not be acquired from the underlying database!", "08001", e); }
         catch (Exception e)
         { throw SqlUtils.toSQLException(e); }
     }
 
+    private static boolean sameSessionContext( String a, String b )
+    { return ( a == null ? b == null : a.equals( b ) ); }
+
+    // null if there is no applier, in which case all Connections are alike
+    private ResourcePool.Preference preferenceFor( final String sessionContext )
+    {
+	if (sessionContextApplier == null || !c3p0PooledConnections)
+	    return null;
+	else
+	{
+	    return new ResourcePool.Preference()
+	    {
+		public boolean prefers( Object resc )
+		{ return sameSessionContext( ((AbstractC3P0PooledConnection) resc).sessionContext, sessionContext ); }
+	    };
+	}
+    }
+
+    /*
+     *  Called on a freshly checked-out Connection that we have marked in use with
+     *  the Statement cache, so no Statement operations can be underway. Statements
+     *  cached under the old context might resolve differently in the new one (against
+     *  another schema, say), so we close them before switching. If the switch fails,
+     *  the Connection's context is unknown, so we destroy it.
+     */
+    private void switchSessionContext( PooledConnection pc, String sessionContext ) throws Exception
+    {
+	AbstractC3P0PooledConnection acpc;
+	try
+	{ acpc = (AbstractC3P0PooledConnection) pc; }
+	catch (ClassCastException e)
+	{
+	    scacheUnmarkConnectionInUseAndCheckin( pc );
+	    throw SqlUtils.toSQLException("Cannot use a SessionContextApplier with a non-c3p0 PooledConnection." +
+					  " PooledConnection: " + pc, e);
+	}
+
+	String currentContext = acpc.sessionContext;
+	if ( sameSessionContext( currentContext, sessionContext ) )
+	    return;
+
+	Connection physicalConnection = acpc.getPhysicalConnection();
+	try
+	{
+	    if (scache != null)
+		scache.closeAll( physicalConnection );
+	    sessionContextApplier.applySessionContext( physicalConnection, currentContext, sessionContext, parentDataSourceIdentityToken );
+	    acpc.sessionContext = sessionContext;
+	}
+	catch (Exception e)
+	{
+	    if (logger.isLoggable( MLevel.FINE ))
+		logger.log( MLevel.FINE, "A Connection could not be switched from session context '" + currentContext + "' to '" + sessionContext + "'. It will be destroyed.", e );
+	    rp.markBroken( pc );
+	    scacheUnmarkConnectionInUseAndCheckin( pc );
+	    throw SqlUtils.toSQLException("Could not switch a Connection to session context '" + sessionContext + "'.", e);
+	}
+    }
+
+    /*
+     *  For c3p0 PooledConnections, our ConnectionEventListener is registered permanently
+     *  upon acquisition, rather than added and removed on every checkout and checkin.
+     *  So it hears about proxies opened and closed internally (for tests, refurbishment,
+     *  etc.), and must ignore those. Non-c3p0 PooledConnections have our listener only
+     *  while checked out, so all of their events are client events.
+     *
+     *  If clear is true, the client checkout is atomically marked complete, so that
+     *  just one checkin can follow any checkout.
+     */
+    private boolean isClientCheckoutEvent(PooledConnection pc, boolean clear)
+    {
+	if (c3p0PooledConnections)
+	{
+	    AbstractC3P0PooledConnection acpc = (AbstractC3P0PooledConnection) pc;
+	    return ( clear ? acpc.clientCheckedOut.compareAndSet( true, false ) : acpc.clientCheckedOut.get() );
+	}
+	else
+	    return true;
+    }
+
     private void scacheWaitMarkPhysicalConnectionInUse(Connection physicalConnection) throws InterruptedException
     {
         if (scache != null)
@@ -954,15 +1174,29 @@ public final class C3P0PooledConnectionPool
 	    return null;
     }
 
-    private Object checkoutAndScacheMarkConnectionInUse() throws TimeoutException, CannotAcquireResourceException, ResourcePoolException, InterruptedException
+    /*
+     *  timeout covers the whole checkout, including any Connections we pass over because
+     *  they have Statement closes pending. by the semantics of wait(), zero means forever.
+     *  client_deadline is set if timeout is the client's own, rather than checkoutTimeout.
+     */
+    private Object checkoutAndScacheMarkConnectionInUse( long timeout, boolean client_deadline, ResourcePool.Preference preference ) throws TimeoutException, CannotAcquireResourceException, ResourcePoolException, InterruptedException
     {
+	long start = ( timeout > 0 ? System.currentTimeMillis() : -1 );
         Object out = null;
 	boolean success = false;
 	while (! success)
 	    {
+		long remaining = timeout;
+		if ( timeout > 0 )
+		{
+		    remaining = timeout - (System.currentTimeMillis() - start);
+		    if ( remaining <= 0 )
+			throw new TimeoutException("A client timed out while waiting for a Connection free of pending Statement closes.");
+		}
+		out = null;
 		try
 		    {
-			out = rp.checkoutResource( checkoutTimeout );
+			out = rp.checkoutResource( remaining, preference, client_deadline );
 			if (out instanceof AbstractC3P0PooledConnection)
 			    {
 				// cast should succeed, because scache != null implies c3p0 pooled Connections
@@ -1012,7 +1246,11 @@ public final class C3P0PooledConnectionPool
         //System.err.println(this + " -- CHECKIN");
         try
 	    {
-		pcon.removeConnectionEventListener( cl );
+		ConnectionHoldTimeProfiler htp = holdTimeProfiler;
+		if (htp != null)
+		    htp.noteCheckin( pcon );
+		if (! c3p0PooledConnections)
+		    pcon.removeConnectionEventListener( cl );
 		scacheUnmarkConnectionInUseAndCheckin( pcon );
 		markEndRequest( pcon );
 	    }
@@ -1036,6 +1274,9 @@ public final class C3P0PooledConnectionPool
         { throw SqlUtils.toSQLException(e); }
     }
 
+    public PoolStats getPoolStats() throws SQLException
+    { return PoolStats.snapshotOf( this ); }
+
     public int getStatementCacheNumStatements()
     { return scache == null ? 0 : scache.getNumStatements(); }
 
@@ -1045,9 +1286,49 @@ public final class C3P0PooledConnectionPool
     public int getStatementCacheNumConnectionsWithCachedStatements()
     { return scache == null ? 0 : scache.getNumConnectionsWithCachedStatements(); }
 
+    public long getStatementCacheNumHits()
+    { return scache == null ? 0 : scache.getNumHits(); }
+
+    public long getStatementCacheNumMisses()
+    { return scache == null ? 0 : scache.getNumMisses(); }
+
+    public long getStatementCacheNumUncachedCheckouts()
+    { return scache == null ? 0 : scache.getNumUncachedCheckouts(); }
+
+    public long getStatementCacheNumEvictionsMaxStatements()
+    { return scache == null ? 0 : scache.getNumEvictionsMaxStatements(); }
+
+    public long getStatementCacheNumEvictionsMaxStatementsPerConnection()
+    { return scache == null ? 0 : scache.getNumEvictionsMaxStatementsPerConnection(); }
+
+    public long getStatementCacheNumEvictionsConnectionClose()
+    { return scache == null ? 0 : scache.getNumEvictionsConnectionClose(); }
+
+    public LatencyHistogram.Snapshot getStatementPrepareLatencies()
+    { return scache == null ? LatencyHistogram.Snapshot.EMPTY : scache.getPrepareLatencies(); }
+
+    public ConnectionHoldTimes[] getConnectionHoldTimes()
+    {
+	ConnectionHoldTimeProfiler htp = holdTimeProfiler;
+	return htp == null ? ConnectionHoldTimeProfiler.NO_HOLD_TIMES : htp.getHoldTimes();
+    }
+
+    public StatementMissCount[] getStatementCacheTopMisses()
+    { return scache == null ? NO_MISSES : scache.getTopMisses(); }
+
     public String dumpStatementCacheStatus()
     { return scache == null ? "Statement caching disabled." : scache.dumpStatementCacheStatus(); }
 
+    void markEvicted()
+    { evicted = true; }
+
+    /**
+     *  Whether our manager closed this pool because it had been idle. A client
+     *  whose checkout fails for that reason should try the pool that replaces it.
+     */
+    public boolean wasEvicted()
+    { return evicted; }
+
     public void close() throws SQLException
     { close( true ); }
 
@@ -1098,6 +1379,9 @@ public final class C3P0PooledConnectionPool
         {
             //System.err.println("Checking in: " + evt.getSource());
 
+            if (! isClientCheckoutEvent( (PooledConnection) evt.getSource(), true ))
+                return; // a proxy opened internally by c3p0, not a client checkin
+
             if (ASYNCHRONOUS_CONNECTION_EVENT_LISTENER)
             {
                 Runnable r = new Runnable()
@@ -1152,6 +1436,10 @@ public final class C3P0PooledConnectionPool
                 logger.fine("CONNECTION ERROR OCCURRED!");
 
             final PooledConnection pc = (PooledConnection) evt.getSource();
+
+            if (! isClientCheckoutEvent( pc, false ))
+                return; // internal tests and refurbishment handle their own failures
+
             int status;
             if (pc instanceof NewPooledConnection)
                 status = ((NewPooledConnection) pc).getConnectionStatus();
@@ -1191,8 +1479,8 @@ public final class C3P0PooledConnectionPool
                 case ConnectionTester.DATABASE_IS_INVALID:
                     if (logger.isLoggable(MLevel.WARNING))
                         logger.warning("A ConnectionTest has failed, reporting that all previously acquired Connections are likely invalid. " +
-                        "The pool will be reset.");
-                    rp.resetPool();
+                        "The pool will be gradually rebuilt.");
+                    rp.rebuildPool();
                     break;
                 default:
                     throw new RuntimeException("Bad Connection Tester (" + connectionTester + ") " +
@@ -1308,6 +1596,99 @@ public final class C3P0PooledConnectionPool
         }
     }
 
+    public long getNumAcquisitions() throws SQLException
+    {
+        try { return rp.getNumAcquisitions(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public long getNumRebuilds() throws SQLException
+    {
+        try { return rp.getNumRebuilds(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public String getCircuitBreakerState() throws SQLException
+    {
+        try { return rp.getCircuitBreakerState(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public long getNumCircuitBreakerTrips() throws SQLException
+    {
+        try { return rp.getNumCircuitBreakerTrips(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public long getNumOverdueCheckouts() throws SQLException
+    {
+        try { return rp.getNumOverdueCheckouts(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public OverdueCheckoutSite[] getOverdueCheckoutSites() throws SQLException
+    {
+        try { return rp.getOverdueCheckoutSites(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public long getCircuitBreakerLastTransitionTime() throws SQLException
+    {
+        try { return rp.getCircuitBreakerLastTransitionTime(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public LatencyHistogram.Snapshot getCheckoutLatencies() throws SQLException
+    {
+        try { return rp.getCheckoutLatencies(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public LatencyHistogram.Snapshot getAcquisitionLatencies() throws SQLException
+    {
+        try { return rp.getAcquisitionLatencies(); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    public LatencyHistogram.Snapshot getConnectionTestLatencies()
+    { return connectionTestLatencies.snapshot(); }
+
     public Throwable getLastCheckinFailure() throws SQLException
     {
         try { return rp.getLastCheckinFailure(); }
@@ -1380,4 +1761,103 @@ public final class C3P0PooledConnectionPool
             throw SqlUtils.toSQLException( e );
         }
     }
+
+    /**
+     * Gradually replaces all Connections in the pool,
+     * a few idle Connections at a time, even those that
+     * test healthy. Checked out Connections remain valid,
+     * and are destroyed when they are checked in.
+     */
+    public void rebuild() throws SQLException
+    {
+        try { rp.rebuildPool( true ); }
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+    }
+
+    /**
+     * Applies new dynamic configuration to the live pool,
+     * without disturbing its Connections. Returns false,
+     * changing nothing, if the new Statement cache limits
+     * cannot be applied in place (because the cache must
+     * be created, removed, or change its kind). Then the
+     * pool must be replaced to take the new configuration.
+     */
+    public boolean reconfigure( int min,
+				int max,
+				int inc,
+				int checkoutTimeout, //milliseconds
+				int idleConnectionTestPeriod, //seconds
+				int maxIdleTime, //seconds
+				int maxIdleTimeExcessConnections, //seconds
+				int maxConnectionAge, //seconds
+				int propertyCycle, //seconds
+				int unreturnedConnectionTimeout, //seconds
+				int unreturnedConnectionReportTimeout, //seconds
+				boolean debugUnreturnedConnectionStackTraces,
+				int unreturnedConnectionStackTraceSampleRate,
+				int connectionHoldTimeSampleRate,
+				boolean testConnectionOnCheckout,
+				boolean testConnectionOnCheckin,
+				int maxStatements,
+				int maxStatementsPerConnection ) throws SQLException
+    {
+	if ( c3p0PooledConnections )
+	{
+	    if ( scache == null )
+	    {
+		if ( maxStatements > 0 || maxStatementsPerConnection > 0 )
+		    return false;
+	    }
+	    else if (! scache.canResize( maxStatements, maxStatementsPerConnection ) )
+		return false;
+	}
+
+        try
+	{
+	    rp.reconfigure( min,
+			    max,
+			    inc,
+			    idleConnectionTestPeriod * 1000L,
+			    maxConnectionAge * 1000L,
+			    maxIdleTime * 1000L,
+			    maxIdleTimeExcessConnections * 1000L,
+			    unreturnedConnectionTimeout * 1000L,
+			    unreturnedConnectionReportTimeout * 1000L,
+			    debugUnreturnedConnectionStackTraces,
+			    unreturnedConnectionStackTraceSampleRate,
+			    propertyCycle * 1000L,
+			    testConnectionOnCheckout );
+	}
+        catch ( Exception e )
+        {
+            logger.log( MLevel.WARNING, null, e );
+            throw SqlUtils.toSQLException( e );
+        }
+
+	// the cache was checked above, so this fails only if it has closed since
+	if ( scache != null && ! scache.resize( maxStatements, maxStatementsPerConnection ) )
+	    return false;
+
+	this.checkoutTimeout = checkoutTimeout;
+	this.testConnectionOnCheckout = testConnectionOnCheckout;
+	this.testConnectionOnCheckin = testConnectionOnCheckin;
+	reconfigureHoldTimeProfiler( connectionHoldTimeSampleRate );
+	return true;
+    }
+
+    // hold times already profiled are kept while sampling continues, and dropped if it stops
+    private void reconfigureHoldTimeProfiler( int connectionHoldTimeSampleRate )
+    {
+	ConnectionHoldTimeProfiler htp = holdTimeProfiler;
+	if ( connectionHoldTimeSampleRate <= 0 )
+	    this.holdTimeProfiler = null;
+	else if ( htp == null )
+	    this.holdTimeProfiler = new ConnectionHoldTimeProfiler( connectionHoldTimeSampleRate );
+	else
+	    htp.setSampleRate( connectionHoldTimeSampleRate );
+    }
 }
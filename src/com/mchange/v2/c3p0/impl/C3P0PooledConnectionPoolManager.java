@@ -4,6 +4,7 @@ import java.beans.*;
 import java.util.*;
 import java.lang.reflect.*;
 import java.sql.*;
+import java.security.MessageDigest;
 import javax.sql.*;
 
 import com.mchange.v2.c3p0.*;
@@ -13,9 +14,14 @@ import com.mchange.v2.coalesce.*;
 import com.mchange.v1.db.sql.*;
 import com.mchange.v2.log.*;
 import com.mchange.v1.lang.BooleanUtils;
+import com.mchange.lang.ByteUtils;
 import com.mchange.v2.sql.SqlUtils;
 import com.mchange.v2.resourcepool.ResourcePoolFactory;
 import com.mchange.v2.resourcepool.BasicResourcePoolFactory;
+import com.mchange.v2.resourcepool.ResourcePoolException;
+import com.mchange.v2.resourcepool.ResourceBudget;
+import com.mchange.v2.resourcepool.OverdueCheckoutSite;
+import com.mchange.v2.c3p0.stmt.StatementMissCount;
 
 public final class C3P0PooledConnectionPoolManager
 {
@@ -36,6 +42,22 @@ public final class C3P0PooledConnectionPoolManager
     Timer                                 timer;
     ResourcePoolFactory                   rpfact;
     Map                                   authsToPools;
+    HashMap                               authsToLastUse;                          // DbAuth -> Long, when getPool(...) last returned its pool
+    int                                   max_user_pools;                          // <= 0 means no limit
+    long                                  user_pool_idle_timeout;                  // milliseconds, <= 0 means never
+    String                                connection_budget_group;                 // the C3P0Registry budget group we've joined, or null
+    PoolConfig                            defaultPoolConfig      = null;           // shared by users without overrides
+    HashMap                               userNamesToPoolConfigs = new HashMap();  // for users with overrides
+
+    //MT: written under this' lock, whenever authsToPools changes, read without it
+    //    by monitoring clients, so that polling statistics never contends with getPool(...)
+    volatile C3P0PooledConnectionPool[] poolsSnapshot = NO_POOLS;
+
+    //MT: written under this' lock when the default pool is created or destroyed, read without it
+    //    by monitoring clients. the default pool is never evicted, so once set this is stable
+    volatile C3P0PooledConnectionPool defaultPool = null;
+
+    private final static C3P0PooledConnectionPool[] NO_POOLS = new C3P0PooledConnectionPool[0];
 
     /* MT: independently thread-safe, never reassigned post-ctor or factory */
     final ConnectionPoolDataSource cpds;
@@ -199,6 +221,12 @@ public final class C3P0PooledConnectionPoolManager
 	String  contextClassLoaderSource     = this.getContextClassLoaderSource();
 	boolean privilege_spawned_threads    = this.getPrivilegeSpawnedThreads();
         int     num_deferred_close_threads   = this.getStatementCacheNumDeferredCloseThreads();
+        int     max_total_concurrent_acqs    = this.getMaxTotalConcurrentAcquisitions();
+        int     max_total_connections        = this.getMaxTotalConnections();
+        int     max_user_pools               = this.getMaxUserPools();
+        int     user_pool_idle_timeout       = this.getUserPoolIdleTimeout();
+        int     max_group_connections        = this.getMaxGroupConnections();
+        String  connection_budget_group      = this.findConnectionBudgetGroup( max_group_connections );
 
 	final String idStr = idString();
 
@@ -229,6 +257,33 @@ public final class C3P0PooledConnectionPoolManager
         else
             _rpfact = BasicResourcePoolFactory.createNoEventSupportInstance( _taskRunner, _timer );
 
+        try { _rpfact.setMaxTotalConcurrentAcquisitions( max_total_concurrent_acqs ); }
+        catch ( ResourcePoolException e )
+        {
+            if ( logger.isLoggable( MLevel.WARNING ) )
+                logger.log( MLevel.WARNING, "Could not limit concurrent Connection acquisitions to " + max_total_concurrent_acqs + ". Acquisitions will be unlimited.", e );
+        }
+
+        try { _rpfact.setMaxTotalResources( max_total_connections ); }
+        catch ( ResourcePoolException e )
+        {
+            if ( logger.isLoggable( MLevel.WARNING ) )
+                logger.log( MLevel.WARNING, "Could not limit Connections across all users to " + max_total_connections + ". Only per-user maxPoolSize limits will apply.", e );
+        }
+
+        if (connection_budget_group != null)
+        {
+            ResourceBudget budget = C3P0Registry.joinConnectionBudget( connection_budget_group, this, max_group_connections );
+            try { _rpfact.setSharedResourceBudget( budget ); }
+            catch ( ResourcePoolException e )
+            {
+                C3P0Registry.leaveConnectionBudget( connection_budget_group, this );
+                connection_budget_group = null;
+                if ( logger.isLoggable( MLevel.WARNING ) )
+                    logger.log( MLevel.WARNING, "Could not join the Connection budget shared with other DataSources. Connections will be limited only within this DataSource.", e );
+            }
+        }
+
         synchronized (this)
         {
             this.timer                      = _timer;
@@ -236,6 +291,143 @@ public final class C3P0PooledConnectionPoolManager
             this.deferredStatementDestroyer = _deferredStatementDestroyer;
             this.rpfact                     = _rpfact;
             this.authsToPools               = new HashMap();
+            this.authsToLastUse             = new HashMap();
+            this.max_user_pools             = max_user_pools;
+            this.user_pool_idle_timeout     = user_pool_idle_timeout * 1000L;
+            this.connection_budget_group    = connection_budget_group;
+        }
+
+        if (user_pool_idle_timeout > 0)
+        {
+            long period = Math.max( this.user_pool_idle_timeout / 4, 1000 );
+            _timer.schedule( new CloseIdleUserPoolsTask(), period, period );
+        }
+    }
+
+    final class CloseIdleUserPoolsTask extends TimerTask
+    {
+        public void run()
+        { closeIdleUserPools(); }
+    }
+
+    private void closeIdleUserPools()
+    {
+        List evicted = new ArrayList();
+        synchronized (this)
+        {
+            if (authsToPools == null) // we've been closed
+                return;
+
+            long now = System.currentTimeMillis();
+            for (Iterator ii = new ArrayList( authsToPools.keySet() ).iterator(); ii.hasNext(); )
+            {
+                DbAuth auth = (DbAuth) ii.next();
+                if ( now - lastUse( auth ) > user_pool_idle_timeout && isEvictable( auth ) )
+                    evicted.add( evictUserPool( auth, "it has been idle for more than userPoolIdleTimeout (" + (user_pool_idle_timeout / 1000) + " seconds)" ) );
+            }
+        }
+        for (Iterator ii = evicted.iterator(); ii.hasNext(); )
+            closeEvictedUserPool( (C3P0PooledConnectionPool) ii.next() );
+    }
+
+    /*
+     * makes room for a new user pool, if we are at maxUserPools, by closing the
+     * least recently used user pool that is idle. if no pool can be closed, the
+     * new pool is created anyway. the limit yields to users with work in progress.
+     * returns the evicted pool, which the caller must close once it has released
+     * our lock, or null if no pool was evicted.
+     */
+    // must be called from a pre-existing sync'ed block
+    private C3P0PooledConnectionPool makeRoomForUserPool()
+    {
+        assert Thread.holdsLock( this );
+
+        if (max_user_pools <= 0 || authsToPools.size() < max_user_pools)
+            return null;
+
+        long now = System.currentTimeMillis();
+        DbAuth lru = null;
+        long lru_time = Long.MAX_VALUE;
+        for (Iterator ii = authsToPools.keySet().iterator(); ii.hasNext(); )
+        {
+            DbAuth auth = (DbAuth) ii.next();
+            long last_use = lastUse( auth );
+            if ( last_use < lru_time && isEvictable( auth ) )
+            {
+                lru = auth;
+                lru_time = last_use;
+            }
+        }
+
+        if (lru != null)
+            return evictUserPool( lru, "maxUserPools (" + max_user_pools + ") pools are open, and it was the least recently used idle pool" );
+        else
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "maxUserPools (" + max_user_pools + ") pools are open, but none is idle. Opening an additional pool." );
+            return null;
+        }
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private long lastUse( DbAuth auth )
+    {
+        assert Thread.holdsLock( this );
+
+        Long last_use = (Long) authsToLastUse.get( auth );
+        return ( last_use == null ? 0 : last_use.longValue() );
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private boolean isEvictable( DbAuth auth )
+    {
+        assert Thread.holdsLock( this );
+
+        if ( auth.equals( defaultAuth ) )
+            return false;
+
+        C3P0PooledConnectionPool pool = (C3P0PooledConnectionPool) authsToPools.get( auth );
+        try
+        { return pool.getNumBusyConnections() == 0 && pool.getNumThreadsAwaitingCheckout() == 0; }
+        catch (SQLException e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not determine whether a user pool is idle. Presuming not.", e );
+            return false;
+        }
+    }
+
+    /*
+     * a client may have fetched an evicted pool from getPool(...) just before it was
+     * evicted, and not yet have begun its checkout. such clients see that the pool was
+     * evicted, and check out from its replacement instead. see wasEvicted().
+     */
+    // must be called from a pre-existing sync'ed block
+    private C3P0PooledConnectionPool evictUserPool( DbAuth auth, String reason )
+    {
+        assert Thread.holdsLock( this );
+
+        C3P0PooledConnectionPool pool = (C3P0PooledConnectionPool) authsToPools.remove( auth );
+        authsToLastUse.remove( auth );
+        updatePoolsSnapshot();
+        pool.markEvicted();
+
+        if ( logger.isLoggable( MLevel.FINE ) )
+            logger.log( MLevel.FINE, "Closing the pool for auth, username (masked): '" + auth.getMaskedUserString() + "', because " + reason + "." );
+        return pool;
+    }
+
+    // closing a pool may take a while, so we do it without holding our lock
+    private void closeEvictedUserPool( C3P0PooledConnectionPool pool )
+    {
+        assert !Thread.holdsLock( this );
+
+        try
+        { pool.close( false ); }
+        catch ( Exception e )
+        {
+            if ( logger.isLoggable( MLevel.WARNING ) )
+                logger.log( MLevel.WARNING, "An Exception occurred while trying to close an idle user pool!", e );
         }
     }
 
@@ -265,10 +457,19 @@ public final class C3P0PooledConnectionPoolManager
 
         this.timer.cancel();
 
+        if (connection_budget_group != null)
+        {
+            C3P0Registry.leaveConnectionBudget( connection_budget_group, this );
+            this.connection_budget_group = null;
+        }
+
         this.taskRunner = null;
         this.timer = null;
         this.rpfact = null;
         this.authsToPools = null;
+        this.poolsSnapshot = NO_POOLS;
+        this.defaultPool = null;
+        this.authsToLastUse = null;
     }
 
     public C3P0PooledConnectionPoolManager(ConnectionPoolDataSource cpds,
@@ -380,14 +581,16 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
-    public synchronized C3P0PooledConnectionPool getPool(String username, String password, boolean create) throws SQLException
+    public C3P0PooledConnectionPool getPool(String username, String password, boolean create) throws SQLException
     {
         if (create)
             return getPool( username, password );
         else
         {
             DbAuth checkAuth = new DbAuth( username, password );
-            C3P0PooledConnectionPool out = (C3P0PooledConnectionPool) authsToPools.get(checkAuth);
+            C3P0PooledConnectionPool out;
+            synchronized (this)
+            { out = (C3P0PooledConnectionPool) authsToPools.get(checkAuth); }
             if (out == null)
                 throw new SQLException("No pool has been initialized for databse user '" + username + "' with the specified password.");
             else
@@ -399,14 +602,28 @@ public final class C3P0PooledConnectionPoolManager
     throws SQLException
     { return getPool( new DbAuth( username, password ) ); }
 
-    public synchronized C3P0PooledConnectionPool getPool(DbAuth auth)
+    public C3P0PooledConnectionPool getPool(DbAuth auth)
+    throws SQLException
+    {
+        C3P0PooledConnectionPool[] evictedHolder = new C3P0PooledConnectionPool[1];
+        C3P0PooledConnectionPool out = getPool( auth, evictedHolder );
+        if ( evictedHolder[0] != null )
+            closeEvictedUserPool( evictedHolder[0] );
+        return out;
+    }
+
+    private synchronized C3P0PooledConnectionPool getPool(DbAuth auth, C3P0PooledConnectionPool[] evictedHolder)
     throws SQLException
     {
         C3P0PooledConnectionPool out = (C3P0PooledConnectionPool) authsToPools.get(auth);
         if (out == null)
         {
+            evictedHolder[0] = makeRoomForUserPool();
             out = createPooledConnectionPool(auth);
             authsToPools.put( auth, out );
+            updatePoolsSnapshot();
+            if ( auth.equals( defaultAuth ) )
+                defaultPool = out;
 
 	    if ( logger.isLoggable( MLevel.FINE ) )
             {
@@ -416,75 +633,191 @@ public final class C3P0PooledConnectionPoolManager
                     logger.log( MLevel.FINE, "Created new pool for auth, username (masked): '" + auth.getMaskedUserString() + "'." );
             }
         }
+        if (max_user_pools > 0 || user_pool_idle_timeout > 0)
+            authsToLastUse.put( auth, Long.valueOf( System.currentTimeMillis() ) );
         return out;
     }
 
     public synchronized Set getManagedAuths()
     { return Collections.unmodifiableSet( authsToPools.keySet() ); }
 
-    public synchronized int getNumManagedAuths()
-    { return authsToPools.size(); }
+    public int getNumManagedAuths()
+    { return poolsSnapshot.length; }
+
+    // must be called from a pre-existing sync'ed block
+    private void updatePoolsSnapshot()
+    {
+        assert Thread.holdsLock( this );
+
+        poolsSnapshot = (C3P0PooledConnectionPool[]) authsToPools.values().toArray( new C3P0PooledConnectionPool[ authsToPools.size() ] );
+    }
+
+    /*
+     * The aggregate statistics below take no locks, neither ours nor our pools'.
+     * See PoolStats.
+     */
+    public PoolStats getPoolStatsAllAuths() throws SQLException
+    {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
+        PoolStats out = PoolStats.EMPTY;
+        for (int i = 0; i < pools.length; ++i)
+            out = out.plus( pools[i].getPoolStats() );
+        return out;
+    }
 
     public C3P0PooledConnectionPool getPool()
     throws SQLException
     { return getPool( defaultAuth ); }
 
-    public synchronized int getNumIdleConnectionsAllAuths() throws SQLException
+    /*
+     * For monitoring clients. Unlike getPool(), takes no lock once the default pool
+     * exists, and does not count as use of the pool.
+     */
+    public C3P0PooledConnectionPool peekPool()
+    throws SQLException
     {
+        C3P0PooledConnectionPool out = defaultPool;
+        return ( out != null ? out : getPool() );
+    }
+
+    public int getNumIdleConnectionsAllAuths() throws SQLException
+    {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getNumIdleConnections();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getNumIdleConnections();
         return out;
     }
 
-    public synchronized int getNumBusyConnectionsAllAuths() throws SQLException
+    public int getNumBusyConnectionsAllAuths() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getNumBusyConnections();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getNumBusyConnections();
         return out;
     }
 
-    public synchronized int getNumConnectionsAllAuths() throws SQLException
+    public int getNumConnectionsAllAuths() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getNumConnections();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getNumConnections();
         return out;
     }
 
-    public synchronized int getNumUnclosedOrphanedConnectionsAllAuths() throws SQLException
+    public int getNumUnclosedOrphanedConnectionsAllAuths() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getNumUnclosedOrphanedConnections();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getNumUnclosedOrphanedConnections();
         return out;
     }
 
-    public synchronized int getStatementCacheNumStatementsAllUsers() throws SQLException
+    public int getStatementCacheNumStatementsAllUsers() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getStatementCacheNumStatements();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getStatementCacheNumStatements();
         return out;
     }
 
-    public synchronized int getStatementCacheNumCheckedOutStatementsAllUsers() throws SQLException
+    public int getStatementCacheNumCheckedOutStatementsAllUsers() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getStatementCacheNumCheckedOut();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getStatementCacheNumCheckedOut();
         return out;
     }
 
-    public synchronized int getStatementCacheNumConnectionsWithCachedStatementsAllUsers() throws SQLException
+    public int getStatementCacheNumConnectionsWithCachedStatementsAllUsers() throws SQLException
     {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
         int out = 0;
-        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
-            out += ((C3P0PooledConnectionPool) ii.next()).getStatementCacheNumConnectionsWithCachedStatements();
+        for (int i = 0; i < pools.length; ++i)
+            out += pools[i].getStatementCacheNumConnectionsWithCachedStatements();
         return out;
     }
 
+    /*
+     * Merges each pool's most missed SQL texts. A text may be tracked by some
+     * pools and not others, so merged counts may understate as well as overstate.
+     */
+    public StatementMissCount[] getStatementCacheTopMissesAllAuths() throws SQLException
+    {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
+        if (pools.length == 1)
+            return pools[0].getStatementCacheTopMisses();
+
+        Map sqlToMerged = new HashMap();
+        for (int i = 0; i < pools.length; ++i)
+        {
+            StatementMissCount[] misses = pools[i].getStatementCacheTopMisses();
+            for (int j = 0; j < misses.length; ++j)
+            {
+                StatementMissCount prior = (StatementMissCount) sqlToMerged.get( misses[j].getSql() );
+                if (prior == null)
+                    sqlToMerged.put( misses[j].getSql(), misses[j] );
+                else
+                    sqlToMerged.put( misses[j].getSql(), new StatementMissCount( misses[j].getSql(),
+                                                                                 prior.getNumMisses() + misses[j].getNumMisses(),
+                                                                                 prior.getMaxOvercount() + misses[j].getMaxOvercount() ) );
+            }
+        }
+        List out = new ArrayList( sqlToMerged.values() );
+        Collections.sort( out, StatementMissCount.DESCENDING_MISSES );
+        return (StatementMissCount[]) out.toArray( new StatementMissCount[ out.size() ] );
+    }
+
+    public OverdueCheckoutSite[] getOverdueCheckoutSitesAllAuths() throws SQLException
+    {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
+        if (pools.length == 1)
+            return pools[0].getOverdueCheckoutSites();
+
+        Map siteToMerged = new HashMap();
+        for (int i = 0; i < pools.length; ++i)
+        {
+            OverdueCheckoutSite[] sites = pools[i].getOverdueCheckoutSites();
+            for (int j = 0; j < sites.length; ++j)
+            {
+                OverdueCheckoutSite prior = (OverdueCheckoutSite) siteToMerged.get( sites[j].getSite() );
+                if (prior == null)
+                    siteToMerged.put( sites[j].getSite(), sites[j] );
+                else
+                    siteToMerged.put( sites[j].getSite(), new OverdueCheckoutSite( sites[j].getSite(), prior.getNumOverdue() + sites[j].getNumOverdue() ) );
+            }
+        }
+        List out = new ArrayList( siteToMerged.values() );
+        Collections.sort( out, OverdueCheckoutSite.DESCENDING_OVERDUE );
+        return (OverdueCheckoutSite[]) out.toArray( new OverdueCheckoutSite[ out.size() ] );
+    }
+
+    public ConnectionHoldTimes[] getConnectionHoldTimesAllAuths() throws SQLException
+    {
+        C3P0PooledConnectionPool[] pools = poolsSnapshot;
+        if (pools.length == 1)
+            return pools[0].getConnectionHoldTimes();
+
+        Map keyToMerged = new HashMap();
+        for (int i = 0; i < pools.length; ++i)
+        {
+            ConnectionHoldTimes[] holdTimes = pools[i].getConnectionHoldTimes();
+            for (int j = 0; j < holdTimes.length; ++j)
+            {
+                ConnectionHoldTimes prior = (ConnectionHoldTimes) keyToMerged.get( holdTimes[j].getKey() );
+                keyToMerged.put( holdTimes[j].getKey(), prior == null ? holdTimes[j] : prior.plus( holdTimes[j] ) );
+            }
+        }
+        List out = new ArrayList( keyToMerged.values() );
+        Collections.sort( out, ConnectionHoldTimes.DESCENDING_TOTAL_HOLD );
+        return (ConnectionHoldTimes[]) out.toArray( new ConnectionHoldTimes[ out.size() ] );
+    }
+
     public synchronized int getStatementDestroyerNumConnectionsInUseAllUsers() throws SQLException
     {
 	if ( deferredStatementDestroyer != null )
@@ -530,6 +863,51 @@ public final class C3P0PooledConnectionPoolManager
             ((C3P0PooledConnectionPool) ii.next()).reset();
     }
 
+    public synchronized void rebuildAllAuths() throws SQLException
+    {
+        for (Iterator ii = authsToPools.values().iterator(); ii.hasNext(); )
+            ((C3P0PooledConnectionPool) ii.next()).rebuild();
+    }
+
+    /**
+     * Applies the current dynamic configuration of our ConnectionPoolDataSource
+     * (and of any user overrides) to every live pool. Returns false if some pool
+     * cannot take its new configuration in place, in which case this manager
+     * should be replaced.
+     */
+    public synchronized boolean reconfigureAllAuths() throws SQLException
+    {
+        invalidatePoolConfigs();
+        for (Iterator ii = authsToPools.entrySet().iterator(); ii.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) ii.next();
+            PoolConfig pc = poolConfig( ((DbAuth) entry.getKey()).getUser() );
+            C3P0PooledConnectionPool pool = (C3P0PooledConnectionPool) entry.getValue();
+
+            boolean reconfigured = pool.reconfigure( pc.minPoolSize,
+                                                     pc.maxPoolSize,
+                                                     pc.acquireIncrement,
+                                                     pc.checkoutTimeout,
+                                                     pc.idleConnectionTestPeriod,
+                                                     pc.maxIdleTime,
+                                                     pc.maxIdleTimeExcessConnections,
+                                                     pc.maxConnectionAge,
+                                                     pc.propertyCycle,
+                                                     pc.unreturnedConnectionTimeout,
+                                                     pc.unreturnedConnectionReportTimeout,
+                                                     pc.debugUnreturnedConnectionStackTraces,
+                                                     pc.unreturnedConnectionStackTraceSampleRate,
+                                                     pc.connectionHoldTimeSampleRate,
+                                                     pc.testConnectionOnCheckout,
+                                                     pc.testConnectionOnCheckin,
+                                                     pc.maxStatements,
+                                                     pc.maxStatementsPerConnection );
+            if (! reconfigured )
+                return false;
+        }
+        return true;
+    }
+
     public void close()
     { this.close( true ); }
 
@@ -546,6 +924,134 @@ public final class C3P0PooledConnectionPoolManager
         this.close();
     }
 
+    /*
+     * A pool's settings, resolved once from user overrides, flatPropertyOverrides, the
+     * ConnectionPoolDataSource, and config defaults. Resolving means a reflective read
+     * and a parse for each of dozens of properties, which adds up when pools are created
+     * for many users, so we keep snapshots. Users without overrides all resolve to the
+     * same values, and share a single snapshot.
+     */
+    final static class PoolConfig
+    {
+	final int     minPoolSize;
+	final int     maxPoolSize;
+	final int     initialPoolSize;
+	final int     acquireIncrement;
+	final int     acquireRetryAttempts;
+	final int     acquireRetryDelay;
+	final String  acquireRetryPolicy;
+	final int     acquireRetryMaxDelay;
+	final int     acquireRetryBudget;
+	final boolean breakAfterAcquireFailure;
+	final int     circuitBreakerFailureThreshold;
+	final int     circuitBreakerResetDelay;
+	final int     maxConcurrentAcquisitions;
+	final int     checkoutTimeout;
+	final int     maxCheckoutTestFailures;
+	final int     connectionIsValidTimeout;
+	final int     idleConnectionTestPeriod;
+	final int     maxIdleTime;
+	final int     maxIdleTimeExcessConnections;
+	final int     maxConnectionAge;
+	final int     propertyCycle;
+	final int     unreturnedConnectionTimeout;
+	final int     unreturnedConnectionReportTimeout;
+	final boolean debugUnreturnedConnectionStackTraces;
+	final int     unreturnedConnectionStackTraceSampleRate;
+	final int     connectionHoldTimeSampleRate;
+	final boolean forceSynchronousCheckins;
+	final boolean testConnectionOnCheckout;
+	final boolean testConnectionOnCheckin;
+	final boolean attemptResurrectOnCheckin;
+	final int     maxStatements;
+	final int     maxStatementsPerConnection;
+	final int     statementCacheWarmUpCount;
+	final String  statementCacheWarmUpStatements;
+	final String  markSessionBoundaries;
+	final String  connectionTesterClassName;
+	final String  connectionCustomizerClassName;
+	final String  sessionContextApplierClassName;
+	final String  automaticTestTable;
+	final String  preferredTestQuery;
+
+	PoolConfig( C3P0PooledConnectionPoolManager mgr, String userName )
+	{
+	    this.minPoolSize                          = mgr.getMinPoolSize( userName );
+	    this.maxPoolSize                          = mgr.getMaxPoolSize( userName );
+	    this.initialPoolSize                      = mgr.getInitialPoolSize( userName );
+	    this.acquireIncrement                     = mgr.getAcquireIncrement( userName );
+	    this.acquireRetryAttempts                 = mgr.getAcquireRetryAttempts( userName );
+	    this.acquireRetryDelay                    = mgr.getAcquireRetryDelay( userName );
+	    this.acquireRetryPolicy                   = mgr.getAcquireRetryPolicy( userName );
+	    this.acquireRetryMaxDelay                 = mgr.getAcquireRetryMaxDelay( userName );
+	    this.acquireRetryBudget                   = mgr.getAcquireRetryBudget( userName );
+	    this.breakAfterAcquireFailure             = mgr.getBreakAfterAcquireFailure( userName );
+	    this.circuitBreakerFailureThreshold       = mgr.getCircuitBreakerFailureThreshold( userName );
+	    this.circuitBreakerResetDelay             = mgr.getCircuitBreakerResetDelay( userName );
+	    this.maxConcurrentAcquisitions            = mgr.getMaxConcurrentAcquisitions( userName );
+	    this.checkoutTimeout                      = mgr.getCheckoutTimeout( userName );
+	    this.maxCheckoutTestFailures              = mgr.getMaxCheckoutTestFailures( userName );
+	    this.connectionIsValidTimeout             = mgr.getConnectionIsValidTimeout( userName );
+	    this.idleConnectionTestPeriod             = mgr.getIdleConnectionTestPeriod( userName );
+	    this.maxIdleTime                          = mgr.getMaxIdleTime( userName );
+	    this.maxIdleTimeExcessConnections         = mgr.getMaxIdleTimeExcessConnections( userName );
+	    this.maxConnectionAge                     = mgr.getMaxConnectionAge( userName );
+	    this.propertyCycle                        = mgr.getPropertyCycle( userName );
+	    this.unreturnedConnectionTimeout          = mgr.getUnreturnedConnectionTimeout( userName );
+	    this.unreturnedConnectionReportTimeout    = mgr.getUnreturnedConnectionReportTimeout( userName );
+	    this.debugUnreturnedConnectionStackTraces = mgr.getDebugUnreturnedConnectionStackTraces( userName );
+	    this.unreturnedConnectionStackTraceSampleRate = mgr.getUnreturnedConnectionStackTraceSampleRate( userName );
+	    this.connectionHoldTimeSampleRate         = mgr.getConnectionHoldTimeSampleRate( userName );
+	    this.forceSynchronousCheckins             = mgr.getForceSynchronousCheckins( userName );
+	    this.testConnectionOnCheckout             = mgr.getTestConnectionOnCheckout( userName );
+	    this.testConnectionOnCheckin              = mgr.getTestConnectionOnCheckin( userName );
+	    this.attemptResurrectOnCheckin            = mgr.getAttemptResurrectOnCheckin( userName );
+	    this.maxStatements                        = mgr.getMaxStatements( userName );
+	    this.maxStatementsPerConnection           = mgr.getMaxStatementsPerConnection( userName );
+	    this.statementCacheWarmUpCount            = mgr.getStatementCacheWarmUpCount( userName );
+	    this.statementCacheWarmUpStatements       = mgr.getStatementCacheWarmUpStatements( userName );
+	    this.markSessionBoundaries                = mgr.getMarkSessionBoundaries( userName );
+	    this.connectionTesterClassName            = mgr.getConnectionTesterClassName( userName );
+	    this.connectionCustomizerClassName        = mgr.getConnectionCustomizerClassName( userName );
+	    this.sessionContextApplierClassName       = mgr.getSessionContextApplierClassName( userName );
+	    this.automaticTestTable                   = mgr.getAutomaticTestTable( userName );
+	    this.preferredTestQuery                   = mgr.getPreferredTestQuery( userName );
+	}
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private PoolConfig poolConfig( String userName )
+    {
+        assert Thread.holdsLock( this );
+
+        PoolConfig out;
+        if ( userName == null || !userOverrides.containsKey( userName ) )
+        {
+            if ( defaultPoolConfig == null )
+                defaultPoolConfig = new PoolConfig( this, null );
+            out = defaultPoolConfig;
+        }
+        else
+        {
+            out = (PoolConfig) userNamesToPoolConfigs.get( userName );
+            if ( out == null )
+            {
+                out = new PoolConfig( this, userName );
+                userNamesToPoolConfigs.put( userName, out );
+            }
+        }
+        return out;
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private void invalidatePoolConfigs()
+    {
+        assert Thread.holdsLock( this );
+
+        defaultPoolConfig = null;
+        userNamesToPoolConfigs.clear();
+    }
+
     private Object getObject(String propName, String userName)
     {
         Object out = null;
@@ -685,6 +1191,30 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
+    private int getStatementCacheWarmUpCount(String userName)
+    {
+        try
+        { return getInt("statementCacheWarmUpCount", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.statementCacheWarmUpCount();
+        }
+    }
+
+    private String getStatementCacheWarmUpStatements(String userName)
+    {
+        try
+        { return getString("statementCacheWarmUpStatements", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch String property", e);
+            return C3P0Defaults.statementCacheWarmUpStatements();
+        }
+    }
+
     private String getMarkSessionBoundaries(String userName)
     {
         try
@@ -733,6 +1263,66 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
+    private String getAcquireRetryPolicy(String userName)
+    {
+        try
+        { return getString("acquireRetryPolicy", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch String property", e);
+            return C3P0Defaults.acquireRetryPolicy();
+        }
+    }
+
+    private int getAcquireRetryMaxDelay(String userName)
+    {
+        try
+        { return getInt("acquireRetryMaxDelay", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.acquireRetryMaxDelay();
+        }
+    }
+
+    private int getAcquireRetryBudget(String userName)
+    {
+        try
+        { return getInt("acquireRetryBudget", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.acquireRetryBudget();
+        }
+    }
+
+    private int getCircuitBreakerFailureThreshold(String userName)
+    {
+        try
+        { return getInt("circuitBreakerFailureThreshold", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.circuitBreakerFailureThreshold();
+        }
+    }
+
+    private int getCircuitBreakerResetDelay(String userName)
+    {
+        try
+        { return getInt("circuitBreakerResetDelay", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.circuitBreakerResetDelay();
+        }
+    }
+
     private boolean getBreakAfterAcquireFailure(String userName)
     {
         try
@@ -757,6 +1347,30 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
+    private int getMaxConcurrentAcquisitions(String userName)
+    {
+        try
+        { return getInt("maxConcurrentAcquisitions", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxConcurrentAcquisitions();
+        }
+    }
+
+    private int getMaxCheckoutTestFailures(String userName)
+    {
+        try
+        { return getInt("maxCheckoutTestFailures", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxCheckoutTestFailures();
+        }
+    }
+
     private int getConnectionIsValidTimeout(String userName)
     {
         try
@@ -804,6 +1418,42 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
+    private int getUnreturnedConnectionReportTimeout(String userName)
+    {
+        try
+        { return getInt("unreturnedConnectionReportTimeout", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.unreturnedConnectionReportTimeout();
+        }
+    }
+
+    private int getUnreturnedConnectionStackTraceSampleRate(String userName)
+    {
+        try
+        { return getInt("unreturnedConnectionStackTraceSampleRate", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.unreturnedConnectionStackTraceSampleRate();
+        }
+    }
+
+    private int getConnectionHoldTimeSampleRate(String userName)
+    {
+        try
+        { return getInt("connectionHoldTimeSampleRate", userName ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.connectionHoldTimeSampleRate();
+        }
+    }
+
     private boolean getTestConnectionOnCheckout(String userName)
     {
         try
@@ -867,9 +1517,6 @@ public final class C3P0PooledConnectionPoolManager
     private String getConnectionTesterClassName(String userName)
     { return getString("connectionTesterClassName", userName ); }
 
-    private ConnectionTester getConnectionTester(String userName)
-    { return C3P0Registry.getConnectionTester( getConnectionTesterClassName( userName ) ); }
-
     // userName should always be null here, we don't support per-user config of task runner factories
     private String getTaskRunnerFactoryClassName(String userName)
     { return getString("taskRunnerFactoryClassName", userName ); }
@@ -881,8 +1528,8 @@ public final class C3P0PooledConnectionPoolManager
     private String getConnectionCustomizerClassName(String userName)
     { return getString("connectionCustomizerClassName", userName ); }
 
-    private ConnectionCustomizer getConnectionCustomizer(String userName) throws SQLException
-    { return C3P0Registry.getConnectionCustomizer( getConnectionCustomizerClassName( userName ) ); }
+    private String getSessionContextApplierClassName(String userName)
+    { return getString("sessionContextApplierClassName", userName ); }
 
     private int getMaxIdleTimeExcessConnections(String userName)
     {
@@ -956,6 +1603,106 @@ public final class C3P0PooledConnectionPoolManager
         }
     }
 
+    private int getMaxTotalConcurrentAcquisitions()
+    {
+        try
+        { return getInt("maxTotalConcurrentAcquisitions", null ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxTotalConcurrentAcquisitions();
+        }
+    }
+
+    private int getMaxTotalConnections()
+    {
+        try
+        { return getInt("maxTotalConnections", null ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxTotalConnections();
+        }
+    }
+
+    private int getMaxGroupConnections()
+    {
+        try
+        { return getInt("maxGroupConnections", null ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxGroupConnections();
+        }
+    }
+
+    private String getConnectionBudgetGroup()
+    { return getString("connectionBudgetGroup", null ); }
+
+    /*
+     * DataSources that set maxGroupConnections but name no connectionBudgetGroup
+     * share a budget with the other DataSources that connect to the same JDBC URL.
+     * Group names are public, via C3P0Registry.getConnectionBudgetGroupNames(), and
+     * JDBC URLs may carry credentials, so the group is named for a digest of the URL.
+     */
+    private String findConnectionBudgetGroup( int max_group_connections )
+    {
+        String out = this.getConnectionBudgetGroup();
+        if (out == null && max_group_connections > 0)
+        {
+            DataSource nested = ( cpds instanceof WrapperConnectionPoolDataSource ? ((WrapperConnectionPoolDataSource) cpds).getNestedDataSource() : null );
+            if (nested instanceof com.mchange.v2.c3p0.DriverManagerDataSource)
+            {
+                String jdbcUrl = ((com.mchange.v2.c3p0.DriverManagerDataSource) nested).getJdbcUrl();
+                if (jdbcUrl != null)
+                    out = jdbcUrlBudgetGroup( jdbcUrl );
+            }
+
+            if (out == null && logger.isLoggable( MLevel.WARNING ))
+                logger.log( MLevel.WARNING, "maxGroupConnections is set to " + max_group_connections + ", but no connectionBudgetGroup is set, " +
+                            "and no JDBC URL could be found to group DataSources by. maxGroupConnections will be ignored." );
+        }
+        return out;
+    }
+
+    private static String jdbcUrlBudgetGroup( String jdbcUrl )
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+            return "jdbcUrl-sha256:" + ByteUtils.toLowercaseHexAscii( md.digest( jdbcUrl.getBytes( "UTF-8" ) ) );
+        }
+        catch (Exception e) // every JVM supports SHA-256 and UTF-8
+        { throw new InternalError( e.toString() ); }
+    }
+
+    private int getMaxUserPools()
+    {
+        try
+        { return getInt("maxUserPools", null ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.maxUserPools();
+        }
+    }
+
+    private int getUserPoolIdleTimeout()
+    {
+        try
+        { return getInt("userPoolIdleTimeout", null ); }
+        catch (Exception e)
+        {
+            if ( logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Could not fetch int property", e);
+            return C3P0Defaults.userPoolIdleTimeout();
+        }
+    }
+
     private int getStatementCacheNumDeferredCloseThreads()
     {
         try
@@ -985,7 +1732,8 @@ public final class C3P0PooledConnectionPoolManager
     private C3P0PooledConnectionPool createPooledConnectionPool(DbAuth auth) throws SQLException
     {
         String userName = auth.getUser();
-        String automaticTestTable = getAutomaticTestTable( userName );
+        PoolConfig pc = poolConfig( userName );
+        String automaticTestTable = pc.automaticTestTable;
         String realTestQuery;
 
         if (automaticTestTable != null && automaticTestTable.length() > 0)
@@ -995,7 +1743,7 @@ public final class C3P0PooledConnectionPoolManager
             else
             {
                 realTestQuery = initializeAutomaticTestTable( automaticTestTable, auth );
-                if (this.getPreferredTestQuery( userName ) != null)
+                if (pc.preferredTestQuery != null)
                 {
                     if ( logger.isLoggable( MLevel.WARNING ) )
                     {
@@ -1034,36 +1782,49 @@ public final class C3P0PooledConnectionPoolManager
 	    if (! defaultAuth.equals( auth ))
 		ensureFirstConnectionAcquisition( auth );
 
-            realTestQuery = this.getPreferredTestQuery( userName );
+            realTestQuery = pc.preferredTestQuery;
         }
 
         C3P0PooledConnectionPool out =  new C3P0PooledConnectionPool( cpds,
 								      auth,
-								      this.getMinPoolSize( userName ),
-								      this.getMaxPoolSize( userName ),
-								      this.getInitialPoolSize( userName ),
-								      this.getAcquireIncrement( userName ),
-								      this.getAcquireRetryAttempts( userName ),
-								      this.getAcquireRetryDelay( userName ),
-								      this.getBreakAfterAcquireFailure( userName ),
-								      this.getCheckoutTimeout( userName ),
-								      this.getConnectionIsValidTimeout( userName ),
-								      this.getIdleConnectionTestPeriod( userName ),
-								      this.getMaxIdleTime( userName ),
-								      this.getMaxIdleTimeExcessConnections( userName ),
-								      this.getMaxConnectionAge( userName ),
-								      this.getPropertyCycle( userName ),
-								      this.getUnreturnedConnectionTimeout( userName ),
-								      this.getDebugUnreturnedConnectionStackTraces( userName ),
-								      this.getForceSynchronousCheckins( userName ),
-								      this.getTestConnectionOnCheckout( userName ),
-								      this.getTestConnectionOnCheckin( userName ),
-                                                                      this.getAttemptResurrectOnCheckin( userName ),
-								      this.getMaxStatements( userName ),
-								      this.getMaxStatementsPerConnection( userName ),
-								      this.getMarkSessionBoundaries( userName ),
-								      this.getConnectionTester( userName ),
-								      this.getConnectionCustomizer( userName ),
+								      pc.minPoolSize,
+								      pc.maxPoolSize,
+								      pc.initialPoolSize,
+								      pc.acquireIncrement,
+								      pc.acquireRetryAttempts,
+								      pc.acquireRetryDelay,
+								      pc.acquireRetryPolicy,
+								      pc.acquireRetryMaxDelay,
+								      pc.acquireRetryBudget,
+								      pc.breakAfterAcquireFailure,
+								      pc.circuitBreakerFailureThreshold,
+								      pc.circuitBreakerResetDelay,
+								      pc.maxConcurrentAcquisitions,
+								      pc.checkoutTimeout,
+								      pc.maxCheckoutTestFailures,
+								      pc.connectionIsValidTimeout,
+								      pc.idleConnectionTestPeriod,
+								      pc.maxIdleTime,
+								      pc.maxIdleTimeExcessConnections,
+								      pc.maxConnectionAge,
+								      pc.propertyCycle,
+								      pc.unreturnedConnectionTimeout,
+								      pc.unreturnedConnectionReportTimeout,
+								      pc.debugUnreturnedConnectionStackTraces,
+								      pc.unreturnedConnectionStackTraceSampleRate,
+								      pc.connectionHoldTimeSampleRate,
+								      pc.forceSynchronousCheckins,
+								      pc.testConnectionOnCheckout,
+								      pc.testConnectionOnCheckin,
+                                                                      pc.attemptResurrectOnCheckin,
+								      pc.maxStatements,
+								      pc.maxStatementsPerConnection,
+								      pc.statementCacheWarmUpCount,
+								      pc.statementCacheWarmUpStatements,
+								      pc.markSessionBoundaries,
+								      C3P0Registry.getConnectionTester( pc.connectionTesterClassName ),
+								      C3P0Registry.getConnectionCustomizer( pc.connectionCustomizerClassName ),
+								      C3P0Registry.getSessionContextApplier( pc.sessionContextApplierClassName ),
 								      realTestQuery,
 								      rpfact,
 								      taskRunner,
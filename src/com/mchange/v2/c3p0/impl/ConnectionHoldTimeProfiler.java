@@ -0,0 +1,99 @@
+package com.mchange.v2.c3p0.impl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import com.mchange.v2.c3p0.ConnectionHoldTag;
+import com.mchange.v2.c3p0.ConnectionHoldTimes;
+import com.mchange.v2.resourcepool.CallSites;
+import com.mchange.v2.resourcepool.LatencyHistogram;
+
+/**
+ *  Attributes the hold times of one in every sampleRate client checkouts to a key,
+ *  the checking-out Thread's ConnectionHoldTag if it has one, otherwise its call site,
+ *  described by CallSites just as overdue checkouts' sites are. Keys beyond MAX_KEYS are
+ *  lumped together under OTHER_KEY, so that memory stays bounded whatever tags or call
+ *  sites an application has. Checkouts that are not sampled cost an atomic increment.
+ */
+final class ConnectionHoldTimeProfiler
+{
+    final static int MAX_KEYS = 64;
+
+    final static String OTHER_KEY = "[untracked tags and call sites]";
+
+    final static ConnectionHoldTimes[] NO_HOLD_TIMES = new ConnectionHoldTimes[0];
+
+    //MT: may be changed by reconfiguration, affecting subsequent checkouts
+    volatile int sampleRate;
+
+    //MT: thread-safe
+    final AtomicLong checkouts = new AtomicLong();
+    final ConcurrentHashMap pcsToHolds = new ConcurrentHashMap(); // sampled checkouts outstanding, PooledConnection -> Hold
+    final ConcurrentHashMap keysToHistograms = new ConcurrentHashMap();
+
+    ConnectionHoldTimeProfiler( int sampleRate )
+    { this.sampleRate = sampleRate; }
+
+    void setSampleRate( int sampleRate )
+    { this.sampleRate = sampleRate; }
+
+    void noteCheckout( Object pc )
+    {
+	int rate = sampleRate;
+	if ( rate > 1 && checkouts.incrementAndGet() % rate != 0 )
+	    return;
+
+	String key = ConnectionHoldTag.get();
+	if ( key == null )
+	    key = CallSites.describe( new Throwable().getStackTrace() );
+	pcsToHolds.put( pc, new Hold( key, System.currentTimeMillis() ) );
+    }
+
+    // may be called more than once for a checkout, e.g. on checkin and on destruction
+    void noteCheckin( Object pc )
+    {
+	Hold hold = (Hold) pcsToHolds.remove( pc );
+	if ( hold != null )
+	    histogram( hold.key ).record( System.currentTimeMillis() - hold.start );
+    }
+
+    ConnectionHoldTimes[] getHoldTimes()
+    {
+	List out = new ArrayList( keysToHistograms.size() );
+	for ( Iterator ii = keysToHistograms.entrySet().iterator(); ii.hasNext(); )
+	    {
+		Map.Entry entry = (Map.Entry) ii.next();
+		out.add( new ConnectionHoldTimes( (String) entry.getKey(), ((LatencyHistogram) entry.getValue()).snapshot() ) );
+	    }
+	Collections.sort( out, ConnectionHoldTimes.DESCENDING_TOTAL_HOLD );
+	return (ConnectionHoldTimes[]) out.toArray( new ConnectionHoldTimes[ out.size() ] );
+    }
+
+    // the bound on keys may be overshot slightly by concurrent checkins, never by much
+    private LatencyHistogram histogram( String key )
+    {
+	LatencyHistogram out = (LatencyHistogram) keysToHistograms.get( key );
+	if ( out == null )
+	    {
+		if ( keysToHistograms.size() >= MAX_KEYS )
+		    key = OTHER_KEY;
+		LatencyHistogram fresh = new LatencyHistogram();
+		out = (LatencyHistogram) keysToHistograms.putIfAbsent( key, fresh );
+		if ( out == null )
+		    out = fresh;
+	    }
+	return out;
+    }
+
+    final static class Hold
+    {
+	final String key;
+	final long   start;
+
+	Hold( String key, long start )
+	{
+	    this.key   = key;
+	    this.start = start;
+	}
+    }
+}
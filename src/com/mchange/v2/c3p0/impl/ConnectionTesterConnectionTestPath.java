@@ -2,6 +2,7 @@ package com.mchange.v2.c3p0.impl;
 
 import java.util.LinkedList;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import javax.sql.PooledConnection;
 
@@ -48,47 +49,58 @@ final class ConnectionTesterConnectionTestPath implements ConnectionTestPath
         Throwable rootCause = null;
         try
         {
-            // if this is a c3p0 pooled-connection, let's get underneath the
-            // proxy wrapper, and test the physical connection sometimes.
-            // this is faster, when the testQuery would not otherwise be cached,
-            // and it avoids a potential statusOnException() double-check by the
-            // PooledConnection implementation should the test query provoke an
-            // Exception
-            Connection testConn;
-            if (scache != null) //when there is a statement cache...
+            if (testQuery != null && connectionTesterIsDefault && pc instanceof NewPooledConnection)
             {
-                // if it's the slow, default query, faster to test the raw Connection
-                if (testQuery == null && connectionTesterIsDefault && c3p0PooledConnections)
-                    testConn = ((AbstractC3P0PooledConnection) pc).getPhysicalConnection();
-                else //test will likely be faster on the proxied Connection, because the test query is probably cached
-                    testConn = (proxyConn == null ? (openedConn = pc.getConnection()) : proxyConn);
+                // reuse a test statement prepared once per physical Connection, rather than
+                // creating a Statement and having the database parse the query for every test
+                throwableHolder = thp.getThrowableHolder();
+                PreparedStatement testStatement = ((NewPooledConnection) pc).testStatement( testQuery );
+                status = ((DefaultConnectionTester) connectionTester).activeCheckConnection( testStatement, testQuery, throwableHolder );
             }
-            else //where there's no statement cache, better to use the physical connection, if we can get it
-            {
-                if (c3p0PooledConnections)
-                    testConn = ((AbstractC3P0PooledConnection) pc).getPhysicalConnection();
-                else
-                    testConn = (proxyConn == null ? (openedConn = pc.getConnection()) : proxyConn);
-            }
-
-            if ( testQuery == null )
-                status = connectionTester.activeCheckConnection( testConn );
             else
             {
-                if (connectionTester instanceof UnifiedConnectionTester)
+                // if this is a c3p0 pooled-connection, let's get underneath the
+                // proxy wrapper, and test the physical connection sometimes.
+                // this is faster, when the testQuery would not otherwise be cached,
+                // and it avoids a potential statusOnException() double-check by the
+                // PooledConnection implementation should the test query provoke an
+                // Exception
+                Connection testConn;
+                if (scache != null) //when there is a statement cache...
                 {
-                    throwableHolder = thp.getThrowableHolder();
-                    status = ((UnifiedConnectionTester) connectionTester).activeCheckConnection( testConn, testQuery, throwableHolder );
+                    // if it's the slow, default query, faster to test the raw Connection
+                    if (testQuery == null && connectionTesterIsDefault && c3p0PooledConnections)
+                        testConn = ((AbstractC3P0PooledConnection) pc).getPhysicalConnection();
+                    else //test will likely be faster on the proxied Connection, because the test query is probably cached
+                        testConn = (proxyConn == null ? (openedConn = pc.getConnection()) : proxyConn);
                 }
-                else if (connectionTester instanceof QueryConnectionTester)
-                    status = ((QueryConnectionTester) connectionTester).activeCheckConnection( testConn, testQuery );
-                else
+                else //where there's no statement cache, better to use the physical connection, if we can get it
                 {
-                    logger.warning("[c3p0] testQuery '" + testQuery +
-                                    "' ignored. Please set a ConnectionTester that implements " +
-                                    "com.mchange.v2.c3p0.QueryConnectionTester, or use the " +
-                                    "DefaultConnectionTester, to test with the testQuery.");
+                    if (c3p0PooledConnections)
+                        testConn = ((AbstractC3P0PooledConnection) pc).getPhysicalConnection();
+                    else
+                        testConn = (proxyConn == null ? (openedConn = pc.getConnection()) : proxyConn);
+                }
+
+                if ( testQuery == null )
                     status = connectionTester.activeCheckConnection( testConn );
+                else
+                {
+                    if (connectionTester instanceof UnifiedConnectionTester)
+                    {
+                        throwableHolder = thp.getThrowableHolder();
+                        status = ((UnifiedConnectionTester) connectionTester).activeCheckConnection( testConn, testQuery, throwableHolder );
+                    }
+                    else if (connectionTester instanceof QueryConnectionTester)
+                        status = ((QueryConnectionTester) connectionTester).activeCheckConnection( testConn, testQuery );
+                    else
+                    {
+                        logger.warning("[c3p0] testQuery '" + testQuery +
+                                        "' ignored. Please set a ConnectionTester that implements " +
+                                        "com.mchange.v2.c3p0.QueryConnectionTester, or use the " +
+                                        "DefaultConnectionTester, to test with the testQuery.");
+                        status = connectionTester.activeCheckConnection( testConn );
+                    }
                 }
             }
         }
@@ -128,7 +140,7 @@ final class ConnectionTesterConnectionTestPath implements ConnectionTestPath
         case ConnectionTester.CONNECTION_IS_OKAY:
             break; //no problem, babe
         case ConnectionTester.DATABASE_IS_INVALID:
-            rp.resetPool();
+            rp.rebuildPool();
             //intentional cascade...
         case ConnectionTester.CONNECTION_IS_INVALID:
             Exception throwMe;
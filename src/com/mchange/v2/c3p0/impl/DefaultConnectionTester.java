@@ -251,38 +251,8 @@ public final class DefaultConnectionTester extends AbstractConnectionTester
                 //rs.next();
                 return CONNECTION_IS_OKAY;
             }
-            catch (SQLException e)
-            {
-                if (Debug.DEBUG && logger.isLoggable( MLevel.FINE ) )
-                    logger.log( MLevel.FINE, "Connection " + c + " failed Connection test with an Exception! [query=" + query + "]", e );
-
-                if (rootCauseOutParamHolder != null)
-                    rootCauseOutParamHolder[0] = e;
-
-                String state = e.getSQLState();
-                if ( INVALID_DB_STATES.contains( state ) )
-                {
-                    if (logger.isLoggable(MLevel.WARNING))
-                        logger.log(MLevel.WARNING,
-                                        "SQL State '" + state +
-                                        "' of Exception which occurred during a Connection test (test with query '" + query +
-                                        "') implies that the database is invalid, " +
-                                        "and the pool should refill itself with fresh Connections.", e);
-                    return DATABASE_IS_INVALID;
-                }
-                else
-                    return CONNECTION_IS_INVALID;
-            }
             catch (Exception e)
-            {
-                if ( Debug.DEBUG && logger.isLoggable( MLevel.FINE ))
-                    logger.log( MLevel.FINE, "Connection " + c + " failed Connection test with an Exception!", e );
-
-                if (rootCauseOutParamHolder != null)
-                    rootCauseOutParamHolder[0] = e;
-
-                return CONNECTION_IS_INVALID;
-            }
+            { return statusOnFailedTest( c, query, e, rootCauseOutParamHolder ); }
             finally
             {
                 ResultSetUtils.attemptClose( rs );
@@ -294,6 +264,62 @@ public final class DefaultConnectionTester extends AbstractConnectionTester
         }
     }
 
+    /**
+     * Tests the Connection on which <code>testStatement</code> was prepared, by executing it.
+     * The ResultSet is closed, but <code>testStatement</code> is left open, so that it may be
+     * reused for subsequent tests of the same Connection, sparing a Statement creation and a parse
+     * of the test query per test.
+     *
+     * @param query the query <code>testStatement</code> was prepared from, for diagnostics only
+     */
+    public int activeCheckConnection(PreparedStatement testStatement, String query, Throwable[] rootCauseOutParamHolder)
+    {
+        ResultSet rs = null;
+        try
+        {
+            rs = testStatement.executeQuery();
+            return CONNECTION_IS_OKAY;
+        }
+        catch (Exception e)
+        { return statusOnFailedTest( null, query, e, rootCauseOutParamHolder ); }
+        finally
+        { ResultSetUtils.attemptClose( rs ); }
+    }
+
+    // c may be null, it is used only in log messages
+    private int statusOnFailedTest(Connection c, String query, Exception e, Throwable[] rootCauseOutParamHolder)
+    {
+        if (rootCauseOutParamHolder != null)
+            rootCauseOutParamHolder[0] = e;
+
+        if (e instanceof SQLException)
+        {
+            if (Debug.DEBUG && logger.isLoggable( MLevel.FINE ) )
+                logger.log( MLevel.FINE, "Connection " + (c == null ? "" : c + " ") + "failed Connection test with an Exception! [query=" + query + "]", e );
+
+            String state = ((SQLException) e).getSQLState();
+            if ( INVALID_DB_STATES.contains( state ) )
+            {
+                if (logger.isLoggable(MLevel.WARNING))
+                    logger.log(MLevel.WARNING,
+                                    "SQL State '" + state +
+                                    "' of Exception which occurred during a Connection test (test with query '" + query +
+                                    "') implies that the database is invalid, " +
+                                    "and the pool should refill itself with fresh Connections.", e);
+                return DATABASE_IS_INVALID;
+            }
+            else
+                return CONNECTION_IS_INVALID;
+        }
+        else
+        {
+            if ( Debug.DEBUG && logger.isLoggable( MLevel.FINE ))
+                logger.log( MLevel.FINE, "Connection " + (c == null ? "" : c + " ") + "failed Connection test with an Exception!", e );
+
+            return CONNECTION_IS_INVALID;
+        }
+    }
+
     public int statusOnException(Connection c, Throwable t, String query, Throwable[] rootCauseOutParamHolder)
     {
 //      if (Debug.DEBUG && Debug.TRACE == Debug.TRACE_MAX && logger.isLoggable( MLevel.FINER ) )
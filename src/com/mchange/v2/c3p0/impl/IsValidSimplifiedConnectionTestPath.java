@@ -59,7 +59,7 @@ final class IsValidSimplifiedConnectionTestPath implements ConnectionTestPath
 	catch (SQLException e)
 	{
 	    if ( DefaultConnectionTester.probableInvalidDb(e) )
-		rp.resetPool();
+		rp.rebuildPool();
 	    throw e;
 	}
 	catch (Exception e) // some unexpected Exception
@@ -19,9 +19,6 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
     private final static SQLException NORMAL_CLOSE_PLACEHOLDER = new SQLException("This pooled Connection was explicitly close()ed by " +
     "a client, not invalidated due to an error.");
     
-    //MT: protected by class lock
-    static Set holdabilityBugKeys = null;
-
     //MT: thread-safe post-constructor constants
     final Connection             physicalConnection;
     final ConnectionTester       connectionTester;
@@ -49,6 +46,8 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
     Set                  metaDataResultSets        = new HashSet();
     Set                  rawConnectionResultSets   = null;          //very rarely used, so we lazy initialize...
     boolean              connection_error_signaled = false;
+    PreparedStatement    testStatement             = null;          //lazily prepared, reused by Connection tests
+    String               testStatementQuery        = null;
 
     //MT: thread-safe, volatile
     volatile NewProxyConnection exposedProxy  = null;
@@ -67,6 +66,20 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
 			       String  preferredTestQuery,
 			       ConnectionCustomizer cc,
 			       String pdsIdt) throws SQLException
+    {
+	this( con, connectionTester, connectionIsValidTimeout, autoCommitOnClose, forceIgnoreUnresolvedTransactions, preferredTestQuery, cc, pdsIdt, null );
+    }
+
+    // if sessionDefaultsCache is null, session defaults are probed directly from the Connection
+    public NewPooledConnection(Connection con, 
+			       ConnectionTester connectionTester,
+			       int connectionIsValidTimeout,
+			       boolean autoCommitOnClose, 
+			       boolean forceIgnoreUnresolvedTransactions,
+			       String  preferredTestQuery,
+			       ConnectionCustomizer cc,
+			       String pdsIdt,
+			       SessionDefaultsCache sessionDefaultsCache) throws SQLException
     { 
         try
         {
@@ -82,90 +95,22 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
         this.autoCommitOnClose                 = autoCommitOnClose;
         this.forceIgnoreUnresolvedTransactions = forceIgnoreUnresolvedTransactions;
         this.preferredTestQuery                = preferredTestQuery;
-        this.supports_setHoldability           = C3P0ImplUtils.supportsMethod(con, "setHoldability", new Class[]{ int.class });
-        this.supports_setReadOnly              = C3P0ImplUtils.supportsMethod(con, "setReadOnly", new Class[]{ boolean.class });
-        this.supports_setTypeMap               = C3P0ImplUtils.supportsMethod(con, "setTypeMap", new Class[]{ Map.class });
-        this.dflt_txn_isolation                = con.getTransactionIsolation();
-        this.dflt_catalog                      = con.getCatalog();
-        this.dflt_holdability                  = (supports_setHoldability ? carefulCheckHoldability(con) : ResultSet.CLOSE_CURSORS_AT_COMMIT);
-        this.dflt_readOnly                     = (supports_setReadOnly ? carefulCheckReadOnly(con) : false);
-        this.dflt_typeMap                      = (supports_setTypeMap && (carefulCheckTypeMap(con) == null) ? null : Collections.EMPTY_MAP);
+
+        // the ConnectionCustomizer has had its chance to modify the Connection, so we capture defaults now
+        SessionDefaults sd = (sessionDefaultsCache == null ? SessionDefaults.probe( con ) : sessionDefaultsCache.find( con ));
+
+        this.supports_setHoldability           = sd.supports_setHoldability;
+        this.supports_setReadOnly              = sd.supports_setReadOnly;
+        this.supports_setTypeMap               = sd.supports_setTypeMap;
+        this.dflt_txn_isolation                = sd.txn_isolation;
+        this.dflt_catalog                      = sd.catalog;
+        this.dflt_holdability                  = sd.holdability;
+        this.dflt_readOnly                     = sd.readOnly;
+        this.dflt_typeMap                      = sd.typeMap;
         this.ces                               = new ConnectionEventSupport(this);
         this.ses                               = new StatementEventSupport(this);
     }
 
-    private static int carefulCheckHoldability(Connection con)
-    {
-        try { return con.getHoldability(); }
-        catch (Exception e)
-        {
-            if (false)
-            {
-                if (logger.isLoggable(MLevel.FINER))
-                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
-                                    "holdability. This is not usually a problem! It just means the Connection " +
-                                    "doesn't support the holdability property, and c3p0 works around this.", e);
-            }
-            return ResultSet.CLOSE_CURSORS_AT_COMMIT;
-        }
-        catch (Error e) // Some DB2 drivers apparently throw an Error here, but I'm not comfortable swallowing Errors
-        {
-            synchronized (NewPooledConnection.class)
-            {
-                if (holdabilityBugKeys == null)
-                    holdabilityBugKeys = new HashSet();
-                String hbk = holdabilityBugKey(con, e);
-                if (! holdabilityBugKeys.contains(hbk) )
-                {
-                    if (logger.isLoggable(MLevel.WARNING))
-                        logger.log(MLevel.WARNING, con + " threw an Error when we tried to check its default " +
-                                        "holdability. This is probably due to a bug in your JDBC driver that c3p0 can harmlessly " +
-                                        "work around (reported for some DB2 drivers). Please verify that the error stack trace is consistent" +
-                                        "with the getHoldability() method not being properly implemented, and is not due to some deeper problem. " +
-                                        "This message will not be repeated for Connections of type " + con.getClass().getName() + " that " +
-                                        "provoke errors of type " + e.getClass().getName() + " when getHoldability() is called.", e);
-                    holdabilityBugKeys.add(hbk);
-                }
-            }
-            return ResultSet.CLOSE_CURSORS_AT_COMMIT;
-        }
-    }
-        
-    private static String holdabilityBugKey(Connection con, Error err)
-    { return con.getClass().getName() + '|' + err.getClass().getName(); }
-
-    private static boolean carefulCheckReadOnly(Connection con)
-    {
-        try { return con.isReadOnly(); }
-        catch (Exception e)
-        {
-            if (false)
-            {
-                if (logger.isLoggable(MLevel.FINER))
-                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
-                                    "read only state. This is not usually a problem! It just means the Connection " +
-                                    "doesn't support the readOnly property, and c3p0 works around this.", e);
-            }
-            return false;
-        }
-    }
-
-    private static Map carefulCheckTypeMap(Connection con)
-    {
-        try { return con.getTypeMap(); }
-        catch (Exception e)
-        {
-            if (false)
-            {
-                if (logger.isLoggable(MLevel.FINER))
-                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
-                                    "type map. This is not usually a problem! It just means the Connection " +
-                                    "doesn't support the typeMap property, and c3p0 works around this.", e);
-            }
-            return null;
-        }
-    }
-
     // debug
     //volatile Exception firstPull = null;
     public synchronized Connection getConnection() throws SQLException
@@ -219,6 +164,28 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
         }
     }
 
+    // prepared on the physical Connection on first use, reused by subsequent
+    // Connection tests, and closed along with the physical Connection
+    synchronized PreparedStatement testStatement( String query ) throws SQLException
+    {
+        if ( testStatement == null || !query.equals( testStatementQuery ) )
+        {
+            if ( testStatement != null )
+            {
+                try { testStatement.close(); }
+                catch ( SQLException e )
+                {
+                    if (logger.isLoggable( MLevel.FINER ))
+                        logger.log( MLevel.FINER, "Failed to close superseded Connection test statement: " + testStatement, e );
+                }
+                testStatement = null;
+            }
+            testStatement = physicalConnection.prepareStatement( query );
+            testStatementQuery = query;
+        }
+        return testStatement;
+    }
+
     synchronized void closeMaybeCheckedOut( boolean checked_out ) throws SQLException
     { close( null, checked_out ); }
 
@@ -594,6 +561,15 @@ public final class NewPooledConnection extends AbstractC3P0PooledConnection{
             catch ( SQLException e )
             { closeExceptions.add(e); }
 
+            // cleanup the Connection test statement
+            if ( testStatement != null )
+            {
+                try { testStatement.close(); }
+                catch ( SQLException e )
+                { closeExceptions.add(e); }
+                testStatement = null;
+            }
+
 	    if ( forced )
 		{
 		    // reset transaction state
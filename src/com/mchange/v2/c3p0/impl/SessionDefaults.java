@@ -0,0 +1,152 @@
+package com.mchange.v2.c3p0.impl;
+
+import java.util.*;
+import java.sql.*;
+import com.mchange.v2.log.*;
+import com.mchange.v2.lang.ObjectUtils;
+
+/*
+ *  The session properties a fresh physical Connection starts out with, which
+ *  NewPooledConnection restores on checkin if clients have modified them.
+ *
+ *  MT: immutable
+ */
+final class SessionDefaults
+{
+    private final static MLogger logger = MLog.getLogger( SessionDefaults.class );
+
+    //MT: protected by class lock
+    static Set holdabilityBugKeys = null;
+
+    final boolean supports_setHoldability;
+    final boolean supports_setReadOnly;
+    final boolean supports_setTypeMap;
+    final int     txn_isolation;
+    final String  catalog;
+    final int     holdability;
+    final boolean readOnly;
+    final Map     typeMap;
+
+    static SessionDefaults probe( Connection con ) throws SQLException
+    { return new SessionDefaults( con ); }
+
+    private SessionDefaults( Connection con ) throws SQLException
+    {
+        this.supports_setHoldability = C3P0ImplUtils.supportsMethod(con, "setHoldability", new Class[]{ int.class });
+        this.supports_setReadOnly    = C3P0ImplUtils.supportsMethod(con, "setReadOnly", new Class[]{ boolean.class });
+        this.supports_setTypeMap     = C3P0ImplUtils.supportsMethod(con, "setTypeMap", new Class[]{ Map.class });
+        this.txn_isolation           = con.getTransactionIsolation();
+        this.catalog                 = con.getCatalog();
+        this.holdability             = (supports_setHoldability ? carefulCheckHoldability(con) : ResultSet.CLOSE_CURSORS_AT_COMMIT);
+        this.readOnly                = (supports_setReadOnly ? carefulCheckReadOnly(con) : false);
+        this.typeMap                 = (supports_setTypeMap && (carefulCheckTypeMap(con) == null) ? null : Collections.EMPTY_MAP);
+    }
+
+    public boolean equals( Object o )
+    {
+	if (this == o) return true;
+	if (! (o instanceof SessionDefaults)) return false;
+	SessionDefaults other = (SessionDefaults) o;
+	return
+	    this.supports_setHoldability == other.supports_setHoldability &&
+	    this.supports_setReadOnly == other.supports_setReadOnly &&
+	    this.supports_setTypeMap == other.supports_setTypeMap &&
+	    this.txn_isolation == other.txn_isolation &&
+	    ObjectUtils.eqOrBothNull( this.catalog, other.catalog ) &&
+	    this.holdability == other.holdability &&
+	    this.readOnly == other.readOnly &&
+	    this.typeMap == other.typeMap; // always null or Collections.EMPTY_MAP
+    }
+
+    public int hashCode()
+    {
+	return
+	    txn_isolation ^
+	    ObjectUtils.hashOrZero( catalog ) ^
+	    (holdability << 4) ^
+	    (readOnly ? 1 << 8 : 0) ^
+	    (typeMap == null ? 1 << 9 : 0);
+    }
+
+    public String toString()
+    {
+	return
+	    this.getClass().getName() + " [ transactionIsolation -> " + txn_isolation +
+	    ", catalog -> " + catalog +
+	    ", holdability -> " + holdability +
+	    ", readOnly -> " + readOnly +
+	    ", typeMap -> " + (typeMap == null ? "null" : "{}") + " ]";
+    }
+
+    private static int carefulCheckHoldability(Connection con)
+    {
+        try { return con.getHoldability(); }
+        catch (Exception e)
+        {
+            if (false)
+            {
+                if (logger.isLoggable(MLevel.FINER))
+                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
+                                    "holdability. This is not usually a problem! It just means the Connection " +
+                                    "doesn't support the holdability property, and c3p0 works around this.", e);
+            }
+            return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+        }
+        catch (Error e) // Some DB2 drivers apparently throw an Error here, but I'm not comfortable swallowing Errors
+        {
+            synchronized (SessionDefaults.class)
+            {
+                if (holdabilityBugKeys == null)
+                    holdabilityBugKeys = new HashSet();
+                String hbk = holdabilityBugKey(con, e);
+                if (! holdabilityBugKeys.contains(hbk) )
+                {
+                    if (logger.isLoggable(MLevel.WARNING))
+                        logger.log(MLevel.WARNING, con + " threw an Error when we tried to check its default " +
+                                        "holdability. This is probably due to a bug in your JDBC driver that c3p0 can harmlessly " +
+                                        "work around (reported for some DB2 drivers). Please verify that the error stack trace is consistent" +
+                                        "with the getHoldability() method not being properly implemented, and is not due to some deeper problem. " +
+                                        "This message will not be repeated for Connections of type " + con.getClass().getName() + " that " +
+                                        "provoke errors of type " + e.getClass().getName() + " when getHoldability() is called.", e);
+                    holdabilityBugKeys.add(hbk);
+                }
+            }
+            return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+        }
+    }
+        
+    private static String holdabilityBugKey(Connection con, Error err)
+    { return con.getClass().getName() + '|' + err.getClass().getName(); }
+
+    private static boolean carefulCheckReadOnly(Connection con)
+    {
+        try { return con.isReadOnly(); }
+        catch (Exception e)
+        {
+            if (false)
+            {
+                if (logger.isLoggable(MLevel.FINER))
+                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
+                                    "read only state. This is not usually a problem! It just means the Connection " +
+                                    "doesn't support the readOnly property, and c3p0 works around this.", e);
+            }
+            return false;
+        }
+    }
+
+    private static Map carefulCheckTypeMap(Connection con)
+    {
+        try { return con.getTypeMap(); }
+        catch (Exception e)
+        {
+            if (false)
+            {
+                if (logger.isLoggable(MLevel.FINER))
+                    logger.log(MLevel.FINER, con + " threw an Exception when we tried to check its default " +
+                                    "type map. This is not usually a problem! It just means the Connection " +
+                                    "doesn't support the typeMap property, and c3p0 works around this.", e);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.mchange.v2.c3p0.impl;
+
+import java.util.*;
+import java.sql.*;
+import com.mchange.v2.log.*;
+
+/**
+ *  Remembers the session defaults (transaction isolation, catalog, holdability,
+ *  readOnly, typeMap) of physical Connections, by Connection implementation class,
+ *  so that each newly acquired Connection needn't be probed with several potential
+ *  round-trips to the database. One in every VERIFY_INTERVAL Connections is probed
+ *  anyway, and if its defaults have changed, the cache is updated.
+ */
+public final class SessionDefaultsCache
+{
+    private final static MLogger logger = MLog.getLogger( SessionDefaultsCache.class );
+
+    private final static int VERIFY_INTERVAL = 16;
+
+    //MT: protected by this' lock
+    Map classesToDefaults = new HashMap();
+    int finds = 0;
+
+    SessionDefaults find( Connection con ) throws SQLException
+    {
+	Class conClass = con.getClass();
+
+	SessionDefaults cached;
+	boolean verify;
+	synchronized ( this )
+	    {
+		cached = (SessionDefaults) classesToDefaults.get( conClass );
+		verify = (++finds % VERIFY_INTERVAL == 0);
+	    }
+
+	if ( cached != null && ! verify )
+	    return cached;
+	else
+	    {
+		SessionDefaults fresh = SessionDefaults.probe( con );
+		if ( cached != null && ! cached.equals( fresh ) )
+		    {
+			if ( logger.isLoggable( MLevel.WARNING ) )
+			    logger.log( MLevel.WARNING, 
+					"The session defaults of a newly acquired Connection differ from previously cached defaults. " +
+					"Updating cache. [cached: " + cached + "; observed: " + fresh + "]" );
+		    }
+		synchronized ( this )
+		    { classesToDefaults.put( conClass, fresh ); }
+		return fresh;
+	    }
+    }
+}
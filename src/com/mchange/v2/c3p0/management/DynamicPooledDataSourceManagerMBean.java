@@ -64,6 +64,10 @@ public class DynamicPooledDataSourceManagerMBean implements DynamicMBean
         hpTmp.add("lastCheckinFailureDefaultUser");
         hpTmp.add("lastIdleTestFailureDefaultUser");
         hpTmp.add("lastConnectionTestFailureDefaultUser");
+        hpTmp.add("poolStatsDefaultUser"); // its parts are exposed as attributes already, and
+        hpTmp.add("poolStatsAllUsers");    // generic JMX clients can't load the PoolStats class
+        hpTmp.add("connectionHoldTimesDefaultUser"); // likewise, exposed via the sampleConnectionHoldTimes* operations
+        hpTmp.add("connectionHoldTimesAllUsers");
         HIDE_PROPS = Collections.unmodifiableSet( hpTmp );
         
 	Class[] userPassArgs = new Class[] { String.class, String.class };
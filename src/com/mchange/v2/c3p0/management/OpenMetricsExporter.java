@@ -0,0 +1,391 @@
+package com.mchange.v2.c3p0.management;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PoolStats;
+import com.mchange.v2.c3p0.PooledDataSource;
+import com.mchange.v2.log.MLevel;
+import com.mchange.v2.log.MLog;
+import com.mchange.v2.log.MLogger;
+import com.mchange.v2.resourcepool.LatencyHistogram;
+
+/**
+ * <p>Renders the statistics of c3p0 PooledDataSources in the
+ * <a href="https://openmetrics.io/">OpenMetrics</a> text format, which
+ * Prometheus and compatible collectors scrape.</p>
+ *
+ * <p>Every sample is labeled with its DataSource's <tt>dataSourceName</tt>
+ * and, unless <tt>com.mchange.v2.c3p0.management.ExcludeIdentityToken</tt>
+ * is set, its <tt>identityToken</tt>. Statistics are gathered
+ * without taking any pool's lock (see {@link PoolStats}), and are written
+ * straight to the Writer, so rendering allocates little beyond one
+ * PoolStats per DataSource.</p>
+ *
+ * <p>To serve the statistics over HTTP, see
+ * {@link OpenMetricsManagementCoordinator} and {@link OpenMetricsHandler}.</p>
+ */
+public final class OpenMetricsExporter
+{
+    public final static String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    //MT: thread-safe
+    final static MLogger logger = MLog.getLogger( OpenMetricsExporter.class );
+
+    // LatencyHistogram bucket bounds, in seconds
+    private final static String[] LE_VALUES;
+
+    static
+    {
+	LE_VALUES = new String[ LatencyHistogram.NUM_BUCKETS ];
+	for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; ++i)
+	{
+	    long millis = LatencyHistogram.getBucketUpperBoundMillis( i );
+	    if ( millis == Long.MAX_VALUE )
+		LE_VALUES[i] = "+Inf";
+	    else
+	    {
+		String seconds = BigDecimal.valueOf( millis, 3 ).stripTrailingZeros().toPlainString();
+		LE_VALUES[i] = ( seconds.indexOf('.') < 0 ? seconds + ".0" : seconds );
+	    }
+	}
+    }
+
+    // the values we know how to write, by family
+    private final static int USER_POOLS                 = 0;
+    private final static int CONNECTIONS_IDLE           = 1;
+    private final static int CONNECTIONS_BUSY           = 2;
+    private final static int CONNECTIONS_ORPHANED       = 3;
+    private final static int THREADS_AWAITING_CHECKOUT  = 4;
+    private final static int STATEMENTS                 = 5;
+    private final static int STATEMENTS_CHECKED_OUT     = 6;
+    private final static int CONNECTIONS_WITH_STMTS     = 7;
+    private final static int HELPER_THREADS_ACTIVE      = 8;
+    private final static int HELPER_THREADS_IDLE        = 9;
+    private final static int HELPER_TASKS_PENDING       = 10;
+    private final static int ACQUISITIONS               = 11;
+    private final static int FAILED_CHECKOUTS           = 12;
+    private final static int FAILED_CHECKINS            = 13;
+    private final static int FAILED_IDLE_TESTS          = 14;
+    private final static int CIRCUIT_BREAKER_TRIPS      = 15;
+    private final static int STATEMENT_HITS             = 16;
+    private final static int STATEMENT_MISSES           = 17;
+    private final static int STATEMENT_UNCACHED         = 18;
+    private final static int EVICTIONS_MAX_STMTS        = 19;
+    private final static int EVICTIONS_PER_CXN          = 20;
+    private final static int EVICTIONS_CXN_CLOSE        = 21;
+    private final static int OVERDUE_CHECKOUTS          = 22;
+
+    private final static int CHECKOUT_LATENCIES         = 0;
+    private final static int ACQUISITION_LATENCIES      = 1;
+    private final static int CONNECTION_TEST_LATENCIES  = 2;
+    private final static int PREPARE_LATENCIES          = 3;
+
+    /**
+     * Writes the statistics of every PooledDataSource in the C3P0Registry.
+     */
+    public static void writeMetrics( Writer w ) throws IOException
+    { writeMetrics( C3P0Registry.getPooledDataSources(), w ); }
+
+    /**
+     * Writes the statistics of the given PooledDataSources. DataSources
+     * whose statistics cannot be read, for example because they have been
+     * closed, are left out.
+     */
+    public static void writeMetrics( Collection pooledDataSources, Writer w ) throws IOException
+    {
+	ArrayList samples = new ArrayList( pooledDataSources.size() );
+	for ( Iterator ii = pooledDataSources.iterator(); ii.hasNext(); )
+	{
+	    PooledDataSource pds = (PooledDataSource) ii.next();
+	    try { samples.add( new Sample( pds ) ); }
+	    catch ( Exception e )
+	    {
+		if ( logger.isLoggable( MLevel.FINE ) )
+		    logger.log( MLevel.FINE, "Could not read the statistics of " + pds + ". It will be left out of the metrics rendered.", e );
+	    }
+	}
+
+	Out out = new Out( w );
+
+	gauge( out, samples, "c3p0_user_pools", "Pools maintained by the DataSource, one per authentication.", USER_POOLS );
+
+	header( out, "c3p0_connections", "gauge", null, "Pooled Connections by state. Orphaned Connections remain checked out from pools that have since been reset." );
+	values( out, samples, "c3p0_connections", "state=\"idle\"", CONNECTIONS_IDLE );
+	values( out, samples, "c3p0_connections", "state=\"busy\"", CONNECTIONS_BUSY );
+	values( out, samples, "c3p0_connections", "state=\"orphaned\"", CONNECTIONS_ORPHANED );
+
+	gauge( out, samples, "c3p0_threads_awaiting_checkout", "Client threads waiting for a Connection.", THREADS_AWAITING_CHECKOUT );
+	gauge( out, samples, "c3p0_statement_cache_statements", "Statements held by the Statement cache, checked out or not.", STATEMENTS );
+	gauge( out, samples, "c3p0_statement_cache_statements_checked_out", "Cached Statements currently in use by clients.", STATEMENTS_CHECKED_OUT );
+	gauge( out, samples, "c3p0_statement_cache_connections", "Connections with at least one cached Statement.", CONNECTIONS_WITH_STMTS );
+
+	header( out, "c3p0_helper_threads", "gauge", null, "Threads of the DataSource's helper thread pool, by state." );
+	values( out, samples, "c3p0_helper_threads", "state=\"active\"", HELPER_THREADS_ACTIVE );
+	values( out, samples, "c3p0_helper_threads", "state=\"idle\"", HELPER_THREADS_IDLE );
+
+	gauge( out, samples, "c3p0_helper_tasks_pending", "Tasks queued for the DataSource's helper threads.", HELPER_TASKS_PENDING );
+
+	counter( out, samples, "c3p0_connection_acquisitions", "Connections acquired from the database.", ACQUISITIONS );
+	counter( out, samples, "c3p0_failed_checkouts", "Failed Connection checkouts.", FAILED_CHECKOUTS );
+	counter( out, samples, "c3p0_failed_checkins", "Failed Connection checkins.", FAILED_CHECKINS );
+	counter( out, samples, "c3p0_failed_idle_tests", "Failed tests of idle Connections.", FAILED_IDLE_TESTS );
+	counter( out, samples, "c3p0_circuit_breaker_trips", "Times a pool's circuit breaker has opened.", CIRCUIT_BREAKER_TRIPS );
+	counter( out, samples, "c3p0_overdue_checkouts", "Connection checkouts held longer than the unreturned Connection report or destroy timeout.", OVERDUE_CHECKOUTS );
+
+	counter( out, samples, "c3p0_statement_cache_hits", "Statement checkouts served by a cached Statement.", STATEMENT_HITS );
+	counter( out, samples, "c3p0_statement_cache_misses", "Statement checkouts that required a Statement to be prepared.", STATEMENT_MISSES );
+	counter( out, samples, "c3p0_statement_cache_uncached_checkouts", "Misses whose Statements could not be cached, because the cache was full of Statements in use.", STATEMENT_UNCACHED );
+
+	header( out, "c3p0_statement_cache_evictions", "counter", null, "Cached Statements closed, by the limit they were closed to respect, or because their Connection closed." );
+	values( out, samples, "c3p0_statement_cache_evictions_total", "reason=\"max_statements\"", EVICTIONS_MAX_STMTS );
+	values( out, samples, "c3p0_statement_cache_evictions_total", "reason=\"max_statements_per_connection\"", EVICTIONS_PER_CXN );
+	values( out, samples, "c3p0_statement_cache_evictions_total", "reason=\"connection_close\"", EVICTIONS_CXN_CLOSE );
+
+	histogram( out, samples, "c3p0_checkout_duration_seconds", "Durations of successful Connection checkouts, including waits for a Connection.", CHECKOUT_LATENCIES );
+	histogram( out, samples, "c3p0_acquisition_duration_seconds", "Durations of successful Connection acquisitions from the database.", ACQUISITION_LATENCIES );
+	histogram( out, samples, "c3p0_connection_test_duration_seconds", "Durations of Connection tests, successful or not.", CONNECTION_TEST_LATENCIES );
+	histogram( out, samples, "c3p0_statement_prepare_duration_seconds", "Durations of preparing Statements for the Statement cache.", PREPARE_LATENCIES );
+
+	out.s( "# EOF\n" );
+	w.flush();
+    }
+
+    private static void gauge( Out out, ArrayList samples, String name, String help, int which ) throws IOException
+    {
+	header( out, name, "gauge", null, help );
+	values( out, samples, name, null, which );
+    }
+
+    private static void counter( Out out, ArrayList samples, String name, String help, int which ) throws IOException
+    {
+	header( out, name, "counter", null, help );
+	values( out, samples, name + "_total", null, which );
+    }
+
+    private static void histogram( Out out, ArrayList samples, String name, String help, int which ) throws IOException
+    {
+	header( out, name, "histogram", "seconds", help );
+	for (int i = 0, len = samples.size(); i < len; ++i)
+	{
+	    Sample sample = (Sample) samples.get(i);
+	    LatencyHistogram.Snapshot snapshot = sample.histogram( which );
+
+	    long cumulative = 0;
+	    for (int j = 0; j < LatencyHistogram.NUM_BUCKETS; ++j)
+	    {
+		cumulative += snapshot.getCount( j );
+		out.s( name );
+		out.s( "_bucket{" );
+		out.s( sample.labels );
+		out.s( ",le=\"" );
+		out.s( LE_VALUES[j] );
+		out.s( "\"} " );
+		out.l( cumulative );
+		out.c( '\n' );
+	    }
+	    out.s( name );
+	    out.s( "_count{" );
+	    out.s( sample.labels );
+	    out.s( "} " );
+	    out.l( cumulative );
+	    out.c( '\n' );
+
+	    out.s( name );
+	    out.s( "_sum{" );
+	    out.s( sample.labels );
+	    out.s( "} " );
+	    out.millisAsSeconds( snapshot.getSumMillis() );
+	    out.c( '\n' );
+	}
+    }
+
+    private static void header( Out out, String name, String type, String unit, String help ) throws IOException
+    {
+	out.s( "# TYPE " );
+	out.s( name );
+	out.c( ' ' );
+	out.s( type );
+	out.c( '\n' );
+	if ( unit != null )
+	{
+	    out.s( "# UNIT " );
+	    out.s( name );
+	    out.c( ' ' );
+	    out.s( unit );
+	    out.c( '\n' );
+	}
+	out.s( "# HELP " );
+	out.s( name );
+	out.c( ' ' );
+	out.s( help );
+	out.c( '\n' );
+    }
+
+    private static void values( Out out, ArrayList samples, String sampleName, String extraLabel, int which ) throws IOException
+    {
+	for (int i = 0, len = samples.size(); i < len; ++i)
+	{
+	    Sample sample = (Sample) samples.get(i);
+	    out.s( sampleName );
+	    out.c( '{' );
+	    out.s( sample.labels );
+	    if ( extraLabel != null )
+	    {
+		out.c( ',' );
+		out.s( extraLabel );
+	    }
+	    out.s( "} " );
+	    out.l( sample.value( which ) );
+	    out.c( '\n' );
+	}
+    }
+
+    private static void appendEscaped( StringBuffer sb, String labelValue )
+    {
+	if ( labelValue == null )
+	    return;
+	for (int i = 0, len = labelValue.length(); i < len; ++i)
+	{
+	    char c = labelValue.charAt(i);
+	    switch ( c )
+	    {
+	    case '\\':
+		sb.append( "\\\\" );
+		break;
+	    case '"':
+		sb.append( "\\\"" );
+		break;
+	    case '\n':
+		sb.append( "\\n" );
+		break;
+	    default:
+		sb.append( c );
+	    }
+	}
+    }
+
+    private final static class Sample
+    {
+	final String    labels;
+	final PoolStats stats;
+	final int       helperThreadsActive;
+	final int       helperThreadsIdle;
+	final int       helperTasksPending;
+
+	Sample( PooledDataSource pds ) throws Exception
+	{
+	    StringBuffer sb = new StringBuffer( 96 );
+	    sb.append( "dataSourceName=\"" );
+	    appendEscaped( sb, pds.getDataSourceName() );
+	    sb.append( '"' );
+	    if (! ActiveManagementCoordinator.EXCLUDE_IDENTITY_TOKEN )
+	    {
+		sb.append( ",identityToken=\"" );
+		appendEscaped( sb, pds.getIdentityToken() );
+		sb.append( '"' );
+	    }
+	    this.labels = sb.toString();
+
+	    this.stats               = pds.getPoolStatsAllUsers();
+	    this.helperThreadsActive = pds.getThreadPoolNumActiveThreads();
+	    this.helperThreadsIdle   = pds.getThreadPoolNumIdleThreads();
+	    this.helperTasksPending  = pds.getThreadPoolNumTasksPending();
+	}
+
+	long value( int which )
+	{
+	    switch ( which )
+	    {
+	    case USER_POOLS:                  return stats.getNumUserPools();
+	    case CONNECTIONS_IDLE:            return stats.getNumIdleConnections();
+	    case CONNECTIONS_BUSY:            return stats.getNumBusyConnections();
+	    case CONNECTIONS_ORPHANED:        return stats.getNumUnclosedOrphanedConnections();
+	    case THREADS_AWAITING_CHECKOUT:   return stats.getNumThreadsAwaitingCheckout();
+	    case STATEMENTS:                  return stats.getStatementCacheNumStatements();
+	    case STATEMENTS_CHECKED_OUT:      return stats.getStatementCacheNumCheckedOut();
+	    case CONNECTIONS_WITH_STMTS:      return stats.getStatementCacheNumConnectionsWithCachedStatements();
+	    case HELPER_THREADS_ACTIVE:       return helperThreadsActive;
+	    case HELPER_THREADS_IDLE:         return helperThreadsIdle;
+	    case HELPER_TASKS_PENDING:        return helperTasksPending;
+	    case ACQUISITIONS:                return stats.getNumAcquisitions();
+	    case FAILED_CHECKOUTS:            return stats.getNumFailedCheckouts();
+	    case FAILED_CHECKINS:             return stats.getNumFailedCheckins();
+	    case FAILED_IDLE_TESTS:           return stats.getNumFailedIdleTests();
+	    case CIRCUIT_BREAKER_TRIPS:       return stats.getNumCircuitBreakerTrips();
+	    case STATEMENT_HITS:              return stats.getStatementCacheNumHits();
+	    case STATEMENT_MISSES:            return stats.getStatementCacheNumMisses();
+	    case STATEMENT_UNCACHED:          return stats.getStatementCacheNumUncachedCheckouts();
+	    case EVICTIONS_MAX_STMTS:         return stats.getStatementCacheNumEvictionsMaxStatements();
+	    case EVICTIONS_PER_CXN:           return stats.getStatementCacheNumEvictionsMaxStatementsPerConnection();
+	    case EVICTIONS_CXN_CLOSE:         return stats.getStatementCacheNumEvictionsConnectionClose();
+	    case OVERDUE_CHECKOUTS:           return stats.getNumOverdueCheckouts();
+	    default:
+		throw new InternalError("Unknown metric: " + which);
+	    }
+	}
+
+	LatencyHistogram.Snapshot histogram( int which )
+	{
+	    switch ( which )
+	    {
+	    case CHECKOUT_LATENCIES:        return stats.getCheckoutLatencies();
+	    case ACQUISITION_LATENCIES:     return stats.getAcquisitionLatencies();
+	    case CONNECTION_TEST_LATENCIES: return stats.getConnectionTestLatencies();
+	    case PREPARE_LATENCIES:         return stats.getStatementPrepareLatencies();
+	    default:
+		throw new InternalError("Unknown histogram: " + which);
+	    }
+	}
+    }
+
+    // writes numbers without creating Strings for them
+    private final static class Out
+    {
+	final Writer w;
+	final char[] digits = new char[20];
+
+	Out( Writer w )
+	{ this.w = w; }
+
+	void s( String s ) throws IOException
+	{ w.write( s ); }
+
+	void c( char c ) throws IOException
+	{ w.write( c ); }
+
+	void l( long l ) throws IOException
+	{
+	    if ( l < 0 )
+	    {
+		w.write( '-' );
+		l = -l;
+	    }
+	    int pos = digits.length;
+	    do
+	    {
+		digits[--pos] = (char) ('0' + (l % 10));
+		l /= 10;
+	    }
+	    while ( l > 0 );
+	    w.write( digits, pos, digits.length - pos );
+	}
+
+	void millisAsSeconds( long millis ) throws IOException
+	{
+	    l( millis / 1000 );
+	    long frac = Math.abs( millis % 1000 );
+	    w.write( '.' );
+	    w.write( (char) ('0' + frac / 100) );
+	    w.write( (char) ('0' + (frac / 10) % 10) );
+	    w.write( (char) ('0' + frac % 10) );
+	}
+    }
+
+    private OpenMetricsExporter()
+    {}
+}
@@ -0,0 +1,46 @@
+package com.mchange.v2.c3p0.management;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * <p>Serves the statistics of every PooledDataSource in the C3P0Registry,
+ * rendered by {@link OpenMetricsExporter}, in response to GET requests.
+ * {@link OpenMetricsManagementCoordinator} mounts one of these on its own
+ * server, but applications that already run a
+ * <tt>com.sun.net.httpserver.HttpServer</tt> may mount one themselves.</p>
+ */
+public class OpenMetricsHandler implements HttpHandler
+{
+    public void handle( HttpExchange exchange ) throws IOException
+    {
+	try
+	{
+	    String method = exchange.getRequestMethod();
+	    if ( "GET".equals( method ) )
+	    {
+		exchange.getResponseHeaders().set( "Content-Type", OpenMetricsExporter.CONTENT_TYPE );
+		exchange.sendResponseHeaders( 200, 0 ); // chunked, so we needn't render before we write
+		Writer w = new BufferedWriter( new OutputStreamWriter( exchange.getResponseBody(), "UTF-8" ) );
+		OpenMetricsExporter.writeMetrics( w );
+		w.close();
+	    }
+	    else if ( "HEAD".equals( method ) )
+	    {
+		exchange.getResponseHeaders().set( "Content-Type", OpenMetricsExporter.CONTENT_TYPE );
+		exchange.sendResponseHeaders( 200, -1 );
+	    }
+	    else
+	    {
+		exchange.getResponseHeaders().set( "Allow", "GET, HEAD" );
+		exchange.sendResponseHeaders( 405, -1 );
+	    }
+	}
+	finally
+	{ exchange.close(); }
+    }
+}
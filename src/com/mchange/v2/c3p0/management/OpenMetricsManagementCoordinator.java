@@ -0,0 +1,106 @@
+package com.mchange.v2.c3p0.management;
+
+import java.net.InetSocketAddress;
+import com.sun.net.httpserver.HttpServer;
+import com.mchange.v2.log.*;
+
+import com.mchange.v2.c3p0.cfg.C3P0Config;
+
+/**
+ * <p>Manages c3p0 via JMX, just as {@link ActiveManagementCoordinator} does,
+ * and also serves the statistics of all PooledDataSources in the OpenMetrics
+ * text format over HTTP, at the path <tt>/metrics</tt>, for as long as any
+ * PooledDataSource is open.</p>
+ *
+ * <p>The port must be set with <tt>com.mchange.v2.c3p0.management.OpenMetricsPort</tt>.
+ * The server listens on <tt>localhost</tt> unless
+ * <tt>com.mchange.v2.c3p0.management.OpenMetricsHost</tt> names another
+ * host or address.</p>
+ */
+public class OpenMetricsManagementCoordinator extends ActiveManagementCoordinator
+{
+    public final static String PORT_KEY = "com.mchange.v2.c3p0.management.OpenMetricsPort";
+    public final static String HOST_KEY = "com.mchange.v2.c3p0.management.OpenMetricsHost";
+
+    public final static String PATH = "/metrics";
+
+    private final static String DEFAULT_HOST = "localhost";
+
+    //MT: thread-safe
+    final static MLogger logger = MLog.getLogger( OpenMetricsManagementCoordinator.class );
+
+    //MT: protected by this' lock
+    HttpServer server = null;
+
+    public OpenMetricsManagementCoordinator() throws Exception
+    { super(); }
+
+    public void attemptManageC3P0Registry()
+    {
+	super.attemptManageC3P0Registry();
+	startServer();
+    }
+
+    public void attemptUnmanageC3P0Registry()
+    {
+	stopServer();
+	super.attemptUnmanageC3P0Registry();
+    }
+
+    private synchronized void startServer()
+    {
+	if ( server != null )
+	    return;
+
+	String portStr = C3P0Config.getMultiPropertiesConfig().getProperty( PORT_KEY );
+	if ( portStr == null )
+	{
+	    if ( logger.isLoggable( MLevel.WARNING ) )
+		logger.warning( this.getClass().getName() + " is in use, but " + PORT_KEY + " is not set. c3p0 statistics will not be served over HTTP." );
+	    return;
+	}
+	String host = C3P0Config.getMultiPropertiesConfig().getProperty( HOST_KEY );
+	if ( host == null )
+	    host = DEFAULT_HOST;
+
+	try
+	{
+	    final HttpServer s = HttpServer.create( new InetSocketAddress( host.trim(), Integer.parseInt( portStr.trim() ) ), 0 );
+	    s.createContext( PATH, new OpenMetricsHandler() );
+
+	    // the server's dispatcher thread takes its daemon status from the Thread
+	    // that starts it, and must not keep the VM alive if a DataSource is never closed
+	    Thread starter = new Thread("C3P0OpenMetricsServerStarter")
+	    {
+		public void run()
+		{ s.start(); }
+	    };
+	    starter.setDaemon( true );
+	    starter.start();
+	    starter.join();
+
+	    server = s;
+	    if ( logger.isLoggable( MLevel.INFO ) )
+		logger.info( "Serving c3p0 statistics in OpenMetrics format at http://" + host.trim() + ':' + s.getAddress().getPort() + PATH );
+	}
+	catch ( Exception e )
+	{
+	    if ( logger.isLoggable( MLevel.WARNING ) )
+		logger.log( MLevel.WARNING,
+			    "Failed to start a server for c3p0 statistics in OpenMetrics format on " + host + ':' + portStr + ". " +
+			    "[c3p0 will still function normally, but its statistics will not be served over HTTP.]",
+			    e );
+	}
+    }
+
+    private synchronized void stopServer()
+    {
+	if ( server != null )
+	{
+	    server.stop( 0 );
+	    server = null;
+	    if ( logger.isLoggable( MLevel.FINER ) )
+		logger.log( MLevel.FINER, "Stopped serving c3p0 statistics in OpenMetrics format." );
+	}
+    }
+}
@@ -47,4 +47,17 @@ public final class DoubleMaxStatementCache extends GooGooStatementCache
 	else //we can only cache if we can clear one from the Connection (which implies clearing one globally, so we needn't check max_statements)
 	    return (cxn_stmt_count == max_statements_per_connection && dcsm.getDeathmarch( pcon ).cullNext());
     }
+
+    boolean acceptsLimits( int max_statements, int max_statements_per_connection )
+    { return max_statements > 0 && max_statements_per_connection > 0; }
+
+    boolean updateLimits( int max_statements, int max_statements_per_connection )
+    {
+	this.max_statements = max_statements;
+	this.max_statements_per_connection = max_statements_per_connection;
+	dcsm.cullEachConnectionTo( max_statements_per_connection );
+	while ( this.countCachedStatements() > max_statements && globalDeathmarch.cullNext() )
+	    ;
+	return true;
+    }
 }
@@ -31,4 +31,15 @@ public final class GlobalMaxOnlyStatementCache extends GooGooStatementCache
 	int global_size = this.countCachedStatements();
 	return (  global_size < max_statements || (global_size == max_statements && globalDeathmarch.cullNext()) );
     }
+
+    boolean acceptsLimits( int max_statements, int max_statements_per_connection )
+    { return max_statements > 0 && max_statements_per_connection <= 0; }
+
+    boolean updateLimits( int max_statements, int max_statements_per_connection )
+    {
+	this.max_statements = max_statements;
+	while ( this.countCachedStatements() > max_statements && globalDeathmarch.cullNext() )
+	    ;
+	return true;
+    }
 }
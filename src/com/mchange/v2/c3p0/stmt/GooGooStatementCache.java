@@ -1,6 +1,7 @@
 package com.mchange.v2.c3p0.stmt;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.sql.*;
 import java.lang.reflect.*;
 import com.mchange.v2.async.AsynchronousRunner;
@@ -8,6 +9,7 @@ import com.mchange.v2.holders.SynchronizedIntHolder;
 import com.mchange.v2.sql.SqlUtils;
 import com.mchange.v2.util.ResourceClosedException;
 import com.mchange.v2.log.*;
+import com.mchange.v2.resourcepool.LatencyHistogram;
 import com.mchange.v1.db.sql.StatementUtils;
 
 import java.io.StringWriter;
@@ -30,6 +32,83 @@ public abstract class GooGooStatementCache
     // since when all Connections are in use, nothing can be culled and new Statements cannot be cached
     private final static boolean CULL_ONLY_FROM_UNUSED_CONNECTIONS = false; //alternative culling
 
+    private final static int MAX_TRACKED_SHAPES = 1024;
+
+    private final static int MAX_TRACKED_MISSES = 64;
+
+    private final static Method PREPARE_STATEMENT_METHOD;
+
+    static
+    {
+	try { PREPARE_STATEMENT_METHOD = Connection.class.getMethod( "prepareStatement", new Class[] { String.class } ); }
+	catch (NoSuchMethodException e)
+	    { throw new InternalError( "Connection.prepareStatement( String ) not found?!? " + e ); }
+    }
+
+    private final static class StatementShape
+    {
+	final static Comparator DESCENDING_CHECKOUTS = new Comparator()
+	{
+	    public int compare( Object a, Object b )
+	    {
+		int ca = ((StatementShape) a).checkouts;
+		int cb = ((StatementShape) b).checkouts;
+		return (ca > cb ? -1 : (ca == cb ? 0 : 1));
+	    }
+	};
+
+	// unchanging once constructed, except in the cache's shapeProbe
+	Method   stmtProducingMethod;
+	Object[] args;
+	int      hash;
+
+	//MT: protected by the GooGooStatementCache's lock
+	int checkouts = 0;
+
+	StatementShape()
+	{}
+
+	StatementShape( Method stmtProducingMethod, Object[] args )
+	{ reset( stmtProducingMethod, args ); }
+
+	void reset( Method stmtProducingMethod, Object[] args )
+	{
+	    this.stmtProducingMethod = stmtProducingMethod;
+	    this.args                = args;
+	    this.hash                = stmtProducingMethod.hashCode() ^ Arrays.deepHashCode( args );
+	}
+
+	public boolean equals( Object o )
+	{
+	    if (this == o) return true;
+	    if (! (o instanceof StatementShape)) return false;
+	    StatementShape other = (StatementShape) o;
+	    return this.hash == other.hash && this.stmtProducingMethod.equals( other.stmtProducingMethod ) && Arrays.deepEquals( this.args, other.args );
+	}
+
+	public int hashCode()
+	{ return hash; }
+    }
+
+    private final static class MissTally
+    {
+	final String sql;
+	final long   overcount;
+
+	//MT: written under the GooGooStatementCache's lock, but may be read without it
+	volatile long misses;
+
+	//MT: protected by the GooGooStatementCache's lock
+	int heap_index; // our position in missHeap
+
+	MissTally( String sql, long inherited_misses )
+	{
+	    this.sql       = sql;
+	    this.overcount = inherited_misses;
+	    this.misses    = inherited_misses;
+	}
+    }
+
     /* MT: protected by this's lock */
 
     // contains all statements in the cache, 
@@ -50,6 +129,50 @@ public abstract class GooGooStatementCache
     // culling in case of overflow
     HashSet checkedOut = new HashSet();
 
+    /* MT: written under this' lock, whenever the collections above change, */
+    /*     but may be read without it, so that polling statistics never      */
+    /*     contends with Statement checkouts. -1 when the cache is closed.   */
+    volatile int num_statements                  = 0;
+    volatile int num_statements_checked_out      = 0;
+    volatile int num_connections_with_statements = 0;
+
+    /* MT: likewise written under this' lock, but may be read without it. */
+    /*     misses and uncached checkouts count client requests only, not  */
+    /*     warm-up. uncached checkouts are misses we could not cache.     */
+    volatile long num_hits                                    = 0;
+    volatile long num_misses                                  = 0;
+    volatile long num_uncached_checkouts                      = 0;
+    volatile long num_evictions_max_statements                = 0;
+    volatile long num_evictions_max_statements_per_connection = 0;
+    volatile long num_evictions_connection_close              = 0;
+
+    // SQL texts most often missed, mapped to their MissTally. modified
+    // only under this' lock, but may be read without it. see noteMiss(...)
+    final ConcurrentHashMap sqlToMissTally = new ConcurrentHashMap();
+
+    // the same MissTallys, as a binary min-heap on misses, so that the
+    // least missed text is always at missHeap[0]
+    final MissTally[] missHeap = new MissTally[ MAX_TRACKED_MISSES ];
+    int missHeapSize = 0;
+
+    // maps the "shape" of requested Statements (the Statement-producing
+    // Method and its arguments, without the Connection) to themselves,
+    // carrying a count of checkouts. null unless warm-up by
+    // observed frequency is enabled
+    HashMap shapesToShapes = null;
+
+    // reset to look up each checkout's shape, so that counting a shape
+    // already tracked allocates nothing. never itself put in shapesToShapes
+    final StatementShape shapeProbe = new StatementShape();
+
+    // the number of most frequently requested Statements
+    // to pre-prepare on newly acquired Connections
+    int warmUpCount = 0;
+
+    // explicitly configured Statements to pre-prepare
+    // on newly acquired Connections
+    List explicitWarmUpShapes = Collections.EMPTY_LIST;
+
 
     /* MT: end protected by this' lock */
 
@@ -57,6 +180,9 @@ public abstract class GooGooStatementCache
 
     AsynchronousRunner blockingTaskAsyncRunner;
 
+    // thread-safe, so needs no lock at all
+    final LatencyHistogram prepareLatencies = new LatencyHistogram();
+
     // This set is used to ensure that multiple threads
     // do not try to remove the same statement from the
     // cache, if for example a Statement is both deathmarched
@@ -80,14 +206,127 @@ public abstract class GooGooStatementCache
 	    (StatementDestructionManager) new IncautiousStatementDestructionManager( blockingTaskAsyncRunner );
     }
 
-    public synchronized int getNumStatements()
-    { return this.isClosed() ? -1 : countCachedStatements(); }
+    /**
+     *  Should be called, if at all, just once, prior to any use of the cache.
+     *
+     *  @param warmUpCount the number of most-frequently requested Statements
+     *                     to pre-prepare on newly acquired Connections
+     *  @param warmUpStatements SQL text of PreparedStatements always to pre-prepare
+     *                          on newly acquired Connections, may be null
+     */
+    public synchronized void initWarmUp( int warmUpCount, String[] warmUpStatements )
+    {
+	this.warmUpCount = warmUpCount;
+	this.shapesToShapes = (warmUpCount > 0 ? new HashMap() : null);
+	if (warmUpStatements != null && warmUpStatements.length > 0)
+	    {
+		List shapes = new ArrayList( warmUpStatements.length );
+		for (int i = 0, len = warmUpStatements.length; i < len; ++i)
+		    shapes.add( new StatementShape( PREPARE_STATEMENT_METHOD, new Object[] { warmUpStatements[i] } ) );
+		this.explicitWarmUpShapes = Collections.unmodifiableList( shapes );
+	    }
+	else
+	    this.explicitWarmUpShapes = Collections.EMPTY_LIST;
+    }
+
+    /**
+     *  Pre-prepares and caches explicitly configured and frequently requested Statements
+     *  on a newly acquired physical Connection, so that the first clients to use it
+     *  don't each pay for a cache miss. The Connection should already be marked in use,
+     *  and should not yet be visible to clients. Failures are logged, never thrown:
+     *  a Statement that cannot be pre-prepared will simply be prepared on demand.
+     */
+    public void warmUp( Connection physicalConnection )
+    {
+	List shapes;
+	synchronized ( this )
+	    {
+		if ( this.isClosed() )
+		    return;
+		shapes = warmUpShapes();
+	    }
+
+	for (int i = 0, len = shapes.size(); i < len; ++i)
+	    {
+		StatementShape shape = (StatementShape) shapes.get(i);
+		try
+		    {
+			Object pstmt = checkoutStatement( physicalConnection, shape.stmtProducingMethod, shape.args, false );
+			checkinStatement( pstmt );
+		    }
+		catch (Exception e)
+		    {
+			if ( logger.isLoggable( MLevel.FINE ) )
+			    logger.log( MLevel.FINE, "Could not pre-prepare Statement during statement cache warm-up: " + shape.args[0], e );
+		    }
+	    }
+
+	if (Debug.DEBUG && logger.isLoggable(MLevel.FINER))
+	    logger.log(MLevel.FINER, "Warmed up statement cache with " + shapes.size() + " Statements for Connection " + physicalConnection);
+    }
+
+    public int getNumStatements()
+    { return num_statements; }
+
+    public int getNumStatementsCheckedOut()
+    { return num_statements_checked_out; }
+
+    public int getNumConnectionsWithCachedStatements()
+    { return num_connections_with_statements; }
+
+    public long getNumHits()
+    { return num_hits; }
+
+    public long getNumMisses()
+    { return num_misses; }
+
+    public long getNumUncachedCheckouts()
+    { return num_uncached_checkouts; }
+
+    public long getNumEvictionsMaxStatements()
+    { return num_evictions_max_statements; }
 
-    public synchronized int getNumStatementsCheckedOut()
-    { return this.isClosed() ? -1 : checkedOut.size(); }
+    public long getNumEvictionsMaxStatementsPerConnection()
+    { return num_evictions_max_statements_per_connection; }
 
-    public synchronized int getNumConnectionsWithCachedStatements()
-    { return isClosed() ? -1 : cxnStmtMgr.getNumConnectionsWithCachedStatements(); }
+    public long getNumEvictionsConnectionClose()
+    { return num_evictions_connection_close; }
+
+    public LatencyHistogram.Snapshot getPrepareLatencies()
+    { return prepareLatencies.snapshot(); }
+
+    /**
+     *  The SQL texts whose checkouts have most often missed the cache, most missed first.
+     *  Takes no lock, so it may not reflect a miss underway.
+     */
+    public StatementMissCount[] getTopMisses()
+    {
+        ArrayList out = new ArrayList( MAX_TRACKED_MISSES );
+        for (Iterator ii = sqlToMissTally.values().iterator(); ii.hasNext(); )
+        {
+            MissTally tally = (MissTally) ii.next();
+            out.add( new StatementMissCount( tally.sql, tally.misses, tally.overcount ) );
+        }
+        Collections.sort( out, StatementMissCount.DESCENDING_MISSES );
+        return (StatementMissCount[]) out.toArray( new StatementMissCount[ out.size() ] );
+    }
+
+    //called only with this' lock, whenever stmtToKey, checkedOut, or cxnStmtMgr change
+    private void updateCounts()
+    {
+        if ( isClosed() )
+        {
+            num_statements                  = -1;
+            num_statements_checked_out      = -1;
+            num_connections_with_statements = -1;
+        }
+        else
+        {
+            num_statements                  = countCachedStatements();
+            num_statements_checked_out      = checkedOut.size();
+            num_connections_with_statements = cxnStmtMgr.getNumConnectionsWithCachedStatements();
+        }
+    }
 
     public synchronized String dumpStatementCacheStatus()
     {
@@ -153,23 +392,43 @@ public abstract class GooGooStatementCache
                     Method stmtProducingMethod, 
                     Object[] args )  
     throws SQLException, ResourceClosedException
+    { return checkoutStatement( physicalConnection, stmtProducingMethod, args, true ); }
+
+    private synchronized Object checkoutStatement( Connection physicalConnection,
+                    Method stmtProducingMethod, 
+                    Object[] args,
+                    boolean client_request )  
+    throws SQLException, ResourceClosedException
     {
         try
         {
             Object out = null;
 
+            if ( client_request && shapesToShapes != null )
+                countCheckout( stmtProducingMethod, args );
+
             StatementCacheKey key = StatementCacheKey.find( physicalConnection, 
                             stmtProducingMethod, 
                             args );
             LinkedList l = checkoutQueue( key );
             if (l == null || l.isEmpty()) //we need a new statement
             {
+                if ( client_request )
+                {
+                    ++num_misses;
+                    noteMiss( key.stmtText );
+                }
+
                 // we might wait() here... 
                 // don't presume atomicity before and after!
+                long prepare_start = System.currentTimeMillis();
                 out = acquireStatement( physicalConnection, stmtProducingMethod, args );
+                prepareLatencies.record( System.currentTimeMillis() - prepare_start );
 
                 if ( prepareAssimilateNewStatement( physicalConnection ) )
                     assimilateNewCheckedOutStatement( key, physicalConnection, out );
+                else if ( client_request )
+                    ++num_uncached_checkouts;
                 // else case: we can't assimilate the statement...
                 // so, we just return our newly created statement, without caching it.
                 // on check-in, it will simply be destroyed... this is an "overload statement"
@@ -180,12 +439,16 @@ public abstract class GooGooStatementCache
                     logger.finest(this.getClass().getName() + " ----> CACHE HIT");
                 //System.err.println("-------------> CACHE HIT!");
 
+                if ( client_request )
+                    ++num_hits;
+
                 out = l.get(0);
                 l.remove(0);
                 if (! checkedOut.add( out ))
                     throw new RuntimeException("Internal inconsistency: " +
                                     "Checking out a statement marked " + 
                     "as already checked out!");
+                updateCounts();
                 removeStatementFromDeathmarches( out, physicalConnection );
             }
 
@@ -232,6 +495,7 @@ public abstract class GooGooStatementCache
 
             return;
         }
+        updateCounts();
 
         try
         { refreshStatement( (PreparedStatement) pstmt ); }
@@ -337,6 +601,7 @@ public abstract class GooGooStatementCache
                 {
                     //the removeStatement(...) removes from cSet, so we can't be iterating over cSet directly
                     stmtSet = (HashSet) cSet.clone();
+                    num_evictions_connection_close += stmtSet.size();
                     //System.err.println("SIZE FOR CONNECTION SET: " + stmtSet.size());
 
                     for (Iterator ii = stmtSet.iterator(); ii.hasNext(); )
@@ -388,6 +653,7 @@ public abstract class GooGooStatementCache
             stmtToKey        = null;
             keyToKeyRec      = null;
             checkedOut       = null;
+            updateCounts();
         }
         else
         {
@@ -408,6 +674,28 @@ public abstract class GooGooStatementCache
 
     abstract boolean prepareAssimilateNewStatement(Connection pcon);
 
+    /**
+     *  Changes the limits of a live cache, culling the least-recently-used Statements
+     *  that are not checked out as necessary to respect lower limits. Returns false,
+     *  changing nothing, if the cache is closed, or if the new limits would require a
+     *  different kind of cache (because a global or per-Connection limit has been set
+     *  or cleared).
+     */
+    public synchronized boolean resize( int maxStatements, int maxStatementsPerConnection )
+    { return canResize( maxStatements, maxStatementsPerConnection ) && updateLimits( maxStatements, maxStatementsPerConnection ); }
+
+    /**
+     *  Returns whether resize(...) would accept the given limits, without changing anything.
+     */
+    public synchronized boolean canResize( int maxStatements, int maxStatementsPerConnection )
+    { return !isClosed() && acceptsLimits( maxStatements, maxStatementsPerConnection ); }
+
+    //called only with this' lock
+    abstract boolean acceptsLimits( int max_statements, int max_statements_per_connection );
+
+    //called only with this' lock, after acceptsLimits(...)
+    abstract boolean updateLimits( int max_statements, int max_statements_per_connection );
+
     abstract void addStatementToDeathmarches( Object pstmt, Connection physicalConnection );
     abstract void removeStatementFromDeathmarches( Object pstmt, Connection physicalConnection );
 
@@ -447,6 +735,7 @@ public abstract class GooGooStatementCache
         }
 
         checkedOut.add( ps );
+        updateCounts();
     }
 
     private void removeStatement( Object ps , int destruction_policy )
@@ -490,6 +779,8 @@ public abstract class GooGooStatementCache
                                 new Exception("LOG STACK TRACE"));
         }
 
+        updateCounts();
+
         synchronized (removalPending)
         { removalPending.remove(ps); }
     }
@@ -549,6 +840,121 @@ public abstract class GooGooStatementCache
         { throw SqlUtils.toSQLException( e ); }
     }
 
+    private void countCheckout( Method stmtProducingMethod, Object[] args )
+    {
+        shapeProbe.reset( stmtProducingMethod, args );
+        StatementShape shape = (StatementShape) shapesToShapes.get( shapeProbe );
+        if (shape == null)
+        {
+            // we don't let an application that generates unbounded distinct SQL
+            // grow this without limit. early arrivals win, which for hot queries
+            // is what we want anyway
+            if (shapesToShapes.size() >= MAX_TRACKED_SHAPES)
+                return;
+            shape = new StatementShape( stmtProducingMethod, args );
+            shapesToShapes.put( shape, shape );
+        }
+        ++shape.checkouts;
+    }
+
+    /*
+     * Keeps a bounded table of the SQL texts most often missed by the "space-saving"
+     * algorithm. Once the table is full, a newly missed text replaces the text with the
+     * fewest misses, and inherits its count. Counts may therefore overstate misses, by
+     * no more than the inherited count, but any text that accounts for more than
+     * 1 / MAX_TRACKED_MISSES of all misses is sure to be in the table.
+     *
+     * Called only with this' lock, on every client miss, so we keep its cost small
+     * and bounded: the tallies form a min-heap, and noting a miss costs a hash lookup
+     * plus at most log2( MAX_TRACKED_MISSES ) swaps, however the table is churned.
+     */
+    private void noteMiss( String sql )
+    {
+        if ( sql == null )
+            return;
+
+        MissTally tally = (MissTally) sqlToMissTally.get( sql );
+        if ( tally == null )
+        {
+            if ( missHeapSize < MAX_TRACKED_MISSES )
+            {
+                tally = new MissTally( sql, 0 );
+                tally.heap_index = missHeapSize++;
+                missHeap[ tally.heap_index ] = tally;
+                siftUpMissTally( tally ); // with no misses yet, it rises to the root
+            }
+            else
+            {
+                MissTally least = missHeap[0];
+                sqlToMissTally.remove( least.sql );
+                tally = new MissTally( sql, least.misses );
+                tally.heap_index = 0;
+                missHeap[0] = tally;
+            }
+            sqlToMissTally.put( sql, tally );
+        }
+        ++tally.misses;
+        siftDownMissTally( tally );
+    }
+
+    // called only with this' lock
+    private void siftUpMissTally( MissTally tally )
+    {
+        int i = tally.heap_index;
+        while ( i > 0 )
+        {
+            int parent = (i - 1) / 2;
+            if ( missHeap[ parent ].misses <= tally.misses )
+                break;
+            placeMissTally( missHeap[ parent ], i );
+            i = parent;
+        }
+        placeMissTally( tally, i );
+    }
+
+    // called only with this' lock
+    private void siftDownMissTally( MissTally tally )
+    {
+        int i = tally.heap_index;
+        while ( true )
+        {
+            int child = 2 * i + 1;
+            if ( child >= missHeapSize )
+                break;
+            if ( child + 1 < missHeapSize && missHeap[ child + 1 ].misses < missHeap[ child ].misses )
+                ++child;
+            if ( tally.misses <= missHeap[ child ].misses )
+                break;
+            placeMissTally( missHeap[ child ], i );
+            i = child;
+        }
+        placeMissTally( tally, i );
+    }
+
+    // called only with this' lock
+    private void placeMissTally( MissTally tally, int i )
+    {
+        missHeap[ i ] = tally;
+        tally.heap_index = i;
+    }
+
+    private List warmUpShapes()
+    {
+        List out = new ArrayList( explicitWarmUpShapes );
+        if (shapesToShapes != null && ! shapesToShapes.isEmpty())
+        {
+            List byFrequency = new ArrayList( shapesToShapes.keySet() );
+            Collections.sort( byFrequency, StatementShape.DESCENDING_CHECKOUTS );
+            for (int i = 0, len = Math.min( warmUpCount, byFrequency.size() ); i < len; ++i)
+            {
+                Object shape = byFrequency.get(i);
+                if (! out.contains( shape ))
+                    out.add( shape );
+            }
+        }
+        return out;
+    }
+
     private KeyRec keyRec( StatementCacheKey key )
     { return ((KeyRec) keyToKeyRec.get( key )); }
 
@@ -661,6 +1067,15 @@ public abstract class GooGooStatementCache
 
         long last_long = -1;
 
+        // whether we cull to respect maxStatementsPerConnection, rather than maxStatements
+        final boolean per_connection;
+
+        public Deathmarch()
+        { this( false ); }
+
+        public Deathmarch( boolean per_connection )
+        { this.per_connection = per_connection; }
+
         public void deathmarchStatement( Object ps )
         {
             assert Thread.holdsLock(GooGooStatementCache.this);
@@ -745,6 +1160,11 @@ public abstract class GooGooStatementCache
                 if (Debug.DEBUG && this.contains( cullMeStmt ))
                     throw new RuntimeException("Inconsistency!!! Statement culled from deathmarch failed to be removed by removeStatement( ... )!");
 
+                if ( per_connection )
+                    ++num_evictions_max_statements_per_connection;
+                else
+                    ++num_evictions_max_statements;
+
                 return true;
             }
         }
@@ -849,7 +1269,7 @@ public abstract class GooGooStatementCache
             Deathmarch dm = (Deathmarch) cxnsToDms.get( pcon );
             if (dm == null)
             {
-                dm = new Deathmarch();
+                dm = new Deathmarch( true );
                 cxnsToDms.put( pcon, dm );
             }
         }
@@ -867,6 +1287,19 @@ public abstract class GooGooStatementCache
 
         public Deathmarch getDeathmarch( Connection pcon )
         { return (Deathmarch) cxnsToDms.get( pcon ); }
+
+        public void cullEachConnectionTo( int max )
+        {
+            assert Thread.holdsLock(GooGooStatementCache.this);
+
+            // culling may remove Connections from our Map, so we iterate over a copy
+            for (Iterator ii = new ArrayList( connectionSet() ).iterator(); ii.hasNext(); )
+            {
+                Connection pcon = (Connection) ii.next();
+                while ( getNumStatementsForConnection( pcon ) > max && getDeathmarch( pcon ).cullNext() )
+                    ;
+            }
+        }
     }
 
     /*
@@ -973,6 +1406,10 @@ public abstract class GooGooStatementCache
 	// Statements.
 	HashMap connectionsToZombieStatementSets = new HashMap();
 
+	// Connections whose zombie Statements are already slated for
+	// destruction by a posted batch task
+	HashSet connectionsWithPendingCloseBatch = new HashSet();
+
 	AsynchronousRunner deferredStatementDestroyer;
 
 	boolean closed = false;
@@ -1128,107 +1565,59 @@ public abstract class GooGooStatementCache
 	    return sum;
 	}
 	
-	private void trackedDestroyStatement( final Object parentConnection, final Object pstmt )
-	{
-	    //System.err.println("trackedDestroyStatement()");
-	    
-	    final class TrackedStatementCloseTask implements Runnable
-	    {
-		public void run()
-		{ 
-		    // debug
-		    //System.err.println("TrackedStatementCloseTask.run()");
-		    
-		    synchronized ( CautiousStatementDestructionManager.this )
-			{
-			    //System.err.println("TrackedStatementCloseTask -- with lock");
-			    
-			    final Set stmts = (Set) connectionsToZombieStatementSets.get( parentConnection );
-			    if ( stmts != null )
-				{
-				    StatementUtils.attemptClose( (PreparedStatement) pstmt ); 
-				    //System.err.println( "Closed tracked statement: " + pstmt);
-				    boolean removed1 = stmts.remove( pstmt );
-				    assert removed1;
-				    if (stmts.isEmpty())
-					{
-					    Object removed2 = connectionsToZombieStatementSets.remove( parentConnection );
-					    //assert removed2 != null;
-					    assert removed2 == stmts;
-					    CautiousStatementDestructionManager.this.notifyAll();
-					    //System.err.println( "Notify -- all statements closed after close tracked statements: " + pstmt);
-					}
-				    //else
-				    //System.err.println("Statements remaining open -- " + stmts);
-				}
-			}
-		    //printAllStats();
-		}
-	    }
-	    
-	    Runnable r = new TrackedStatementCloseTask();
-	    
-	    if (! closed)
-		{
-		    //blockingTaskAsyncRunner.postRunnable(r);
-		    deferredStatementDestroyer.postRunnable(r);
-		    //System.err.println("trackedDestroyStatement() -- posted task.");
-		}
-	    else
-		{
-		    r.run();
-		    //System.err.println("trackedDestroyStatement() -- closed, so destroying synchronously.");
-		}
-	}
-	
+	// all deferred closes for a Connection are performed as a single batch task, 
+	// at most one of which is ever pending per Connection. Statements are physically
+	// closed outside of this manager's lock, so that a large batch on one Connection
+	// does not stall marking and unmarking of every other Connection. The zombie Set
+	// remains mapped until the whole batch is done, so the Connection itself cannot
+	// be marked in use (and so cannot be checked out) until its Statements are closed.
 	private void destroyAllTrackedStatements( final Object parentConnection )
 	{
-	    //System.err.println("destroyAllTrackedStatements()");
-		    
+	    assert Thread.holdsLock( this );
+
+	    if (! connectionsWithPendingCloseBatch.add( parentConnection ))
+		return; // a batch task is already pending, and will pick up whatever's in the zombie set
+
 	    final class TrackedDestroyAllStatementsTask implements Runnable
 	    {
 		public void run()
 		{
-		    // debug
-		    //System.err.println("TrackedDestroyAllStatementsTask.run()");
-
-		    synchronized ( CautiousStatementDestructionManager.this )
+		    Object[] batch = null;
+		    while (true)
 			{
-			    //System.err.println("TrackedDestroyAllStatementsTask -- with lock");
-
-			    final Set stmts = (Set) connectionsToZombieStatementSets.remove( parentConnection );
-			    if (stmts != null)
+			    synchronized ( CautiousStatementDestructionManager.this )
 				{
-				    //System.err.println("TrackedDestroyAllStatementsTask -- to destroy " + stmts);
-				    for(Iterator ii = stmts.iterator(); ii.hasNext(); )
+				    final Set stmts = (Set) connectionsToZombieStatementSets.get( parentConnection );
+
+				    if ( batch != null && stmts != null )
+					stmts.removeAll( Arrays.asList( batch ) );
+
+				    if ( stmts == null || stmts.isEmpty() )
 					{
-					    PreparedStatement pstmt = (PreparedStatement) ii.next();
-					    StatementUtils.attemptClose( pstmt );
-					    ii.remove();
+					    connectionsToZombieStatementSets.remove( parentConnection );
+					    connectionsWithPendingCloseBatch.remove( parentConnection );
+					    CautiousStatementDestructionManager.this.notifyAll();
+					    break;
 					}
-				    CautiousStatementDestructionManager.this.notifyAll();
-				    //System.err.println( "Notify -- closed all tracked statements." );
+				    else
+					batch = stmts.toArray();
 				}
-			    //else
-			    //System.err.println("No statements for Connection " + parentConnection + "; with connections: " + connectionsToZombieStatementSets.keySet());
+
+			    if (Debug.DEBUG && logger.isLoggable(MLevel.FINEST))
+				logger.log(MLevel.FINEST, "Closing a batch of " + batch.length + " deferred Statements for Connection " + parentConnection + '.');
+			    
+			    for (int i = 0, len = batch.length; i < len; ++i)
+				StatementUtils.attemptClose( (PreparedStatement) batch[i] );
 			}
-		    //printAllStats();
 		}
 	    }
 	    
 	    Runnable r = new TrackedDestroyAllStatementsTask();
 	    
 	    if (! closed)
-		{
-		    //blockingTaskAsyncRunner.postRunnable(r);
-		    deferredStatementDestroyer.postRunnable(r);
-		    //System.err.println("destroyAllTrackedStatements() -- posted task.");
-		}
+		deferredStatementDestroyer.postRunnable(r);
 	    else
-		{
-		    r.run();
-		    //System.err.println("destroyAllTrackedStatements() -- closed, so destroying synchronously.");
-		}
+		r.run();
 	}
 
 	private Set statementsUnderDestruction( Object parentConnection ) 
@@ -31,4 +31,14 @@ public final class PerConnectionMaxOnlyStatementCache extends GooGooStatementCac
 	int cxn_stmt_count = dcsm.getNumStatementsForConnection( pcon );
 	return ( cxn_stmt_count < max_statements_per_connection || (cxn_stmt_count == max_statements_per_connection && dcsm.getDeathmarch( pcon ).cullNext()) );
     }
+
+    boolean acceptsLimits( int max_statements, int max_statements_per_connection )
+    { return max_statements <= 0 && max_statements_per_connection > 0; }
+
+    boolean updateLimits( int max_statements, int max_statements_per_connection )
+    {
+	this.max_statements_per_connection = max_statements_per_connection;
+	dcsm.cullEachConnectionTo( max_statements_per_connection );
+	return true;
+    }
 }
@@ -0,0 +1,48 @@
+package com.mchange.v2.c3p0.stmt;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * The number of times checkouts of a Statement with the given SQL text missed
+ * a statement cache, as tracked by the cache's bounded table of frequent misses.
+ * Counts tracked by that table may overstate a text's misses, by no more than
+ * {@link #getMaxOvercount()}, but never understate them.
+ */
+public final class StatementMissCount implements Serializable
+{
+    private static final long serialVersionUID = 1;
+
+    public final static Comparator DESCENDING_MISSES = new Comparator()
+    {
+	public int compare( Object a, Object b )
+	{
+	    long ma = ((StatementMissCount) a).numMisses;
+	    long mb = ((StatementMissCount) b).numMisses;
+	    return (ma > mb ? -1 : (ma == mb ? 0 : 1));
+	}
+    };
+
+    final String sql;
+    final long   numMisses;
+    final long   maxOvercount;
+
+    public StatementMissCount( String sql, long numMisses, long maxOvercount )
+    {
+	this.sql          = sql;
+	this.numMisses    = numMisses;
+	this.maxOvercount = maxOvercount;
+    }
+
+    public String getSql()
+    { return sql; }
+
+    public long getNumMisses()
+    { return numMisses; }
+
+    public long getMaxOvercount()
+    { return maxOvercount; }
+
+    public String toString()
+    { return numMisses + " [overcount <= " + maxOvercount + "] " + sql; }
+}
@@ -6,54 +6,75 @@ import javax.sql.*;
 
 public class ConnectionEventSupport
 {
+    private final static ConnectionEventListener[] NO_LISTENERS = new ConnectionEventListener[0];
+
     private PooledConnection source;
-    private HashSet          mlisteners = new HashSet();
+
+    // copy-on-write, so that firing events requires neither locking nor a defensive copy
+    private volatile ConnectionEventListener[] mlisteners = NO_LISTENERS;
+
+    // a close event carries nothing but its source, and is immutable, so we
+    // build it once rather than once per checkin
+    private final ConnectionEvent closedEvent;
 
     public ConnectionEventSupport(PooledConnection source)
-    { this.source = source; }
+    { 
+	this.source = source; 
+	this.closedEvent = new ConnectionEvent(source);
+    }
 
     public synchronized void addConnectionEventListener(ConnectionEventListener mlistener)
-    {mlisteners.add(mlistener);}
+    {
+	ConnectionEventListener[] current = mlisteners;
+	for (int i = 0, len = current.length; i < len; ++i)
+	    if (current[i].equals(mlistener)) return;
+
+	ConnectionEventListener[] updated = new ConnectionEventListener[ current.length + 1 ];
+	System.arraycopy( current, 0, updated, 0, current.length );
+	updated[ current.length ] = mlistener;
+	mlisteners = updated;
+    }
 
     public synchronized void removeConnectionEventListener(ConnectionEventListener mlistener)
-    {mlisteners.remove(mlistener);}
+    {
+	ConnectionEventListener[] current = mlisteners;
+	int len = current.length;
+	for (int i = 0; i < len; ++i)
+	    {
+		if (current[i].equals(mlistener))
+		    {
+			if (len == 1)
+			    mlisteners = NO_LISTENERS;
+			else
+			    {
+				ConnectionEventListener[] updated = new ConnectionEventListener[ len - 1 ];
+				System.arraycopy( current, 0, updated, 0, i );
+				System.arraycopy( current, i + 1, updated, i, len - i - 1 );
+				mlisteners = updated;
+			    }
+			return;
+		    }
+	    }
+    }
 
     public synchronized void printListeners()
-    { System.err.println( mlisteners ); }
+    { System.err.println( Arrays.asList( mlisteners ) ); }
 
     public synchronized int getListenerCount()
-    { return mlisteners.size(); }
+    { return mlisteners.length; }
 
     public void fireConnectionClosed()
     {
-	Set mlCopy;
-
-	synchronized (this)
-	    { mlCopy = (Set) mlisteners.clone(); }
-
-	ConnectionEvent evt = new ConnectionEvent(source);
-	for (Iterator i = mlCopy.iterator(); i.hasNext();)
-	    {
-		ConnectionEventListener cl = (ConnectionEventListener) i.next();
-		cl.connectionClosed(evt);
-	    }
+	ConnectionEventListener[] mlSnapshot = mlisteners;
+	for (int i = 0, len = mlSnapshot.length; i < len; ++i)
+	    mlSnapshot[i].connectionClosed(closedEvent);
     }
 
     public void fireConnectionErrorOccurred(SQLException error)
     {
-	Set mlCopy;
-
-	synchronized (this)
-	    { mlCopy = (Set) mlisteners.clone(); }
-
+	ConnectionEventListener[] mlSnapshot = mlisteners;
 	ConnectionEvent evt = new ConnectionEvent(source, error);
-	for (Iterator i = mlCopy.iterator(); i.hasNext();)
-	    {
-		ConnectionEventListener cl = (ConnectionEventListener) i.next();
-		cl.connectionErrorOccurred(evt);
-	    }
+	for (int i = 0, len = mlSnapshot.length; i < len; ++i)
+	    mlSnapshot[i].connectionErrorOccurred(evt);
     }
 }
-
-
-
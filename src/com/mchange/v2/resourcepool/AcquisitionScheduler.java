@@ -0,0 +1,141 @@
+package com.mchange.v2.resourcepool;
+
+import java.util.*;
+import com.mchange.v2.async.*;
+import com.mchange.v2.log.*;
+
+/*
+ * Shared by all the pools of a BasicResourcePoolFactory, this class meters
+ * acquisition tasks into the shared task runner, so that a burst of acquisitions
+ * in one pool cannot occupy every helper thread (starving idle tests and checkins
+ * of every pool) or storm the resource source with simultaneous requests.
+ *
+ * Acquisitions beyond the limits -- max_concurrent across all pools, and each
+ * pool's own max_concurrent_acquires -- are queued. When a slot frees, we start
+ * the queued acquisition whose pool has the most clients waiting, first come
+ * first served among equals.
+ *
+ * MT: we never acquire a pool's lock while holding our own. pools may (and do)
+ * submit while holding their locks.
+ */
+final class AcquisitionScheduler
+{
+    final static MLogger logger = MLog.getLogger( AcquisitionScheduler.class );
+
+    //MT: not-reassigned, thread-safe
+    final AsynchronousRunner taskRunner;
+
+    //MT: protected by this' lock
+    int        max_concurrent = 0;               // <= 0 means no limit
+    int        active         = 0;
+    LinkedList queued         = new LinkedList();
+    HashMap    activeByPool   = new HashMap();   // BasicResourcePool -> Integer
+
+    AcquisitionScheduler( AsynchronousRunner taskRunner )
+    { this.taskRunner = taskRunner; }
+
+    synchronized void setMaxConcurrent( int max_concurrent )
+    {
+	this.max_concurrent = max_concurrent;
+	dispatch();
+    }
+
+    synchronized int getNumActive()
+    { return active; }
+
+    synchronized int getNumQueued()
+    { return queued.size(); }
+
+    synchronized void submit( BasicResourcePool pool, Runnable task )
+    {
+	queued.add( new Entry( pool, task ) );
+	dispatch();
+    }
+
+    private synchronized void complete( Entry entry )
+    {
+	releaseSlot( entry.pool );
+	dispatch();
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private void dispatch()
+    {
+	assert Thread.holdsLock( this );
+
+	while ( max_concurrent <= 0 || active < max_concurrent )
+	{
+	    Entry best = null;
+	    int best_waiters = -1;
+	    for (Iterator ii = queued.iterator(); ii.hasNext(); )
+	    {
+		Entry e = (Entry) ii.next();
+		int pool_max = e.pool.max_concurrent_acquires;
+		if ( pool_max > 0 && activeCount( e.pool ) >= pool_max )
+		    continue;
+
+		int waiters = e.pool.num_acquire_waiters;
+		if ( waiters > best_waiters )
+		{
+		    best = e;
+		    best_waiters = waiters;
+		}
+	    }
+
+	    if (best == null)
+		break;
+
+	    queued.remove( best );
+	    ++active;
+	    activeByPool.put( best.pool, Integer.valueOf( activeCount( best.pool ) + 1 ) );
+	    try
+	    { taskRunner.postRunnable( best ); }
+	    catch ( Exception e )
+	    {
+		if (logger.isLoggable( MLevel.WARNING ))
+		    logger.log( MLevel.WARNING, "Could not post acquisition task " + best.task + " for " + best.pool + ". Will retry when another acquisition completes.", e );
+		releaseSlot( best.pool );
+		queued.addFirst( best );
+		break;
+	    }
+	}
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private void releaseSlot( BasicResourcePool pool )
+    {
+	assert Thread.holdsLock( this );
+
+	--active;
+	int pool_active = activeCount( pool ) - 1;
+	if (pool_active == 0)
+	    activeByPool.remove( pool );
+	else
+	    activeByPool.put( pool, Integer.valueOf( pool_active ) );
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private int activeCount( BasicResourcePool pool )
+    {
+	Integer count = (Integer) activeByPool.get( pool );
+	return ( count == null ? 0 : count.intValue() );
+    }
+
+    final class Entry implements Runnable
+    {
+	final BasicResourcePool pool;
+	final Runnable          task;
+
+	Entry( BasicResourcePool pool, Runnable task )
+	{
+	    this.pool = pool;
+	    this.task = task;
+	}
+
+	public void run()
+	{
+	    try { task.run(); }
+	    finally { complete( this ); }
+	}
+    }
+}
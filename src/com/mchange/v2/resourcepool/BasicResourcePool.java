@@ -1,6 +1,7 @@
 package com.mchange.v2.resourcepool;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import com.mchange.v2.async.*;
 import com.mchange.v2.log.*;
 import com.mchange.v2.lang.ThreadUtils;
@@ -19,24 +20,29 @@ class BasicResourcePool implements ResourcePool
     final Manager mgr;
 
     final int start;
-    final int min;
-    final int max;
-    final int inc;
 
     final int num_acq_attempts;
     final int acq_attempt_delay;
+    final int acq_retry_policy;
+    final int acq_retry_max_delay;               //milliseconds
+    final long acq_retry_budget;                 //milliseconds
 
-    final long check_idle_resources_delay;       //milliseconds
-    final long max_resource_age;                 //milliseconds
-    final long max_idle_time;                    //milliseconds
-    final long excess_max_idle_time;             //milliseconds
-    final long destroy_unreturned_resc_time;     //milliseconds
-    final long expiration_enforcement_delay;     //milliseconds
+    final static int RETRY_FIXED        = 0;
+    final static int RETRY_EXPONENTIAL  = 1;
+    final static int RETRY_DECORRELATED = 2;
 
     final boolean break_on_acquisition_failure;
-    final boolean debug_store_checkout_exceptions;
     final boolean force_synchronous_checkins;
 
+    final int  breaker_threshold;                //consecutive acquisition failures, <= 0 means no circuit breaker
+    final long breaker_reset_delay;              //milliseconds
+
+    final boolean derive_max_checkout_refurb_failures; //max_checkout_refurb_failures tracks max, rather than being set explicitly
+
+    final static int SUSPECT_AFTER_REFURB_FAILURES = 2; //in a row, within one checkout
+
+    final int  max_concurrent_acquires;          //<= 0 means no limit particular to this pool
+
     final long pool_start_time = System.currentTimeMillis();
 
     //MT: not-reassigned, thread-safe, and independent
@@ -44,16 +50,51 @@ class BasicResourcePool implements ResourcePool
     final AsynchronousRunner       taskRunner;
     final RunnableQueue            asyncEventQueue;
     final ResourcePoolEventSupport rpes;
+    final AcquisitionScheduler     acquisitionScheduler; //may be null
+    final ResourceBudget[]         resourceBudgets;      //shared with other pools, may be empty
+
+    //MT: written under this' lock, read without it by the AcquisitionScheduler
+    volatile int num_acquire_waiters = 0;
+
+    //MT: written without this' lock, read without it by the ResourceBudget
+    volatile long last_checkout_time = -1;
+
+    //MT: written under this' lock, whenever managed, unused, or excluded change, read without it
+    //    by monitoring clients, so that polling statistics never contends with checkouts
+    volatile int num_managed  = 0;
+    volatile int num_unused   = 0;
+    volatile int num_excluded = 0;
+
+    //MT: written under this' lock, may be read without it
+    //    (changed only by the constructor and reconfigure(...))
+    volatile int min;
+    volatile int max;
+    volatile int inc;
+
+    volatile long check_idle_resources_delay;       //milliseconds
+    volatile long max_resource_age;                 //milliseconds
+    volatile long max_idle_time;                    //milliseconds
+    volatile long excess_max_idle_time;             //milliseconds
+    volatile long destroy_unreturned_resc_time;     //milliseconds
+    volatile long report_unreturned_resc_time;      //milliseconds, <= 0 means overdue resources are not reported
+    volatile boolean debug_store_checkout_exceptions;
+    volatile int  checkout_stack_sample_rate;       //<= 0 means capture only if debug_store_checkout_exceptions
+    volatile boolean test_on_checkout;              //whether mgr.refurbishResourceOnCheckout(...) tests resources
+    volatile long expiration_enforcement_delay;     //milliseconds
+    volatile int  max_checkout_refurb_failures;     //per checkout, before we give up on finding a good resource
 
     //MT: protected by this' lock
     Timer                    cullAndIdleRefurbishTimer;
     TimerTask                cullTask;
     TimerTask                idleRefurbishTask;
+    TimerTask                rebuildStepTask;
     HashSet                  acquireWaiters = new HashSet();
+    HashMap                  acquireWaiterDeadlines = new HashMap(); // Thread -> Long, for acquireWaiters with timeouts
     HashSet                  otherWaiters = new HashSet();
 
     int pending_acquires;
     int pending_removes;
+    int queued_acquires;  // acquisition series posted but not yet begun, included in pending_acquires
 
     int target_pool_size;
 
@@ -69,17 +110,41 @@ class BasicResourcePool implements ResourcePool
 
     Map formerResources = new WeakHashMap();
 
-    Set idleCheckResources = new HashSet();
+    /* resources, managed, excluded, or being destroyed, whose acquisition was charged to our resourceBudgets */
+    HashSet budgetedResources = new HashSet();
+
+    /* keys are resources awaiting or undergoing an idle test, values their AsyncTestIdleResourceTask */
+    HashMap idleCheckResources = new HashMap();
+
+    int checkouts_since_stack_sample = 0;
 
     boolean force_kill_acquires = false;
 
     boolean broken = false;
 
-//  long total_acquired = 0;
+    //MT: statistics below marked volatile are written under this' lock, but may be read without it
+    volatile long total_acquired = 0;
+    long avg_acquire_time = 0;   // milliseconds, a moving average over successful acquisitions
+    volatile long rebuilds       = 0;
 
-    long failed_checkins   = 0;
-    long failed_checkouts  = 0;
-    long failed_idle_tests = 0;
+    int    consecutive_acquire_failures = 0;
+    volatile String breaker_state                = CIRCUIT_BREAKER_CLOSED;
+    volatile long   breaker_transition_time      = -1;
+    volatile long   breaker_trips                = 0;
+
+    volatile long failed_checkins   = 0;
+    volatile long failed_checkouts  = 0;
+    volatile long failed_idle_tests = 0;
+    volatile long overdue_checkouts = 0;
+
+    final static int MAX_OVERDUE_SITES = 64;
+
+    //MT: thread-safe, tallies written under this' lock, read without it
+    final ConcurrentHashMap siteToOverdueTally = new ConcurrentHashMap();
+
+    //MT: thread-safe
+    final LatencyHistogram checkoutLatencies = new LatencyHistogram(); // includes waits and refurbishment for checkout
+    final LatencyHistogram acquireLatencies  = new LatencyHistogram(); // successful acquisitions only
 
     Throwable lastCheckinFailure      = null;
     Throwable lastCheckoutFailure     = null;
@@ -97,15 +162,51 @@ class BasicResourcePool implements ResourcePool
     public long getUpTime()
     { return System.currentTimeMillis() - pool_start_time; }
 
-    public synchronized long getNumFailedCheckins()
+    public long getNumFailedCheckins()
     { return failed_checkins; }
 
-    public synchronized long getNumFailedCheckouts()
+    public long getNumFailedCheckouts()
     { return failed_checkouts; }
 
-    public synchronized long getNumFailedIdleTests()
+    public long getNumFailedIdleTests()
     { return failed_idle_tests; }
 
+    public long getNumAcquisitions()
+    { return total_acquired; }
+
+    public long getNumRebuilds()
+    { return rebuilds; }
+
+    public long getNumOverdueCheckouts()
+    { return overdue_checkouts; }
+
+    public OverdueCheckoutSite[] getOverdueCheckoutSites()
+    {
+        List out = new ArrayList( siteToOverdueTally.size() );
+        for ( Iterator ii = siteToOverdueTally.values().iterator(); ii.hasNext(); )
+        {
+            OverdueTally tally = (OverdueTally) ii.next();
+            out.add( new OverdueCheckoutSite( tally.site, tally.overdue ) );
+        }
+        Collections.sort( out, OverdueCheckoutSite.DESCENDING_OVERDUE );
+        return (OverdueCheckoutSite[]) out.toArray( new OverdueCheckoutSite[ out.size() ] );
+    }
+
+    public String getCircuitBreakerState()
+    { return breaker_state; }
+
+    public long getNumCircuitBreakerTrips()
+    { return breaker_trips; }
+
+    public long getCircuitBreakerLastTransitionTime()
+    { return breaker_transition_time; }
+
+    public LatencyHistogram.Snapshot getCheckoutLatencies()
+    { return checkoutLatencies.snapshot(); }
+
+    public LatencyHistogram.Snapshot getAcquisitionLatencies()
+    { return acquireLatencies.snapshot(); }
+
     public synchronized Throwable getLastCheckinFailure()
     { return lastCheckinFailure; }
 
@@ -152,8 +253,96 @@ class BasicResourcePool implements ResourcePool
     private synchronized void setLastAcquisitionFailure( Throwable t )
     { this.lastAcquisitionFailiure = t; }
 
-    public synchronized int getNumCheckoutWaiters()
-    { return acquireWaiters.size(); }
+    // ought not be called while holding this' lock
+    private synchronized void noteAcquisitionFailure( Throwable t )
+    {
+        setLastAcquisitionFailure( t );
+        ++consecutive_acquire_failures;
+
+        if ( breaker_threshold > 0 )
+        {
+            if ( breaker_state == CIRCUIT_BREAKER_HALF_OPEN )
+                openCircuitBreaker( "A probe acquisition attempt failed." );
+            else if ( breaker_state == CIRCUIT_BREAKER_CLOSED && consecutive_acquire_failures >= breaker_threshold && unused.isEmpty() )
+                openCircuitBreaker( consecutive_acquire_failures + " consecutive acquisition attempts have failed, and no resources are available." );
+        }
+    }
+
+    //must be called from a pre-existing sync'ed block
+    private void noteAcquisitionSuccess()
+    {
+        assert Thread.holdsLock( this );
+
+        consecutive_acquire_failures = 0;
+        if ( breaker_state != CIRCUIT_BREAKER_CLOSED )
+        {
+            if ( logger.isLoggable( MLevel.INFO ) )
+                logger.log( MLevel.INFO, "A resource was successfully acquired. Closing the circuit breaker of " + this + '.' );
+            transitionCircuitBreaker( CIRCUIT_BREAKER_CLOSED );
+        }
+    }
+
+    //must be called from a pre-existing sync'ed block
+    private void openCircuitBreaker( String why )
+    {
+        assert Thread.holdsLock( this );
+
+        if ( logger.isLoggable( MLevel.WARNING ) )
+            logger.log( MLevel.WARNING, why + " Opening the circuit breaker of " + this + ". Checkouts that would have to wait for " +
+                        "new resources will fail immediately for the next " + breaker_reset_delay + " milliseconds." );
+        transitionCircuitBreaker( CIRCUIT_BREAKER_OPEN );
+        ++breaker_trips;
+        this.notifyAll(); // let threads already awaiting a resource fail fast too
+    }
+
+    //must be called from a pre-existing sync'ed block
+    private void transitionCircuitBreaker( String state )
+    {
+        assert Thread.holdsLock( this );
+
+        breaker_state = state;
+        breaker_transition_time = System.currentTimeMillis();
+    }
+
+    /*
+     * Called before a checkout that will have to wait for an acquisition. While the breaker
+     * is open, such checkouts fail immediately. Once breaker_reset_delay has elapsed, the
+     * breaker becomes half-open, and the checkout that notices lets an acquisition through as
+     * a probe. While that probe is in flight, other checkouts that would wait still fail fast.
+     * A successful acquisition closes the breaker, a failed one reopens it.
+     */
+    //must be called from a pre-existing sync'ed block
+    private void checkCircuitBreaker() throws CircuitOpenException
+    {
+        assert Thread.holdsLock( this );
+
+        if ( breaker_state == CIRCUIT_BREAKER_CLOSED )
+            return;
+
+        if ( breaker_state == CIRCUIT_BREAKER_OPEN )
+        {
+            if ( System.currentTimeMillis() - breaker_transition_time < breaker_reset_delay )
+                throw circuitOpenException();
+            else
+            {
+                if ( logger.isLoggable( MLevel.INFO ) )
+                    logger.log( MLevel.INFO, "The circuit breaker of " + this + " is now half-open. Permitting a probe acquisition attempt." );
+                transitionCircuitBreaker( CIRCUIT_BREAKER_HALF_OPEN );
+            }
+        }
+        else if ( pending_acquires > 0 ) // half-open, with the probe already underway
+            throw circuitOpenException();
+    }
+
+    private CircuitOpenException circuitOpenException()
+    {
+        return new CircuitOpenException("The circuit breaker of " + this + " is " + breaker_state +
+                                        " after repeated failures to acquire new resources. Refusing to wait for a resource.",
+                                        lastAcquisitionFailiure);
+    }
+
+    public int getNumCheckoutWaiters()
+    { return num_acquire_waiters; }
 
     public synchronized int getNumPendingAcquireTasks()
     { return pending_acquires; }
@@ -206,15 +395,25 @@ class BasicResourcePool implements ResourcePool
                     int                      inc,
                     int                      num_acq_attempts,
                     int                      acq_attempt_delay,
+                    String                   acq_retry_policy,
+                    int                      acq_retry_max_delay,
+                    long                     acq_retry_budget,
                     long                     check_idle_resources_delay,
                     long                     max_resource_age,
                     long                     max_idle_time,
                     long                     excess_max_idle_time,
                     long                     destroy_unreturned_resc_time,
+                    long                     report_unreturned_resc_time,
                     long                     expiration_enforcement_delay,
                     boolean                  break_on_acquisition_failure,
                     boolean                  debug_store_checkout_exceptions,
+                    int                      checkout_stack_sample_rate,
 		    boolean                  force_synchronous_checkins,
+                    boolean                  test_on_checkout,
+                    int                      breaker_threshold,
+                    long                     breaker_reset_delay,
+                    int                      max_checkout_refurb_failures,
+                    int                      max_concurrent_acquires,
                     AsynchronousRunner       taskRunner,
                     RunnableQueue            asyncEventQueue,
                     Timer                    cullAndIdleRefurbishTimer,
@@ -251,22 +450,36 @@ class BasicResourcePool implements ResourcePool
             this.inc                              = inc;
             this.num_acq_attempts                 = num_acq_attempts;
             this.acq_attempt_delay                = acq_attempt_delay;
+            this.acq_retry_policy                 = parseRetryPolicy( acq_retry_policy );
+            this.acq_retry_max_delay              = Math.max( acq_retry_max_delay, acq_attempt_delay );
+            this.acq_retry_budget                 = acq_retry_budget;
             this.check_idle_resources_delay       = check_idle_resources_delay;
             this.max_resource_age                 = max_resource_age;
             this.max_idle_time                    = max_idle_time;
             this.excess_max_idle_time             = excess_max_idle_time;
             this.destroy_unreturned_resc_time     = destroy_unreturned_resc_time;
+            this.report_unreturned_resc_time      = report_unreturned_resc_time;
             //this.expiration_enforcement_delay     = expiration_enforcement_delay; -- set up below
             this.break_on_acquisition_failure     = break_on_acquisition_failure;
-            this.debug_store_checkout_exceptions  = (debug_store_checkout_exceptions && destroy_unreturned_resc_time > 0);
+            this.debug_store_checkout_exceptions  = debug_store_checkout_exceptions;
+            this.checkout_stack_sample_rate       = checkout_stack_sample_rate;
 	    this.force_synchronous_checkins       = force_synchronous_checkins;
+            this.test_on_checkout                 = test_on_checkout;
+            this.breaker_threshold                = breaker_threshold;
+            this.breaker_reset_delay              = breaker_reset_delay;
+            this.derive_max_checkout_refurb_failures = ( max_checkout_refurb_failures <= 0 );
+            this.max_checkout_refurb_failures     = ( derive_max_checkout_refurb_failures ? derivedMaxCheckoutRefurbFailures( max ) : max_checkout_refurb_failures );
+            this.max_concurrent_acquires          = max_concurrent_acquires;
             this.taskRunner                       = taskRunner;
             this.asyncEventQueue                  = asyncEventQueue;
             this.cullAndIdleRefurbishTimer        = cullAndIdleRefurbishTimer;
             this.factory                          = factory;
+            this.acquisitionScheduler             = ( factory == null ? null : factory.getAcquisitionScheduler() );
+            this.resourceBudgets                  = ( factory == null ? new ResourceBudget[0] : factory.getResourceBudgets() );
 
             this.pending_acquires = 0;
             this.pending_removes  = 0;
+            this.queued_acquires  = 0;
 
             this.target_pool_size = this.start;
 
@@ -275,43 +488,34 @@ class BasicResourcePool implements ResourcePool
             else
                 this.rpes = null;
 
+            for (int i = 0; i < resourceBudgets.length; ++i)
+                resourceBudgets[i].register( this );
+
             //start acquiring our initial resources
             ensureStartResources();
 
-            if (mustEnforceExpiration())
-            {
-                if (expiration_enforcement_delay <= 0)
-                    this.expiration_enforcement_delay = automaticExpirationEnforcementDelay();
-                else
-                    this.expiration_enforcement_delay = expiration_enforcement_delay;
-
-                this.cullTask = new CullTask();
-                //System.err.println("minExpirationTime(): " + minExpirationTime());
-                //System.err.println("this.expiration_enforcement_delay: " + this.expiration_enforcement_delay);
-                cullAndIdleRefurbishTimer.schedule( cullTask, minExpirationTime(), this.expiration_enforcement_delay );
-            }
-            else
-                this.expiration_enforcement_delay = expiration_enforcement_delay;
-
-            //System.err.println("this.check_idle_resources_delay: " + this.check_idle_resources_delay);
-            if (check_idle_resources_delay > 0)
-            {
-                this.idleRefurbishTask = new CheckIdleResourcesTask();
-                cullAndIdleRefurbishTimer.schedule( idleRefurbishTask,
-                                check_idle_resources_delay,
-                                check_idle_resources_delay );
-            }
+            scheduleCullTask( expiration_enforcement_delay );
+            scheduleIdleRefurbishTask();
 
             if ( logger.isLoggable( MLevel.FINER ) )
                 logger.finer( this + " config: [start -> " + this.start + "; min -> " + this.min + "; max -> " + this.max + "; inc -> " + this.inc +
                                 "; num_acq_attempts -> " + this.num_acq_attempts + "; acq_attempt_delay -> " + this.acq_attempt_delay +
+                                "; acq_retry_policy -> " + acq_retry_policy + "; acq_retry_max_delay -> " + this.acq_retry_max_delay +
+                                "; acq_retry_budget -> " + this.acq_retry_budget +
                                 "; check_idle_resources_delay -> " + this.check_idle_resources_delay + "; max_resource_age -> " + this.max_resource_age +
                                 "; max_idle_time -> " + this.max_idle_time + "; excess_max_idle_time -> " + this.excess_max_idle_time +
                                 "; destroy_unreturned_resc_time -> " + this.destroy_unreturned_resc_time +
+                                "; report_unreturned_resc_time -> " + this.report_unreturned_resc_time +
                                 "; expiration_enforcement_delay -> " + this.expiration_enforcement_delay +
                                 "; break_on_acquisition_failure -> " + this.break_on_acquisition_failure +
                                 "; debug_store_checkout_exceptions -> " + this.debug_store_checkout_exceptions +
+                                "; checkout_stack_sample_rate -> " + this.checkout_stack_sample_rate +
                                 "; force_synchronous_checkins -> " + this.force_synchronous_checkins +
+                                "; test_on_checkout -> " + this.test_on_checkout +
+                                "; breaker_threshold -> " + this.breaker_threshold +
+                                "; breaker_reset_delay -> " + this.breaker_reset_delay +
+                                "; max_checkout_refurb_failures -> " + this.max_checkout_refurb_failures +
+                                "; max_concurrent_acquires -> " + this.max_concurrent_acquires +
                 "]");
 
         }
@@ -338,9 +542,14 @@ class BasicResourcePool implements ResourcePool
         max_resource_age > 0 ||
         max_idle_time > 0 ||
         excess_max_idle_time > 0 ||
-        destroy_unreturned_resc_time > 0;
+        destroy_unreturned_resc_time > 0 ||
+        report_unreturned_resc_time > 0;
     }
 
+    // no need to sync
+    private boolean mayBeOverdue()
+    { return destroy_unreturned_resc_time > 0 || report_unreturned_resc_time > 0; }
+
     // no need to sync
     private long minExpirationTime()
     {
@@ -353,6 +562,8 @@ class BasicResourcePool implements ResourcePool
             out = Math.min( out, excess_max_idle_time );
         if (destroy_unreturned_resc_time > 0)
             out = Math.min( out, destroy_unreturned_resc_time );
+        if (report_unreturned_resc_time > 0)
+            out = Math.min( out, report_unreturned_resc_time );
         return out;
     }
 
@@ -368,6 +579,127 @@ class BasicResourcePool implements ResourcePool
     public long getEffectiveExpirationEnforcementDelay()
     { return expiration_enforcement_delay; }
 
+    // called from the constructor, or from a pre-existing sync'ed block
+    private void scheduleCullTask( long expiration_enforcement_delay )
+    {
+        if (mustEnforceExpiration())
+        {
+            if (expiration_enforcement_delay <= 0)
+                this.expiration_enforcement_delay = automaticExpirationEnforcementDelay();
+            else
+                this.expiration_enforcement_delay = expiration_enforcement_delay;
+
+            this.cullTask = new CullTask();
+            //System.err.println("minExpirationTime(): " + minExpirationTime());
+            //System.err.println("this.expiration_enforcement_delay: " + this.expiration_enforcement_delay);
+            cullAndIdleRefurbishTimer.schedule( cullTask, minExpirationTime(), this.expiration_enforcement_delay );
+        }
+        else
+            this.expiration_enforcement_delay = expiration_enforcement_delay;
+    }
+
+    // called from the constructor, or from a pre-existing sync'ed block
+    private void scheduleIdleRefurbishTask()
+    {
+        //System.err.println("this.check_idle_resources_delay: " + this.check_idle_resources_delay);
+        if (check_idle_resources_delay > 0)
+        {
+            this.idleRefurbishTask = new CheckIdleResourcesTask();
+            cullAndIdleRefurbishTimer.schedule( idleRefurbishTask,
+                            check_idle_resources_delay,
+                            check_idle_resources_delay );
+        }
+    }
+
+    /*
+     * Applies new limits and maintenance periods to the live pool. Nothing is
+     * destroyed eagerly: if the pool is now too large, idle resources are
+     * removed as they become available; if it may now grow, it grows for
+     * clients already waiting. The cull and idle-test tasks are rescheduled
+     * only if their periods have changed, so that reconfiguring, say, the
+     * maximum pool size does not postpone the next idle test.
+     */
+    public synchronized void reconfigure( int min,
+                                          int max,
+                                          int inc,
+                                          long check_idle_resources_delay,
+                                          long max_resource_age,
+                                          long max_idle_time,
+                                          long excess_max_idle_time,
+                                          long destroy_unreturned_resc_time,
+                                          long report_unreturned_resc_time,
+                                          boolean debug_store_checkout_exceptions,
+                                          int checkout_stack_sample_rate,
+                                          long expiration_enforcement_delay,
+                                          boolean test_on_checkout )
+        throws ResourcePoolException
+    {
+        ensureNotBroken();
+
+        if ( min > max )
+        {
+            if ( logger.isLoggable( MLevel.WARNING ) )
+                logger.log( MLevel.WARNING, "Bad pool size config, min " + min + " > max " + max + ". Using " + max + " as min." );
+            min = max;
+        }
+
+        long old_min_expiration_time = minExpirationTime();
+        long old_expiration_enforcement_delay = this.expiration_enforcement_delay;
+        boolean idle_check_changed = ( check_idle_resources_delay != this.check_idle_resources_delay );
+
+        this.min                          = min;
+        this.max                          = max;
+        this.inc                          = inc;
+        this.check_idle_resources_delay   = check_idle_resources_delay;
+        this.max_resource_age             = max_resource_age;
+        this.max_idle_time                = max_idle_time;
+        this.excess_max_idle_time         = excess_max_idle_time;
+        this.destroy_unreturned_resc_time = destroy_unreturned_resc_time;
+        this.report_unreturned_resc_time  = report_unreturned_resc_time;
+        this.debug_store_checkout_exceptions = debug_store_checkout_exceptions;
+        this.checkout_stack_sample_rate   = checkout_stack_sample_rate;
+        this.test_on_checkout             = test_on_checkout;
+        if ( derive_max_checkout_refurb_failures )
+            this.max_checkout_refurb_failures = derivedMaxCheckoutRefurbFailures( max );
+
+        long new_expiration_enforcement_delay = ( mustEnforceExpiration() && expiration_enforcement_delay <= 0 ? automaticExpirationEnforcementDelay() : expiration_enforcement_delay );
+        if ( minExpirationTime() != old_min_expiration_time || new_expiration_enforcement_delay != old_expiration_enforcement_delay )
+        {
+            if ( cullTask != null )
+                cullTask.cancel();
+            this.cullTask = null;
+            scheduleCullTask( expiration_enforcement_delay );
+        }
+        if ( idle_check_changed )
+        {
+            if ( idleRefurbishTask != null )
+                idleRefurbishTask.cancel();
+            this.idleRefurbishTask = null;
+            scheduleIdleRefurbishTask();
+        }
+
+        // waiting clients may justify growth that the old max forbade
+        int target = Math.max( target_pool_size, managed.size() + liveAcquireWaiters() );
+        this.target_pool_size = Math.max( Math.min( max, target ), min );
+        _recheckResizePool();
+
+        if ( logger.isLoggable( MLevel.FINE ) )
+            logger.fine( this + " reconfigured: [min -> " + this.min + "; max -> " + this.max + "; inc -> " + this.inc +
+                         "; check_idle_resources_delay -> " + this.check_idle_resources_delay + "; max_resource_age -> " + this.max_resource_age +
+                         "; max_idle_time -> " + this.max_idle_time + "; excess_max_idle_time -> " + this.excess_max_idle_time +
+                         "; destroy_unreturned_resc_time -> " + this.destroy_unreturned_resc_time +
+                         "; report_unreturned_resc_time -> " + this.report_unreturned_resc_time +
+                         "; debug_store_checkout_exceptions -> " + this.debug_store_checkout_exceptions +
+                         "; checkout_stack_sample_rate -> " + this.checkout_stack_sample_rate +
+                         "; expiration_enforcement_delay -> " + this.expiration_enforcement_delay +
+                         "; test_on_checkout -> " + this.test_on_checkout +
+                         "; max_checkout_refurb_failures -> " + this.max_checkout_refurb_failures +
+                         "; target_pool_size -> " + this.target_pool_size + "]" );
+    }
+
+    private static int derivedMaxCheckoutRefurbFailures( int max )
+    { return Math.max( 2 * max, 2 ); }
+
     private synchronized boolean isBroken()
     { return broken; }
 
@@ -414,9 +746,11 @@ class BasicResourcePool implements ResourcePool
         }
     }
 
+    // a new acquisition series is pending, and queued until it begins
     private synchronized void incrementPendingAcquires()
     {
         ++pending_acquires;
+        ++queued_acquires;
 
         if (logger.isLoggable(MLevel.FINEST))
             logger.finest("incremented pending_acquires: " + pending_acquires);
@@ -454,16 +788,120 @@ class BasicResourcePool implements ResourcePool
     }
 
     // idempotent
-    private synchronized void recheckResizePool()
+    synchronized void recheckResizePool()
     { _recheckResizePool(); }
 
+    /*
+     * called by the ResourceBudget, when pools sharing it need a resource
+     * it cannot afford. we give up one idle resource, if we have one above
+     * our minimum size, and shrink our target size so that we don't simply
+     * reacquire it. if clients are waiting for acquisitions, an idle resource
+     * is one just acquired for them, that they have yet to wake and take, so we
+     * give up nothing.
+     *
+     * returns true if a resource was given up
+     */
+    synchronized boolean shedIdleResource()
+    {
+        if ( broken || managed.size() <= min || liveAcquireWaiters() > 0 )
+            return false;
+
+        for (Iterator ii = unused.iterator(); ii.hasNext(); )
+        {
+            Object resc = ii.next();
+            if (! idleCheckResources.containsKey( resc ) )
+            {
+                if (logger.isLoggable( MLevel.FINE ))
+                    logger.fine( this + " -- Giving up an idle resource, so that another pool sharing its resource budget may acquire one." );
+
+                removeResource( resc );
+                target_pool_size = Math.max( min, Math.min( target_pool_size, managed.size() ) );
+                return true;
+            }
+        }
+        return false;
+    }
+
     // must be called from synchronized method
     private void expandPool(int count)
     {
         assert Thread.holdsLock(this);
 
         for (int i = 0; i < count; ++i)
-            taskRunner.postRunnable( new ScatteredAcquireTask() );
+            postAcquireTask( new ScatteredAcquireTask() );
+    }
+
+    private void postAcquireTask( ScatteredAcquireTask task )
+    {
+        if ( acquisitionScheduler != null )
+            acquisitionScheduler.submit( this, task );
+        else
+            taskRunner.postRunnable( task );
+    }
+
+    /*
+     * called as a queued acquisition series is about to begin. if demand has
+     * fallen away while the series was queued (clients waiting for resources
+     * have timed out, or excess resources have been culled), so that the resources
+     * already managed or being acquired suffice, we cancel the series.
+     *
+     * returns true if the series should proceed
+     */
+    private synchronized boolean beginAcquisitionSeries()
+    {
+        --queued_acquires;
+
+        int in_flight = pending_acquires - queued_acquires - 1; // not counting this series
+        if (! broken && ! force_kill_acquires && managed.size() + in_flight >= target_pool_size)
+        {
+            _decrementPendingAcquires();
+            if (logger.isLoggable(MLevel.FINE))
+                logger.fine( this + " -- Canceling a queued acquisition, demand for which has disappeared. [managed: " + managed.size() +
+                             "; in-flight acquisitions: " + in_flight + "; target_pool_size: " + target_pool_size + "]" );
+            return false;
+        }
+        else
+            return true;
+    }
+
+    // waiters whose deadlines have passed are leaving, and need no resources
+    // must be called from a pre-existing sync'ed block
+    private int liveAcquireWaiters()
+    {
+        assert Thread.holdsLock( this );
+
+        int out = acquireWaiters.size();
+        if (! acquireWaiterDeadlines.isEmpty())
+        {
+            long now = System.currentTimeMillis();
+            for (Iterator ii = acquireWaiterDeadlines.values().iterator(); ii.hasNext(); )
+            {
+                if (((Long) ii.next()).longValue() <= now)
+                    --out;
+            }
+        }
+        return out;
+    }
+
+    /*
+     * a client waiting for a resource to be acquired has given up, by timeout or
+     * interruption. we lower our target to what remaining waiters need, so that queued
+     * acquisitions made on that client's behalf will be canceled. we never target fewer
+     * resources than are already managed or being actively acquired, so nothing
+     * acquired need be removed.
+     */
+    // must be called from a pre-existing sync'ed block
+    private void noteAbandonedAcquireWait()
+    {
+        assert Thread.holdsLock( this );
+
+        int needed = Math.max( min, managed.size() + (pending_acquires - queued_acquires) + liveAcquireWaiters() );
+        if ( needed < target_pool_size )
+        {
+            if (logger.isLoggable(MLevel.FINER))
+                logger.finer( this + " -- A client gave up waiting for an acquisition. Lowering target_pool_size from " + target_pool_size + " to " + needed + "." );
+            target_pool_size = needed;
+        }
     }
 
     // must be called from synchronized method
@@ -476,22 +914,49 @@ class BasicResourcePool implements ResourcePool
     }
 
     /*
-     * This function recursively calls itself... under nonpathological
-     * situations, it shouldn't be a problem, but if resources can never
-     * successfully check out for some reason, we might blow the stack...
+     * Resources that cannot be refurbished for checkout are removed, and we
+     * look for another. We used to do this by recursion, which could blow the
+     * stack if resources never check out successfully. Now we loop, but give up
+     * after max_checkout_refurb_failures rejections.
+     *
+     * after SUSPECT_AFTER_REFURB_FAILURES rejections in a row, the remaining idle
+     * resources are probably bad too (e.g. the database has restarted). rather than
+     * test them one by one on the client's Thread, we test them all in the background,
+     * and the client waits for a resource that is not under suspicion, which may be
+     * a freshly acquired one.
      *
      * by the semantics of wait(), a timeout of zero means forever.
      */
     public Object checkoutResource( long timeout )
 	throws TimeoutException, ResourcePoolException, InterruptedException
+    { return checkoutResource( timeout, null, false ); }
+
+    public Object checkoutResource( long timeout, Preference preference, boolean client_deadline )
+	throws TimeoutException, ResourcePoolException, InterruptedException
     {
-	try
+	long start = System.currentTimeMillis();
+	boolean short_deadline = client_deadline && shorterThanTypicalAcquisition( timeout );
+	int rejections = 0;
+	while ( true )
 	{
-	    Object resc = prelimCheckoutResource( timeout );
+	    boolean suspicious = ( rejections >= SUSPECT_AFTER_REFURB_FAILURES );
+	    if ( rejections == SUSPECT_AFTER_REFURB_FAILURES )
+		suspectIdleResources();
+
+	    Object resc = prelimCheckoutResource( remainingTimeout( timeout, start ), short_deadline, !suspicious, preference );
+
+	    // if the wait for the resource used up the client's time, we
+	    // don't begin a test the client will not live to see. but if
+	    // no test is due, the resource is ready, and the client gets it
+	    if ( timeout > 0 && System.currentTimeMillis() - start >= timeout && testPendingForCheckout( resc ) )
+	    {
+		returnUnrefurbished( resc );
+		throw new TimeoutException("A client timed out while waiting to acquire a resource from " + this + " -- no time remained to refurbish it for checkout.");
+	    }
 
 	    // best to do the recheckout while we don't hold this'
 	    // lock, so we don't refurbish-on-checkout while holding.
-	    boolean refurb = attemptRefurbishResourceOnCheckout( resc );
+	    boolean refurb = attemptDeferredIdleTest( resc ) && attemptRefurbishResourceOnCheckout( resc );
 
 	    synchronized( this )
 	    {
@@ -520,104 +985,173 @@ class BasicResourcePool implements ResourcePool
 		    else
 		    {
 			card.checkout_time = System.currentTimeMillis();
-			if (debug_store_checkout_exceptions)
+			last_checkout_time = card.checkout_time;
+			card.overdue_noted = false;
+			// stack traces are only of use if checkouts can become overdue
+			if (mayBeOverdue() && (debug_store_checkout_exceptions || sampleCheckoutStackTrace()))
 			    card.checkoutStackTraceException = new Exception("DEBUG STACK TRACE: Overdue resource check-out stack trace.");
+			else
+			    card.checkoutStackTraceException = null;
 		    }
 		}
 	    }
 
-	    if (resc == null)
-		return checkoutResource( timeout );
-	    else
+	    if (resc != null)
+	    {
+		checkoutLatencies.record( System.currentTimeMillis() - start );
 		return resc;
+	    }
+	    else if (++rejections >= max_checkout_refurb_failures)
+		throw new NoGoodResourcesException( "After checking " + rejections + " resources, no resources tested acceptable for checkout. " +
+						    "See logger com.mchange.v2.resourcepool.BasicResourcePool output at FINER/DEBUG for information on individual failures." );
 	}
-	catch ( StackOverflowError e )
+    }
+
+    private synchronized boolean shorterThanTypicalAcquisition( long timeout )
+    { return timeout > 0 && timeout < avg_acquire_time; }
+
+    private synchronized boolean testPendingForCheckout( Object resc )
+    {
+	if ( test_on_checkout )
+	    return true;
+	PunchCard card = (PunchCard) managed.get( resc );
+	return card != null && card.testDueBeforeCheckout();
+    }
+
+    // a resource taken by prelimCheckoutResource, but not checked out after all
+    private synchronized void returnUnrefurbished( Object resc )
+    {
+	if ( managed.containsKey( resc ) && ! unused.contains( resc ) )
 	{
-	    throw new NoGoodResourcesException( "After checking so many resources we blew the stack, no resources tested acceptable for checkout. " +
-						"See logger com.mchange.v2.resourcepool.BasicResourcePool output at FINER/DEBUG for information on individual failures.",
-						e );
+	    unused.add( 0, resc );
+	    updateCounts();
+	    this.notifyAll();
 	}
     }
 
-    private synchronized Object prelimCheckoutResource( long timeout )
+    private synchronized void suspectIdleResources()
+    {
+	if (logger.isLoggable( MLevel.FINE ))
+	    logger.log( MLevel.FINE, this + " -- " + SUSPECT_AFTER_REFURB_FAILURES + " resources in a row failed refurbishment for checkout. " +
+			"Testing all " + unused.size() + " idle resources in the background." );
+
+	if (! broken)
+	    checkIdleResources();
+    }
+
+    /*
+     * returns the portion of timeout not yet used up since start, or zero (wait forever)
+     * if there is no timeout. throws a TimeoutException if timeout has been exhausted.
+     */
+    private long remainingTimeout( long timeout, long start ) throws TimeoutException
+    {
+	if (timeout <= 0)
+	    return 0;
+	else
+	{
+	    long remaining = timeout - (System.currentTimeMillis() - start);
+	    if (remaining <= 0)
+		throw new TimeoutException("A client timed out while waiting to acquire a resource from " + this + " -- timeout at checkoutResource()");
+	    return remaining;
+	}
+    }
+
+    /*
+     * the head of unused may be undergoing an idle test. rather than wait
+     * for that test, we skip to the next resource free of tests. if all unused
+     * resources are in idle-test batches, we claim the first whose test has not
+     * yet begun (the checkout will perform the test itself). only if every
+     * unused resource is actively being tested do we wait.
+     *
+     * if claim_pending is false, we don't claim tests, but wait for a resource
+     * not under test, growing the pool if we can to provide one.
+     *
+     * if there is a preference, we take the first resource free of tests that
+     * it prefers, falling back to the first resource free of tests.
+     *
+     * short_deadline is set if the client's own deadline is shorter than a typical
+     * acquisition. see growForCheckout(...)
+     */
+    private synchronized Object prelimCheckoutResource( long timeout, boolean short_deadline, boolean claim_pending, Preference preference )
 	throws TimeoutException, ResourcePoolException, InterruptedException
     {
         try
         {
-            ensureNotBroken();
-
-            int available = unused.size();
-            if (available == 0)
+            long start = ( timeout > 0 ? System.currentTimeMillis() : -1 );
+            while ( true )
             {
-                int msz = managed.size();
+                ensureNotBroken();
 
-                if (msz < max)
+                int available = unused.size();
+                if (available == 0)
                 {
-                    // to cover all the load, we need the current size, plus those waiting already for acquisition,
-                    // plus the current client
-                    int desired_target = msz + acquireWaiters.size() + 1;
-
-                    if (logger.isLoggable(MLevel.FINER))
-                        logger.log(MLevel.FINER, "acquire test -- pool size: " + msz + "; target_pool_size: " + target_pool_size + "; desired target? " + desired_target);
+                    checkCircuitBreaker();
+                    long remaining = remainingTimeout( timeout, start );
+                    growForCheckout( short_deadline );
+                    awaitAvailable( remaining ); //throws timeout exception
+                }
 
-                    if (desired_target >= target_pool_size)
+                Object resc = null;
+                Object preferred = null;
+                AsyncTestIdleResourceTask claimable = null;
+                for (Iterator ii = unused.iterator(); ii.hasNext() && preferred == null && (resc == null || preference != null); )
+                {
+                    Object candidate = ii.next();
+                    AsyncTestIdleResourceTask idleTest = (AsyncTestIdleResourceTask) idleCheckResources.get( candidate );
+                    if ( idleTest == null )
                     {
-                        //make sure we don't grab less than inc Connections at a time, if we can help it.
-                        desired_target = Math.max(desired_target, target_pool_size + inc);
-
-                        //make sure our target is within its bounds
-                        target_pool_size = Math.max( Math.min( max, desired_target ), min );
-
-                        _recheckResizePool();
+                        if ( resc == null )
+                            resc = candidate;
+                        if ( preference != null && preference.prefers( candidate ) )
+                            preferred = candidate;
                     }
+                    else if ( claimable == null && idleTest.pending )
+                        claimable = idleTest;
                 }
-                else
+                if ( preferred != null )
+                    resc = preferred;
+
+                if ( resc == null && claimable != null && claim_pending )
                 {
-                    if (logger.isLoggable(MLevel.FINER))
-                        logger.log(MLevel.FINER, "acquire test -- pool is already maxed out. [managed: " + msz + "; max: " + max + "]");
+                    // the idle test hasn't begun yet. rather than wait for it, we take the
+                    // resource, and perform the test ourselves in checkoutResource(...)
+                    claimIdleTest( claimable );
+                    resc = claimable.resc;
                 }
 
-                awaitAvailable(timeout); //throws timeout exception
-            }
-
-            Object  resc = unused.get(0);
+                if ( resc == null )
+                {
+                    if (Debug.DEBUG && logger.isLoggable( MLevel.FINER))
+                        logger.log( MLevel.FINER, "All resources available for checkout are in idleCheck! (waiting until an idle-check completes.) [" + this + "]");
 
-            // this is a hack -- but "doing it right" adds a lot of complexity, and collisions between
-            // an idle check and a checkout should be relatively rare. anyway, it should work just fine.
-            if ( idleCheckResources.contains( resc ) )
-            {
-                if (Debug.DEBUG && logger.isLoggable( MLevel.FINER))
-                    logger.log( MLevel.FINER, "Resource we want to check out is in idleCheck! (waiting until idle-check completes.) [" + this + "]");
+                    if (! claim_pending)
+                        growForCheckout( short_deadline );
 
-                // we'll move remove() to after the if, so we don't have to add back
-                // unused.add(0, resc );
+                    // we'll wait for "something to happen" -- probably an idle check to
+                    // complete -- then we'll try again.
+                    Thread t = Thread.currentThread();
+                    try
+                    {
+                        otherWaiters.add ( t );
+                        this.wait( remainingTimeout( timeout, start ) );
+                    }
+                    finally
+                    { otherWaiters.remove( t ); }
+                }
+                else if ( shouldExpire( resc ) )
+                {
+                    if (Debug.DEBUG && logger.isLoggable( MLevel.FINER))
+                        logger.log( MLevel.FINER, "Resource we want to check out has expired already. Trying again.");
 
-                // we'll wait for "something to happen" -- probably an idle check to
-                // complete -- then we'll try again and hope for the best.
-                Thread t = Thread.currentThread();
-                try
+                    removeResource( resc );
+                    ensureMinResources();
+                }
+                else
                 {
-                    otherWaiters.add ( t );
-                    this.wait( timeout );
-                    ensureNotBroken();
+                    unused.remove( resc );
+                    updateCounts();
+                    return resc;
                 }
-                finally
-                { otherWaiters.remove( t ); }
-                return prelimCheckoutResource( timeout );
-            }
-            else if ( shouldExpire( resc ) )
-            {
-                if (Debug.DEBUG && logger.isLoggable( MLevel.FINER))
-                    logger.log( MLevel.FINER, "Resource we want to check out has expired already. Trying again.");
-
-                removeResource( resc );
-                ensureMinResources();
-                return prelimCheckoutResource( timeout );
-            }
-            else
-            {
-                unused.remove(0);
-                return resc;
             }
         }
         catch ( ResourceClosedException e ) // one of our async threads died
@@ -659,12 +1193,55 @@ class BasicResourcePool implements ResourcePool
             }
             throw e;
         }
-	catch ( StackOverflowError e )
-	{
-	    throw new NoGoodResourcesException( "After checking so many resources we blew the stack, no resources tested acceptable for checkout. " +
-						"See logger com.mchange.v2.resourcepool.BasicResourcePool output at FINER/DEBUG for information on individual failures.",
-						e );
-	}
+    }
+
+    /*
+     * a client whose own deadline is shorter than a typical acquisition would not live
+     * to use a resource acquired on its behalf. if other clients are already waiting for
+     * acquisitions, and resources are checked out (and so might be checked in to serve
+     * the client), we don't grow the pool further for it. a lone waiter always counts,
+     * as does any client bounded only by the pool's usual timeout. waiters whose deadlines
+     * have passed don't count.
+     */
+    // must be called from a pre-existing sync'ed block
+    private void growForCheckout( boolean short_deadline )
+    {
+        assert Thread.holdsLock( this );
+
+        int msz = managed.size();
+
+        if (msz < max)
+        {
+            int waiters = liveAcquireWaiters();
+            boolean client_counts = ! ( short_deadline && waiters > 0 && msz > unused.size() );
+            if (! client_counts && logger.isLoggable(MLevel.FINER))
+                logger.log(MLevel.FINER, "acquire test -- client deadline is shorter than a typical acquisition (" + avg_acquire_time + " msecs), " +
+                           "and " + waiters + " clients already await acquisitions. Not growing the pool further for this client.");
+
+            // to cover all the load, we need the current size, plus those waiting already for acquisition,
+            // plus the current client
+            int demand = waiters + (client_counts ? 1 : 0);
+            int desired_target = msz + demand;
+
+            if (logger.isLoggable(MLevel.FINER))
+                logger.log(MLevel.FINER, "acquire test -- pool size: " + msz + "; target_pool_size: " + target_pool_size + "; desired target? " + desired_target);
+
+            if (desired_target >= target_pool_size)
+            {
+                //make sure we don't grab less than inc Connections at a time, if we can help it.
+                desired_target = Math.max(desired_target, target_pool_size + inc);
+
+                //make sure our target is within its bounds
+                target_pool_size = Math.max( Math.min( max, desired_target ), min );
+
+                _recheckResizePool();
+            }
+        }
+        else
+        {
+            if (logger.isLoggable(MLevel.FINER))
+                logger.log(MLevel.FINER, "acquire test -- pool is already maxed out. [managed: " + msz + "; max: " + max + "]");
+        }
     }
 
     public void checkinResource( Object resc ) throws ResourcePoolException
@@ -764,70 +1341,212 @@ class BasicResourcePool implements ResourcePool
             if (Debug.DEBUG && Debug.TRACE == Debug.TRACE_MAX && logger.isLoggable( MLevel.FINER ))
                 logger.log( MLevel.FINER, "Resource " + resc + " marked broken by pool (" + this + ").");
 
-            _markBroken( resc );
-            ensureMinResources();
+            _markBroken( resc );
+            ensureMinResources();
+        }
+        catch ( ResourceClosedException e ) // one of our async threads died
+        {
+            //e.printStackTrace();
+            if ( logger.isLoggable( MLevel.SEVERE ) )
+                logger.log( MLevel.SEVERE, "Apparent pool break.", e );
+            this.unexpectedBreak();
+        }
+    }
+
+    //min is volatile, no need to synchronize
+    public int getMinPoolSize()
+    { return min; }
+
+    //max is volatile, no need to synchronize
+    public int getMaxPoolSize()
+    { return max; }
+
+    public int getPoolSize()
+    throws ResourcePoolException
+    { return num_managed; }
+
+//  //i don't think i like the async, no-guarantees approach
+//  public synchronized void requestResize( int req_sz )
+//  {
+//  if (req_sz > max)
+//  req_sz = max;
+//  else if (req_sz < min)
+//  req_sz = min;
+//  int sz = managed.size();
+//  if (req_sz > sz)
+//  postAcquireUntil( req_sz );
+//  else if (req_sz < sz)
+//  postRemoveTowards( req_sz );
+//  }
+
+    // the counts below are read without this' lock, and so are not mutually consistent.
+    // a checkout or check-in may fall between reads, so we never report negative differences.
+
+    public int getAvailableCount()
+    { return num_unused; }
+
+    public int getExcludedCount()
+    { return num_excluded; }
+
+    public int getAwaitingCheckinCount()
+    { return Math.max( 0, num_managed - num_unused ) + num_excluded; }
+
+    public int getAwaitingCheckinNotExcludedCount()
+    { return Math.max( 0, num_managed - num_unused ); }
+
+    //must be called from a pre-existing sync'ed block, whenever managed, unused, or excluded change
+    private void updateCounts()
+    {
+        assert Thread.holdsLock( this );
+
+        num_managed  = managed.size();
+        num_unused   = unused.size();
+        num_excluded = excluded.size();
+    }
+
+    public synchronized void resetPool()
+    {
+        try
+        {
+            for (Iterator ii = cloneOfManaged().keySet().iterator(); ii.hasNext();)
+                markBrokenNoEnsureMinResources(ii.next());
+            ensureMinResources();
+        }
+        catch ( ResourceClosedException e ) // one of our async threads died
+        {
+            //e.printStackTrace();
+            if ( logger.isLoggable( MLevel.SEVERE ) )
+                logger.log( MLevel.SEVERE, "Apparent pool break.", e );
+            this.unexpectedBreak();
+        }
+    }
+
+    /*
+     * Unlike resetPool(), we don't discard everything at once and
+     * reacquire en masse. Resources currently managed are marked stale.
+     * Stale resources that are checked out are tested when they are
+     * checked in. Idle stale resources are destroyed and replaced at most
+     * inc at a time, in steps separated by jittered delays. Stale resources
+     * that clients happen to check out in the meantime are tested first, and
+     * retained if they turn out to be healthy, as are stale resources that
+     * are checked in healthy. While a rebuild is in progress,
+     * further requests to rebuild are ignored.
+     *
+     * If replace_healthy_resources is set, resources are marked obsolete as well
+     * as stale, and are replaced however well they test, because new resources
+     * would differ (e.g. the resource source has been reconfigured). Such requests
+     * are never ignored: resources acquired during a rebuild already in progress are
+     * marked too, and replaced by the ongoing rebuild. Obsolete resources that are
+     * checked out are destroyed when they are checked in.
+     */
+    public void rebuildPool() throws ResourcePoolException
+    { rebuildPool( false ); }
+
+    public synchronized void rebuildPool( boolean replace_healthy_resources ) throws ResourcePoolException
+    {
+        try
+        {
+            ensureNotBroken();
+
+            if ( rebuildStepTask != null && ! replace_healthy_resources )
+            {
+                if ( logger.isLoggable( MLevel.FINE ) )
+                    logger.log( MLevel.FINE, "A rebuild of " + this + " was requested while a rebuild is already in progress. Ignoring." );
+                return;
+            }
+
+            for (Iterator ii = managed.values().iterator(); ii.hasNext(); )
+            {
+                PunchCard card = (PunchCard) ii.next();
+                card.stale = true;
+                if ( replace_healthy_resources )
+                {
+                    card.obsolete = true;
+                    card.obsolete_tested = false;
+                }
+            }
+            ++rebuilds;
+
+            if ( rebuildStepTask != null )
+            {
+                if ( logger.isLoggable( MLevel.INFO ) )
+                    logger.log( MLevel.INFO, "Rebuilding " + this + " during a rebuild already in progress. All " + managed.size() + " resources will be replaced." );
+                return;
+            }
+
+            if ( logger.isLoggable( MLevel.INFO ) )
+                logger.log( MLevel.INFO, "Rebuilding " + this + ". " + managed.size() + " resources marked stale will be gradually replaced." );
+
+            scheduleRebuildStep();
         }
         catch ( ResourceClosedException e ) // one of our async threads died
         {
-            //e.printStackTrace();
             if ( logger.isLoggable( MLevel.SEVERE ) )
                 logger.log( MLevel.SEVERE, "Apparent pool break.", e );
             this.unexpectedBreak();
         }
     }
 
-    //min is immutable, no need to synchronize
-    public int getMinPoolSize()
-    { return min; }
-
-    //max is immutable, no need to synchronize
-    public int getMaxPoolSize()
-    { return max; }
+    // must own this' lock
+    private void scheduleRebuildStep()
+    {
+        assert Thread.holdsLock( this );
 
-    public synchronized int getPoolSize()
-    throws ResourcePoolException
-    { return managed.size(); }
+        // delays spread uniformly over [ acq_attempt_delay / 2, 3 * acq_attempt_delay / 2 ),
+        // so that the many pools that may see a database fail at once don't reconnect in lockstep
+        long base  = Math.max( acq_attempt_delay, 1 );
+        long delay = base / 2 + (long) (Math.random() * base);
 
-//  //i don't think i like the async, no-guarantees approach
-//  public synchronized void requestResize( int req_sz )
-//  {
-//  if (req_sz > max)
-//  req_sz = max;
-//  else if (req_sz < min)
-//  req_sz = min;
-//  int sz = managed.size();
-//  if (req_sz > sz)
-//  postAcquireUntil( req_sz );
-//  else if (req_sz < sz)
-//  postRemoveTowards( req_sz );
-//  }
+        rebuildStepTask = new RebuildStepTask();
+        cullAndIdleRefurbishTimer.schedule( rebuildStepTask, delay );
+    }
 
-    public synchronized int getAvailableCount()
-    { return unused.size(); }
+    class RebuildStepTask extends TimerTask
+    {
+        public void run()
+        {
+            synchronized ( BasicResourcePool.this )
+            {
+                if ( broken )
+                    return;
 
-    public synchronized int getExcludedCount()
-    { return excluded.size(); }
+                int removed = 0;
+                boolean stale_remaining = false;
+                for (Iterator ii = cloneOfUnused().iterator(); ii.hasNext(); )
+                {
+                    Object resc = ii.next();
+                    PunchCard card = (PunchCard) managed.get( resc );
+                    if ( card != null && card.stale && ! idleCheckResources.containsKey( resc ) )
+                    {
+                        if ( removed < inc )
+                        {
+                            removeResource( resc );
+                            ++removed;
+                        }
+                        else
+                        {
+                            stale_remaining = true;
+                            break;
+                        }
+                    }
+                }
 
-    public synchronized int getAwaitingCheckinCount()
-    { return managed.size() - unused.size() + excluded.size(); }
+                if ( removed > 0 )
+                    _recheckResizePool();
 
-    public synchronized int getAwaitingCheckinNotExcludedCount()
-    { return managed.size() - unused.size(); }
+                if ( logger.isLoggable( MLevel.FINER ) )
+                    logger.log( MLevel.FINER, "Rebuild step for " + BasicResourcePool.this + " replaced " + removed + " stale idle resources." );
 
-    public synchronized void resetPool()
-    {
-        try
-        {
-            for (Iterator ii = cloneOfManaged().keySet().iterator(); ii.hasNext();)
-                markBrokenNoEnsureMinResources(ii.next());
-            ensureMinResources();
-        }
-        catch ( ResourceClosedException e ) // one of our async threads died
-        {
-            //e.printStackTrace();
-            if ( logger.isLoggable( MLevel.SEVERE ) )
-                logger.log( MLevel.SEVERE, "Apparent pool break.", e );
-            this.unexpectedBreak();
+                if ( stale_remaining || ! idleCheckResources.isEmpty() )
+                    scheduleRebuildStep();
+                else
+                {
+                    // any stale resources still checked out will be tested, or if obsolete destroyed, on checkin
+                    rebuildStepTask = null;
+                    if ( logger.isLoggable( MLevel.FINE ) )
+                        logger.log( MLevel.FINE, "Rebuild of idle resources of " + BasicResourcePool.this + " complete." );
+                }
+            }
         }
     }
 
@@ -1060,6 +1779,8 @@ class BasicResourcePool implements ResourcePool
                     // System.err.println("Failed to destroy resource: " + resc);
                     // e.printStackTrace();
                 }
+                finally
+                { releaseBudget( resc ); }
             }
         }
 
@@ -1091,6 +1812,41 @@ class BasicResourcePool implements ResourcePool
     }
 
 
+    // needn't be called from a sync'ed method. idempotent, as resources are sometimes destroyed twice
+    private void releaseBudget( Object resc )
+    {
+        if (resourceBudgets.length > 0)
+        {
+            boolean charged;
+            synchronized ( this )
+            { charged = budgetedResources.remove( resc ); }
+            if (charged)
+                releaseBudgets();
+        }
+    }
+
+    // needn't be called from a sync'ed method. reserves in all of our budgets, or in none
+    private boolean tryReserveBudgets()
+    {
+        for (int i = 0; i < resourceBudgets.length; ++i)
+        {
+            if (! resourceBudgets[i].tryReserve( this ))
+            {
+                for (int j = 0; j < i; ++j)
+                    resourceBudgets[j].release();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // needn't be called from a sync'ed method
+    private void releaseBudgets()
+    {
+        for (int i = 0; i < resourceBudgets.length; ++i)
+            resourceBudgets[i].release();
+    }
+
     //doAcquire() methods SHOULD NOT be invoked from a synchronized block!!!!
     private void doAcquire() throws Exception
     { doAcquire( NO_DECREMENT ); }
@@ -1105,11 +1861,26 @@ class BasicResourcePool implements ResourcePool
     private final static int DECREMENT_ON_SUCCESS     = 1;
     private final static int DECREMENT_WITH_CERTAINTY = 2;
 
+    /*
+     * if we share resourceBudgets, the caller must already have reserved
+     * budget for the resource. we release it if the acquisition fails, or
+     * if we don't need the resource after all.
+     */
     private void doAcquire( int decrement_policy ) throws Exception
     {
         assert !Thread.holdsLock( this );
 
-        Object resc = mgr.acquireResource(); //note we acquire the resource while we DO NOT hold the pool's lock!
+        long acquire_start = System.currentTimeMillis();
+        Object resc;
+        try
+        { resc = mgr.acquireResource(); } //note we acquire the resource while we DO NOT hold the pool's lock!
+        catch (Exception e)
+        {
+            releaseBudgets();
+            throw e;
+        }
+        long acquire_time = System.currentTimeMillis() - acquire_start;
+        acquireLatencies.record( acquire_time );
 
         boolean destroy = false;
         int msz;
@@ -1118,9 +1889,20 @@ class BasicResourcePool implements ResourcePool
         {
 	    try
 		{
+		    noteAcquisitionSuccess();
+		    avg_acquire_time = ( total_acquired == 0 ? acquire_time : (7 * avg_acquire_time + acquire_time) / 8 );
+
 		    msz = managed.size();
 		    if (!broken && msz < target_pool_size)
+		    {
+			if (resourceBudgets.length > 0)
+			    budgetedResources.add( resc );
 			assimilateResource(resc);
+
+			// a reclaim may have found nothing idle while this acquisition was under way
+			for (int i = 0; i < resourceBudgets.length; ++i)
+			    resourceBudgets[i].noteIdleResource( this );
+		    }
 		    else
 			destroy = true;
 
@@ -1147,6 +1929,10 @@ class BasicResourcePool implements ResourcePool
 		    if (logger.isLoggable( MLevel.FINE))
 			logger.log(MLevel.FINE, "An exception occurred while trying to destroy an overacquired resource: " + resc, e);
 		}
+	    finally
+		{
+		    releaseBudgets();
+		}
         }
 
     }
@@ -1262,12 +2048,15 @@ class BasicResourcePool implements ResourcePool
                 cullTask.cancel();
             if (idleRefurbishTask != null)
                 idleRefurbishTask.cancel();
+            if (rebuildStepTask != null)
+                rebuildStepTask.cancel();
 
 	    for ( Iterator ii = cleanupResources.iterator(); ii.hasNext(); )
 		addToFormerResources( ii.next() );
 
             managed.keySet().removeAll( cleanupResources );
             unused.removeAll( cleanupResources );
+            updateCounts();
 
             // we destroy resources asynchronously, but with a dedicated one-off Thread, rather than
             // our asynchronous runner, because our asynchrous runner may be shutting down. The
@@ -1309,6 +2098,8 @@ class BasicResourcePool implements ResourcePool
                 ((Thread) ii.next()).interrupt();
             if (factory != null)
                 factory.markBroken( this );
+            for (int i = 0; i < resourceBudgets.length; ++i)
+                resourceBudgets[i].unregister( this );
 
             // System.err.println(this + " closed.");
         }
@@ -1349,17 +2140,21 @@ class BasicResourcePool implements ResourcePool
 	{
 	    public void run()
 	    {
-		boolean resc_okay = attemptRefurbishResourceOnCheckin( resc );
+		boolean resc_okay = attemptRefurbishResourceOnCheckin( resc ) && attemptStaleTestOnCheckin( resc );
 		synchronized( BasicResourcePool.this )
                 {
 		    PunchCard card = (PunchCard) managed.get( resc );
 
-		    if ( resc_okay && card != null) //we have to check that the resource is still in the pool
+		    if ( resc_okay && card != null && !card.stale ) //we have to check that the resource is still in the pool, and not obsolete
                     {
 			unused.add(0,  resc );
+			updateCounts();
 
 			card.last_checkin_time = System.currentTimeMillis();
 			card.checkout_time = -1;
+
+			for (int i = 0; i < resourceBudgets.length; ++i)
+			    resourceBudgets[i].noteIdleResource( BasicResourcePool.this );
                     }
 		    else
                     {
@@ -1389,6 +2184,7 @@ class BasicResourcePool implements ResourcePool
         assert Thread.holdsLock( this );
 
         excluded.remove(resc);
+        updateCounts();
         destroyResource(resc);
     }
 
@@ -1403,12 +2199,16 @@ class BasicResourcePool implements ResourcePool
             throw new ResourcePoolException("A ResourcePool cannot acquire a new resource -- the factory or source appears to be down.");
 
         Thread t = Thread.currentThread();
+        boolean satisfied = false;
         try
         {
             acquireWaiters.add( t );
+            num_acquire_waiters = acquireWaiters.size();
 
             int avail;
             long start = ( timeout > 0 ? System.currentTimeMillis() : -1);
+            if (timeout > 0)
+                acquireWaiterDeadlines.put( t, Long.valueOf( start + timeout ) );
             if (Debug.DEBUG && Debug.TRACE == Debug.TRACE_MAX)
             {
                 if ( logger.isLoggable( MLevel.FINE ) )
@@ -1443,12 +2243,19 @@ class BasicResourcePool implements ResourcePool
                     throw new TimeoutException("A client timed out while waiting to acquire a resource from " + this + " -- timeout at awaitAvailable()");
                 if (force_kill_acquires)
                     throw new CannotAcquireResourceException("A ResourcePool could not acquire a resource from its primary factory or source.", getLastAcquisitionFailure());
+                if (breaker_state == CIRCUIT_BREAKER_OPEN)
+                    throw circuitOpenException();
                 ensureNotBroken();
             }
+            satisfied = true;
         }
         finally
         {
             acquireWaiters.remove( t );
+            acquireWaiterDeadlines.remove( t );
+            num_acquire_waiters = acquireWaiters.size();
+            if (! satisfied)
+                noteAbandonedAcquireWait();
             if (acquireWaiters.size() == 0)
                 this.notifyAll();
         }
@@ -1460,6 +2267,8 @@ class BasicResourcePool implements ResourcePool
 
         managed.put(resc, new PunchCard());
         unused.add(0, resc);
+        updateCounts();
+        ++total_acquired;
         //System.err.println("assimilate resource... unused: " + unused.size());
         asyncFireResourceAcquired( resc, managed.size(), unused.size(), excluded.size() );
         this.notifyAll();
@@ -1482,6 +2291,7 @@ class BasicResourcePool implements ResourcePool
                 removeMe = unused.get(0);
                 managed.remove(removeMe);
                 unused.remove(removeMe);
+                updateCounts();
             }
             else
             {
@@ -1515,6 +2325,7 @@ class BasicResourcePool implements ResourcePool
 	    checked_out = pc.checkout_time > 0;
             if ( checked_out && !broken) //this is a checked-out resource in an active pool, must be overdue if we are removing it
             {
+                noteOverdue( pc );
                 if (logger.isLoggable( MLevel.INFO ) )
                 {
                     logger.info("A checked-out resource is overdue, and will be destroyed: " + resc);
@@ -1531,6 +2342,7 @@ class BasicResourcePool implements ResourcePool
             logger.fine("Resource " + resc + " was removed twice. (Lotsa reasons a resource can be removed, sometimes simultaneously. It's okay)");
 
         unused.remove(resc);
+        updateCounts();
         destroyResource(resc, synchronous, checked_out);
         addToFormerResources( resc );
         asyncFireResourceRemoved( resc, false, managed.size(), unused.size(), excluded.size() );
@@ -1547,6 +2359,7 @@ class BasicResourcePool implements ResourcePool
 
         managed.remove(resc);
         excluded.add(resc);
+        updateCounts();
         if (Debug.DEBUG && unused.contains(resc) )
             throw new InternalError( "We should only \"exclude\" checked-out resources!" );
 	if ( Debug.DEBUG && logger.isLoggable( MLevel.FINEST ) )
@@ -1576,8 +2389,8 @@ class BasicResourcePool implements ResourcePool
         if ( logger.isLoggable( MLevel.FINER ) )
             logger.log( MLevel.FINER, "BEGIN check for expired resources.  [" + this + "]");
 
-        // if we do not time-out checkedout resources, we only need to test unused resources
-        Collection checkMe = ( destroy_unreturned_resc_time > 0 ? (Collection) cloneOfManaged().keySet() : cloneOfUnused() );
+        // if we do not time-out or report checkedout resources, we only need to test unused resources
+        Collection checkMe = ( destroy_unreturned_resc_time > 0 || report_unreturned_resc_time > 0 ? (Collection) cloneOfManaged().keySet() : cloneOfUnused() );
 
         for ( Iterator ii = checkMe.iterator(); ii.hasNext(); )
         {
@@ -1603,17 +2416,83 @@ class BasicResourcePool implements ResourcePool
     {
         assert Thread.holdsLock( this );
 
-        List u = cloneOfUnused();
-        for ( Iterator ii = u.iterator(); ii.hasNext(); )
+        IdleTestBatch batch = new IdleTestBatch();
+        List tasks = new ArrayList( unused.size() );
+        for ( Iterator ii = unused.iterator(); ii.hasNext(); )
         {
             Object resc = ii.next();
-            if ( idleCheckResources.add( resc ) )
-                taskRunner.postRunnable( new AsyncTestIdleResourceTask( resc ) );
+            if ( ! idleCheckResources.containsKey( resc ) )
+            {
+                AsyncTestIdleResourceTask task = new AsyncTestIdleResourceTask( resc, batch );
+                idleCheckResources.put( resc, task );
+                tasks.add( task );
+            }
         }
+        batch.outstanding = tasks.size();
+
+        // all tasks are registered before any is posted, so that each test
+        // of the batch may run concurrently, as helper threads permit
+        for ( int i = 0, len = tasks.size(); i < len; ++i )
+            taskRunner.postRunnable( (Runnable) tasks.get(i) );
 
         if (Debug.DEBUG && Debug.TRACE == Debug.TRACE_MAX) trace();
     }
 
+    // called only with this' lock
+    private boolean sampleCheckoutStackTrace()
+    {
+        if (checkout_stack_sample_rate <= 0 || ++checkouts_since_stack_sample < checkout_stack_sample_rate)
+            return false;
+        checkouts_since_stack_sample = 0;
+        return true;
+    }
+
+    // called only with this' lock
+    private void reportOverdue( Object resc, PunchCard pc, long checkout_age )
+    {
+        assert Thread.holdsLock( this );
+
+        noteOverdue( pc );
+        if ( logger.isLoggable( MLevel.WARNING ) )
+        {
+            String msg = "A checked-out resource has been held for " + checkout_age + " msecs, longer than the report time of " +
+                report_unreturned_resc_time + " msecs. It will not be destroyed on this account: " + resc + " [" + this + "]";
+            if (pc.checkoutStackTraceException != null)
+                logger.log( MLevel.WARNING, msg + " Logging the stack trace by which it was checked-out.", pc.checkoutStackTraceException );
+            else
+                logger.log( MLevel.WARNING, msg );
+        }
+    }
+
+    /*
+     * Counts an overdue checkout once, and tallies its call site if its stack trace was captured.
+     * Once MAX_OVERDUE_SITES sites are tracked, overdue checkouts from other sites are only counted,
+     * on the theory that a leak which matters will recur from sites already found.
+     */
+    // called only with this' lock
+    private void noteOverdue( PunchCard pc )
+    {
+        assert Thread.holdsLock( this );
+
+        if (pc.overdue_noted)
+            return;
+        pc.overdue_noted = true;
+        ++overdue_checkouts;
+
+        if (pc.checkoutStackTraceException != null)
+        {
+            String site = CallSites.describe( pc.checkoutStackTraceException.getStackTrace() );
+            OverdueTally tally = (OverdueTally) siteToOverdueTally.get( site );
+            if (tally == null && siteToOverdueTally.size() < MAX_OVERDUE_SITES)
+            {
+                tally = new OverdueTally( site );
+                siteToOverdueTally.put( site, tally );
+            }
+            if (tally != null)
+                ++tally.overdue;
+        }
+    }
+
     private boolean shouldExpire( Object resc )
     {
         assert Thread.holdsLock( this );
@@ -1678,7 +2557,9 @@ class BasicResourcePool implements ResourcePool
         else //resource is checked out
         {
             long checkout_age = now - pc.checkout_time;
-            expired = checkout_age > destroy_unreturned_resc_time;
+            expired = destroy_unreturned_resc_time > 0 && checkout_age > destroy_unreturned_resc_time;
+            if (!expired && report_unreturned_resc_time > 0 && checkout_age > report_unreturned_resc_time && !pc.overdue_noted)
+                reportOverdue( resc, pc, checkout_age );
         }
 
         return expired;
@@ -1727,6 +2608,97 @@ class BasicResourcePool implements ResourcePool
         }
     }
 
+    /*
+     * Stale resources, and resources whose pending idle test a checkout has claimed,
+     * are given an idle test before they are checked out. Obsolete resources are
+     * tested only until they first pass, then just await replacement.
+     */
+    private boolean attemptDeferredIdleTest( Object resc )
+    {
+        assert !Thread.holdsLock( this );
+
+        boolean idle_test_due;
+        synchronized (this)
+        {
+            PunchCard card = (PunchCard) managed.get( resc );
+            if (card == null || !card.testDueBeforeCheckout())
+                return true;
+            idle_test_due = card.idle_test_due;
+            card.idle_test_due = false;
+        }
+
+        try
+        {
+            mgr.refurbishIdleResource( resc );
+            synchronized (this)
+            {
+                PunchCard card = (PunchCard) managed.get( resc );
+                if (card != null)
+                    card.testedHealthy();
+            }
+            return true;
+        }
+        catch (Exception e)
+        {
+            if (Debug.DEBUG && logger.isLoggable( MLevel.FINE ))
+                logger.log( MLevel.FINE, "A " + (idle_test_due ? "resource due for an idle test" : "stale resource") + " failed its test prior to checkout. [" + resc + ']', e );
+            synchronized (this)
+            {
+                if (idle_test_due)
+                {
+                    ++failed_idle_tests;
+                    setLastIdleCheckFailure(e);
+                }
+                else
+                {
+                    ++failed_checkouts;
+                    setLastCheckoutFailure(e);
+                }
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Stale resources checked in during a rebuild are given an idle test, and kept
+     * if they pass. Obsolete resources will be replaced however they test, so we
+     * don't test them.
+     */
+    private boolean attemptStaleTestOnCheckin( Object resc )
+    {
+        assert !Thread.holdsLock( this );
+
+        synchronized (this)
+        {
+            PunchCard card = (PunchCard) managed.get( resc );
+            if (card == null || !card.stale || card.obsolete)
+                return true;
+        }
+
+        try
+        {
+            mgr.refurbishIdleResource( resc );
+            synchronized (this)
+            {
+                PunchCard card = (PunchCard) managed.get( resc );
+                if (card != null)
+                    card.testedHealthy();
+            }
+            return true;
+        }
+        catch (Exception e)
+        {
+            if (Debug.DEBUG && logger.isLoggable( MLevel.FINE ))
+                logger.log( MLevel.FINE, "A stale resource failed its test on checkin. [" + resc + ']', e );
+            synchronized (this)
+            {
+                ++failed_checkins;
+                setLastCheckinFailure(e);
+            }
+            return false;
+        }
+    }
+
     private boolean attemptRefurbishResourceOnCheckin( Object resc )
     {
         assert !Thread.holdsLock( this );
@@ -1801,16 +2773,76 @@ class BasicResourcePool implements ResourcePool
         return (HashSet) excluded.clone();
     }
 
+    private static int parseRetryPolicy( String policy )
+    {
+        if ( policy == null || ResourcePoolFactory.RETRY_POLICY_FIXED.equalsIgnoreCase( policy ) )
+            return RETRY_FIXED;
+        else if ( ResourcePoolFactory.RETRY_POLICY_EXPONENTIAL.equalsIgnoreCase( policy ) )
+            return RETRY_EXPONENTIAL;
+        else if ( ResourcePoolFactory.RETRY_POLICY_DECORRELATED.equalsIgnoreCase( policy ) )
+            return RETRY_DECORRELATED;
+        else
+        {
+            if ( logger.isLoggable( MLevel.WARNING ) )
+                logger.log( MLevel.WARNING, "Unknown acquisition retry policy '" + policy + "'. Using '" + ResourcePoolFactory.RETRY_POLICY_FIXED + "'." );
+            return RETRY_FIXED;
+        }
+    }
+
+    /*
+     * exponential:  uniform over [0, min(max_delay, delay * 2^(failures - 1))), the "full jitter" of
+     *               exponential backoff, so that many pools retrying against the same recovering
+     *               database spread out rather than retry in lockstep.
+     * decorrelated: uniform over [delay, 3 * last_delay), capped at max_delay, which grows roughly
+     *               as fast but never retries sooner than delay.
+     */
+    private long nextRetryDelay( int failures, long last_delay )
+    {
+        long base = acq_attempt_delay;
+        long cap  = acq_retry_max_delay;
+        switch ( acq_retry_policy )
+        {
+        case RETRY_EXPONENTIAL:
+            {
+                long ceiling = ( failures > 31 ? cap : Math.min( cap, base << (failures - 1) ) );
+                return (long) (Math.random() * ceiling);
+            }
+        case RETRY_DECORRELATED:
+            {
+                long prev = Math.max( last_delay, base );
+                return Math.min( cap, base + (long) (Math.random() * (prev * 3 - base)) );
+            }
+        default:
+            return base;
+        }
+    }
+
     class ScatteredAcquireTask implements Runnable
     {
-        int attempts_remaining;
+        int  attempts_remaining;
+        boolean first_attempt;
+        int  failures;
+        long last_retry_delay;
+        long deadline; // -1 if the series has no time budget
 
         ScatteredAcquireTask()
-        { this ( (num_acq_attempts >= 0 ? num_acq_attempts : -1) , true ); }
+        {
+            this ( (num_acq_attempts >= 0 ? num_acq_attempts : -1) , true );
+            this.deadline = ( acq_retry_budget > 0 ? System.currentTimeMillis() + acq_retry_budget : -1 );
+        }
+
+        private ScatteredAcquireTask(ScatteredAcquireTask prev, long retry_delay)
+        {
+            this ( prev.attempts_remaining - 1, false );
+            this.failures         = prev.failures;
+            this.last_retry_delay = retry_delay;
+            this.deadline         = prev.deadline;
+        }
 
         private ScatteredAcquireTask(int attempts_remaining, boolean first_attempt)
         {
             this.attempts_remaining = attempts_remaining;
+            this.first_attempt      = first_attempt;
             if (first_attempt)
             {
                 incrementPendingAcquires();
@@ -1828,28 +2860,44 @@ class BasicResourcePool implements ResourcePool
 
         public void run()
         {
+            // a series that waited in the AcquisitionScheduler's queue may no longer be wanted
+            if ( first_attempt && ! beginAcquisitionSeries() )
+                return;
+
 	    boolean recheck = false;
             try
             {
                 boolean fkap;
 		boolean bkn;
+		boolean starved = false;
 		synchronized( BasicResourcePool.this )
 		{
 		    fkap = BasicResourcePool.this.force_kill_acquires;
 		    bkn  = BasicResourcePool.this.broken;
+
+		    // we abandon the series if any of our resourceBudgets is exhausted. we reserve and
+		    // abandon while holding the pool's lock, so that the budget's prompt to
+		    // recheck cannot arrive before we have stopped counting this series as pending.
+		    if (!bkn && !fkap && !tryReserveBudgets())
+		    {
+			_decrementPendingAcquires();
+			starved = true;
+		    }
+		}
+                if (starved)
+		    return; // no recheck, which would only retry against the exhausted budget
+                else if (bkn || fkap)
+		{
+		    decrementPendingAcquires();
+		    recheck = true;
 		}
-                if (!bkn && !fkap)
+                else
                 {
                     //we don't want this call to be sync'd
                     //on the pool, so that resource acquisition
                     //does not interfere with other pool clients.
                     BasicResourcePool.this.doAcquireAndDecrementPendingAcquiresWithinLockOnSuccess();
                 }
-		else
-		{
-		    decrementPendingAcquires();
-		    recheck = true;
-		}
 
 		// to avoid a race conditon, we now decrement within doAcquire() while
 		// holding the BasicResourcePool's lock.
@@ -1877,9 +2925,13 @@ class BasicResourcePool implements ResourcePool
             }
             catch (Exception e)
             {
-                BasicResourcePool.this.setLastAcquisitionFailure(e);
+                BasicResourcePool.this.noteAcquisitionFailure(e);
+
+                ++failures;
+                final long retry_delay = nextRetryDelay( failures, last_retry_delay );
+                boolean out_of_time = ( deadline > 0 && System.currentTimeMillis() + retry_delay > deadline );
 
-                if (attempts_remaining == 0) //last try in a round...
+                if (attempts_remaining == 0 || out_of_time) //last try in a round...
                 {
                     decrementPendingAcquires();
                     if ( logger.isLoggable( MLevel.WARNING ) )
@@ -1887,8 +2939,9 @@ class BasicResourcePool implements ResourcePool
                         logger.log( MLevel.WARNING,
                                         this + " -- Acquisition Attempt Failed!!! Clearing pending acquires. " +
                                         "While trying to acquire a needed new resource, we failed " +
-                                        "to succeed more than the maximum number of allowed " +
-                                        "acquisition attempts (" + num_acq_attempts + "). " +
+                                        ( out_of_time ?
+                                          "to succeed within the time allowed for a series of acquisition attempts (" + acq_retry_budget + " msecs, " + failures + " attempts). " :
+                                          "to succeed more than the maximum number of allowed acquisition attempts (" + num_acq_attempts + "). " ) +
                                         "Last acquisition attempt exception: ",
                                         e);
                     }
@@ -1898,8 +2951,9 @@ class BasicResourcePool implements ResourcePool
                         //System.err.println("\tTHE RESOURCE POOL IS PERMANENTLY BROKEN!");
                         if ( logger.isLoggable( MLevel.SEVERE ) )
                             logger.severe("A RESOURCE POOL IS PERMANENTLY BROKEN! [" + this + "] " +
-                                            "(because a series of " + num_acq_attempts + " acquisition attempts " +
-                            "failed.)");
+                                            ( out_of_time ?
+                                              "(because a series of acquisition attempts failed for the " + acq_retry_budget + " msecs allowed, after " + failures + " attempts.)" :
+                                              "(because a series of " + num_acq_attempts + " acquisition attempts failed.)" ) );
                         unexpectedBreak();
                     }
                     else
@@ -1929,16 +2983,17 @@ class BasicResourcePool implements ResourcePool
                     // so in this case, it's better flag a higher-than-debug-level message for
                     // each failed attempt. (Thanks to Eric Crahen for calling attention to this
                     // issue.)
-                    MLevel logLevel = (attempts_remaining > 0 ? MLevel.FINE : MLevel.INFO);
+                    MLevel logLevel = (attempts_remaining > 0 || deadline > 0 ? MLevel.FINE : MLevel.INFO);
                     if (logger.isLoggable( logLevel ))
-                        logger.log( logLevel, "An exception occurred while acquiring a poolable resource. Will retry.", e );
+                        logger.log( logLevel, "An exception occurred while acquiring a poolable resource. Will retry in " + retry_delay + " msecs.", e );
 
+                    // the Timer holds the retry until it is due, so no helper thread is occupied between attempts
                     TimerTask doNextAcquire = new TimerTask()
                     {
                         public void run()
-                        { taskRunner.postRunnable( new ScatteredAcquireTask( attempts_remaining - 1, false ) ); }
+                        { postAcquireTask( new ScatteredAcquireTask( ScatteredAcquireTask.this, retry_delay ) ); }
                     };
-                    cullAndIdleRefurbishTimer.schedule( doNextAcquire, acq_attempt_delay );
+                    cullAndIdleRefurbishTimer.schedule( doNextAcquire, retry_delay );
                 }
             }
 	    finally
@@ -2025,27 +3080,75 @@ class BasicResourcePool implements ResourcePool
         }
     }
 
+    //must be called from a pre-existing sync'ed block
+    private void claimIdleTest( AsyncTestIdleResourceTask task )
+    {
+        assert Thread.holdsLock( this );
+
+        task.claimed = true;
+        idleCheckResources.remove( task.resc );
+
+        PunchCard card = (PunchCard) managed.get( task.resc );
+        if (card != null)
+            card.idle_test_due = true;
+    }
+
+    /*
+     *  The idle resources submitted for testing by one run of checkIdleResources().
+     *  Failed resources are purged as soon as their tests fail, but the pool is
+     *  replenished once, when the last test of the batch completes.
+     */
+    final static class IdleTestBatch
+    {
+        // protected by the pool's lock
+        int     outstanding;
+        boolean any_failed = false;
+    }
+
     class AsyncTestIdleResourceTask implements Runnable
     {
         // unchanging after ctor
-        Object resc;
+        final Object        resc;
+        final IdleTestBatch batch;
 
-        // protected by this' lock
-        boolean pending = true;
-        boolean failed;
+        // protected by the pool's lock
+        boolean pending = true;  // the test has not yet begun
+        boolean claimed = false; // a checkout has taken the resource, and will test it itself
 
-        AsyncTestIdleResourceTask( Object resc )
-        { this.resc = resc; }
+        AsyncTestIdleResourceTask( Object resc, IdleTestBatch batch )
+        {
+            this.resc  = resc;
+            this.batch = batch;
+        }
 
         public void run()
         {
             assert !Thread.holdsLock( BasicResourcePool.this );
 
+            synchronized (BasicResourcePool.this)
+            {
+                if ( claimed )
+                {
+                    testComplete( false );
+                    return;
+                }
+                pending = false;
+            }
+
+            boolean failed = false;
             try
             {
                 try
                 {
                     mgr.refurbishIdleResource( resc );
+
+                    // a stale resource that tests fine needn't be replaced, unless it is obsolete
+                    synchronized (BasicResourcePool.this)
+                    {
+                        PunchCard card = (PunchCard) managed.get( resc );
+                        if (card != null)
+                            card.testedHealthy();
+                    }
                 }
                 catch ( Exception e )
                 {
@@ -2057,7 +3160,7 @@ class BasicResourcePool implements ResourcePool
                         if ( managed.keySet().contains( resc ) ) //resc might have been culled as expired while we tested
                         {
                             removeResource( resc );
-                            ensureMinResources();
+                            failed = true;
                         }
 
                         ++failed_idle_tests;
@@ -2070,10 +3173,31 @@ class BasicResourcePool implements ResourcePool
                 synchronized (BasicResourcePool.this)
                 {
                     idleCheckResources.remove( resc );
+                    testComplete( failed );
                     BasicResourcePool.this.notifyAll();
                 }
             }
         }
+
+        //must be called from a pre-existing sync'ed block
+        private void testComplete( boolean failed )
+        {
+            assert Thread.holdsLock( BasicResourcePool.this );
+
+            if ( failed )
+                batch.any_failed = true;
+            if ( --batch.outstanding == 0 && batch.any_failed )
+                ensureMinResources();
+        }
+    }
+
+    final static class OverdueTally
+    {
+        final String site;
+        volatile long overdue = 0; //MT: written under the pool's lock
+
+        OverdueTally( String site )
+        { this.site = site; }
     }
 
     final static class PunchCard
@@ -2082,6 +3206,11 @@ class BasicResourcePool implements ResourcePool
         long last_checkin_time;
         long checkout_time;
         Exception checkoutStackTraceException;
+        boolean overdue_noted; // the current checkout has been counted as overdue
+        boolean stale; // acquired prior to a rebuild, and awaiting replacement
+        boolean obsolete; // stale, and to be replaced even if it tests healthy
+        boolean obsolete_tested; // obsolete, but has tested healthy since it was so marked
+        boolean idle_test_due; // a checkout claimed the resource before its pending idle test began
 
         PunchCard()
         {
@@ -2089,6 +3218,25 @@ class BasicResourcePool implements ResourcePool
             this.last_checkin_time = acquisition_time;
             this.checkout_time = -1;
             this.checkoutStackTraceException = null;
+            this.overdue_noted = false;
+            this.stale = false;
+            this.obsolete = false;
+            this.obsolete_tested = false;
+            this.idle_test_due = false;
+        }
+
+        // stale resources are tested before checkout, but an obsolete resource stays
+        // stale after it tests healthy, and needn't be tested again
+        boolean testDueBeforeCheckout()
+        { return idle_test_due || (stale && !obsolete_tested); }
+
+        // must hold the pool's lock
+        void testedHealthy()
+        {
+            if (obsolete)
+                obsolete_tested = true;
+            else
+                stale = false;
         }
     }
 
@@ -29,16 +29,28 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
     int     inc                           = 3;
     int     retry_attempts                = -1;   //by default, retry acquisitions forever
     int     retry_delay                   = 1000; //1 second
+    String  retry_policy                  = RETRY_POLICY_FIXED;
+    int     retry_max_delay               = 30000; //milliseconds, ignored by fixed retry policy
+    long    retry_budget                  = -1;   //milliseconds, by default series are limited only by retry_attempts
     long    idle_resource_test_period     = -1;   //milliseconds, by default we don't test idle resources
     long    max_age                       = -1;   //milliseconds, by default resources never expire
     long    max_idle_time                 = -1;   //milliseconds, by default resources never expire
     long    excess_max_idle_time          = -1;   //milliseconds, by default resources never expire
     long    destroy_overdue_resc_time     = -1;   //milliseconds
+    long    report_overdue_resc_time      = -1;   //milliseconds, by default overdue resources are not reported
     long    expiration_enforcement_delay  = -1;   //automatic, we come up with a reasonable default based on time params
+    int     breaker_threshold             = 0;    //by default, no circuit breaker
+    long    breaker_reset_delay           = 10000; //milliseconds
+    int     max_checkout_refurb_failures  = 0;    //by default, twice max
+    int     max_concurrent_acquires       = 0;    //by default, no per-pool limit
+    int     max_total_concurrent_acquires = 0;    //by default, no limit across pools
+    int     max_total_resources           = 0;    //by default, no limit across pools
+    int     checkout_stack_sample_rate    = 0;    //by default, capture checkout stack traces only if debug_store_checkout_stacktrace
 
     boolean break_on_acquisition_failure    = true;
     boolean debug_store_checkout_stacktrace = false;
     boolean force_synchronous_checkins      = false;
+    boolean test_on_checkout                = true;
 
     AsynchronousRunner taskRunner;
     boolean            taskRunner_is_external;
@@ -49,6 +61,10 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
     Timer   timer;
     boolean timer_is_external;
 
+    AcquisitionScheduler acquisitionScheduler; //shared by all our live children
+    ResourceBudget       resourceBudget;       //shared by all our live children
+    ResourceBudget       sharedResourceBudget; //may be null, shared with other factories' children
+
     int default_num_task_threads;
 
     Set liveChildren;
@@ -110,6 +126,12 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 	if (! timer_is_external )
 	    timer = new Timer( true );
 
+	this.acquisitionScheduler = new AcquisitionScheduler( taskRunner );
+	this.acquisitionScheduler.setMaxConcurrent( max_total_concurrent_acquires );
+
+	this.resourceBudget = new ResourceBudget();
+	this.resourceBudget.setMaxTotal( max_total_resources );
+
 	this.liveChildren = new HashSet();
     }
 
@@ -131,6 +153,8 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 		timer = null;
 	    }
 
+	this.acquisitionScheduler = null;
+	this.resourceBudget = null;
 	this.liveChildren = null;
     }
 
@@ -235,6 +259,30 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 	throws ResourcePoolException
     { return retry_delay; }
 
+    public synchronized void setAcquisitionRetryPolicy( String retry_policy )
+	throws ResourcePoolException
+    { this.retry_policy = retry_policy; }
+
+    public synchronized String getAcquisitionRetryPolicy()
+	throws ResourcePoolException
+    { return retry_policy; }
+
+    public synchronized void setAcquisitionRetryMaxDelay( int retry_max_delay )
+	throws ResourcePoolException
+    { this.retry_max_delay = retry_max_delay; }
+
+    public synchronized int getAcquisitionRetryMaxDelay()
+	throws ResourcePoolException
+    { return retry_max_delay; }
+
+    public synchronized void setAcquisitionRetryBudget( long retry_budget )
+	throws ResourcePoolException
+    { this.retry_budget = retry_budget; }
+
+    public synchronized long getAcquisitionRetryBudget()
+	throws ResourcePoolException
+    { return retry_budget; }
+
     public synchronized void setIdleResourceTestPeriod( long test_period )
     { this.idle_resource_test_period = test_period; }
 
@@ -297,6 +345,22 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 	throws ResourcePoolException
     { return debug_store_checkout_stacktrace; }
 
+    public synchronized void setReportOverdueResourceTime( long report_overdue_resc_time )
+	throws ResourcePoolException
+    { this.report_overdue_resc_time = report_overdue_resc_time; }
+
+    public synchronized long getReportOverdueResourceTime()
+	throws ResourcePoolException
+    { return report_overdue_resc_time; }
+
+    public synchronized void setCheckoutStackTraceSampleRate( int checkout_stack_sample_rate )
+	throws ResourcePoolException
+    { this.checkout_stack_sample_rate = checkout_stack_sample_rate; }
+
+    public synchronized int getCheckoutStackTraceSampleRate()
+	throws ResourcePoolException
+    { return checkout_stack_sample_rate; }
+
     public synchronized void setForceSynchronousCheckins( boolean force_synchronous_checkins )
 	throws ResourcePoolException
     { this.force_synchronous_checkins = force_synchronous_checkins; }
@@ -305,6 +369,89 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 	throws ResourcePoolException
     { return force_synchronous_checkins; }
 
+    public synchronized void setTestOnCheckout( boolean test_on_checkout )
+	throws ResourcePoolException
+    { this.test_on_checkout = test_on_checkout; }
+
+    public synchronized boolean getTestOnCheckout()
+	throws ResourcePoolException
+    { return test_on_checkout; }
+
+    public synchronized void setCircuitBreakerFailureThreshold( int breaker_threshold )
+	throws ResourcePoolException
+    { this.breaker_threshold = breaker_threshold; }
+
+    public synchronized int getCircuitBreakerFailureThreshold()
+	throws ResourcePoolException
+    { return breaker_threshold; }
+
+    public synchronized void setCircuitBreakerResetDelay( long breaker_reset_delay )
+	throws ResourcePoolException
+    { this.breaker_reset_delay = breaker_reset_delay; }
+
+    public synchronized long getCircuitBreakerResetDelay()
+	throws ResourcePoolException
+    { return breaker_reset_delay; }
+
+    public synchronized void setMaxCheckoutRefurbishFailures( int max_checkout_refurb_failures )
+	throws ResourcePoolException
+    { this.max_checkout_refurb_failures = max_checkout_refurb_failures; }
+
+    public synchronized int getMaxCheckoutRefurbishFailures()
+	throws ResourcePoolException
+    { return max_checkout_refurb_failures; }
+
+    public synchronized void setMaxConcurrentAcquisitions( int max_concurrent_acquires )
+	throws ResourcePoolException
+    { this.max_concurrent_acquires = max_concurrent_acquires; }
+
+    public synchronized int getMaxConcurrentAcquisitions()
+	throws ResourcePoolException
+    { return max_concurrent_acquires; }
+
+    public synchronized void setMaxTotalConcurrentAcquisitions( int max_total_concurrent_acquires )
+	throws ResourcePoolException
+    {
+	this.max_total_concurrent_acquires = max_total_concurrent_acquires;
+	if (acquisitionScheduler != null)
+	    acquisitionScheduler.setMaxConcurrent( max_total_concurrent_acquires );
+    }
+
+    public synchronized int getMaxTotalConcurrentAcquisitions()
+	throws ResourcePoolException
+    { return max_total_concurrent_acquires; }
+
+    synchronized AcquisitionScheduler getAcquisitionScheduler()
+    { return acquisitionScheduler; }
+
+    public synchronized void setMaxTotalResources( int max_total_resources )
+	throws ResourcePoolException
+    {
+	this.max_total_resources = max_total_resources;
+	if (resourceBudget != null)
+	    resourceBudget.setMaxTotal( max_total_resources );
+    }
+
+    public synchronized int getMaxTotalResources()
+	throws ResourcePoolException
+    { return max_total_resources; }
+
+    public synchronized void setSharedResourceBudget( ResourceBudget sharedResourceBudget )
+	throws ResourcePoolException
+    { this.sharedResourceBudget = sharedResourceBudget; }
+
+    public synchronized ResourceBudget getSharedResourceBudget()
+	throws ResourcePoolException
+    { return sharedResourceBudget; }
+
+    synchronized ResourceBudget[] getResourceBudgets()
+    {
+	if (sharedResourceBudget == null)
+	    return new ResourceBudget[] { resourceBudget };
+	else
+	    return new ResourceBudget[] { resourceBudget, sharedResourceBudget };
+    }
+
     public synchronized ResourcePool createPool(ResourcePool.Manager mgr)
 	throws ResourcePoolException
     {
@@ -318,15 +465,25 @@ public class BasicResourcePoolFactory extends ResourcePoolFactory
 						    inc, 
 						    retry_attempts, 
 						    retry_delay, 
+						    retry_policy,
+						    retry_max_delay,
+						    retry_budget,
 						    idle_resource_test_period,
 						    max_age, 
 						    max_idle_time,
 						    excess_max_idle_time,
 						    destroy_overdue_resc_time,
+						    report_overdue_resc_time,
 						    expiration_enforcement_delay,
 						    break_on_acquisition_failure,
 						    debug_store_checkout_stacktrace,
+						    checkout_stack_sample_rate,
 						    force_synchronous_checkins,
+						    test_on_checkout,
+						    breaker_threshold,
+						    breaker_reset_delay,
+						    max_checkout_refurb_failures,
+						    max_concurrent_acquires,
 						    taskRunner,
 						    asyncEventQueue,
 						    timer,
@@ -0,0 +1,40 @@
+package com.mchange.v2.resourcepool;
+
+/**
+ * Describes where in a client's code a checkout was made, by the innermost
+ * few frames of a stack trace that lie outside of the pool and its clients
+ * within the com.mchange.v2 packages (test classes excepted), innermost first.
+ * Overdue checkouts and Connection hold times are attributed to call sites
+ * described the same way, so that the two can be compared.
+ */
+public final class CallSites
+{
+    public final static int FRAMES = 3;
+
+    public static String describe( StackTraceElement[] elems )
+    {
+	int first = 0;
+	while (first < elems.length && isInternalFrame( elems[first] ))
+	    ++first;
+	if (first == elems.length) //checked out from our own code, just report the whole top of the stack
+	    first = 0;
+
+	StringBuffer sb = new StringBuffer( 128 * FRAMES );
+	for (int i = first, len = Math.min( elems.length, first + FRAMES ); i < len; ++i)
+	    {
+		if (i > first)
+		    sb.append( " <- " );
+		sb.append( elems[i] );
+	    }
+	return sb.toString();
+    }
+
+    private static boolean isInternalFrame( StackTraceElement elem )
+    {
+	String cn = elem.getClassName();
+	return cn.startsWith( "com.mchange.v2." ) && cn.indexOf( ".test." ) < 0;
+    }
+
+    private CallSites()
+    {}
+}
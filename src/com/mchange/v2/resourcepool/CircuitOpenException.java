@@ -0,0 +1,20 @@
+package com.mchange.v2.resourcepool;
+
+/**
+ * Thrown when a checkout is refused without waiting, because repeated
+ * failures to acquire new resources have opened the pool's circuit breaker.
+ */
+public class CircuitOpenException extends CannotAcquireResourceException
+{
+    public CircuitOpenException(String msg, Throwable t)
+    {super(msg, t);}
+
+    public CircuitOpenException(Throwable t)
+    {super(t);}
+
+    public CircuitOpenException(String msg)
+    {super(msg);}
+
+    public CircuitOpenException()
+    {super();}
+}
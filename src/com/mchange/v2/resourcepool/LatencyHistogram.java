@@ -0,0 +1,85 @@
+package com.mchange.v2.resourcepool;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Counts durations into a fixed set of buckets, cheaply enough to be
+ * updated on every checkout. Recording takes no locks, and snapshots may be
+ * taken at any time, though a snapshot taken during a recording may count the
+ * recording in its total but not yet in its sum, or vice versa.</p>
+ *
+ * <p>Bucket bounds are the same for all histograms, so that snapshots
+ * of different pools' histograms can be summed.</p>
+ */
+public final class LatencyHistogram
+{
+    /**
+     * Inclusive upper bounds of every bucket but the last, in milliseconds.
+     * The last bucket counts everything longer.
+     */
+    private final static long[] BUCKET_UPPER_BOUNDS_MILLIS = { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    public final static int NUM_BUCKETS = BUCKET_UPPER_BOUNDS_MILLIS.length + 1;
+
+    public static long getBucketUpperBoundMillis( int bucket )
+    { return ( bucket < BUCKET_UPPER_BOUNDS_MILLIS.length ? BUCKET_UPPER_BOUNDS_MILLIS[ bucket ] : Long.MAX_VALUE ); }
+
+    //MT: thread-safe
+    final AtomicLongArray counts = new AtomicLongArray( NUM_BUCKETS + 1 ); // the extra slot holds the sum of all recorded durations
+
+    public void record( long millis )
+    {
+	int bucket = 0;
+	while ( bucket < BUCKET_UPPER_BOUNDS_MILLIS.length && millis > BUCKET_UPPER_BOUNDS_MILLIS[ bucket ] )
+	    ++bucket;
+	counts.incrementAndGet( bucket );
+	counts.addAndGet( NUM_BUCKETS, Math.max( 0, millis ) );
+    }
+
+    public Snapshot snapshot()
+    {
+	long[] copy = new long[ NUM_BUCKETS + 1 ];
+	for (int i = 0; i <= NUM_BUCKETS; ++i)
+	    copy[i] = counts.get( i );
+	return new Snapshot( copy );
+    }
+
+    public final static class Snapshot implements Serializable
+    {
+	private static final long serialVersionUID = 1;
+
+	public final static Snapshot EMPTY = new Snapshot( new long[ NUM_BUCKETS + 1 ] );
+
+	final long[] counts; // per bucket, then the sum of all recorded durations
+
+	Snapshot( long[] counts )
+	{ this.counts = counts; }
+
+	/**
+	 * The number of durations recorded in the bucket, not including
+	 * shorter durations recorded in lower buckets.
+	 */
+	public long getCount( int bucket )
+	{ return counts[ bucket ]; }
+
+	public long getTotalCount()
+	{
+	    long out = 0;
+	    for (int i = 0; i < NUM_BUCKETS; ++i)
+		out += counts[i];
+	    return out;
+	}
+
+	public long getSumMillis()
+	{ return counts[ NUM_BUCKETS ]; }
+
+	public Snapshot plus( Snapshot other )
+	{
+	    long[] sum = new long[ NUM_BUCKETS + 1 ];
+	    for (int i = 0; i <= NUM_BUCKETS; ++i)
+		sum[i] = counts[i] + other.counts[i];
+	    return new Snapshot( sum );
+	}
+    }
+}
@@ -0,0 +1,43 @@
+package com.mchange.v2.resourcepool;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * The number of checkouts from a given call site that a pool found overdue,
+ * that is held longer than its report or destroy time. Call sites are known
+ * only for checkouts whose stack traces were captured, and are identified by
+ * the innermost few frames of the stack trace that lie outside the pool.
+ */
+public final class OverdueCheckoutSite implements Serializable
+{
+    private static final long serialVersionUID = 1;
+
+    public final static Comparator DESCENDING_OVERDUE = new Comparator()
+    {
+	public int compare( Object a, Object b )
+	{
+	    long oa = ((OverdueCheckoutSite) a).numOverdue;
+	    long ob = ((OverdueCheckoutSite) b).numOverdue;
+	    return (oa > ob ? -1 : (oa == ob ? 0 : 1));
+	}
+    };
+
+    final String site;
+    final long   numOverdue;
+
+    public OverdueCheckoutSite( String site, long numOverdue )
+    {
+	this.site       = site;
+	this.numOverdue = numOverdue;
+    }
+
+    public String getSite()
+    { return site; }
+
+    public long getNumOverdue()
+    { return numOverdue; }
+
+    public String toString()
+    { return numOverdue + " " + site; }
+}
@@ -0,0 +1,192 @@
+package com.mchange.v2.resourcepool;
+
+import java.util.*;
+import com.mchange.v2.log.*;
+
+/**
+ * <p>Caps the number of resources that may exist at once across a set of pools,
+ * counting acquisitions in progress. Every BasicResourcePoolFactory keeps a budget
+ * shared by all of its pools, meant for factories that create very many pools (one
+ * per database user, say) against a source that can only supply so many resources
+ * in total. Budgets may also be shared across factories, via
+ * {@link ResourcePoolFactory#setSharedResourceBudget(ResourceBudget)}, to cap the
+ * resources of otherwise unrelated pools that draw on a common source.</p>
+ *
+ * <p>A pool that finds the budget exhausted does not acquire, and is registered as
+ * starved. We then ask the pools, least recently checked-out from first,
+ * to give up an idle resource above their minimums. When budget frees up, we
+ * prompt every starved pool to try again.</p>
+ */
+/*
+ * MT: we never acquire a pool's lock while holding our own, and we call into
+ * pools only from tasks posted to the pools' own task runners, as pools may (and do)
+ * call us while holding their locks. pools sharing a budget may belong to different
+ * factories, so we keep no task runner of our own.
+ */
+public final class ResourceBudget
+{
+    final static MLogger logger = MLog.getLogger( ResourceBudget.class );
+
+    //MT: protected by this' lock
+    int           max_total       = 0;                   // <= 0 means no limit
+    int           reserved        = 0;
+    HashSet       pools           = new HashSet();
+    LinkedHashSet starved         = new LinkedHashSet(); // in order of starvation
+    boolean       reclaim_pending = false;
+
+    //MT: written under this' lock, read without it, so that checkins needn't take our lock
+    volatile boolean any_starved = false;
+
+    /**
+     * @param max_total the maximum number of resources, values less than or equal to zero meaning no limit
+     */
+    public synchronized void setMaxTotal( int max_total )
+    {
+	this.max_total = max_total;
+	promptStarved();
+    }
+
+    public synchronized int getMaxTotal()
+    { return max_total; }
+
+    public synchronized int getNumReserved()
+    { return reserved; }
+
+    public synchronized int getNumPools()
+    { return pools.size(); }
+
+    synchronized void register( BasicResourcePool pool )
+    { pools.add( pool ); }
+
+    synchronized void unregister( BasicResourcePool pool )
+    {
+	pools.remove( pool );
+	starved.remove( pool );
+	any_starved = !starved.isEmpty();
+    }
+
+    /*
+     * Reserves budget for a single resource. Every successful reservation
+     * must be matched by exactly one release(), when the resource is
+     * destroyed or its acquisition fails.
+     */
+    synchronized boolean tryReserve( BasicResourcePool pool )
+    {
+	if ( max_total <= 0 || reserved < max_total )
+	{
+	    ++reserved;
+	    return true;
+	}
+	else
+	{
+	    if ( starved.add( pool ) && logger.isLoggable( MLevel.FINE ) )
+		logger.log( MLevel.FINE, "The budget of " + max_total + " resources shared by " + pools.size() + " pools is exhausted. " + pool + " must wait for another pool to give up a resource." );
+	    any_starved = true;
+	    requestReclaim( pool );
+	    return false;
+	}
+    }
+
+    synchronized void release()
+    {
+	--reserved;
+	promptStarved();
+    }
+
+    // pools call this when a resource becomes idle
+    void noteIdleResource( BasicResourcePool pool )
+    {
+	if ( any_starved )
+	{
+	    synchronized ( this )
+	    { requestReclaim( pool ); }
+	}
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private void promptStarved()
+    {
+	assert Thread.holdsLock( this );
+
+	if ( starved.isEmpty() || ( max_total > 0 && reserved >= max_total ) )
+	    return;
+
+	for (Iterator ii = starved.iterator(); ii.hasNext(); )
+	{
+	    final BasicResourcePool pool = (BasicResourcePool) ii.next();
+	    post( pool, new Runnable()
+	    {
+		public void run()
+		{ pool.recheckResizePool(); }
+	    } );
+	}
+	starved.clear();
+	any_starved = false;
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private void requestReclaim( BasicResourcePool requester )
+    {
+	assert Thread.holdsLock( this );
+
+	if ( reclaim_pending || starved.isEmpty() )
+	    return;
+
+	reclaim_pending = post( requester, new ReclaimTask() );
+    }
+
+    // must be called from a pre-existing sync'ed block
+    private boolean post( BasicResourcePool pool, Runnable r )
+    {
+	try
+	{
+	    pool.taskRunner.postRunnable( r );
+	    return true;
+	}
+	catch ( Exception e )
+	{
+	    if (logger.isLoggable( MLevel.FINE ))
+		logger.log( MLevel.FINE, "Could not post a resource budget task for " + pool + ". Its task runner has probably been closed.", e );
+	    return false;
+	}
+    }
+
+    final class ReclaimTask implements Runnable
+    {
+	public void run()
+	{
+	    List candidates;
+	    synchronized ( ResourceBudget.this )
+	    {
+		reclaim_pending = false;
+		if ( starved.isEmpty() )
+		    return;
+		// starved pools are candidates too: a pool growing ahead of demand (by
+		// its increment, or to its minimum) may be starved, yet hold idle resources
+		candidates = new ArrayList( pools );
+	    }
+
+	    // reads of volatile longs, not a consistent snapshot, but good enough for choosing
+	    final Map lastCheckouts = new HashMap();
+	    for (Iterator ii = candidates.iterator(); ii.hasNext(); )
+	    {
+		BasicResourcePool pool = (BasicResourcePool) ii.next();
+		lastCheckouts.put( pool, Long.valueOf( pool.last_checkout_time ) );
+	    }
+	    Collections.sort( candidates, new Comparator()
+	    {
+		public int compare( Object a, Object b )
+		{ return ((Long) lastCheckouts.get( a )).compareTo( (Long) lastCheckouts.get( b ) ); }
+	    } );
+
+	    for (Iterator ii = candidates.iterator(); ii.hasNext(); )
+	    {
+		if ( ((BasicResourcePool) ii.next()).shedIdleResource() )
+		    return; // its destruction will release budget, and prompt the starved
+	    }
+
+	    if (logger.isLoggable( MLevel.FINER ))
+		logger.log( MLevel.FINER, "No pool sharing an exhausted resource budget has an idle resource to give up. Starved pools must wait for checkins." );
+	}
+    }
+}
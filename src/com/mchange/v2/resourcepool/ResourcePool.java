@@ -9,12 +9,31 @@ public interface ResourcePool extends ClosableResource
     final static int KNOWN_AND_CHECKED_OUT = 1;
     final static int UNKNOWN_OR_PURGED     = -1;
 
+    // circuit breaker states
+    final static String CIRCUIT_BREAKER_CLOSED    = "CLOSED";
+    final static String CIRCUIT_BREAKER_OPEN      = "OPEN";
+    final static String CIRCUIT_BREAKER_HALF_OPEN = "HALF_OPEN";
+
     public Object checkoutResource()
 	throws ResourcePoolException, InterruptedException;
 
     public Object checkoutResource( long timeout )
 	throws TimeoutException, ResourcePoolException, InterruptedException;
 
+    /**
+     * As checkoutResource( timeout ), but if several resources are
+     * available, one for which preference.prefers( resc ) is true
+     * is checked out, if there is one. A null preference has no effect.
+     *
+     * If client_deadline is true, timeout is a deadline the client set
+     * for this call, rather than the pool's usual checkout timeout. If it
+     * is shorter than a typical acquisition, and other clients are already
+     * waiting for acquisitions, the client waits for a checkin rather than
+     * growing the pool further.
+     */
+    public Object checkoutResource( long timeout, Preference preference, boolean client_deadline )
+	throws TimeoutException, ResourcePoolException, InterruptedException;
+
     public void checkinResource( Object resc ) 
 	throws ResourcePoolException;
 
@@ -73,6 +92,67 @@ public interface ResourcePool extends ClosableResource
 
     public long getNumFailedIdleTests()
     throws ResourcePoolException;
+
+    /**
+     * The total number of resources ever acquired into the pool. Sampled over time,
+     * this yields the rate at which the pool is (re)acquiring resources.
+     */
+    public long getNumAcquisitions()
+    throws ResourcePoolException;
+
+    public long getNumRebuilds()
+    throws ResourcePoolException;
+
+    /**
+     * One of CIRCUIT_BREAKER_CLOSED, CIRCUIT_BREAKER_OPEN, or CIRCUIT_BREAKER_HALF_OPEN.
+     * While the circuit breaker is open, checkouts that would have to wait for
+     * the acquisition of a new resource fail immediately with a {@link CircuitOpenException}.
+     */
+    public String getCircuitBreakerState()
+    throws ResourcePoolException;
+
+    /**
+     * The number of times the circuit breaker has opened, counting
+     * reopenings after failed half-open probes.
+     */
+    public long getNumCircuitBreakerTrips()
+    throws ResourcePoolException;
+
+    /**
+     * The time of the circuit breaker's most recent change of state,
+     * in milliseconds since the epoch, or -1 if it has never left
+     * the closed state.
+     */
+    public long getCircuitBreakerLastTransitionTime()
+    throws ResourcePoolException;
+
+    /**
+     * The durations of successful checkouts, from the call to checkoutResource()
+     * until it returns, including any wait for a resource to become available.
+     */
+    public LatencyHistogram.Snapshot getCheckoutLatencies()
+    throws ResourcePoolException;
+
+    /**
+     * The durations of successful resource acquisitions.
+     */
+    public LatencyHistogram.Snapshot getAcquisitionLatencies()
+    throws ResourcePoolException;
+
+    /**
+     * The number of checkouts found overdue, that is held longer than
+     * the pool's report or destroy time. Each checkout is counted once.
+     */
+    public long getNumOverdueCheckouts()
+    throws ResourcePoolException;
+
+    /**
+     * Overdue checkouts whose stack traces were captured, tallied by
+     * call site, most overdue first. Only a bounded number of sites
+     * are tracked.
+     */
+    public OverdueCheckoutSite[] getOverdueCheckoutSites()
+    throws ResourcePoolException;
     
     public int getNumCheckoutWaiters()
     throws ResourcePoolException;
@@ -104,12 +184,61 @@ public interface ResourcePool extends ClosableResource
     public void resetPool()
 	throws ResourcePoolException;
 
+    /**
+     * Gradually replaces all resources currently managed
+     * by the pool. Idle resources are destroyed and reacquired
+     * a few at a time, checked-out resources are destroyed
+     * when they are checked in. Resources that prove to be healthy
+     * during the rebuild are retained. Requests to rebuild while
+     * a rebuild is in progress are ignored.
+     */
+    public void rebuildPool()
+	throws ResourcePoolException;
+
+    /**
+     * As rebuildPool(), but if replace_healthy_resources is
+     * set, every resource is replaced, even those that prove
+     * healthy, because new resources would differ from them.
+     * Such requests are not ignored while a rebuild is in
+     * progress.
+     */
+    public void rebuildPool( boolean replace_healthy_resources )
+	throws ResourcePoolException;
+
+    /**
+     * Applies new size limits, maintenance periods, and overdue
+     * checkout reporting to a live pool, without disturbing the
+     * resources it manages. Times are in milliseconds, with the
+     * same meanings as the corresponding properties of
+     * ResourcePoolFactory. Changes to stack trace capture apply
+     * to subsequent checkouts.
+     */
+    public void reconfigure( int min,
+			     int max,
+			     int inc,
+			     long idle_resource_test_period,
+			     long resource_max_age,
+			     long resource_max_idle_time,
+			     long excess_resource_max_idle_time,
+			     long destroy_overdue_resource_time,
+			     long report_overdue_resource_time,
+			     boolean debug_store_checkout_stacktrace,
+			     int checkout_stack_trace_sample_rate,
+			     long expiration_enforcement_delay,
+			     boolean test_on_checkout )
+	throws ResourcePoolException;
+
     public void close() 
 	throws ResourcePoolException;
 
     public void close( boolean close_checked_out_resources ) 
 	throws ResourcePoolException;
 
+    public interface Preference
+    {
+	public boolean prefers( Object resc );
+    }
+
     public interface Manager
     {
 	public Object acquireResource() throws Exception;
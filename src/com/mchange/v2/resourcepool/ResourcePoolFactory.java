@@ -35,6 +35,11 @@ public abstract class ResourcePoolFactory
 
     final static int DEFAULT_NUM_TASK_THREADS = 3;
 
+    // acquisition retry policies
+    public final static String RETRY_POLICY_FIXED        = "fixed";
+    public final static String RETRY_POLICY_EXPONENTIAL  = "exponential";  // exponential backoff with "full jitter"
+    public final static String RETRY_POLICY_DECORRELATED = "decorrelated"; // "decorrelated jitter"
+
     public static ResourcePoolFactory getSharedInstance()
 	throws ResourcePoolException
     { return SHARED_INSTANCE; }
@@ -100,6 +105,35 @@ public abstract class ResourcePoolFactory
     public abstract int getAcquisitionRetryDelay()
 	throws ResourcePoolException;
 
+    /**
+     * One of RETRY_POLICY_FIXED, RETRY_POLICY_EXPONENTIAL, or RETRY_POLICY_DECORRELATED.
+     * Under a fixed policy, each failed acquisition attempt is retried after the acquisition retry delay.
+     * Otherwise, the delay grows with successive failures, randomized, from the acquisition retry delay
+     * up to the acquisition retry max delay.
+     */
+    public abstract void setAcquisitionRetryPolicy( String retry_policy )
+	throws ResourcePoolException;
+
+    public abstract String getAcquisitionRetryPolicy()
+	throws ResourcePoolException;
+
+    public abstract void setAcquisitionRetryMaxDelay( int retry_max_delay )
+	throws ResourcePoolException;
+
+    public abstract int getAcquisitionRetryMaxDelay()
+	throws ResourcePoolException;
+
+    /**
+     * The time allowed a series of acquisition attempts, in milliseconds. A series
+     * ends unsuccessfully when its attempts or its budget are exhausted, whichever comes
+     * first. Zero or less means no time limit.
+     */
+    public abstract void setAcquisitionRetryBudget( long millis )
+	throws ResourcePoolException;
+
+    public abstract long getAcquisitionRetryBudget()
+	throws ResourcePoolException;
+
     public abstract void setIdleResourceTestPeriod( long test_period )
 	throws ResourcePoolException;
 
@@ -148,12 +182,127 @@ public abstract class ResourcePoolFactory
     public abstract boolean getDebugStoreCheckoutStackTrace()
 	throws ResourcePoolException;
 
+    /**
+     * Checked-out resources held longer than this are reported, once per
+     * checkout, but not destroyed. Zero or less disables reporting.
+     */
+    public abstract void setReportOverdueResourceTime( long millis )
+	throws ResourcePoolException;
+
+    public abstract long getReportOverdueResourceTime()
+	throws ResourcePoolException;
+
+    /**
+     * If positive, the stack trace of one in every <i>rate</i> checkouts is
+     * captured, to be logged and tallied by call site should the checkout
+     * become overdue. Stack traces of all checkouts are captured if
+     * DebugStoreCheckoutStackTrace is set.
+     */
+    public abstract void setCheckoutStackTraceSampleRate( int rate )
+	throws ResourcePoolException;
+
+    public abstract int getCheckoutStackTraceSampleRate()
+	throws ResourcePoolException;
+
     public abstract void setForceSynchronousCheckins( boolean force_synchronous_checkins )
 	throws ResourcePoolException;
 
+    /**
+     * Whether the Manager's refurbishResourceOnCheckout(...) tests resources,
+     * true by default. If not, a client whose timeout has elapsed by the time
+     * it gets an untested resource is given it, rather than a TimeoutException.
+     */
+    public abstract void setTestOnCheckout( boolean test_on_checkout )
+	throws ResourcePoolException;
+
+    public abstract boolean getTestOnCheckout()
+	throws ResourcePoolException;
+
     public abstract boolean getForceSynchronousCheckins()
 	throws ResourcePoolException;
 
+    /**
+     * The number of consecutive failed acquisition attempts, with no
+     * resources available, after which checkouts fail fast rather
+     * than wait. Zero or less disables the circuit breaker.
+     */
+    public abstract void setCircuitBreakerFailureThreshold( int threshold )
+	throws ResourcePoolException;
+
+    public abstract int getCircuitBreakerFailureThreshold()
+	throws ResourcePoolException;
+
+    /**
+     * How long an open circuit breaker refuses checkouts before
+     * letting a probe acquisition through, in milliseconds.
+     */
+    public abstract void setCircuitBreakerResetDelay( long millis )
+	throws ResourcePoolException;
+
+    public abstract long getCircuitBreakerResetDelay()
+	throws ResourcePoolException;
+
+    /**
+     * The number of resources a single checkout may find unacceptable
+     * (failing refurbishment for checkout) before it gives up with a
+     * NoGoodResourcesException. Zero or less means twice the pool's
+     * maximum size.
+     */
+    public abstract void setMaxCheckoutRefurbishFailures( int max_failures )
+	throws ResourcePoolException;
+
+    public abstract int getMaxCheckoutRefurbishFailures()
+	throws ResourcePoolException;
+
+    /**
+     * The maximum number of acquisition attempts a single pool may
+     * have underway at once. Zero or less means no per-pool limit.
+     */
+    public abstract void setMaxConcurrentAcquisitions( int max_concurrent )
+	throws ResourcePoolException;
+
+    public abstract int getMaxConcurrentAcquisitions()
+	throws ResourcePoolException;
+
+    /**
+     * The maximum number of acquisition attempts all pools created
+     * by this factory may have underway at once. Zero or less means
+     * no limit. Unlike other properties, this applies to pools already
+     * created as well as pools created afterwards.
+     */
+    public abstract void setMaxTotalConcurrentAcquisitions( int max_total_concurrent )
+	throws ResourcePoolException;
+
+    public abstract int getMaxTotalConcurrentAcquisitions()
+	throws ResourcePoolException;
+
+    /**
+     * The maximum number of resources all pools created by this factory
+     * may hold at once, counting acquisitions underway. Zero or less means
+     * no limit. When the limit is reached, a pool that needs a resource
+     * waits for another pool to give one up. Pools give up idle resources
+     * above their minimum sizes, least recently used pool first. Like
+     * maxTotalConcurrentAcquisitions, this applies to pools already created.
+     */
+    public abstract void setMaxTotalResources( int max_total_resources )
+	throws ResourcePoolException;
+
+    public abstract int getMaxTotalResources()
+	throws ResourcePoolException;
+
+    /**
+     * A budget shared with pools of other factories, which pools
+     * created by this factory draw on in addition to the budget set by
+     * maxTotalResources. Null, the default, means no shared budget.
+     * Unlike maxTotalResources, this applies only to pools created
+     * after it is set.
+     */
+    public abstract void setSharedResourceBudget( ResourceBudget sharedResourceBudget )
+	throws ResourcePoolException;
+
+    public abstract ResourceBudget getSharedResourceBudget()
+	throws ResourcePoolException;
+
     public abstract ResourcePool createPool(ResourcePool.Manager mgr)
 	throws ResourcePoolException;
 }
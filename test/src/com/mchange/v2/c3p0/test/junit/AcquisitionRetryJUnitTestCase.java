@@ -0,0 +1,95 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.util.*;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class AcquisitionRetryJUnitTestCase extends TestCase {
+
+  // every acquisition attempt fails, and its time is recorded
+  static class FailingManager implements ResourcePool.Manager {
+    final List attemptTimes = new ArrayList();
+
+    public Object acquireResource() throws Exception {
+      synchronized (this) { attemptTimes.add(Long.valueOf(System.currentTimeMillis())); }
+      throw new Exception("The mock database is down.");
+    }
+    public void refurbishIdleResource(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckout(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public void destroyResource(Object resc, boolean checked_out) throws Exception {}
+
+    synchronized long[] retryDelays() {
+      long[] out = new long[Math.max(0, attemptTimes.size() - 1)];
+      for (int i = 0; i < out.length; ++i)
+        out[i] = ((Long) attemptTimes.get(i + 1)).longValue() - ((Long) attemptTimes.get(i)).longValue();
+      return out;
+    }
+  }
+
+  // a client's checkout provokes a series of attempts, and fails when the series does
+  private static long[] runFailedSeries(FailingManager mgr, BasicResourcePoolFactory fact) throws Exception {
+    fact.setStart(0);
+    fact.setMin(0);
+    fact.setBreakOnAcquisitionFailure(false);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      pool.checkoutResource(10000);
+      fail("Expect the checkout to fail once the series of acquisition attempts fails");
+    }
+    catch (CannotAcquireResourceException e) {}
+    finally {
+      pool.close();
+    }
+    return mgr.retryDelays();
+  }
+
+  public void testFixedPolicy() throws Exception {
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setAcquisitionRetryAttempts(4);
+    fact.setAcquisitionRetryDelay(50);
+    long[] delays = runFailedSeries(new FailingManager(), fact);
+    assertTrue("Expect retries", delays.length >= 3);
+    for (int i = 0; i < delays.length; ++i)
+      assertTrue("Expect each retry to wait the fixed delay [" + delays[i] + "ms]", delays[i] >= 40);
+  }
+
+  public void testExponentialPolicyIsCapped() throws Exception {
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setAcquisitionRetryAttempts(8);
+    fact.setAcquisitionRetryDelay(20);
+    fact.setAcquisitionRetryPolicy(ResourcePoolFactory.RETRY_POLICY_EXPONENTIAL);
+    fact.setAcquisitionRetryMaxDelay(100);
+    long[] delays = runFailedSeries(new FailingManager(), fact);
+    assertTrue("Expect retries", delays.length >= 7);
+    for (int i = 0; i < delays.length; ++i)
+      assertTrue("Expect no retry to wait much beyond the maximum delay [" + delays[i] + "ms]", delays[i] < 1000);
+  }
+
+  public void testDecorrelatedPolicyStaysWithinBounds() throws Exception {
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setAcquisitionRetryAttempts(8);
+    fact.setAcquisitionRetryDelay(20);
+    fact.setAcquisitionRetryPolicy(ResourcePoolFactory.RETRY_POLICY_DECORRELATED);
+    fact.setAcquisitionRetryMaxDelay(100);
+    long[] delays = runFailedSeries(new FailingManager(), fact);
+    assertTrue("Expect retries", delays.length >= 7);
+    for (int i = 0; i < delays.length; ++i)
+      assertTrue("Expect each retry to wait between the base and maximum delays [" + delays[i] + "ms]", delays[i] >= 15 && delays[i] < 1000);
+  }
+
+  public void testRetryBudgetEndsUnlimitedSeries() throws Exception {
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setAcquisitionRetryAttempts(-1); // forever, but for the budget
+    fact.setAcquisitionRetryDelay(50);
+    fact.setAcquisitionRetryBudget(400);
+
+    long start = System.currentTimeMillis();
+    long[] delays = runFailedSeries(new FailingManager(), fact);
+    long elapsed = System.currentTimeMillis() - start;
+
+    assertTrue("Expect the budget to end the series [elapsed: " + elapsed + "ms]", elapsed < 3000);
+    assertTrue("Expect attempts to continue until the budget is spent [" + (delays.length + 1) + " attempts]", delays.length >= 2 && delays.length <= 10);
+  }
+}
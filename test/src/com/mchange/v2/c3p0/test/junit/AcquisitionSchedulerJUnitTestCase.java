@@ -0,0 +1,101 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class AcquisitionSchedulerJUnitTestCase extends TestCase {
+
+  // each acquisition holds until overlap acquisitions have been underway at once, or for at most hold msecs
+  static class ConcurrencyCountingManager implements ResourcePool.Manager {
+    final int overlap;
+    final long hold;
+    int acquiring = 0;
+    int peak = 0;
+
+    ConcurrencyCountingManager(int overlap, long hold) {
+      this.overlap = overlap;
+      this.hold = hold;
+    }
+
+    public synchronized Object acquireResource() throws Exception {
+      peak = Math.max(peak, ++acquiring);
+      this.notifyAll();
+      try {
+        long deadline = System.currentTimeMillis() + hold;
+        for (long wait = hold; peak < overlap && wait > 0; wait = deadline - System.currentTimeMillis())
+          this.wait(wait);
+      }
+      finally {
+        --acquiring;
+      }
+      return new Object();
+    }
+    public void refurbishIdleResource(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckout(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public void destroyResource(Object resc, boolean checked_out) throws Exception {}
+
+    synchronized int peak() { return peak; }
+  }
+
+  // more helper threads than the limits under test, so that only the limits constrain acquisitions
+  private static BasicResourcePoolFactory createFactory(int size) throws ResourcePoolException {
+    BasicResourcePoolFactory fact = BasicResourcePoolFactory.createNoEventSupportInstance(8);
+    fact.setStart(size);
+    fact.setMin(size);
+    fact.setMax(size);
+    fact.setIncrement(size);
+    return fact;
+  }
+
+  private static void awaitFull(ResourcePool pool, int size) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (pool.getPoolSize() < size && System.currentTimeMillis() < deadline)
+      Thread.sleep(20);
+    assertEquals("Expect the pool to fill despite the limit", size, pool.getPoolSize());
+  }
+
+  public void testPerPoolLimit() throws Exception {
+    ConcurrencyCountingManager mgr = new ConcurrencyCountingManager(3, 50);
+    BasicResourcePoolFactory fact = createFactory(6);
+    fact.setMaxConcurrentAcquisitions(2);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      awaitFull(pool, 6);
+      assertTrue("Expect no more than 2 acquisitions at once, saw " + mgr.peak(), mgr.peak() <= 2);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  public void testLimitAcrossPools() throws Exception {
+    ConcurrencyCountingManager mgr = new ConcurrencyCountingManager(3, 50);
+    BasicResourcePoolFactory fact = createFactory(3);
+    fact.setMaxTotalConcurrentAcquisitions(2);
+    ResourcePool[] pools = new ResourcePool[3];
+    for (int i = 0; i < pools.length; ++i)
+      pools[i] = fact.createPool(mgr);
+    try {
+      for (int i = 0; i < pools.length; ++i)
+        awaitFull(pools[i], 3);
+      assertTrue("Expect no more than 2 acquisitions at once across pools, saw " + mgr.peak(), mgr.peak() <= 2);
+    }
+    finally {
+      for (int i = 0; i < pools.length; ++i)
+        pools[i].close();
+    }
+  }
+
+  public void testUnlimitedAcquisitionsOverlap() throws Exception {
+    ConcurrencyCountingManager mgr = new ConcurrencyCountingManager(3, 5000);
+    ResourcePool pool = createFactory(6).createPool(mgr);
+    try {
+      awaitFull(pool, 6);
+      assertTrue("Expect acquisitions to overlap with no limit set, saw " + mgr.peak(), mgr.peak() > 2);
+    }
+    finally {
+      pool.close();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.sql.*;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class CheckoutTimeoutJUnitTestCase extends TestCase {
+
+  // acquisitions take as long as delay
+  static class SlowManager extends ResourcePoolTestSupport.CountingManager {
+    volatile long delay;
+
+    SlowManager(long delay) { this.delay = delay; }
+
+    public Object acquireResource() {
+      try { Thread.sleep(delay); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+      return super.acquireResource();
+    }
+  }
+
+  ComboPooledDataSource cpds;
+  Connection held;
+
+  protected void setUp() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    cpds = new ComboPooledDataSource();
+    cpds.setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+    cpds.setJdbcUrl("mock:driver@plain");
+    cpds.setInitialPoolSize(1);
+    cpds.setMinPoolSize(1);
+    cpds.setMaxPoolSize(1);
+    held = cpds.getConnection(); // exhausts the pool
+  }
+
+  protected void tearDown() throws Exception {
+    held.close();
+    cpds.close();
+  }
+
+  public void testCheckoutIsBoundedByClientTimeout() throws Exception {
+    long start = System.currentTimeMillis();
+    try {
+      cpds.getConnection(300);
+      fail("Expect a checkout from an exhausted pool to time out");
+    }
+    catch (SQLException e) {}
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("Expect the checkout to wait about as long as the client allowed [elapsed: " + elapsed + "ms]", elapsed >= 250 && elapsed < 3000);
+  }
+
+  public void testNoTimeRemainingFailsImmediately() throws Exception {
+    held.close(); // a Connection is ready, but the client allows no time to take it
+
+    long start = System.currentTimeMillis();
+    try {
+      cpds.getConnection(0);
+      fail("Expect a checkout with no time remaining to fail");
+    }
+    catch (SQLException e) {}
+    assertTrue("Expect no wait", System.currentTimeMillis() - start < 1000);
+
+    held = cpds.getConnection();
+  }
+
+  public void testClientTimeoutIsCappedByCheckoutTimeout() throws Exception {
+    held.close();
+    cpds.setCheckoutTimeout(300);
+    held = cpds.getConnection();
+
+    long start = System.currentTimeMillis();
+    try {
+      cpds.getConnection(60000);
+      fail("Expect a checkout from an exhausted pool to time out");
+    }
+    catch (SQLException e) {}
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("Expect checkoutTimeout to bound a longer client timeout [elapsed: " + elapsed + "ms]", elapsed < 3000);
+  }
+
+  // a lone waiter grows the pool, however short its timeout compared to a typical acquisition
+  public void testLoneWaiterGrowsPool() throws Exception {
+    SlowManager mgr = new SlowManager(400); // the initial acquisition sets a slow average
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setMax(3);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      Object first = pool.checkoutResource(5000);
+      mgr.delay = 10;
+
+      Object second = pool.checkoutResource(200);
+      assertNotNull("Expect a lone waiter with the usual timeout to get a new resource", second);
+
+      Object third = pool.checkoutResource(200, null, true);
+      assertNotNull("Expect a lone waiter with a short deadline of its own to get a new resource", third);
+      assertEquals(3, pool.getPoolSize());
+
+      pool.checkinResource(first);
+      pool.checkinResource(second);
+      pool.checkinResource(third);
+    }
+    finally {
+      pool.close();
+    }
+  }
+}
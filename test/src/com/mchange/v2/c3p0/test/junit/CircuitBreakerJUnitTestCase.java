@@ -0,0 +1,118 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.sql.*;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class CircuitBreakerJUnitTestCase extends TestCase {
+
+  static class FlakyManager implements ResourcePool.Manager {
+    volatile boolean failing = true;
+
+    public Object acquireResource() throws Exception {
+      if (failing)
+        throw new Exception("The mock database is down.");
+      return new Object();
+    }
+    public void refurbishIdleResource(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckout(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public void destroyResource(Object resc, boolean checked_out) throws Exception {}
+  }
+
+  public void testTripHalfOpenAndReset() throws Exception {
+    FlakyManager mgr = new FlakyManager();
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setStart(0);
+    fact.setMin(0);
+    fact.setAcquisitionRetryAttempts(5);
+    fact.setAcquisitionRetryDelay(50);
+    fact.setBreakOnAcquisitionFailure(false);
+    fact.setCircuitBreakerFailureThreshold(2);
+    fact.setCircuitBreakerResetDelay(500);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      try {
+        pool.checkoutResource(5000);
+        fail("Expect a waiting client to fail once the breaker trips");
+      }
+      catch (CircuitOpenException e) {}
+      assertEquals(ResourcePool.CIRCUIT_BREAKER_OPEN, pool.getCircuitBreakerState());
+      assertEquals(1, pool.getNumCircuitBreakerTrips());
+
+      long start = System.currentTimeMillis();
+      try {
+        pool.checkoutResource(5000);
+        fail("Expect checkouts to fail fast while the breaker is open");
+      }
+      catch (CircuitOpenException e) {}
+      assertTrue("Expect no wait while the breaker is open", System.currentTimeMillis() - start < 2500);
+
+      awaitResetDelay(pool, 500);
+      try {
+        pool.checkoutResource(5000);
+        fail("Expect a failed probe to reopen the breaker");
+      }
+      catch (CircuitOpenException e) {}
+      assertEquals(ResourcePool.CIRCUIT_BREAKER_OPEN, pool.getCircuitBreakerState());
+      assertEquals(2, pool.getNumCircuitBreakerTrips());
+
+      mgr.failing = false;
+      awaitResetDelay(pool, 500);
+      Object resc = pool.checkoutResource(5000);
+      assertNotNull(resc);
+      assertEquals("Expect a successful probe to close the breaker", ResourcePool.CIRCUIT_BREAKER_CLOSED, pool.getCircuitBreakerState());
+      pool.checkinResource(resc);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  // an attempt still in the failing series may already have closed the breaker
+  private static void awaitResetDelay(ResourcePool pool, long reset_delay) throws Exception {
+    while (pool.getCircuitBreakerState() == ResourcePool.CIRCUIT_BREAKER_OPEN &&
+           System.currentTimeMillis() - pool.getCircuitBreakerLastTransitionTime() <= reset_delay)
+      Thread.sleep(20);
+  }
+
+  public void testOpenBreakerFailsFastWithSqlState() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    ComboPooledDataSource cpds = new ComboPooledDataSource();
+    try {
+      cpds.setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+      cpds.setJdbcUrl("mock:driver@refusing");
+      cpds.setInitialPoolSize(0);
+      cpds.setMinPoolSize(0);
+      cpds.setAcquireRetryAttempts(5);
+      cpds.setAcquireRetryDelay(50);
+      cpds.setBreakAfterAcquireFailure(false);
+      cpds.setCircuitBreakerFailureThreshold(2);
+      cpds.setCircuitBreakerResetDelay(60000);
+
+      try {
+        cpds.getConnection();
+        fail("Expect no Connection from a refusing database");
+      }
+      catch (SQLException e) {
+        assertEquals(PooledDataSource.CIRCUIT_BREAKER_OPEN_SQL_STATE, e.getSQLState());
+      }
+
+      long start = System.currentTimeMillis();
+      try {
+        cpds.getConnection();
+        fail("Expect no Connection while the breaker is open");
+      }
+      catch (SQLException e) {
+        assertEquals(PooledDataSource.CIRCUIT_BREAKER_OPEN_SQL_STATE, e.getSQLState());
+      }
+      assertTrue("Expect clients to fail fast while the breaker is open", System.currentTimeMillis() - start < 2500);
+      assertEquals("OPEN", cpds.getCircuitBreakerStateDefaultUser());
+    }
+    finally {
+      cpds.close();
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.sql.*;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+
+public final class ConnectionHoldTimesJUnitTestCase extends TestCase {
+
+  ComboPooledDataSource cpds;
+
+  protected void setUp() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    cpds = new ComboPooledDataSource();
+    cpds.setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+    cpds.setJdbcUrl("mock:driver@plain");
+    cpds.setConnectionHoldTimeSampleRate(1);
+  }
+
+  protected void tearDown() throws Exception {
+    ConnectionHoldTag.clear();
+    cpds.close();
+  }
+
+  public void testAttributesHoldTimesToTagsAndCallSites() throws Exception {
+    ConnectionHoldTag.set("slow-report");
+    Connection con = cpds.getConnection();
+    Thread.sleep(100);
+    con.close();
+    ConnectionHoldTag.clear();
+
+    cpds.getConnection().close();
+
+    ConnectionHoldTimes[] holdTimes = cpds.getConnectionHoldTimesDefaultUser();
+    assertEquals("Expect one tag and one call site", 2, holdTimes.length);
+
+    assertEquals("Expect the longest hold first", "slow-report", holdTimes[0].getKey());
+    assertEquals(1, holdTimes[0].getHoldTimes().getTotalCount());
+    assertTrue("Expect the tagged hold to be timed", holdTimes[0].getHoldTimes().getSumMillis() >= 100);
+
+    assertTrue("Expect the untagged hold to be attributed to its call site: " + holdTimes[1].getKey(),
+               holdTimes[1].getKey().startsWith(getClass().getName() + ".testAttributesHoldTimesToTagsAndCallSites"));
+  }
+}
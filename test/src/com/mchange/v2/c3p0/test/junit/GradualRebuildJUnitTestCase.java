@@ -0,0 +1,107 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.util.*;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class GradualRebuildJUnitTestCase extends TestCase {
+
+  // counts idle tests, which fail on demand
+  static class TestingManager extends ResourcePoolTestSupport.CountingManager {
+    volatile boolean failTests = false;
+    int tested = 0;
+
+    public void refurbishIdleResource(Object resc) throws Exception {
+      synchronized (this) { ++tested; }
+      if (failTests)
+        throw new Exception("The resource failed its test.");
+    }
+  }
+
+  public void testRebuildReplacesStaleResourcesGradually() throws Exception {
+    ResourcePoolTestSupport.CountingManager mgr = new ResourcePoolTestSupport.CountingManager();
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(4);
+    fact.setAcquisitionRetryDelay(400); // rebuild steps every 200 to 600 msecs
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      Object[] before = new Object[4];
+      for (int i = 0; i < before.length; ++i)
+        before[i] = pool.checkoutResource(5000);
+      for (int i = 0; i < before.length; ++i)
+        pool.checkinResource(before[i]);
+
+      pool.rebuildPool();
+      assertEquals(1, pool.getNumRebuilds());
+      synchronized (mgr) { assertEquals("Expect nothing replaced before the first step", 0, mgr.destroyed); }
+      assertEquals("Expect the pool to stay full", 4, pool.getPoolSize());
+
+      // a stale resource checked out mid-rebuild is tested, and kept once it passes
+      Object kept = pool.checkoutResource(5000);
+      pool.checkinResource(kept);
+
+      pool.rebuildPool();
+      assertEquals("Expect rebuild requests to be ignored while a rebuild is in progress", 1, pool.getNumRebuilds());
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (destroyed(mgr) < 3 && System.currentTimeMillis() < deadline) {
+        assertTrue("Expect stale resources to be replaced at most one at a time", pool.getPoolSize() >= 3);
+        Thread.sleep(20);
+      }
+      synchronized (mgr) { assertEquals("Expect every stale resource but the tested one replaced", 3, mgr.destroyed); }
+
+      Set after = new HashSet();
+      for (int i = 0; i < 4; ++i)
+        after.add(pool.checkoutResource(5000));
+      assertTrue("Expect the tested resource to survive the rebuild", after.contains(kept));
+      for (Iterator ii = after.iterator(); ii.hasNext(); )
+        pool.checkinResource(ii.next());
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  public void testStaleResourcesAreTestedOnCheckin() throws Exception {
+    TestingManager mgr = new TestingManager();
+    ResourcePool pool = ResourcePoolTestSupport.createPool(mgr, 3);
+    try {
+      Object healthy = pool.checkoutResource(5000);
+      Object broken = pool.checkoutResource(5000);
+      Object obsolete = pool.checkoutResource(5000);
+
+      pool.rebuildPool();
+      pool.checkinResource(healthy);
+      synchronized (mgr) {
+        assertEquals("Expect a stale resource to be tested on checkin", 1, mgr.tested);
+        assertEquals("Expect a healthy stale resource to be kept", 0, mgr.destroyed);
+      }
+
+      mgr.failTests = true;
+      pool.checkinResource(broken);
+      synchronized (mgr) { assertEquals(2, mgr.tested); }
+      assertEquals("Expect a stale resource that fails its test to be destroyed", 1, awaitDestroyed(mgr, 1));
+
+      mgr.failTests = false;
+      pool.rebuildPool(true);
+      pool.checkinResource(obsolete);
+      synchronized (mgr) { assertEquals("Expect an obsolete resource not to be tested on checkin", 2, mgr.tested); }
+      assertEquals("Expect an obsolete resource to be destroyed on checkin", 2, awaitDestroyed(mgr, 2));
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  // resources are destroyed asynchronously
+  private static int awaitDestroyed(ResourcePoolTestSupport.CountingManager mgr, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (destroyed(mgr) < count && System.currentTimeMillis() < deadline)
+      Thread.sleep(20);
+    return destroyed(mgr);
+  }
+
+  private static int destroyed(ResourcePoolTestSupport.CountingManager mgr) {
+    synchronized (mgr) { return mgr.destroyed; }
+  }
+}
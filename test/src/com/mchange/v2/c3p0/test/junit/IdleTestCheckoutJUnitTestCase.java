@@ -0,0 +1,139 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class IdleTestCheckoutJUnitTestCase extends TestCase {
+
+  // tests run by pool helper threads block until released, simulating a very slow tester
+  static class SlowIdleTestManager implements ResourcePool.Manager {
+    final Thread         clientThread = Thread.currentThread();
+    final CountDownLatch testStarted  = new CountDownLatch(1);
+    final CountDownLatch testRelease  = new CountDownLatch(1);
+
+    final List testedByClient  = Collections.synchronizedList(new ArrayList());
+    final List testedByHelpers = Collections.synchronizedList(new ArrayList());
+
+    volatile Object underTest = null;
+
+    public Object acquireResource() { return new Object(); }
+
+    public void refurbishIdleResource(Object resc) throws Exception {
+      if (Thread.currentThread() == clientThread)
+        testedByClient.add(resc);
+      else {
+        testedByHelpers.add(resc);
+        underTest = resc;
+        testStarted.countDown();
+        testRelease.await();
+      }
+    }
+
+    public void refurbishResourceOnCheckout(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public void destroyResource(Object resc, boolean checked_out) throws Exception {}
+  }
+
+  static class RejectingManager implements ResourcePool.Manager {
+    public Object acquireResource() { return new Object(); }
+    public void refurbishIdleResource(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckout(Object resc) throws Exception { throw new Exception("Every resource fails its checkout test."); }
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public void destroyResource(Object resc, boolean checked_out) throws Exception {}
+  }
+
+  public void testCheckoutSkipsResourceUnderIdleTest() throws Exception {
+    SlowIdleTestManager mgr = new SlowIdleTestManager();
+
+    // a single helper thread, so that only one resource is ever under test
+    BasicResourcePoolFactory fact = BasicResourcePoolFactory.createNoEventSupportInstance(1);
+    fact.setStart(3);
+    fact.setMin(3);
+    fact.setMax(3);
+    fact.setIdleResourceTestPeriod(200);
+    fact.setForceSynchronousCheckins(true);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      assertTrue("Expect an idle test to begin", mgr.testStarted.await(5, TimeUnit.SECONDS));
+      Object blocked = mgr.underTest;
+
+      long start = System.currentTimeMillis();
+      Object r1 = pool.checkoutResource(5000);
+      Object r2 = pool.checkoutResource(5000);
+      long elapsed = System.currentTimeMillis() - start;
+
+      assertNotSame("Expect checkout to skip the resource under test", blocked, r1);
+      assertNotSame("Expect checkout to skip the resource under test", blocked, r2);
+      assertTrue("Expect checkouts not to wait on the slow idle test [elapsed: " + elapsed + "ms]", elapsed < 2000);
+
+      try {
+        pool.checkoutResource(300);
+        fail("Expect checkout to time out while the only unused resource is under test");
+      }
+      catch (TimeoutException e) {}
+
+      mgr.testRelease.countDown();
+      Object r3 = pool.checkoutResource(5000);
+      assertSame("Expect the tested resource to be checked out once its test completes", blocked, r3);
+
+      pool.checkinResource(r1);
+      pool.checkinResource(r2);
+      pool.checkinResource(r3);
+    }
+    finally {
+      mgr.testRelease.countDown();
+      pool.close();
+    }
+  }
+
+  public void testCheckoutRunsClaimedIdleTest() throws Exception {
+    SlowIdleTestManager mgr = new SlowIdleTestManager();
+
+    // one helper thread, blocked on the first test of the batch, so the others stay pending
+    BasicResourcePoolFactory fact = BasicResourcePoolFactory.createNoEventSupportInstance(1);
+    fact.setStart(2);
+    fact.setMin(2);
+    fact.setMax(2);
+    fact.setIdleResourceTestPeriod(200);
+    fact.setForceSynchronousCheckins(true);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      assertTrue("Expect an idle test to begin", mgr.testStarted.await(5, TimeUnit.SECONDS));
+      Object blocked = mgr.underTest;
+
+      Object claimed = pool.checkoutResource(5000);
+      assertNotSame(blocked, claimed);
+      assertEquals("Expect the checkout to run the pending idle test of the resource it claimed",
+                   Collections.singletonList(claimed), new ArrayList(mgr.testedByClient));
+
+      mgr.testRelease.countDown();
+      Object tested = pool.checkoutResource(5000);
+      assertSame(blocked, tested);
+      assertFalse("Expect no helper thread to repeat the test of a claimed resource", mgr.testedByHelpers.contains(claimed));
+      assertEquals("Expect a claimed resource to be tested only once", 1, mgr.testedByClient.size());
+
+      pool.checkinResource(claimed);
+      pool.checkinResource(tested);
+    }
+    finally {
+      mgr.testRelease.countDown();
+      pool.close();
+    }
+  }
+
+  public void testEndlessRejectionsFailWithoutRecursion() throws Exception {
+    ResourcePool pool = ResourcePoolTestSupport.createPool(new RejectingManager(), 2);
+    try {
+      pool.checkoutResource(10000);
+      fail("Expect checkout to give up when no resource tests acceptable");
+    }
+    catch (NoGoodResourcesException e) {}
+    finally {
+      pool.close();
+    }
+  }
+}
@@ -12,6 +12,8 @@ public final class MarshallUnmarshallDataSourcesJUnitTestCase extends C3P0JUnitT
 {
     final static Collection EXCLUDE_PROPS = Arrays.asList( new String[]{
                                     "allUsers",
+                                    "circuitBreakerLastTransitionTimeDefaultUser",
+                                    "circuitBreakerStateDefaultUser",
                                     "connection",
                                     "connectionPoolDataSource",
                                     "effectivePropertyCycleDefaultUser",
@@ -26,6 +28,8 @@ public final class MarshallUnmarshallDataSourcesJUnitTestCase extends C3P0JUnitT
 									"numConnections",
 									"numConnectionsAllUsers",
 									"numConnectionsDefaultUser",
+                                    "numAcquisitionsDefaultUser",
+                                    "numCircuitBreakerTripsDefaultUser",
                                     "numFailedCheckinsDefaultUser",
                                     "numFailedCheckoutsDefaultUser",
                                     "numFailedIdleTestsDefaultUser",
@@ -39,6 +43,7 @@ public final class MarshallUnmarshallDataSourcesJUnitTestCase extends C3P0JUnitT
 				    "parentLogger",
 				    "propertyChangeListeners",
 				    "reference", //references that yield the same object need not be .equals(...)
+                                    "numRebuildsDefaultUser",
                                     "startTimeMillisDefaultUser",
                                     "statementCacheNumCheckedOutDefaultUser",
                                     "statementCacheNumCheckedOutStatementsAllUsers",
@@ -63,6 +68,24 @@ public final class MarshallUnmarshallDataSourcesJUnitTestCase extends C3P0JUnitT
                                     "threadPoolNumTasksPending",
                                     "threadPoolStackTraces",
                                     "threadPoolStatus",
+                                    "poolStatsAllUsers",
+                                    "poolStatsDefaultUser",
+                                    "statementCacheNumHitsAllUsers",
+                                    "statementCacheNumHitsDefaultUser",
+                                    "statementCacheNumMissesAllUsers",
+                                    "statementCacheNumMissesDefaultUser",
+                                    "statementCacheNumUncachedCheckoutsAllUsers",
+                                    "statementCacheNumUncachedCheckoutsDefaultUser",
+                                    "statementCacheNumEvictionsMaxStatementsAllUsers",
+                                    "statementCacheNumEvictionsMaxStatementsDefaultUser",
+                                    "statementCacheNumEvictionsMaxStatementsPerConnectionAllUsers",
+                                    "statementCacheNumEvictionsMaxStatementsPerConnectionDefaultUser",
+                                    "statementCacheNumEvictionsConnectionCloseAllUsers",
+                                    "statementCacheNumEvictionsConnectionCloseDefaultUser",
+                                    "numOverdueCheckoutsAllUsers",
+                                    "numOverdueCheckoutsDefaultUser",
+                                    "connectionHoldTimesAllUsers",
+                                    "connectionHoldTimesDefaultUser",
                                     "upTimeMillisDefaultUser",
 				    "vetoableChangeListeners"
                                     } );
@@ -17,7 +17,9 @@ public class MockDriver implements Driver {
 
   @Override
   public Connection connect(String url, Properties info) throws SQLException {
-    if (url.contains("with-request-boundaries")) {
+    if (url.contains("refusing")) {
+      throw new SQLException("The mock database is refusing connections.");
+    } else if (url.contains("with-request-boundaries")) {
       return new MockConnectionWithBoundaries();
     } else {
       return new MockConnectionWithoutBoundaries();
@@ -0,0 +1,80 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.io.*;
+import java.net.*;
+import java.sql.*;
+import java.util.Collections;
+
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+import com.mchange.v2.c3p0.management.*;
+
+public final class OpenMetricsJUnitTestCase extends TestCase {
+
+  ComboPooledDataSource cpds;
+
+  protected void setUp() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    cpds = new ComboPooledDataSource();
+    cpds.setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+    cpds.setJdbcUrl("mock:driver@plain");
+    cpds.setDataSourceName("openmetrics\\test"); // escaped in labels, but acceptable to JMX unquoted
+    cpds.setInitialPoolSize(2);
+    cpds.setMinPoolSize(2);
+  }
+
+  protected void tearDown() throws Exception {
+    cpds.close();
+  }
+
+  public void testRendersPoolStatistics() throws Exception {
+    Connection con = cpds.getConnection();
+    try {
+      StringWriter sw = new StringWriter();
+      OpenMetricsExporter.writeMetrics(Collections.singleton(cpds), sw);
+      String text = sw.toString();
+
+      String labels = "dataSourceName=\"openmetrics\\\\test\",identityToken=\"" + cpds.getIdentityToken() + "\"";
+      assertTrue("Expect one busy Connection:\n" + text, text.indexOf("c3p0_connections{" + labels + ",state=\"busy\"} 1\n") >= 0);
+      assertTrue("Expect a counted checkout:\n" + text, text.indexOf("c3p0_checkout_duration_seconds_count{" + labels + "} 1\n") >= 0);
+      assertTrue("Expect the checkout in the unbounded bucket:\n" + text, text.indexOf("c3p0_checkout_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 1\n") >= 0);
+      assertTrue("Expect counters to be suffixed:\n" + text, text.indexOf("c3p0_connection_acquisitions_total{" + labels + "} ") >= 0);
+      assertTrue("Expect the exposition to end with # EOF:\n" + text, text.endsWith("# EOF\n"));
+    }
+    finally {
+      con.close();
+    }
+  }
+
+  public void testServesOverHttp() throws Exception {
+    cpds.getConnection().close();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(OpenMetricsManagementCoordinator.PATH, new OpenMetricsHandler());
+    server.start();
+    try {
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + OpenMetricsManagementCoordinator.PATH);
+      HttpURLConnection http = (HttpURLConnection) url.openConnection();
+      assertEquals(200, http.getResponseCode());
+      assertEquals(OpenMetricsExporter.CONTENT_TYPE, http.getContentType());
+
+      StringBuilder sb = new StringBuilder();
+      BufferedReader br = new BufferedReader(new InputStreamReader(http.getInputStream(), "UTF-8"));
+      try {
+        for (String line = br.readLine(); line != null; line = br.readLine())
+          sb.append(line).append('\n');
+      }
+      finally {
+        br.close();
+      }
+      String text = sb.toString();
+      assertTrue("Expect the test DataSource to be rendered:\n" + text, text.indexOf("identityToken=\"" + cpds.getIdentityToken() + "\"") >= 0);
+      assertTrue("Expect the exposition to end with # EOF:\n" + text, text.endsWith("# EOF\n"));
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class OverdueCheckoutJUnitTestCase extends TestCase {
+
+  public void testReportsOverdueCheckoutsWithoutDestroying() throws Exception {
+    ResourcePoolTestSupport.CountingManager mgr = new ResourcePoolTestSupport.CountingManager();
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(2);
+    fact.setReportOverdueResourceTime(100);
+    fact.setExpirationEnforcementDelay(50);
+    fact.setCheckoutStackTraceSampleRate(2);
+    ResourcePool pool = fact.createPool(mgr);
+    try {
+      Object r1 = pool.checkoutResource(5000); // not sampled
+      Object r2 = pool.checkoutResource(5000); // sampled
+      awaitOverdue(pool, 2);
+
+      assertEquals("Expect each overdue checkout to be counted once", 2, pool.getNumOverdueCheckouts());
+
+      OverdueCheckoutSite[] sites = pool.getOverdueCheckoutSites();
+      assertEquals("Expect only the sampled checkout's site", 1, sites.length);
+      assertEquals(1, sites[0].getNumOverdue());
+      assertTrue("Expect the site to begin outside the pool: " + sites[0].getSite(),
+                 sites[0].getSite().startsWith(getClass().getName() + ".testReportsOverdueCheckoutsWithoutDestroying"));
+
+      pool.checkinResource(r1);
+      pool.checkinResource(r2);
+      assertEquals("Expect reported resources to survive", 2, pool.getPoolSize());
+      synchronized (mgr) { assertEquals("Expect nothing destroyed", 0, mgr.destroyed); }
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  public void testReportingEnabledLiveCapturesStackTraces() throws Exception {
+    ResourcePool pool = ResourcePoolTestSupport.createPool(new ResourcePoolTestSupport.CountingManager(), 1);
+    try {
+      pool.reconfigure(1, 1, 1, 0, 0, 0, 0, 0, 100, true, 0, 50, true);
+      Object r1 = pool.checkoutResource(5000);
+      awaitOverdue(pool, 1);
+
+      OverdueCheckoutSite[] sites = pool.getOverdueCheckoutSites();
+      assertEquals("Expect the stack trace of a checkout after reconfiguration to be captured", 1, sites.length);
+      pool.checkinResource(r1);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  private static void awaitOverdue(ResourcePool pool, long count) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (pool.getNumOverdueCheckouts() < count && System.currentTimeMillis() < deadline)
+      Thread.sleep(20);
+  }
+}
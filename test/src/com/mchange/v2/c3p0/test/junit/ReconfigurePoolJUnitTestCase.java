@@ -0,0 +1,96 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import junit.framework.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class ReconfigurePoolJUnitTestCase extends TestCase {
+
+  public void testRaisedMaxServesWaitingClient() throws Exception {
+    final ResourcePool pool = ResourcePoolTestSupport.createPool(new ResourcePoolTestSupport.CountingManager(), 1);
+    try {
+      Object r1 = pool.checkoutResource(5000);
+
+      final Object[] got = new Object[1];
+      Thread waiter = new Thread() {
+        public void run() {
+          try { got[0] = pool.checkoutResource(5000); }
+          catch (Exception e) {}
+        }
+      };
+      waiter.start();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (pool.getNumCheckoutWaiters() == 0 && System.currentTimeMillis() < deadline)
+        Thread.sleep(20);
+
+      pool.reconfigure(1, 2, 1, 0, 0, 0, 0, 0, 0, false, 0, 0, true);
+      waiter.join(5000);
+
+      assertNotNull("Expect the waiting client to be served once max is raised", got[0]);
+      assertEquals("Expect the new max to be reported", 2, pool.getMaxPoolSize());
+
+      pool.checkinResource(r1);
+      pool.checkinResource(got[0]);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  public void testObsoleteRebuildReplacesHealthyResources() throws Exception {
+    ResourcePoolTestSupport.CountingManager mgr = new ResourcePoolTestSupport.CountingManager();
+    ResourcePool pool = ResourcePoolTestSupport.createPool(mgr, 2);
+    try {
+      Object r1 = pool.checkoutResource(5000);
+      Object r2 = pool.checkoutResource(5000);
+      pool.checkinResource(r1);
+      pool.checkinResource(r2);
+
+      pool.rebuildPool(true);
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (acquired(mgr) < 4 && System.currentTimeMillis() < deadline)
+        Thread.sleep(50);
+
+      Object n1 = pool.checkoutResource(5000);
+      Object n2 = pool.checkoutResource(5000);
+      assertTrue("Expect healthy resources to be replaced", n1 != r1 && n1 != r2 && n2 != r1 && n2 != r2);
+
+      pool.checkinResource(n1);
+      pool.checkinResource(n2);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  // every resource fails its checkout test, and we count the tests
+  static class RejectingManager extends ResourcePoolTestSupport.CountingManager {
+    int rejected = 0;
+
+    public synchronized void refurbishResourceOnCheckout(Object resc) throws Exception {
+      ++rejected;
+      throw new Exception("Every resource fails its checkout test.");
+    }
+  }
+
+  public void testRaisedMaxRaisesCheckoutRejectionLimit() throws Exception {
+    RejectingManager mgr = new RejectingManager();
+    ResourcePool pool = ResourcePoolTestSupport.createPool(mgr, 1);
+    try {
+      pool.reconfigure(1, 4, 1, 0, 0, 0, 0, 0, 0, false, 0, 0, true);
+      try {
+        pool.checkoutResource(10000);
+        fail("Expect checkout to give up when every resource fails its test");
+      }
+      catch (NoGoodResourcesException e) {}
+      synchronized (mgr) { assertEquals("Expect the default limit on rejections to follow the new max", 8, mgr.rejected); }
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  private static int acquired(ResourcePoolTestSupport.CountingManager mgr) {
+    synchronized (mgr) { return mgr.acquired; }
+  }
+}
@@ -0,0 +1,95 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.sql.*;
+import java.util.*;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+import com.mchange.v2.resourcepool.*;
+
+public final class ResourceBudgetJUnitTestCase extends TestCase {
+
+  public void testPoolsShareBudget() throws Exception {
+    ResourcePoolTestSupport.CountingManager mgr = new ResourcePoolTestSupport.CountingManager();
+
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(3);
+    fact.setStart(0);
+    fact.setMin(0);
+    fact.setMaxTotalResources(3);
+
+    ResourcePool[] pools = new ResourcePool[3];
+    for (int i = 0; i < pools.length; ++i)
+      pools[i] = fact.createPool(mgr);
+    try {
+      for (int round = 0; round < 2; ++round) {
+        for (int i = 0; i < pools.length; ++i) {
+          Object r1 = pools[i].checkoutResource(5000);
+          Object r2 = pools[i].checkoutResource(5000);
+          pools[i].checkinResource(r1);
+          pools[i].checkinResource(r2);
+        }
+      }
+      assertTrue("Expect no more resources at once than the budget allows, saw " + mgr.peak, mgr.peak <= 3);
+    }
+    finally {
+      for (int i = 0; i < pools.length; ++i)
+        pools[i].close();
+    }
+  }
+
+  // a pool growing by its increment can exhaust the budget, and be starved itself, while its resources sit idle
+  public void testStarvedPoolGivesUpIdleResources() throws Exception {
+    ResourcePoolTestSupport.CountingManager mgr = new ResourcePoolTestSupport.CountingManager();
+
+    BasicResourcePoolFactory fact = ResourcePoolTestSupport.createFactory(1);
+    fact.setMax(3);
+    fact.setIncrement(3);
+    fact.setMaxTotalResources(2);
+    ResourcePool greedy = fact.createPool(mgr);
+
+    fact.setStart(0);
+    fact.setMin(0);
+    fact.setIncrement(1);
+    ResourcePool other = fact.createPool(mgr);
+    try {
+      greedy.checkinResource(greedy.checkoutResource(5000));
+
+      Object resc = other.checkoutResource(5000);
+      assertNotNull("Expect the other pool to get a resource given up by the greedy pool", resc);
+      other.checkinResource(resc);
+    }
+    finally {
+      greedy.close();
+      other.close();
+    }
+  }
+
+  public void testDataSourcesGroupedByJdbcUrlDoNotRevealIt() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    Set before = C3P0Registry.getConnectionBudgetGroupNames();
+
+    ComboPooledDataSource[] cpdss = new ComboPooledDataSource[2];
+    try {
+      for (int i = 0; i < cpdss.length; ++i) {
+        cpdss[i] = new ComboPooledDataSource();
+        cpdss[i].setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+        cpdss[i].setJdbcUrl("mock:driver@plain?user=scott&password=tiger");
+        cpdss[i].setInitialPoolSize(1);
+        cpdss[i].setMinPoolSize(1);
+        cpdss[i].setMaxGroupConnections(2);
+        cpdss[i].getConnection().close();
+      }
+
+      Set added = C3P0Registry.getConnectionBudgetGroupNames();
+      added.removeAll(before);
+      assertEquals("Expect DataSources with the same jdbcUrl to share one group: " + added, 1, added.size());
+      String name = (String) added.iterator().next();
+      assertTrue("Expect the group name not to reveal the jdbcUrl: " + name, name.indexOf("tiger") < 0 && name.indexOf("mock:") < 0);
+    }
+    finally {
+      for (int i = 0; i < cpdss.length; ++i)
+        if (cpdss[i] != null)
+          cpdss[i].close();
+    }
+  }
+}
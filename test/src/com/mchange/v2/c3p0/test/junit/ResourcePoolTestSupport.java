@@ -0,0 +1,44 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import com.mchange.v2.resourcepool.*;
+
+// fixtures shared by the tests that exercise BasicResourcePool directly
+final class ResourcePoolTestSupport {
+
+  // hands out distinct resources, and counts what it acquires and destroys
+  static class CountingManager implements ResourcePool.Manager {
+    int acquired = 0;
+    int destroyed = 0;
+    int live = 0;
+    int peak = 0;
+
+    public synchronized Object acquireResource() {
+      peak = Math.max(peak, ++live);
+      return "resource-" + (acquired++);
+    }
+    public void refurbishIdleResource(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckout(Object resc) throws Exception {}
+    public void refurbishResourceOnCheckin(Object resc) throws Exception {}
+    public synchronized void destroyResource(Object resc, boolean checked_out) throws Exception {
+      ++destroyed;
+      --live;
+    }
+  }
+
+  // pools of a fixed size, whose checkins are complete when checkinResource(...) returns
+  static BasicResourcePoolFactory createFactory(int size) throws ResourcePoolException {
+    BasicResourcePoolFactory fact = BasicResourcePoolFactory.createNoEventSupportInstance(2);
+    fact.setStart(size);
+    fact.setMin(size);
+    fact.setMax(size);
+    fact.setIncrement(1);
+    fact.setForceSynchronousCheckins(true);
+    return fact;
+  }
+
+  static ResourcePool createPool(ResourcePool.Manager mgr, int size) throws ResourcePoolException {
+    return createFactory(size).createPool(mgr);
+  }
+
+  private ResourcePoolTestSupport() {}
+}
@@ -0,0 +1,104 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.sql.*;
+import java.util.*;
+
+import junit.framework.*;
+import com.mchange.v2.c3p0.*;
+
+public final class SessionContextJUnitTestCase extends TestCase {
+
+  // records each switch as "from->to", and refuses to switch to "bad"
+  public static final class RecordingApplier implements SessionContextApplier {
+    static final List switches = new ArrayList();
+
+    public void applySessionContext(Connection c, String currentContext, String newContext, String parentDataSourceIdentityToken) throws Exception {
+      if ("bad".equals(newContext))
+        throw new Exception("The mock database has no session context 'bad'.");
+      synchronized (switches) { switches.add(currentContext + "->" + newContext); }
+    }
+
+    static List switches() {
+      synchronized (switches) { return new ArrayList(switches); }
+    }
+  }
+
+  ComboPooledDataSource cpds;
+
+  protected void setUp() throws Exception {
+    DriverManager.registerDriver(new MockDriver());
+    synchronized (RecordingApplier.switches) { RecordingApplier.switches.clear(); }
+    cpds = new ComboPooledDataSource();
+    cpds.setDriverClass("com.mchange.v2.c3p0.test.junit.MockDriver");
+    cpds.setJdbcUrl("mock:driver@plain");
+    cpds.setInitialPoolSize(2);
+    cpds.setMinPoolSize(2);
+    cpds.setMaxPoolSize(2);
+    cpds.setForceSynchronousCheckins(true); // so a closed Connection is back in the pool before the next checkout
+  }
+
+  protected void tearDown() throws Exception {
+    cpds.close();
+  }
+
+  // initial Connections are acquired asynchronously; a checkout can only prefer among Connections that exist
+  private void awaitPoolFull() throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (cpds.getNumIdleConnectionsDefaultUser() < 2 && System.currentTimeMillis() < deadline)
+      Thread.sleep(20);
+    assertEquals(2, cpds.getNumIdleConnectionsDefaultUser());
+  }
+
+  public void testCheckoutPrefersMatchingContext() throws Exception {
+    cpds.setSessionContextApplierClassName(RecordingApplier.class.getName());
+    awaitPoolFull();
+
+    cpds.getConnectionForSessionContext("a").close();
+    assertEquals(Arrays.asList(new String[] { "null->a" }), RecordingApplier.switches());
+
+    for (int i = 0; i < 3; ++i)
+      cpds.getConnectionForSessionContext("a").close();
+    cpds.getConnection().close();
+    assertEquals("Expect checkouts to find Connections already in the requested context",
+                 Arrays.asList(new String[] { "null->a" }), RecordingApplier.switches());
+
+    Connection a = cpds.getConnectionForSessionContext("a");
+    Connection b = cpds.getConnectionForSessionContext("b");
+    a.close();
+    b.close();
+    assertEquals(Arrays.asList(new String[] { "null->a", "null->b" }), RecordingApplier.switches());
+
+    cpds.getConnection().close();
+    assertEquals("Expect a plain checkout to restore the default session when no Connection is in it",
+                 3, RecordingApplier.switches().size());
+    assertTrue(((String) RecordingApplier.switches().get(2)).endsWith("->null"));
+  }
+
+  public void testFailedSwitchDestroysConnection() throws Exception {
+    cpds.setSessionContextApplierClassName(RecordingApplier.class.getName());
+
+    cpds.getConnection().close();
+    try {
+      cpds.getConnectionForSessionContext("bad");
+      fail("Expect a request to fail if its Connection cannot be switched");
+    }
+    catch (SQLException e) {}
+
+    Connection a = cpds.getConnectionForSessionContext("a");
+    Connection b = cpds.getConnectionForSessionContext("b");
+    a.close();
+    b.close();
+    assertEquals("Expect the pool to replace the Connection that could not be switched", 2, cpds.getNumConnectionsDefaultUser());
+  }
+
+  public void testSessionContextRequiresApplier() throws Exception {
+    try {
+      cpds.getConnectionForSessionContext("a");
+      fail("Expect a session context request to fail with no applier configured");
+    }
+    catch (SQLException e) {}
+
+    cpds.getConnectionForSessionContext(null).close();
+    assertTrue(RecordingApplier.switches().isEmpty());
+  }
+}
@@ -0,0 +1,129 @@
+package com.mchange.v2.c3p0.test.junit;
+
+import java.lang.reflect.*;
+import java.sql.*;
+
+import junit.framework.*;
+import com.mchange.v2.async.ThreadPoolAsynchronousRunner;
+import com.mchange.v2.c3p0.stmt.*;
+
+public final class StatementCacheStatsJUnitTestCase extends TestCase {
+
+  final static Method PREPARE_STATEMENT;
+
+  static {
+    try { PREPARE_STATEMENT = Connection.class.getMethod("prepareStatement", new Class[] { String.class }); }
+    catch (NoSuchMethodException e) { throw new InternalError(e.toString()); }
+  }
+
+  // Connections whose PreparedStatements do nothing, but are distinct objects
+  static class NullObjectHandler implements InvocationHandler {
+    public Object invoke(Object proxy, Method m, Object[] args) {
+      String name = m.getName();
+      if (name.equals("equals")) return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode")) return Integer.valueOf(System.identityHashCode(proxy));
+      if (name.equals("toString")) return "NullObject@" + System.identityHashCode(proxy);
+      if (name.equals("prepareStatement")) return proxy(PreparedStatement.class);
+      Class rt = m.getReturnType();
+      if (rt == boolean.class) return Boolean.FALSE;
+      if (rt == int.class) return Integer.valueOf(0);
+      if (rt == long.class) return Long.valueOf(0);
+      return null;
+    }
+  }
+
+  static Object proxy(Class intfc) {
+    return Proxy.newProxyInstance(intfc.getClassLoader(), new Class[] { intfc }, new NullObjectHandler());
+  }
+
+  Object checkoutAndCheckin(GooGooStatementCache cache, Connection con, String sql) throws Exception {
+    Object ps = cache.checkoutStatement(con, PREPARE_STATEMENT, new Object[] { sql });
+    cache.checkinStatement(ps);
+    return ps;
+  }
+
+  public void testCountsHitsMissesAndEvictions() throws Exception {
+    ThreadPoolAsynchronousRunner runner = new ThreadPoolAsynchronousRunner(1, true);
+    GooGooStatementCache cache = new GlobalMaxOnlyStatementCache(runner, null, 2);
+    Connection con = (Connection) proxy(Connection.class);
+    try {
+      checkoutAndCheckin(cache, con, "A");
+      checkoutAndCheckin(cache, con, "A");
+      checkoutAndCheckin(cache, con, "B");
+      checkoutAndCheckin(cache, con, "C"); // evicts A, least recently used
+      checkoutAndCheckin(cache, con, "A"); // evicts B
+
+      assertEquals("hits", 1, cache.getNumHits());
+      assertEquals("misses", 4, cache.getNumMisses());
+      assertEquals("uncached checkouts", 0, cache.getNumUncachedCheckouts());
+      assertEquals("evictions to respect maxStatements", 2, cache.getNumEvictionsMaxStatements());
+      assertEquals("prepares timed", 4, cache.getPrepareLatencies().getTotalCount());
+
+      StatementMissCount[] top = cache.getTopMisses();
+      assertEquals("tracked texts", 3, top.length);
+      assertEquals("most missed text", "A", top[0].getSql());
+      assertEquals("misses of most missed text", 2, top[0].getNumMisses());
+      assertEquals("overcount with room in the table", 0, top[0].getMaxOvercount());
+
+      cache.closeAll(con);
+      assertEquals("evictions on Connection close", 2, cache.getNumEvictionsConnectionClose());
+    }
+    finally {
+      cache.close();
+      runner.close();
+    }
+  }
+
+  public void testTopMissesKeepHotTextThroughChurn() throws Exception {
+    ThreadPoolAsynchronousRunner runner = new ThreadPoolAsynchronousRunner(1, true);
+    GooGooStatementCache cache = new GlobalMaxOnlyStatementCache(runner, null, 1); // every change of text misses
+    Connection con = (Connection) proxy(Connection.class);
+    try {
+      for (int i = 0; i < 200; ++i) {
+        checkoutAndCheckin(cache, con, "HOT");
+        checkoutAndCheckin(cache, con, "cold-" + i);
+      }
+
+      StatementMissCount[] top = cache.getTopMisses();
+      assertEquals("tracked texts, once the table is full", 64, top.length);
+      assertEquals("most missed text", "HOT", top[0].getSql());
+      assertTrue("Expect counts never to understate misses", top[0].getNumMisses() >= 200);
+      for (int i = 1; i < top.length; ++i)
+        assertTrue("Expect overcounts to bound overstatement: " + top[i], top[i].getNumMisses() - top[i].getMaxOvercount() <= 1);
+
+      cache.closeAll(con);
+    }
+    finally {
+      cache.close();
+      runner.close();
+    }
+  }
+
+  public void testWarmUpPreparesMostRequestedStatements() throws Exception {
+    ThreadPoolAsynchronousRunner runner = new ThreadPoolAsynchronousRunner(1, true);
+    GooGooStatementCache cache = new GlobalMaxOnlyStatementCache(runner, null, 10);
+    cache.initWarmUp(1, null);
+    Connection first = (Connection) proxy(Connection.class);
+    Connection second = (Connection) proxy(Connection.class);
+    try {
+      for (int i = 0; i < 3; ++i)
+        checkoutAndCheckin(cache, first, "A");
+      checkoutAndCheckin(cache, first, "B");
+
+      cache.warmUp(second);
+      assertEquals("Expect warm-up not to count as misses", 2, cache.getNumMisses());
+
+      checkoutAndCheckin(cache, second, "A");
+      assertEquals("Expect the most requested Statement to be prepared in advance", 2, cache.getNumMisses());
+      checkoutAndCheckin(cache, second, "B");
+      assertEquals("Expect only the most requested Statement to be prepared in advance", 3, cache.getNumMisses());
+
+      cache.closeAll(first);
+      cache.closeAll(second);
+    }
+    finally {
+      cache.close();
+      runner.close();
+    }
+  }
+}